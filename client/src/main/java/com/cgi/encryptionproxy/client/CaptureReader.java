@@ -0,0 +1,129 @@
+package com.cgi.encryptionproxy.client;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a workload capture of the proxy ({@code /api/v1/admin/capture}) request by
+ * request. The format is described at the proxy's {@code WorkloadCapture}.
+ */
+final class CaptureReader implements AutoCloseable {
+
+    private static final int MAGIC = 0x45505743; // "EPWC"
+    private static final int VERSION = 1;
+    private static final int RECORD_NAME = 1;
+    private static final int RECORD_REQUEST = 2;
+
+    private final DataInputStream in;
+    private final List<String> names = new ArrayList<>();
+    private final long startEpochMillis;
+
+    CaptureReader(Path file) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        if (in.readInt() != MAGIC) {
+            in.close();
+            throw new IOException(file + " is no workload capture");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            in.close();
+            throw new IOException("Unsupported capture version " + version);
+        }
+        this.startEpochMillis = in.readLong();
+    }
+
+    long startEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * @return the next request, or null at the end of the capture
+     */
+    Request next() throws IOException {
+        while (true) {
+            int type;
+            try {
+                type = in.readUnsignedByte();
+            } catch (EOFException e) {
+                return null;
+            }
+            if (type == RECORD_NAME) {
+                int id = in.readUnsignedShort();
+                String name = in.readUTF();
+                if (id != names.size()) {
+                    throw new IOException("Capture defines name " + id + " out of order");
+                }
+                names.add(name);
+            } else if (type == RECORD_REQUEST) {
+                long offsetMicros = readVarLong();
+                long durationMicros = readVarLong();
+                int operation = in.readUnsignedByte();
+                String provider = name(in.readUnsignedShort());
+                String keyName = name(in.readUnsignedShort());
+                long failedItems = readVarLong();
+                int items = (int) readVarLong();
+                int[] sizes = new int[items];
+                long[] fingerprints = new long[items];
+                for (int i = 0; i < items; i++) {
+                    sizes[i] = (int) readVarLong();
+                    fingerprints[i] = in.readLong();
+                }
+                return new Request(offsetMicros, durationMicros, operation(operation), provider, keyName,
+                        failedItems, sizes, fingerprints);
+            } else {
+                throw new IOException("Unknown capture record type " + type);
+            }
+        }
+    }
+
+    private String name(int id) throws IOException {
+        if (id >= names.size()) {
+            throw new IOException("Capture uses undefined name " + id);
+        }
+        return names.get(id);
+    }
+
+    private static Operation operation(int code) throws IOException {
+        for (Operation operation : Operation.values()) {
+            if (operation.code == code) {
+                return operation;
+            }
+        }
+        throw new IOException("Unknown operation " + code + " in capture");
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in capture");
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * A captured request.
+     *
+     * @param offsetMicros   arrival after the start of the capture
+     * @param durationMicros how long the proxy took to serve it
+     * @param sizes          plaintext size of every item
+     * @param fingerprints   fingerprint of every item's value; equal values have equal fingerprints
+     */
+    record Request(long offsetMicros, long durationMicros, Operation operation, String provider, String keyName,
+            long failedItems, int[] sizes, long[] fingerprints) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.cgi.encryptionproxy.client;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Local cache of decrypted values, bounded in size and age. Plaintexts are copied in
+ * and out, so callers cannot modify cached values.
+ */
+final class DecryptCache {
+
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    DecryptCache(Duration ttl, int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    byte[] get(String keyName, String ciphertext) {
+        String key = key(keyName, ciphertext);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAt > 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.plaintext.clone();
+        }
+    }
+
+    void put(String keyName, String ciphertext, byte[] plaintext) {
+        Entry entry = new Entry(plaintext.clone(), System.nanoTime() + ttlNanos);
+        synchronized (entries) {
+            entries.put(key(keyName, ciphertext), entry);
+        }
+    }
+
+    private static String key(String keyName, String ciphertext) {
+        return keyName + '\0' + ciphertext;
+    }
+
+    private record Entry(byte[] plaintext, long expiresAt) {
+    }
+}
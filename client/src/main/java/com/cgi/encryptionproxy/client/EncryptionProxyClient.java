@@ -0,0 +1,268 @@
+package com.cgi.encryptionproxy.client;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Asynchronous client of the encryption proxy. Single calls are collected into batch
+ * requests per key (micro-batching), so many small calls cost few round trips.
+ * Requests go over HTTP, sharing pooled HTTP/2 connections, or over the binary
+ * protocol of the proxy's Unix domain socket.
+ * <pre>
+ * EncryptionProxyClient client = EncryptionProxyClient.builder()
+ *         .endpoint(URI.create("http://localhost:8080"))
+ *         .keyProvider("vault")
+ *         .decryptCache(Duration.ofMinutes(5), 10_000)
+ *         .build();
+ * String ciphertext = client.encrypt("customers", plaintext).join();
+ * </pre>
+ * Failed items complete their future with an {@link ItemFailedException}, failed
+ * requests with an {@link EncryptionProxyException}.
+ */
+public final class EncryptionProxyClient implements AutoCloseable {
+
+    private final Transport transport;
+    private final String keyProvider;
+    private final int maxBatchSize;
+    private final Duration maxBatchDelay;
+    private final Duration requestTimeout;
+    private final DecryptCache decryptCache;
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("encryptionproxy-client-batcher").factory());
+    private final Map<String, MicroBatcher<String, JsonNode>> batchers = new ConcurrentHashMap<>();
+
+    private EncryptionProxyClient(Builder builder) {
+        if (builder.keyProvider == null) {
+            throw new IllegalArgumentException("keyProvider is required");
+        }
+        if ((builder.endpoint == null) == (builder.unixSocket == null)) {
+            throw new IllegalArgumentException("Exactly one of endpoint and unixSocket is required");
+        }
+        this.transport = builder.endpoint != null
+                ? new HttpTransport(builder.endpoint, builder.connectTimeout)
+                : new UnixSocketTransport(builder.unixSocket);
+        this.keyProvider = builder.keyProvider;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxBatchDelay = builder.maxBatchDelay;
+        this.requestTimeout = builder.requestTimeout;
+        this.decryptCache = builder.cacheTtl == null ? null : new DecryptCache(builder.cacheTtl, builder.cacheSize);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Encrypts with the latest version of the key.
+     *
+     * @return the ciphertext in the proxy format {@code version:ciphertext}
+     */
+    public CompletableFuture<String> encrypt(String keyName, byte[] plaintext) {
+        return encrypt(keyName, null, plaintext);
+    }
+
+    public CompletableFuture<String> encrypt(String keyName, Integer keyVersion, byte[] plaintext) {
+        String batchKey = "encrypt\0" + keyName + '\0' + keyVersion;
+        return batchers.computeIfAbsent(batchKey, k -> batcher(Operation.ENCRYPT, keyName, keyVersion))
+                .submit(Base64.getEncoder().encodeToString(plaintext))
+                .thenApply(item -> succeeded(item).path("ciphertext").asString());
+    }
+
+    public CompletableFuture<byte[]> decrypt(String keyName, String ciphertext) {
+        if (decryptCache != null) {
+            byte[] cached = decryptCache.get(keyName, ciphertext);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        String batchKey = "decrypt\0" + keyName;
+        return batchers.computeIfAbsent(batchKey, k -> batcher(Operation.DECRYPT, keyName, null))
+                .submit(ciphertext)
+                .thenApply(item -> {
+                    byte[] plaintext = Base64.getDecoder().decode(succeeded(item).path("plaintext").asString());
+                    if (decryptCache != null) {
+                        decryptCache.put(keyName, ciphertext, plaintext);
+                    }
+                    return plaintext;
+                });
+    }
+
+    public CompletableFuture<List<String>> encryptAll(String keyName, List<byte[]> plaintexts) {
+        List<CompletableFuture<String>> futures = new ArrayList<>(plaintexts.size());
+        for (byte[] plaintext : plaintexts) {
+            futures.add(encrypt(keyName, plaintext));
+        }
+        return all(futures);
+    }
+
+    public CompletableFuture<List<byte[]>> decryptAll(String keyName, List<String> ciphertexts) {
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>(ciphertexts.size());
+        for (String ciphertext : ciphertexts) {
+            futures.add(decrypt(keyName, ciphertext));
+        }
+        return all(futures);
+    }
+
+    private static <T> CompletableFuture<List<T>> all(List<CompletableFuture<T>> futures) {
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    private MicroBatcher<String, JsonNode> batcher(Operation operation, String keyName, Integer keyVersion) {
+        String field = operation == Operation.ENCRYPT ? "plaintext" : "ciphertext";
+        return new MicroBatcher<>(maxBatchSize, maxBatchDelay, timer, values -> {
+            Map<String, Object> request = new LinkedHashMap<>();
+            request.put("keyProvider", keyProvider);
+            request.put("keyName", keyName);
+            if (keyVersion != null) {
+                request.put("keyVersion", keyVersion);
+            }
+            List<Map<String, String>> data = new ArrayList<>(values.size());
+            for (String value : values) {
+                data.add(Map.of(field, value));
+            }
+            request.put("data", data);
+
+            return transport.send(operation, objectMapper.writeValueAsBytes(request), requestTimeout)
+                    .thenApply(reply -> items(reply, values.size()));
+        });
+    }
+
+    /**
+     * The per-item results of a reply, in the order of the batch.
+     */
+    private List<JsonNode> items(Transport.Reply reply, int expected) {
+        if (reply.status() != 200 && reply.status() != 207) {
+            String message;
+            try {
+                message = objectMapper.readTree(reply.body()).path("message").asString("HTTP " + reply.status());
+            } catch (RuntimeException e) {
+                message = "HTTP " + reply.status();
+            }
+            throw new EncryptionProxyException(message, reply.status());
+        }
+        JsonNode items = objectMapper.readTree(reply.body());
+        if (!items.isArray() || items.size() != expected) {
+            throw new EncryptionProxyException("Proxy returned " + items.size() + " results for " + expected
+                    + " items", reply.status());
+        }
+        List<JsonNode> results = new ArrayList<>(expected);
+        for (JsonNode item : items) {
+            results.add(item);
+        }
+        return results;
+    }
+
+    private static JsonNode succeeded(JsonNode item) {
+        if ("FAILED".equals(item.path("status").asString())) {
+            throw new ItemFailedException(item.path("error").asString(), item.path("message").asString(""));
+        }
+        return item;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdown();
+        transport.close();
+    }
+
+    public static final class Builder {
+
+        private URI endpoint;
+        private Path unixSocket;
+        private String keyProvider;
+        private int maxBatchSize = 256;
+        private Duration maxBatchDelay = Duration.ofMillis(2);
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration requestTimeout = Duration.ofSeconds(30);
+        private Duration cacheTtl;
+        private int cacheSize;
+
+        private Builder() {
+        }
+
+        /**
+         * Base URI of the proxy, e.g. {@code http://encryptionproxy:8080}.
+         */
+        public Builder endpoint(URI endpoint) {
+            this.endpoint = endpoint;
+            return this;
+        }
+
+        /**
+         * Path of the proxy's Unix domain socket, instead of an HTTP endpoint.
+         */
+        public Builder unixSocket(Path unixSocket) {
+            this.unixSocket = unixSocket;
+            return this;
+        }
+
+        public Builder keyProvider(String keyProvider) {
+            this.keyProvider = keyProvider;
+            return this;
+        }
+
+        /**
+         * Items per batch request (default 256).
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("maxBatchSize must be at least 1");
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * How long a call waits for others to share its batch (default 2 ms); zero
+         * sends every call on its own.
+         */
+        public Builder maxBatchDelay(Duration maxBatchDelay) {
+            this.maxBatchDelay = maxBatchDelay;
+            return this;
+        }
+
+        public Builder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * Timeout of a batch request, also passed to the proxy as the request deadline
+         * (default 30 s).
+         */
+        public Builder requestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * Keeps decrypted values locally for {@code ttl}, at most {@code maxEntries} of
+         * them. Off by default.
+         */
+        public Builder decryptCache(Duration ttl, int maxEntries) {
+            this.cacheTtl = ttl;
+            this.cacheSize = maxEntries;
+            return this;
+        }
+
+        public EncryptionProxyClient build() {
+            return new EncryptionProxyClient(this);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.cgi.encryptionproxy.client;
+
+/**
+ * Failure of a call to the encryption proxy. For a failed request the status is the
+ * HTTP status of the response, or 0 if no response was received.
+ */
+public class EncryptionProxyException extends RuntimeException {
+
+    private final int status;
+
+    public EncryptionProxyException(String message, int status) {
+        super(message);
+        this.status = status;
+    }
+
+    public EncryptionProxyException(String message, Throwable cause) {
+        super(message, cause);
+        this.status = 0;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,53 @@
+package com.cgi.encryptionproxy.client;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP transport over one shared client. The client keeps its connections open and
+ * multiplexes concurrent batches over HTTP/2 where the proxy offers it.
+ */
+final class HttpTransport implements Transport {
+
+    private final URI endpoint;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient;
+
+    HttpTransport(URI endpoint, Duration connectTimeout) {
+        this(endpoint, connectTimeout, HttpClient.Version.HTTP_2);
+    }
+
+    HttpTransport(URI endpoint, Duration connectTimeout, HttpClient.Version version) {
+        this.endpoint = endpoint;
+        this.httpClient = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<Reply> send(Operation operation, byte[] body, Duration timeout) {
+        HttpRequest request = HttpRequest.newBuilder(endpoint.resolve(operation.path))
+                .header("Content-Type", "application/json")
+                // lets the proxy abandon work the client no longer waits for
+                .header("X-Request-Timeout", Long.toString(timeout.toMillis()))
+                .timeout(timeout)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> new Reply(response.statusCode(), response.body()));
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+        executor.close();
+    }
+}
@@ -0,0 +1,26 @@
+package com.cgi.encryptionproxy.client;
+
+/**
+ * Failure of a single item of a batch, with the item error code of the proxy
+ * (e.g. {@code KMS_UNAVAILABLE}). The other items of the batch are not affected.
+ */
+public class ItemFailedException extends EncryptionProxyException {
+
+    private final String error;
+
+    public ItemFailedException(String error, String message) {
+        super(error + ": " + message, 207);
+        this.error = error;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Whether sending the item again may succeed.
+     */
+    public boolean isRetryable() {
+        return "THROTTLED".equals(error) || "KMS_UNAVAILABLE".equals(error);
+    }
+}
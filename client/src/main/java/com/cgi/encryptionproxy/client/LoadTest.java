@@ -0,0 +1,160 @@
+package com.cgi.encryptionproxy.client;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load test of the encrypt endpoint: a fixed number of requests is kept
+ * in flight for the given duration.
+ * <pre>
+ * java -cp encryptionproxy-client.jar:jackson-*.jar com.cgi.encryptionproxy.client.LoadTest \
+ *     http://localhost:8080 [--concurrency 1000] [--duration 30] [--items 1] [--key-provider local]
+ *     [--key-name load] [--http1] [--timeout 60000]
+ * </pre>
+ * Over HTTP/2 all requests share multiplexed connections, {@code --http1} opens a
+ * connection per concurrent request. The report includes the number of requests the
+ * proxy worked on at once: throughput times the fastest latency, which is a request's
+ * service time without queueing (Little's law). Against a provider with simulated
+ * latency ({@code latencymillis}) it stays near the concurrency when requests do not
+ * queue for server threads, and drops to the size of the thread pool when they do.
+ */
+public final class LoadTest {
+
+    private final Transport transport;
+    private final int concurrency;
+    private final Duration duration;
+    private final Duration timeout;
+    private final byte[] body;
+    private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong failed = new AtomicLong();
+
+    LoadTest(Transport transport, int concurrency, Duration duration, Duration timeout, byte[] body) {
+        this.transport = transport;
+        this.concurrency = concurrency;
+        this.duration = duration;
+        this.timeout = timeout;
+        this.body = body;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        int concurrency = 1000;
+        int seconds = 30;
+        int items = 1;
+        String keyProvider = "local";
+        String keyName = "load";
+        HttpClient.Version version = HttpClient.Version.HTTP_2;
+        Duration timeout = Duration.ofSeconds(60);
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                case "--duration" -> seconds = Integer.parseInt(args[++i]);
+                case "--items" -> items = Integer.parseInt(args[++i]);
+                case "--key-provider" -> keyProvider = args[++i];
+                case "--key-name" -> keyName = args[++i];
+                case "--http1" -> version = HttpClient.Version.HTTP_1_1;
+                case "--timeout" -> timeout = Duration.ofMillis(Long.parseLong(args[++i]));
+                default -> positional.add(args[i]);
+            }
+        }
+        if (positional.size() != 1 || concurrency < 1 || seconds < 1 || items < 1) {
+            System.err.println("Usage: LoadTest <http://host:port | unix:socket path> [--concurrency requests]"
+                    + " [--duration seconds] [--items per request] [--key-provider name] [--key-name name]"
+                    + " [--http1] [--timeout millis]");
+            System.exit(2);
+        }
+
+        String target = positional.getFirst();
+        try (Transport transport = target.startsWith("unix:")
+                ? new UnixSocketTransport(Path.of(target.substring("unix:".length())))
+                : new HttpTransport(URI.create(target), Duration.ofSeconds(5), version)) {
+            LoadTest test = new LoadTest(transport, concurrency, Duration.ofSeconds(seconds), timeout,
+                    body(keyProvider, keyName, items));
+            System.out.print(test.run());
+        }
+    }
+
+    private static byte[] body(String keyProvider, String keyName, int items) {
+        List<Map<String, String>> data = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            byte[] plaintext = new byte[32];
+            ThreadLocalRandom.current().nextBytes(plaintext);
+            data.add(Map.of("plaintext", Base64.getEncoder().encodeToString(plaintext)));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("keyProvider", keyProvider);
+        body.put("keyName", keyName);
+        body.put("data", data);
+        ObjectMapper objectMapper = JsonMapper.builder().build();
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    /**
+     * @return a report of throughput, latencies and the concurrency the proxy sustained
+     */
+    String run() throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            next(end, done);
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<Long> sorted;
+        synchronized (latencies) {
+            sorted = new ArrayList<>(latencies);
+        }
+        Collections.sort(sorted);
+        double meanMillis = sorted.stream().mapToLong(Long::longValue).average().orElse(0) / 1000.0;
+        double throughput = sorted.size() / seconds;
+        return String.format(Locale.ROOT, "%d requests in %.1f s with %d in flight, %d failed%n"
+                        + "throughput %.0f requests/s, latency mean %.1f ms, p50 %.1f ms, p99 %.1f ms, max %.1f ms%n"
+                        + "served concurrently (throughput x min latency): %.0f%n",
+                sorted.size(), seconds, concurrency, failed.get(), throughput, meanMillis,
+                percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 1),
+                throughput * percentile(sorted, 0) / 1000);
+    }
+
+    /**
+     * Sends one request and, once it completed, the next, until the end of the test.
+     */
+    private void next(long end, CountDownLatch done) {
+        if (System.nanoTime() - end >= 0) {
+            done.countDown();
+            return;
+        }
+        long sent = System.nanoTime();
+        transport.send(Operation.ENCRYPT, body, timeout).whenComplete((reply, failure) -> {
+            latencies.add((System.nanoTime() - sent) / 1000);
+            if (failure != null || reply.status() != 200) {
+                failed.incrementAndGet();
+            }
+            next(end, done);
+        });
+    }
+
+    private static double percentile(List<Long> sortedMicros, double quantile) {
+        if (sortedMicros.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.min(sortedMicros.size() - 1, Math.ceil(quantile * sortedMicros.size()) - 1);
+        return sortedMicros.get(Math.max(0, index)) / 1000.0;
+    }
+}
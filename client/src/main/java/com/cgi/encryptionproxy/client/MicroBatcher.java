@@ -0,0 +1,91 @@
+package com.cgi.encryptionproxy.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects single calls into batches. A batch is sent when it is full or when its
+ * first call has waited for the maximum delay, whichever comes first.
+ */
+final class MicroBatcher<I, O> {
+
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService timer;
+    private final Function<List<I>, CompletableFuture<List<O>>> sender;
+
+    private List<I> items = new ArrayList<>();
+    private List<CompletableFuture<O>> futures = new ArrayList<>();
+
+    MicroBatcher(int maxBatchSize, Duration maxDelay, ScheduledExecutorService timer,
+            Function<List<I>, CompletableFuture<List<O>>> sender) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.timer = timer;
+        this.sender = sender;
+    }
+
+    CompletableFuture<O> submit(I item) {
+        CompletableFuture<O> future = new CompletableFuture<>();
+        List<I> fullItems = null;
+        List<CompletableFuture<O>> fullFutures = null;
+        synchronized (this) {
+            items.add(item);
+            futures.add(future);
+            if (items.size() >= maxBatchSize || maxDelayNanos == 0) {
+                fullItems = items;
+                fullFutures = futures;
+                items = new ArrayList<>();
+                futures = new ArrayList<>();
+            } else if (items.size() == 1) {
+                List<I> batch = items;
+                timer.schedule(() -> flush(batch), maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (fullItems != null) {
+            send(fullItems, fullFutures);
+        }
+        return future;
+    }
+
+    /**
+     * Sends the batch the timer was started for, unless it was sent because it filled up.
+     */
+    private void flush(List<I> batch) {
+        List<I> pendingItems;
+        List<CompletableFuture<O>> pendingFutures;
+        synchronized (this) {
+            if (items != batch) {
+                return;
+            }
+            pendingItems = items;
+            pendingFutures = futures;
+            items = new ArrayList<>();
+            futures = new ArrayList<>();
+        }
+        send(pendingItems, pendingFutures);
+    }
+
+    private void send(List<I> batch, List<CompletableFuture<O>> batchFutures) {
+        CompletableFuture<List<O>> results;
+        try {
+            results = sender.apply(batch);
+        } catch (RuntimeException e) {
+            results = CompletableFuture.failedFuture(e);
+        }
+        results.whenComplete((values, error) -> {
+            for (int i = 0; i < batchFutures.size(); i++) {
+                if (error != null) {
+                    batchFutures.get(i).completeExceptionally(error);
+                } else {
+                    batchFutures.get(i).complete(values.get(i));
+                }
+            }
+        });
+    }
+}
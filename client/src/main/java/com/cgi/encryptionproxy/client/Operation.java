@@ -0,0 +1,18 @@
+package com.cgi.encryptionproxy.client;
+
+/**
+ * Batch operations of the proxy, with their HTTP path and Unix socket operation code.
+ */
+enum Operation {
+    ENCRYPT("/api/v1/encrypt", 1),
+    DECRYPT("/api/v1/decrypt", 2),
+    HMAC("/api/v1/hmac", 3);
+
+    final String path;
+    final int code;
+
+    Operation(String path, int code) {
+        this.path = path;
+        this.code = code;
+    }
+}
@@ -0,0 +1,19 @@
+package com.cgi.encryptionproxy.client;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends a JSON request body to the proxy and returns the status and JSON body of the
+ * response.
+ */
+interface Transport extends AutoCloseable {
+
+    CompletableFuture<Reply> send(Operation operation, byte[] body, Duration timeout);
+
+    @Override
+    void close();
+
+    record Reply(int status, byte[] body) {
+    }
+}
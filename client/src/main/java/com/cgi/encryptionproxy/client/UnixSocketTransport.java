@@ -0,0 +1,99 @@
+package com.cgi.encryptionproxy.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary transport over the proxy's Unix domain socket, for sidecar deployments.
+ * Each request is one length-prefixed frame on a pooled connection:
+ * {@code int32 length | uint8 operation | int32 timeout millis | body}, answered by
+ * {@code int32 length | uint16 status | body}.
+ */
+final class UnixSocketTransport implements Transport {
+
+    private final UnixDomainSocketAddress address;
+    private final Queue<SocketChannel> idle = new ConcurrentLinkedQueue<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    UnixSocketTransport(Path socket) {
+        this.address = UnixDomainSocketAddress.of(socket);
+    }
+
+    @Override
+    public CompletableFuture<Reply> send(Operation operation, byte[] body, Duration timeout) {
+        return CompletableFuture.supplyAsync(() -> exchange(operation, body, timeout), executor)
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private Reply exchange(Operation operation, byte[] body, Duration timeout) {
+        SocketChannel channel = idle.poll();
+        try {
+            if (channel == null) {
+                channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+                channel.connect(address);
+            }
+            ByteBuffer request = ByteBuffer.allocate(4 + 1 + 4 + body.length)
+                    .putInt(1 + 4 + body.length)
+                    .put((byte) operation.code)
+                    .putInt((int) Math.min(Integer.MAX_VALUE, timeout.toMillis()))
+                    .put(body)
+                    .flip();
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+
+            ByteBuffer length = readFully(channel, ByteBuffer.allocate(4));
+            ByteBuffer response = readFully(channel, ByteBuffer.allocate(length.getInt(0)));
+            int status = response.getShort(0) & 0xffff;
+            byte[] responseBody = new byte[response.capacity() - 2];
+            response.get(2, responseBody);
+
+            idle.add(channel);
+            return new Reply(status, responseBody);
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // already failed
+                }
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ByteBuffer readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed by the proxy");
+            }
+        }
+        return buffer;
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+        SocketChannel channel;
+        while ((channel = idle.poll()) != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+    }
+}
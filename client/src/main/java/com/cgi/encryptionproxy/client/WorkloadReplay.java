@@ -0,0 +1,291 @@
+package com.cgi.encryptionproxy.client;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a workload capture of the proxy against a proxy instance, to evaluate
+ * cache sizes, batching and scheduling settings with the traffic of production:
+ * <pre>
+ * java -cp encryptionproxy-client.jar:jackson-*.jar com.cgi.encryptionproxy.client.WorkloadReplay \
+ *     capture.epwc http://localhost:8080 [--speed 2] [--key-provider local] [--timeout 30000] [--max-in-flight 1024]
+ * </pre>
+ * The target is an HTTP base URI or {@code unix:<socket path>}. Requests are sent
+ * at their captured offsets divided by the speed, without waiting for earlier ones,
+ * with the captured operation, key and item count. Items get synthetic plaintexts of
+ * the captured sizes; items with equal fingerprints get equal values, so repetition
+ * (and thereby cache hit rates) match the capture. Ciphertexts for the decrypt
+ * requests are made by encrypting their plaintexts before the replay starts.
+ */
+public final class WorkloadReplay {
+
+    private static final int PREPARE_BATCH_SIZE = 256;
+
+    private final Path capture;
+    private final Transport transport;
+    private final double speed;
+    private final String keyProvider;
+    private final Duration timeout;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    // provider and key name -> fingerprint -> ciphertext
+    private final Map<String, Map<Long, String>> ciphertexts = new HashMap<>();
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    WorkloadReplay(Path capture, Transport transport, double speed, String keyProvider, Duration timeout,
+            int maxInFlight) {
+        this.capture = capture;
+        this.transport = transport;
+        this.speed = speed;
+        this.keyProvider = keyProvider;
+        this.timeout = timeout;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        double speed = 1;
+        String keyProvider = null;
+        Duration timeout = Duration.ofSeconds(30);
+        int maxInFlight = 1024;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--speed" -> speed = Double.parseDouble(args[++i]);
+                case "--key-provider" -> keyProvider = args[++i];
+                case "--timeout" -> timeout = Duration.ofMillis(Long.parseLong(args[++i]));
+                case "--max-in-flight" -> maxInFlight = Integer.parseInt(args[++i]);
+                default -> positional.add(args[i]);
+            }
+        }
+        if (positional.size() != 2 || speed <= 0 || maxInFlight < 1) {
+            System.err.println("Usage: WorkloadReplay <capture file> <http://host:port | unix:socket path>"
+                    + " [--speed factor] [--key-provider name] [--timeout millis] [--max-in-flight requests]");
+            System.exit(2);
+        }
+
+        String target = positional.get(1);
+        try (Transport transport = target.startsWith("unix:")
+                ? new UnixSocketTransport(Path.of(target.substring("unix:".length())))
+                : new HttpTransport(URI.create(target), Duration.ofSeconds(5))) {
+            WorkloadReplay replay = new WorkloadReplay(Path.of(positional.get(0)), transport, speed, keyProvider,
+                    timeout, maxInFlight);
+            replay.prepare();
+            System.out.print(replay.replay());
+        }
+    }
+
+    /**
+     * Encrypts the plaintexts of all items the capture decrypts.
+     */
+    void prepare() throws IOException {
+        Map<String, Map<Long, Integer>> decrypted = new LinkedHashMap<>();
+        try (CaptureReader reader = new CaptureReader(capture)) {
+            CaptureReader.Request request;
+            while ((request = reader.next()) != null) {
+                if (request.operation() == Operation.DECRYPT) {
+                    Map<Long, Integer> sizes = decrypted.computeIfAbsent(key(request), k -> new HashMap<>());
+                    for (int i = 0; i < request.sizes().length; i++) {
+                        sizes.putIfAbsent(request.fingerprints()[i], request.sizes()[i]);
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<String, Map<Long, Integer>> entry : decrypted.entrySet()) {
+            String[] providerAndKey = entry.getKey().split("\0", 2);
+            Map<Long, String> keyCiphertexts = new HashMap<>();
+            List<Map.Entry<Long, Integer>> items = new ArrayList<>(entry.getValue().entrySet());
+            for (int from = 0; from < items.size(); from += PREPARE_BATCH_SIZE) {
+                List<Map.Entry<Long, Integer>> chunk = items.subList(from,
+                        Math.min(items.size(), from + PREPARE_BATCH_SIZE));
+                List<String> values = new ArrayList<>(chunk.size());
+                for (Map.Entry<Long, Integer> item : chunk) {
+                    values.add(payload(item.getKey(), item.getValue()));
+                }
+                Transport.Reply reply = transport.send(Operation.ENCRYPT,
+                        body(providerAndKey[0], providerAndKey[1], "plaintext", values), timeout).join();
+                JsonNode results = objectMapper.readTree(reply.body());
+                if (reply.status() != 200) {
+                    throw new EncryptionProxyException("Preparing ciphertexts for key " + providerAndKey[1]
+                            + " failed: " + results, reply.status());
+                }
+                for (int i = 0; i < chunk.size(); i++) {
+                    keyCiphertexts.put(chunk.get(i).getKey(), results.get(i).path("ciphertext").asString());
+                }
+            }
+            ciphertexts.put(entry.getKey(), keyCiphertexts);
+        }
+    }
+
+    /**
+     * Sends the captured requests at their (scaled) offsets and waits for all responses.
+     *
+     * @return a report of latencies and failures per operation
+     */
+    String replay() throws IOException, InterruptedException {
+        long capturedSpanMicros = 0;
+        long start = System.nanoTime();
+        try (CaptureReader reader = new CaptureReader(capture)) {
+            CaptureReader.Request request;
+            while ((request = reader.next()) != null) {
+                capturedSpanMicros = Math.max(capturedSpanMicros, request.offsetMicros());
+                long due = start + (long) (request.offsetMicros() * 1000 / speed);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                inFlight.acquire();
+                long sent = System.nanoTime();
+                maxLagNanos.accumulateAndGet(sent - due, Math::max);
+                send(request, sent);
+            }
+        }
+        // every completed request returns its permit
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+        return report(Duration.ofNanos(System.nanoTime() - start), Duration.ofNanos(capturedSpanMicros * 1000));
+    }
+
+    private void send(CaptureReader.Request request, long sent) {
+        Stats operationStats = stats.get(request.operation());
+        operationStats.capturedMicros(request.durationMicros());
+        String field = switch (request.operation()) {
+            case ENCRYPT -> "plaintext";
+            case DECRYPT -> "ciphertext";
+            case HMAC -> "input";
+        };
+        List<String> values = new ArrayList<>(request.sizes().length);
+        Map<Long, String> keyCiphertexts = ciphertexts.get(key(request));
+        for (int i = 0; i < request.sizes().length; i++) {
+            values.add(request.operation() == Operation.DECRYPT
+                    ? keyCiphertexts.get(request.fingerprints()[i])
+                    : payload(request.fingerprints()[i], request.sizes()[i]));
+        }
+
+        transport.send(request.operation(), body(request.provider(), request.keyName(), field, values), timeout)
+                .whenComplete((reply, failure) -> {
+                    long micros = (System.nanoTime() - sent) / 1000;
+                    long failedItems = 0;
+                    boolean failed = failure != null || (reply.status() != 200 && reply.status() != 207);
+                    try {
+                        if (!failed && reply.status() == 207) {
+                            for (JsonNode item : objectMapper.readTree(reply.body())) {
+                                if ("FAILED".equals(item.path("status").asString())) {
+                                    failedItems++;
+                                }
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        failed = true;
+                    } finally {
+                        operationStats.completed(micros, values.size(), failed, failedItems);
+                        inFlight.release();
+                    }
+                });
+    }
+
+    private byte[] body(String provider, String keyName, String field, List<String> values) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("keyProvider", keyProvider != null ? keyProvider : provider);
+        body.put("keyName", keyName);
+        List<Map<String, String>> data = new ArrayList<>(values.size());
+        for (String value : values) {
+            data.add(Map.of(field, value));
+        }
+        body.put("data", data);
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    private static String key(CaptureReader.Request request) {
+        return request.provider() + '\0' + request.keyName();
+    }
+
+    /**
+     * A synthetic Base64 plaintext, the same for the same fingerprint.
+     */
+    private static String payload(long fingerprint, int size) {
+        byte[] bytes = new byte[size];
+        new SplittableRandom(fingerprint).nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private String report(Duration replayed, Duration captured) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "Replayed %s of traffic in %s at speed %.2f, max send lag %d ms%n",
+                captured, replayed, speed, maxLagNanos.get() / 1_000_000));
+        report.append(String.format(Locale.ROOT, "%-8s %9s %11s %8s %12s %9s %9s %9s %14s %14s%n",
+                "op", "requests", "items", "failed", "failed items", "p50 ms", "p99 ms", "max ms",
+                "captured p50", "captured p99"));
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats s = entry.getValue();
+            synchronized (s) {
+                if (s.requests == 0) {
+                    continue;
+                }
+                report.append(String.format(Locale.ROOT, "%-8s %9d %11d %8d %12d %9.1f %9.1f %9.1f %14.1f %14.1f%n",
+                        entry.getKey().name().toLowerCase(Locale.ROOT), s.requests, s.items, s.failedRequests,
+                        s.failedItems, percentile(s.latencies, 0.5), percentile(s.latencies, 0.99),
+                        percentile(s.latencies, 1), percentile(s.captured, 0.5), percentile(s.captured, 0.99)));
+            }
+        }
+        return report.toString();
+    }
+
+    private static double percentile(List<Long> micros, double quantile) {
+        if (micros.isEmpty()) {
+            return 0;
+        }
+        List<Long> sorted = new ArrayList<>(micros);
+        Collections.sort(sorted);
+        int index = (int) Math.min(sorted.size() - 1, Math.ceil(quantile * sorted.size()) - 1);
+        return sorted.get(Math.max(0, index)) / 1000.0;
+    }
+
+    private static final class Stats {
+        final List<Long> latencies = new ArrayList<>();
+        final List<Long> captured = new ArrayList<>();
+        long requests;
+        long items;
+        long failedRequests;
+        long failedItems;
+
+        synchronized void capturedMicros(long micros) {
+            captured.add(micros);
+        }
+
+        synchronized void completed(long micros, int itemCount, boolean failed, long failedItemCount) {
+            latencies.add(micros);
+            requests++;
+            items += itemCount;
+            if (failed) {
+                failedRequests++;
+            }
+            failedItems += failedItemCount;
+        }
+    }
+}
@@ -1,13 +1,28 @@
 package com.cgi.encryptionproxy;
 
+import com.cgi.encryptionproxy.batch.ColumnBatchJob;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
 public class EncryptionproxyApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(EncryptionproxyApplication.class, args);
+		SpringApplication application = new SpringApplication(EncryptionproxyApplication.class);
+		// the batch job needs no web server and must not keep running once it is done
+		application.addListeners(event -> {
+			if (event instanceof ApplicationEnvironmentPreparedEvent prepared
+					&& prepared.getEnvironment().containsProperty(ColumnBatchJob.INPUT_PROPERTY)) {
+				prepared.getSpringApplication().setWebApplicationType(WebApplicationType.NONE);
+			}
+		});
+		ConfigurableApplicationContext context = application.run(args);
+		if (context.getBeanProvider(ColumnBatchJob.class).getIfAvailable() != null) {
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
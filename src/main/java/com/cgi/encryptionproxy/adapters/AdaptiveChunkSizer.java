@@ -0,0 +1,76 @@
+package com.cgi.encryptionproxy.adapters;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the chunk size with the best measured throughput. Sizes are explored by
+ * doubling and halving the current size between the configured bounds; the measured
+ * throughput per size is an exponentially weighted moving average.
+ */
+class AdaptiveChunkSizer {
+
+    private static final double SMOOTHING = 0.3;
+    private static final int EXPLORE_EVERY = 8;
+
+    private final int minSize;
+    private final int maxSize;
+    private final boolean adaptive;
+
+    private final Map<Integer, Double> itemsPerSecond = new ConcurrentHashMap<>();
+    private final AtomicLong chunkCounter = new AtomicLong();
+    private volatile int currentSize;
+
+    AdaptiveChunkSizer(int initialSize, int minSize, int maxSize, boolean adaptive) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalStateException("Invalid chunk size bounds: " + minSize + ".." + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.adaptive = adaptive;
+        this.currentSize = clamp(initialSize);
+    }
+
+    int currentSize() {
+        return currentSize;
+    }
+
+    /**
+     * Size of the next chunk. Every few chunks a neighbouring size is tried so that
+     * its throughput is known when the load changes.
+     */
+    int nextSize() {
+        int size = currentSize;
+        if (!adaptive) {
+            return size;
+        }
+        long n = chunkCounter.incrementAndGet();
+        if (n % EXPLORE_EVERY == 0) {
+            return clamp((n / EXPLORE_EVERY) % 2 == 0 ? size * 2 : size / 2);
+        }
+        return size;
+    }
+
+    void record(int size, int items, long elapsedNanos) {
+        if (!adaptive || items == 0 || elapsedNanos <= 0) {
+            return;
+        }
+        double sample = items * 1_000_000_000d / elapsedNanos;
+        itemsPerSecond.merge(size, sample, (old, fresh) -> old + SMOOTHING * (fresh - old));
+
+        int best = currentSize;
+        double bestThroughput = itemsPerSecond.getOrDefault(best, 0d);
+        for (Map.Entry<Integer, Double> entry : itemsPerSecond.entrySet()) {
+            if (entry.getValue() > bestThroughput) {
+                best = entry.getKey();
+                bestThroughput = entry.getValue();
+            }
+        }
+        currentSize = best;
+    }
+
+    private int clamp(int size) {
+        return Math.max(minSize, Math.min(maxSize, size));
+    }
+}
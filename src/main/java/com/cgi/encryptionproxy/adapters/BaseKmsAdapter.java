@@ -1,11 +1,33 @@
 package com.cgi.encryptionproxy.adapters;
 
+import com.cgi.encryptionproxy.concurrency.Deadline;
+import com.cgi.encryptionproxy.jfr.CacheLookupEvent;
+
+import javax.crypto.Mac;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public abstract class BaseKmsAdapter implements IKmsAdapter {
 
+    private static final int DEFAULT_RETRIES = 2;
+    private static final long RETRY_BACKOFF_MILLIS = 100;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int DEFAULT_REJECTED_CACHE_SIZE = 10_000;
+    private static final int DEFAULT_REJECTED_CACHE_TTL_SECONDS = 300;
+
     private String name;
+    private int retries = DEFAULT_RETRIES;
+    private int minCiphertextBytes = 1;
+    private int maxCiphertextBytes = Integer.MAX_VALUE;
+    private int maxKeyVersion = Integer.MAX_VALUE;
+    private RejectedCiphertextCache rejectedCiphertexts = new RejectedCiphertextCache(DEFAULT_REJECTED_CACHE_SIZE,
+            TimeUnit.SECONDS.toNanos(DEFAULT_REJECTED_CACHE_TTL_SECONDS));
+    private volatile SignatureVerifier signatureVerifier;
 
     public String getProviderName() {
         return name;
@@ -15,6 +37,166 @@ public abstract class BaseKmsAdapter implements IKmsAdapter {
         this.name = name;
     }
 
+    /**
+     * Reads the optional "retries" parameter, the number of times failed items of a
+     * batch are sent again.
+     */
+    protected void configureRetries(Map<String, String> parameters) {
+        this.retries = intParam(parameters, "retries", DEFAULT_RETRIES);
+    }
+
+    public static int intParam(Map<String, String> parameters, String key, int defaultValue) {
+        String value = parameters.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Parameter '" + key + "' must be an integer: " + value, e);
+        }
+    }
+
+    /**
+     * Reads the optional parameters of {@link #screenCiphertexts(List)}: "maxciphertextbytes",
+     * "maxkeyversion", "rejectedcachesize" (0 disables the cache) and "rejectedcachettlseconds".
+     *
+     * @param minCiphertextBytes the smallest ciphertext the provider can produce, e.g.
+     *                           nonce and tag of an empty plaintext
+     */
+    protected void configureCiphertextScreening(Map<String, String> parameters, int minCiphertextBytes) {
+        this.minCiphertextBytes = Math.max(1, minCiphertextBytes);
+        // no upper bound unless configured: the proxy encrypts plaintexts of any size
+        this.maxCiphertextBytes = intParam(parameters, "maxciphertextbytes", Integer.MAX_VALUE);
+        this.maxKeyVersion = intParam(parameters, "maxkeyversion", Integer.MAX_VALUE);
+        this.rejectedCiphertexts = new RejectedCiphertextCache(
+                intParam(parameters, "rejectedcachesize", DEFAULT_REJECTED_CACHE_SIZE),
+                TimeUnit.SECONDS.toNanos(intParam(parameters, "rejectedcachettlseconds",
+                        DEFAULT_REJECTED_CACHE_TTL_SECONDS)));
+    }
+
+    /**
+     * Fails the items of a decrypt batch that cannot be valid ciphertexts (no key
+     * version, version out of range, not Base64, implausible length) or that the KMS
+     * rejected within the last minutes, before any KMS call is made.
+     *
+     * @return the batch result with these items failed and all others pending
+     */
+    protected BatchResult screenCiphertexts(List<DecryptOperation> data) {
+        BatchResult result = new BatchResult(data.size());
+        for (int i = 0; i < data.size(); i++) {
+            ItemError error = checkStructure(data.get(i));
+            if (error != null) {
+                result.fail(i, error);
+            }
+        }
+
+        if (rejectedCiphertexts.isEnabled() && !rejectedCiphertexts.isEmpty()) {
+            int[] pending = result.pendingIndices();
+            Mac mac = rejectedCiphertexts.newMac();
+            int hits = 0;
+            for (int index : pending) {
+                ItemError rejected = rejectedCiphertexts.get(RejectedCiphertextCache.fingerprint(mac, data.get(index)));
+                if (rejected != null) {
+                    result.fail(index, rejected);
+                    hits++;
+                }
+            }
+            CacheLookupEvent.record(name, "rejected", pending.length, hits);
+        }
+        return result;
+    }
+
+    /**
+     * Remembers the items the KMS rejected for reasons of the ciphertext itself, so
+     * that {@link #screenCiphertexts(List)} fails them without a KMS call next time.
+     *
+     * @param sent the indices that were sent to the KMS
+     */
+    protected void rememberRejections(List<DecryptOperation> data, BatchResult result, int[] sent) {
+        if (!rejectedCiphertexts.isEnabled()) {
+            return;
+        }
+        Mac mac = null;
+        for (int index : sent) {
+            ItemError error = result.error(index);
+            if (error != null && RejectedCiphertextCache.isCacheable(error)) {
+                if (mac == null) {
+                    mac = rejectedCiphertexts.newMac();
+                }
+                rejectedCiphertexts.put(RejectedCiphertextCache.fingerprint(mac, data.get(index)),
+                        new ItemError(error.code(), "Recently rejected: " + error.message()));
+            }
+        }
+    }
+
+    private ItemError checkStructure(DecryptOperation task) {
+        if (task == null || task.ciphertext() == null) {
+            return ItemError.invalidInput("Missing ciphertext");
+        }
+        if (task.keyVersion() == null) {
+            return ItemError.invalidInput("Invalid ciphertext format, expected version:ciphertext");
+        }
+        if (task.keyVersion() < 1 || task.keyVersion() > maxKeyVersion) {
+            return ItemError.invalidInput("Key version " + task.keyVersion() + " is out of range");
+        }
+        int decodedLength = base64DecodedLength(task.ciphertext());
+        if (decodedLength < 0) {
+            return ItemError.invalidInput("Ciphertext is not valid Base64");
+        }
+        if (decodedLength < minCiphertextBytes || decodedLength > maxCiphertextBytes) {
+            return ItemError.invalidInput("Ciphertext length " + decodedLength + " is implausible");
+        }
+        return null;
+    }
+
+    /**
+     * @return the length of the decoded value, or -1 if the value is not padded Base64
+     */
+    static int base64DecodedLength(String value) {
+        int length = value.length();
+        if (length == 0 || length % 4 != 0) {
+            return -1;
+        }
+        int padding = value.charAt(length - 1) == '=' ? (value.charAt(length - 2) == '=' ? 2 : 1) : 0;
+        for (int i = 0; i < length - padding; i++) {
+            char c = value.charAt(i);
+            if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '+' || c == '/')) {
+                return -1;
+            }
+        }
+        return length / 4 * 3 - padding;
+    }
+
+    /**
+     * Sends the retryable failed items of a batch again until they succeed or the
+     * configured number of retries is used up. Successful items are never resent, and
+     * no retry is started that would not finish within the request deadline.
+     *
+     * @param result  the batch result to update in place
+     * @param attempt processes the given item indices and records their outcome in {@code result}
+     */
+    protected void retryFailedItems(BatchResult result, Consumer<int[]> attempt) {
+        for (int i = 1; i <= retries; i++) {
+            int[] failed = result.retryableIndices();
+            if (failed.length == 0) {
+                return;
+            }
+            Deadline deadline = Deadline.current();
+            long backoff = RETRY_BACKOFF_MILLIS * i;
+            if (deadline != null && deadline.remainingNanos() <= TimeUnit.MILLISECONDS.toNanos(backoff)) {
+                return;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            attempt.accept(failed);
+        }
+    }
+
     /**
      * Configures the crypto adapter with implementation-specific parameters.
      *
@@ -28,17 +210,113 @@ public abstract class BaseKmsAdapter implements IKmsAdapter {
      * Encrypts a batch of cryptographic operations.
      *
      * @param data an array of CryptoOperation objects to be encrypted
-     * @return the result of the encryption operation as a String
+     * @return the per-item ciphertexts or errors, in the order of the input
      */
-    public abstract String[] encryptBatch(List<EncryptOperation> data);
+    public abstract BatchResult encryptBatch(List<EncryptOperation> data);
 
     /**
      * Decrypts a batch of cryptographic operations.
      *
      * @param data an array of CryptoOperation objects to be decrypted
-     * @return the result of the decryption operation as a String
+     * @return the per-item plaintexts or errors, in the order of the input
      */
-    public abstract String[] decryptBatch(List<DecryptOperation> data);
+    public abstract BatchResult decryptBatch(List<DecryptOperation> data);
+
+    /**
+     * Computes keyed hashes (HMAC) of a batch of inputs. The same input, key and
+     * version always give the same result, which makes it usable as a blind index.
+     *
+     * @param data the inputs to hash
+     * @return the per-item {@code version:hmac} values or errors, in the order of the input
+     */
+    public abstract BatchResult hmacBatch(List<HmacOperation> data);
+
+    /**
+     * Signs with the provider's asymmetric keys. Providers without signing keys do not
+     * override this.
+     */
+    @Override
+    public BatchResult signBatch(List<SignOperation> data) {
+        throw new UnsupportedOperationException("Provider " + name + " does not support signing");
+    }
+
+    /**
+     * Verifies locally with the public keys from {@link #fetchVerificationKeys(String, int)},
+     * which are fetched once per key version.
+     */
+    @Override
+    public BatchResult verifyBatch(List<VerifyOperation> data) {
+        return signatureVerifier().verifyBatch(data);
+    }
+
+    /**
+     * Created on first use rather than in the constructor, so the method reference does
+     * not let {@code this} escape before the subclass is constructed.
+     */
+    private SignatureVerifier signatureVerifier() {
+        SignatureVerifier verifier = signatureVerifier;
+        if (verifier == null) {
+            synchronized (this) {
+                verifier = signatureVerifier;
+                if (verifier == null) {
+                    verifier = new SignatureVerifier(this::fetchVerificationKeys);
+                    signatureVerifier = verifier;
+                }
+            }
+        }
+        return verifier;
+    }
+
+    /**
+     * Fetches the public keys of a signing key from the KMS: at least the requested
+     * version, if it exists, and any others the same call returns.
+     *
+     * @throws KmsItemException if the key cannot be used for verification
+     */
+    protected Map<Integer, VerificationKey> fetchVerificationKeys(String keyName, int version) {
+        throw new UnsupportedOperationException("Provider " + name + " does not support signing");
+    }
+
+    /**
+     * Generates data keys locally and wraps them with a single batched encrypt call,
+     * so a whole pool refill costs one round trip to the KMS. The wrapped value
+     * decrypts to the Base64 key through the regular decrypt path.
+     */
+    @Override
+    public List<DataKey> generateDataKeys(String keyName, Integer keyVersion, int count, int bits) {
+        if (bits <= 0 || bits % 8 != 0) {
+            throw new IllegalArgumentException("Data key length must be a positive multiple of 8 bits: " + bits);
+        }
+
+        List<EncryptOperation> operations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[bits / 8];
+            RANDOM.nextBytes(key);
+            operations.add(new EncryptOperation(name, keyName, keyVersion, Base64.getEncoder().encodeToString(key), null));
+        }
+
+        String[] wrapped = encryptBatch(operations).valuesOrThrow();
+
+        List<DataKey> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(new DataKey(operations.get(i).plaintext(), wrapped[i]));
+        }
+        return keys;
+    }
+
+    /**
+     * Exports the adapter's cache entries for a warm-cache snapshot, least recently
+     * used first. Adapters without caches export nothing.
+     */
+    public List<CacheEntry> exportCache() {
+        return List.of();
+    }
+
+    /**
+     * Restores entries exported by {@link #exportCache()}. Unknown regions are ignored.
+     */
+    public void importCache(List<CacheEntry> entries) {
+    }
 
     /**
      * Rewraps a batch of cryptographic operations (used for key wrapping/unwrap).
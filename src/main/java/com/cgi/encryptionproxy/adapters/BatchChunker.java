@@ -0,0 +1,125 @@
+package com.cgi.encryptionproxy.adapters;
+
+import com.cgi.encryptionproxy.concurrency.Deadline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Splits the items of a batch into chunks and processes the chunks in parallel with
+ * bounded concurrency. Chunks work on item indices and record their outcome in a
+ * {@link BatchResult}, so results stay in the original order.
+ * <p>
+ * Configured from the provider parameters:
+ * - "chunksize": initial number of items per chunk
+ * - "minchunksize" / "maxchunksize": bounds for the adaptive chunk size
+ * - "chunkconcurrency": maximum number of chunks in flight
+ * - "adaptivechunking": whether the chunk size follows the measured throughput (default true)
+ */
+public class BatchChunker {
+
+    private final AdaptiveChunkSizer sizer;
+    private final int concurrency;
+
+    public BatchChunker(int chunkSize, int minChunkSize, int maxChunkSize, int concurrency, boolean adaptive) {
+        if (concurrency < 1) {
+            throw new IllegalStateException("chunkconcurrency must be at least 1");
+        }
+        this.sizer = new AdaptiveChunkSizer(chunkSize, minChunkSize, maxChunkSize, adaptive);
+        this.concurrency = concurrency;
+    }
+
+    public static BatchChunker fromParameters(Map<String, String> parameters, int defaultChunkSize,
+            int defaultConcurrency) {
+        int chunkSize = BaseKmsAdapter.intParam(parameters, "chunksize", defaultChunkSize);
+        return new BatchChunker(
+                chunkSize,
+                BaseKmsAdapter.intParam(parameters, "minchunksize", Math.max(1, chunkSize / 8)),
+                BaseKmsAdapter.intParam(parameters, "maxchunksize", chunkSize * 8),
+                BaseKmsAdapter.intParam(parameters, "chunkconcurrency", defaultConcurrency),
+                Boolean.parseBoolean(parameters.getOrDefault("adaptivechunking", "true")));
+    }
+
+    public int currentChunkSize() {
+        return sizer.currentSize();
+    }
+
+    /**
+     * Processes the given item indices chunk by chunk. Returns once every chunk has
+     * completed; an exception thrown by a chunk is rethrown after the others finished.
+     */
+    public void run(int[] indices, Consumer<int[]> chunkProcessor) {
+        if (indices.length == 0) {
+            return;
+        }
+
+        List<int[]> chunks = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        for (int offset = 0; offset < indices.length; ) {
+            int size = sizer.nextSize();
+            int end = Math.min(indices.length, offset + size);
+            chunks.add(Arrays.copyOfRange(indices, offset, end));
+            sizes.add(size);
+            offset = end;
+        }
+
+        if (chunks.size() == 1) {
+            processTimed(chunks.getFirst(), sizes.getFirst(), chunkProcessor);
+            return;
+        }
+
+        // chunks run on other threads but within the deadline of the request
+        Deadline deadline = Deadline.current();
+        List<Future<?>> futures = new ArrayList<>(chunks.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Semaphore permits = new Semaphore(concurrency);
+            for (int i = 0; i < chunks.size(); i++) {
+                int[] chunk = chunks.get(i);
+                int size = sizes.get(i);
+                permits.acquire();
+                futures.add(executor.submit(Deadline.propagate(deadline, () -> {
+                    try {
+                        processTimed(chunk, size, chunkProcessor);
+                    } finally {
+                        permits.release();
+                    }
+                })));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while dispatching chunks", e);
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new RuntimeException("Chunk processing failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for chunks", e);
+            }
+        }
+    }
+
+    private void processTimed(int[] chunk, int size, Consumer<int[]> chunkProcessor) {
+        long start = System.nanoTime();
+        chunkProcessor.accept(chunk);
+        // partial chunks would understate the throughput of their size, and chunks
+        // abandoned at the deadline would overstate it
+        if (chunk.length == size && !Deadline.isCurrentExpired()) {
+            sizer.record(size, chunk.length, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.cgi.encryptionproxy.adapters;
+
+import java.util.Arrays;
+
+/**
+ * Per-item outcome of a batch operation. Every index either holds a value, an
+ * {@link ItemError}, or is still pending.
+ */
+public class BatchResult {
+
+    private final String[] values;
+    private final ItemError[] errors;
+
+    public BatchResult(int size) {
+        this.values = new String[size];
+        this.errors = new ItemError[size];
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public void succeed(int index, String value) {
+        values[index] = value;
+        errors[index] = null;
+    }
+
+    public void fail(int index, ItemError error) {
+        values[index] = null;
+        errors[index] = error;
+    }
+
+    public String value(int index) {
+        return values[index];
+    }
+
+    public ItemError error(int index) {
+        return errors[index];
+    }
+
+    public boolean isFailed(int index) {
+        return errors[index] != null;
+    }
+
+    public boolean hasFailures() {
+        return failureCount() > 0;
+    }
+
+    public int failureCount() {
+        int count = 0;
+        for (ItemError error : errors) {
+            if (error != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Indices that have neither a value nor an error yet.
+     */
+    public int[] pendingIndices() {
+        int[] indices = new int[values.length];
+        int count = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null && errors[i] == null) {
+                indices[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    /**
+     * Indices whose failure may succeed when sent again.
+     */
+    public int[] retryableIndices() {
+        int[] indices = new int[errors.length];
+        int count = 0;
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] != null && errors[i].isRetryable()) {
+                indices[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    /**
+     * Returns the successful values, or throws if any item failed.
+     * Intended for internal callers that need all-or-nothing semantics.
+     */
+    public String[] valuesOrThrow() {
+        for (ItemError error : errors) {
+            if (error != null) {
+                throw new KmsItemException(error);
+            }
+        }
+        return values.clone();
+    }
+}
@@ -0,0 +1,9 @@
+package com.cgi.encryptionproxy.adapters;
+
+/**
+ * Cache entry of an adapter as exported into a cache snapshot.
+ *
+ * @param region the adapter specific cache the entry belongs to
+ */
+public record CacheEntry(String region, String key, String value) {
+}
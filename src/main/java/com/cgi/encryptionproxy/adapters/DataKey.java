@@ -0,0 +1,10 @@
+package com.cgi.encryptionproxy.adapters;
+
+/**
+ * Data key for client-side envelope encryption.
+ *
+ * @param plaintext  the Base64 encoded key
+ * @param ciphertext the key wrapped by the KMS, in the usual {@code version:ciphertext} form
+ */
+public record DataKey(String plaintext, String ciphertext) {
+}
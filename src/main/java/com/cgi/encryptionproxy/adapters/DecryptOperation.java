@@ -1,17 +1,22 @@
 package com.cgi.encryptionproxy.adapters;
 
+import com.cgi.encryptionproxy.crypto.CiphertextEnvelope;
+
+import java.util.function.IntFunction;
+
 public record DecryptOperation(String provider, String keyName, Integer keyVersion, String ciphertext) {
 
     public static DecryptOperation fromString(String provider, String keyName, String ciphertext) {
         if(ciphertext == null) return null;
 
         // split ciphertext into version and ciphertext parts on :
-        String[] parts = ciphertext.split(":", 2);
-        if (parts.length != 2) {
+        int separator = ciphertext.indexOf(':');
+        if (separator < 0) {
             throw new IllegalArgumentException("Invalid ciphertext format, expected version:ciphertext");
         }
-        Integer keyVersion = Integer.valueOf(parts[0]);
-        String actualCiphertext = parts[1];
+        // versions are small, valueOf returns a cached instance for them
+        Integer keyVersion = Integer.valueOf(Integer.parseInt(ciphertext, 0, separator, 10));
+        String actualCiphertext = ciphertext.substring(separator + 1);
 
         return new DecryptOperation(
                 provider,
@@ -20,4 +25,49 @@ public record DecryptOperation(String provider, String keyName, Integer keyVersi
                 actualCiphertext
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Parses a v2 {@link CiphertextEnvelope} with the provider and key it names, or a
+     * legacy value with the given provider and key. An unknown provider id gives an
+     * operation without provider.
+     *
+     * @param envelope      reader reused for the values of a batch
+     * @param providerNames provider name by id, or null for unknown ids
+     */
+    public static DecryptOperation parse(String provider, String keyName, String ciphertext,
+            CiphertextEnvelope.Reader envelope, IntFunction<String> providerNames) {
+        if (!CiphertextEnvelope.isEnvelope(ciphertext)) {
+            return parse(provider, keyName, ciphertext);
+        }
+        if (!envelope.read(ciphertext)) {
+            // fails the format check of the adapter
+            return new DecryptOperation(provider, keyName, null, ciphertext);
+        }
+        return new DecryptOperation(providerNames.apply(envelope.providerId()), envelope.keyName(),
+                Integer.valueOf(envelope.keyVersion()), envelope.payload());
+    }
+
+    /**
+     * Like {@link #fromString}, but a malformed value gives an operation without key
+     * version instead of an exception, so that it fails as a single item of its batch.
+     */
+    public static DecryptOperation parse(String provider, String keyName, String ciphertext) {
+        if (ciphertext == null) {
+            return new DecryptOperation(provider, keyName, null, null);
+        }
+        int separator = ciphertext.indexOf(':');
+        // more than 9 digits could overflow, no key has that many versions
+        if (separator < 1 || separator > 9) {
+            return new DecryptOperation(provider, keyName, null, ciphertext);
+        }
+        int keyVersion = 0;
+        for (int i = 0; i < separator; i++) {
+            char c = ciphertext.charAt(i);
+            if (c < '0' || c > '9') {
+                return new DecryptOperation(provider, keyName, null, ciphertext);
+            }
+            keyVersion = keyVersion * 10 + (c - '0');
+        }
+        return new DecryptOperation(provider, keyName, Integer.valueOf(keyVersion), ciphertext.substring(separator + 1));
+    }
+}
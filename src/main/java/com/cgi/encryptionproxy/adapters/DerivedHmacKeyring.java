@@ -0,0 +1,93 @@
+package com.cgi.encryptionproxy.adapters;
+
+import com.cgi.encryptionproxy.util.Hkdf;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * HMAC for providers without a native HMAC operation.
+ * <p>
+ * A root key is stored wrapped by the KMS (see the "hmacwrappedkey" parameter) and is
+ * unwrapped once on first use. Per key name and version an HMAC-SHA256 key is derived
+ * from it with HKDF, so the same input always yields the same blind index, across
+ * restarts and replicas, without any further KMS call.
+ */
+public class DerivedHmacKeyring {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int DEFAULT_VERSION = 1;
+
+    private final Supplier<byte[]> rootKeyUnwrapper;
+    private final Map<String, SecretKeySpec> derivedKeys = new ConcurrentHashMap<>();
+    private volatile byte[] rootKey;
+    // a lock rather than a monitor, so that virtual threads waiting for the unwrap call do not pin their carriers
+    private final ReentrantLock unwrapLock = new ReentrantLock();
+
+    /**
+     * @param rootKeyUnwrapper unwraps the root key through the KMS; called once
+     */
+    public DerivedHmacKeyring(Supplier<byte[]> rootKeyUnwrapper) {
+        this.rootKeyUnwrapper = rootKeyUnwrapper;
+    }
+
+    /**
+     * Computes the HMAC of every item. The result value is {@code version:base64(hmac)}.
+     */
+    public BatchResult hmacBatch(List<HmacOperation> data) {
+        BatchResult result = new BatchResult(data.size());
+        byte[] root;
+        try {
+            root = rootKey();
+        } catch (RuntimeException e) {
+            ItemError error = ItemError.unavailable("Could not unwrap HMAC root key: " + e.getMessage());
+            for (int i = 0; i < data.size(); i++) {
+                result.fail(i, error);
+            }
+            return result;
+        }
+
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            for (int i = 0; i < data.size(); i++) {
+                HmacOperation task = data.get(i);
+                int version = task.keyVersion() == null ? DEFAULT_VERSION : task.keyVersion();
+                mac.init(derivedKey(root, task.keyName(), version));
+                byte[] digest = mac.doFinal(Base64.getDecoder().decode(task.input()));
+                result.succeed(i, version + ":" + Base64.getEncoder().encodeToString(digest));
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC computation failed", e);
+        }
+        return result;
+    }
+
+    private byte[] rootKey() {
+        byte[] key = rootKey;
+        if (key == null) {
+            unwrapLock.lock();
+            try {
+                key = rootKey;
+                if (key == null) {
+                    key = rootKeyUnwrapper.get();
+                    rootKey = key;
+                }
+            } finally {
+                unwrapLock.unlock();
+            }
+        }
+        return key;
+    }
+
+    private SecretKeySpec derivedKey(byte[] root, String keyName, int version) {
+        return derivedKeys.computeIfAbsent(keyName + ":" + version, info ->
+                new SecretKeySpec(Hkdf.derive(root, null, "encryptionproxy-hmac:" + info, 32), ALGORITHM));
+    }
+}
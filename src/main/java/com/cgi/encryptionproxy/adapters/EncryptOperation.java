@@ -3,20 +3,30 @@ package com.cgi.encryptionproxy.adapters;
 import tools.jackson.databind.ObjectMapper;
 
 public record EncryptOperation(String provider, String keyName, Integer keyVersion, String plaintext, Object metadata) {
-    public String toEncryptionPayload(ObjectMapper objectMapper) {
+
+    /**
+     * The metadata as JSON, or an empty string without metadata. Adapters call this
+     * once per item and reuse the result for the payload and for logging.
+     */
+    public String metadataJson(ObjectMapper objectMapper) {
         if (objectMapper == null) {
             throw new IllegalArgumentException("ObjectMapper cannot be null");
         }
-
-        String metadata = "";
-        if (metadata() != null) {
-            try {
-                metadata = objectMapper.writeValueAsString(metadata());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to serialize metadata", e);
-            }
+        if (metadata() == null) {
+            return "";
+        }
+        try {
+            return objectMapper.writeValueAsString(metadata());
+        } catch (Exception e) {
+            throw new KmsItemException(ItemError.invalidInput("Failed to serialize metadata"));
         }
+    }
+
+    public String toEncryptionPayload(ObjectMapper objectMapper) {
+        return toEncryptionPayload(metadataJson(objectMapper));
+    }
 
-        return String.join(";", plaintext(), metadata);
+    public String toEncryptionPayload(String metadataJson) {
+        return plaintext() + ';' + metadataJson;
     }
 }
@@ -0,0 +1,40 @@
+package com.cgi.encryptionproxy.adapters;
+
+/**
+ * Error codes reported for individual items of a batch.
+ */
+public enum ErrorCode {
+    INVALID_INPUT(false),
+    KMS_REJECTED(false),
+    KEY_NOT_FOUND(false),
+    ACCESS_DENIED(false),
+    THROTTLED(true),
+    KMS_UNAVAILABLE(true),
+    DEADLINE_EXCEEDED(false),
+    INTERNAL(false);
+
+    private final boolean retryable;
+
+    ErrorCode(boolean retryable) {
+        this.retryable = retryable;
+    }
+
+    /**
+     * Whether an item that failed with this code may succeed when sent again.
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * Maps the HTTP status of a failed KMS call to an item error code.
+     */
+    public static ErrorCode fromHttpStatus(int status) {
+        return switch (status) {
+            case 401, 403 -> ACCESS_DENIED;
+            case 404 -> KEY_NOT_FOUND;
+            case 429 -> THROTTLED;
+            default -> status >= 500 ? KMS_UNAVAILABLE : KMS_REJECTED;
+        };
+    }
+}
@@ -0,0 +1,7 @@
+package com.cgi.encryptionproxy.adapters;
+
+/**
+ * Keyed hash of a Base64 encoded input, used for deterministic blind indexes.
+ */
+public record HmacOperation(String provider, String keyName, Integer keyVersion, String input) {
+}
@@ -17,17 +17,55 @@ public interface IKmsAdapter {
      * Encrypts a batch of cryptographic operations.
      *
      * @param data an array of CryptoOperation objects to be encrypted
-     * @return the result of the encryption operation as a String
+     * @return the per-item ciphertexts or errors, in the order of the input
      */
-    String[] encryptBatch(List<EncryptOperation> data);
+    BatchResult encryptBatch(List<EncryptOperation> data);
 
     /**
      * Decrypts a batch of cryptographic operations.
      *
      * @param data an array of CryptoOperation objects to be decrypted
-     * @return the result of the decryption operation as a String
+     * @return the per-item plaintexts or errors, in the order of the input
      */
-    String[] decryptBatch(List<DecryptOperation> data);
+    BatchResult decryptBatch(List<DecryptOperation> data);
+
+    /**
+     * Computes keyed hashes (HMAC) of a batch of inputs. The same input, key and
+     * version always give the same result, which makes it usable as a blind index.
+     *
+     * @param data the inputs to hash
+     * @return the per-item {@code version:hmac} values or errors, in the order of the input
+     */
+    BatchResult hmacBatch(List<HmacOperation> data);
+
+    /**
+     * Signs a batch of Base64 encoded inputs with an asymmetric key.
+     *
+     * @param data the inputs to sign
+     * @return the per-item {@code version:signature} values or errors, in the order of the input
+     */
+    BatchResult signBatch(List<SignOperation> data);
+
+    /**
+     * Verifies signatures made by {@link #signBatch(List)}. Verification uses the
+     * public key of the signing key version and needs no KMS call once it is known.
+     *
+     * @param data the inputs and their signatures
+     * @return per item {@code true} or {@code false}, or an error, in the order of the input
+     */
+    BatchResult verifyBatch(List<VerifyOperation> data);
+
+    /**
+     * Generates data keys and wraps them with the given key. The wrapped keys can be
+     * unwrapped with {@link #decryptBatch(List)}.
+     *
+     * @param keyName    the wrapping key
+     * @param keyVersion the wrapping key version, or null for the latest
+     * @param count      number of keys to generate
+     * @param bits       key length in bits
+     * @return the generated keys
+     */
+    List<DataKey> generateDataKeys(String keyName, Integer keyVersion, int count, int bits);
 
     /**
      * Rewraps a batch of cryptographic operations (used for key wrapping/unwrap).
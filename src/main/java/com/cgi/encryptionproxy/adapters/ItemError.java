@@ -0,0 +1,44 @@
+package com.cgi.encryptionproxy.adapters;
+
+import com.cgi.encryptionproxy.concurrency.Deadline;
+
+import java.io.Serializable;
+
+/**
+ * Failure of a single batch item. Failures are passed around as values so that a
+ * failed item costs no more than a successful one.
+ */
+public record ItemError(ErrorCode code, String message) implements Serializable {
+
+    public boolean isRetryable() {
+        return code.isRetryable();
+    }
+
+    public static ItemError of(int httpStatus, String message) {
+        return new ItemError(ErrorCode.fromHttpStatus(httpStatus), message);
+    }
+
+    public static ItemError invalidInput(String message) {
+        return new ItemError(ErrorCode.INVALID_INPUT, message);
+    }
+
+    public static ItemError unavailable(String message) {
+        return new ItemError(ErrorCode.KMS_UNAVAILABLE, message);
+    }
+
+    public static ItemError internal(String message) {
+        return new ItemError(ErrorCode.INTERNAL, message);
+    }
+
+    public static ItemError deadlineExceeded() {
+        return new ItemError(ErrorCode.DEADLINE_EXCEEDED, "Request deadline exceeded");
+    }
+
+    /**
+     * Error of a KMS call that failed with an I/O error: the deadline error once the
+     * request deadline has passed, otherwise the KMS counts as unavailable.
+     */
+    public static ItemError ioFailure(String message) {
+        return Deadline.isCurrentExpired() ? deadlineExceeded() : unavailable(message);
+    }
+}
@@ -0,0 +1,22 @@
+package com.cgi.encryptionproxy.adapters;
+
+/**
+ * Stackless exception carrying an {@link ItemError}. Used where a single item has to
+ * be aborted from deep inside a call chain; filling in the stack trace is skipped
+ * because the error is always turned back into a per-item result.
+ */
+public class KmsItemException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ItemError error;
+
+    public KmsItemException(ItemError error) {
+        super(error.message(), null, false, false);
+        this.error = error;
+    }
+
+    public ItemError getError() {
+        return error;
+    }
+}
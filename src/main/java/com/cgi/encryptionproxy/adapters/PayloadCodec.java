@@ -0,0 +1,202 @@
+package com.cgi.encryptionproxy.adapters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Turns the {@code plaintext;metadata} payload of an item into the bytes sent to the
+ * KMS and back, optionally compressing the plaintext first.
+ * <p>
+ * A compressed payload starts with a marker byte that cannot start a plain payload
+ * (Base64 or ';'), followed by the algorithm, the metadata and the deflated plaintext
+ * bytes. The marker is part of the encrypted data, so it is integrity protected by the
+ * KMS. Plain payloads are sent unchanged; decoding handles both, independent of the
+ * current configuration.
+ * <p>
+ * Compression leaks information through the ciphertext length when attacker
+ * controlled content is encrypted together with secrets, so it is only applied to
+ * the keys listed explicitly. Parameters:
+ * - "compression": "deflate" or "none" (default)
+ * - "compressionkeys": comma separated key names to compress, or "*" for all
+ * - "compressionthreshold": minimum plaintext size in bytes (default 512)
+ * - "compressionlevel": deflate level 0-9, or -1 for zlib's default of 6 (default -1)
+ * - "compressiondictionary": file with a preset dictionary trained on typical payloads
+ */
+public class PayloadCodec {
+
+    private static final byte MARKER = 0x1F;
+    private static final byte DEFLATE = 1;
+    private static final byte DEFLATE_DICTIONARY = 2;
+    private static final int MAX_INFLATED_SIZE = 64 * 1024 * 1024;
+
+    private final boolean enabled;
+    private final Set<String> keys;
+    private final int threshold;
+    private final int level;
+    private final byte[] dictionary;
+
+    public PayloadCodec(boolean enabled, Set<String> keys, int threshold, int level, byte[] dictionary) {
+        this.enabled = enabled;
+        this.keys = keys;
+        this.threshold = threshold;
+        this.level = level;
+        this.dictionary = dictionary;
+    }
+
+    public static PayloadCodec fromParameters(Map<String, String> parameters) {
+        String algorithm = parameters.getOrDefault("compression", "none");
+        boolean enabled = switch (algorithm) {
+            case "none" -> false;
+            case "deflate" -> true;
+            default -> throw new IllegalStateException("Unsupported compression: " + algorithm);
+        };
+
+        String keyList = parameters.getOrDefault("compressionkeys", "");
+        Set<String> keys = "*".equals(keyList.trim()) ? null : Arrays.stream(keyList.split(","))
+                .map(String::trim)
+                .filter(key -> !key.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+
+        byte[] dictionary = null;
+        String dictionaryFile = parameters.get("compressiondictionary");
+        if (dictionaryFile != null) {
+            try {
+                dictionary = Files.readAllBytes(Path.of(dictionaryFile));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read compression dictionary " + dictionaryFile, e);
+            }
+        }
+
+        int level = BaseKmsAdapter.intParam(parameters, "compressionlevel", Deflater.DEFAULT_COMPRESSION);
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalStateException("compressionlevel must be between -1 and 9: " + level);
+        }
+
+        return new PayloadCodec(enabled, keys,
+                BaseKmsAdapter.intParam(parameters, "compressionthreshold", 512), level, dictionary);
+    }
+
+    /**
+     * Encodes a payload for the given key, compressing it if configured and worthwhile.
+     */
+    public byte[] encode(String keyName, String payload) {
+        byte[] plain = payload.getBytes(StandardCharsets.UTF_8);
+        if (!enabled || (keys != null && !keys.contains(keyName))) {
+            return plain;
+        }
+
+        int separator = payload.indexOf(';');
+        String plaintext = separator < 0 ? payload : payload.substring(0, separator);
+        String metadata = separator < 0 ? "" : payload.substring(separator + 1);
+
+        byte[] raw = Base64.getDecoder().decode(plaintext);
+        if (raw.length < threshold) {
+            return plain;
+        }
+
+        byte[] metadataBytes = metadata.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = deflate(raw);
+
+        ByteBuffer frame = ByteBuffer.allocate(2 + 4 + metadataBytes.length + compressed.length);
+        frame.put(MARKER)
+                .put(dictionary == null ? DEFLATE : DEFLATE_DICTIONARY)
+                .putInt(metadataBytes.length)
+                .put(metadataBytes)
+                .put(compressed);
+
+        return frame.capacity() < plain.length ? frame.array() : plain;
+    }
+
+    /**
+     * Decodes bytes returned by the KMS back into the {@code plaintext;metadata} payload.
+     */
+    public String decode(byte[] payload) {
+        if (payload.length == 0 || payload[0] != MARKER) {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+
+        if (payload.length < 6) {
+            throw new KmsItemException(ItemError.internal("Corrupted compressed payload"));
+        }
+        ByteBuffer frame = ByteBuffer.wrap(payload, 1, payload.length - 1);
+        byte algorithm = frame.get();
+        if (algorithm != DEFLATE && algorithm != DEFLATE_DICTIONARY) {
+            throw new KmsItemException(ItemError.internal("Unknown compression algorithm " + algorithm));
+        }
+        int metadataLength = frame.getInt();
+        if (metadataLength < 0 || metadataLength > frame.remaining()) {
+            throw new KmsItemException(ItemError.internal("Corrupted compressed payload"));
+        }
+        String metadata = new String(payload, frame.position(), metadataLength, StandardCharsets.UTF_8);
+        int offset = frame.position() + metadataLength;
+
+        byte[] raw = inflate(payload, offset, payload.length - offset);
+        return Base64.getEncoder().encodeToString(raw) + ";" + metadata;
+    }
+
+    private byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(level);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(byte[] data, int offset, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        if (dictionary == null) {
+                            throw new KmsItemException(ItemError.internal(
+                                    "Payload was compressed with a dictionary, but none is configured"));
+                        }
+                        inflater.setDictionary(dictionary);
+                        continue;
+                    }
+                    if (inflater.needsInput()) {
+                        throw new KmsItemException(ItemError.internal("Truncated compressed payload"));
+                    }
+                }
+                out.write(buffer, 0, n);
+                if (out.size() > MAX_INFLATED_SIZE) {
+                    throw new KmsItemException(ItemError.internal("Decompressed payload too large"));
+                }
+            }
+            return out.toByteArray();
+        } catch (DataFormatException | IllegalArgumentException e) {
+            throw new KmsItemException(ItemError.internal("Corrupted compressed payload: " + e.getMessage()));
+        } finally {
+            inflater.end();
+        }
+    }
+}
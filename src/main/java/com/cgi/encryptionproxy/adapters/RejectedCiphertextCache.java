@@ -0,0 +1,117 @@
+package com.cgi.encryptionproxy.adapters;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers ciphertexts the KMS recently rejected, so clients that resend the same
+ * bad values fail fast instead of using up KMS quota. Entries expire after a TTL and
+ * the oldest are dropped once the cache is full.
+ * <p>
+ * Only a 64 bit fingerprint of key name, version and ciphertext is kept, so an entry
+ * costs the same for any ciphertext size. The fingerprint is an HMAC with a key drawn
+ * at startup: without the key no ciphertext can be crafted to collide with someone
+ * else's and fail it. A Bloom filter would be smaller, but any of its false positives
+ * would reject a valid ciphertext.
+ */
+public class RejectedCiphertextCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final SecretKeySpec fingerprintKey;
+    // fingerprint -> rejection, in insertion order so the oldest entries go first
+    private final Map<Long, Rejection> entries;
+
+    public RejectedCiphertextCache(int maxEntries, long ttlNanos) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.fingerprintKey = new SecretKeySpec(key, "HmacSHA256");
+        this.entries = new LinkedHashMap<>(64, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Rejection> eldest) {
+                return size() > RejectedCiphertextCache.this.maxEntries;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Whether the KMS rejection of this error is a property of the ciphertext itself,
+     * so sending it again would be rejected again. A missing key is not: it may be
+     * created or restored while the entry would still be remembered.
+     */
+    public static boolean isCacheable(ItemError error) {
+        return switch (error.code()) {
+            case KMS_REJECTED, INVALID_INPUT -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return a new fingerprinting function, which is not thread safe
+     */
+    public Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(fingerprintKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    public static long fingerprint(Mac mac, DecryptOperation task) {
+        mac.update((task.keyName() + ':' + task.keyVersion() + ':').getBytes(StandardCharsets.UTF_8));
+        byte[] digest = mac.doFinal(task.ciphertext().getBytes(StandardCharsets.US_ASCII));
+        long fingerprint = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            fingerprint = fingerprint << 8 | (digest[i] & 0xff);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return the error the KMS rejected this fingerprint with, or null if it was not
+     * rejected within the TTL
+     */
+    public ItemError get(long fingerprint) {
+        synchronized (entries) {
+            Rejection rejection = entries.get(fingerprint);
+            if (rejection == null) {
+                return null;
+            }
+            if (System.nanoTime() - rejection.expiresAt() >= 0) {
+                entries.remove(fingerprint);
+                return null;
+            }
+            return rejection.error();
+        }
+    }
+
+    public void put(long fingerprint, ItemError error) {
+        synchronized (entries) {
+            // re-inserting moves a repeated rejection to the young end
+            entries.remove(fingerprint);
+            entries.put(fingerprint, new Rejection(error, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    public boolean isEmpty() {
+        synchronized (entries) {
+            return entries.isEmpty();
+        }
+    }
+
+    private record Rejection(ItemError error, long expiresAt) {
+    }
+}
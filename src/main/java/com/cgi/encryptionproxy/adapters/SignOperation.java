@@ -0,0 +1,7 @@
+package com.cgi.encryptionproxy.adapters;
+
+/**
+ * Signature of a Base64 encoded input with an asymmetric key.
+ */
+public record SignOperation(String provider, String keyName, Integer keyVersion, String input) {
+}
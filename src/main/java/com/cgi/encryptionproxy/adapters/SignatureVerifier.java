@@ -0,0 +1,187 @@
+package com.cgi.encryptionproxy.adapters;
+
+import com.cgi.encryptionproxy.jfr.CacheLookupEvent;
+
+import java.security.GeneralSecurityException;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Verifies signatures locally with the public keys of the signing key versions, so
+ * verification costs no KMS call. The public key of a version never changes; it is
+ * fetched once and kept until it is the least recently used of a full cache. An
+ * unknown version is remembered for a short while, so signatures naming a version
+ * that does not exist cannot make every request fetch from the KMS. Large batches
+ * are verified in parallel on all cores.
+ */
+public class SignatureVerifier {
+
+    private static final int MAX_CACHED_KEYS = 4096;
+    private static final int PARALLEL_THRESHOLD = 64;
+    private static final int LOCK_STRIPES = 64;
+    private static final long UNKNOWN_VERSION_TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Fetches the public keys of a signing key: at least the requested version, if it
+     * exists, and possibly others that come with the same call.
+     */
+    @FunctionalInterface
+    public interface KeyFetcher {
+        Map<Integer, VerificationKey> fetch(String keyName, int version);
+    }
+
+    private final KeyFetcher fetcher;
+    // key name and version -> VerificationKey or UnknownVersion, in access order
+    private final Map<String, Object> keys = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > MAX_CACHED_KEYS;
+        }
+    };
+    // one fetch per key at a time, so a cold key does not send every request to the KMS
+    private final ReentrantLock[] fetchLocks = new ReentrantLock[LOCK_STRIPES];
+
+    public SignatureVerifier(KeyFetcher fetcher) {
+        this.fetcher = fetcher;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            fetchLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @return per item {@code true} or {@code false}, or an error if the key is unknown
+     * or the values are malformed
+     */
+    public BatchResult verifyBatch(List<VerifyOperation> data) {
+        BatchResult result = new BatchResult(data.size());
+        VerificationKey[] itemKeys = new VerificationKey[data.size()];
+
+        // key name and version -> VerificationKey or ItemError, resolved once per batch
+        Map<String, Object> resolved = new HashMap<>();
+        int hits = 0;
+        for (int i = 0; i < data.size(); i++) {
+            VerifyOperation task = data.get(i);
+            if (task.keyVersion() == null) {
+                result.fail(i, ItemError.invalidInput("Signature has no key version"));
+                continue;
+            }
+            String cacheKey = task.keyName() + ':' + task.keyVersion();
+            Object key = resolved.get(cacheKey);
+            if (key == null) {
+                key = cached(cacheKey);
+                if (key != null) {
+                    hits++;
+                } else {
+                    key = fetch(task.keyName(), task.keyVersion());
+                }
+                resolved.put(cacheKey, key);
+            }
+            if (key instanceof ItemError error) {
+                result.fail(i, error);
+            } else {
+                itemKeys[i] = (VerificationKey) key;
+            }
+        }
+        if (!data.isEmpty()) {
+            CacheLookupEvent.record(data.getFirst().provider(), "publickey", resolved.size(), hits);
+        }
+
+        int[] pending = result.pendingIndices();
+        IntStream indices = Arrays.stream(pending);
+        if (pending.length >= PARALLEL_THRESHOLD) {
+            indices = indices.parallel();
+        }
+        // every index is written by one thread only, the stream's join publishes the writes
+        indices.forEach(i -> verify(data.get(i), itemKeys[i], result, i));
+        return result;
+    }
+
+    private static void verify(VerifyOperation task, VerificationKey key, BatchResult result, int index) {
+        try {
+            byte[] input = Base64.getDecoder().decode(task.input());
+            byte[] signature = Base64.getDecoder().decode(task.signature());
+            result.succeed(index, Boolean.toString(key.verify(input, signature)));
+        } catch (IllegalArgumentException e) {
+            result.fail(index, ItemError.invalidInput("Input or signature is not valid Base64"));
+        } catch (SignatureException e) {
+            // a signature that does not even decode is not valid either
+            result.succeed(index, Boolean.toString(false));
+        } catch (GeneralSecurityException e) {
+            result.fail(index, ItemError.internal("Verification failed: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * @return the VerificationKey, or the ItemError if the key cannot be fetched
+     */
+    private Object fetch(String keyName, int version) {
+        String cacheKey = keyName + ':' + version;
+        ReentrantLock lock = fetchLocks[Math.floorMod(keyName.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            Object cached = cached(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+            Map<Integer, VerificationKey> fetched = fetcher.fetch(keyName, version);
+            synchronized (keys) {
+                fetched.forEach((fetchedVersion, fetchedKey) -> keys.put(keyName + ':' + fetchedVersion, fetchedKey));
+            }
+            VerificationKey key = fetched.get(version);
+            if (key == null) {
+                return rememberUnknown(cacheKey,
+                        new ItemError(ErrorCode.KEY_NOT_FOUND, "Unknown version " + version + " of key " + keyName));
+            }
+            return key;
+        } catch (KmsItemException e) {
+            if (e.getError().code() == ErrorCode.KEY_NOT_FOUND) {
+                return rememberUnknown(cacheKey, e.getError());
+            }
+            return e.getError();
+        } catch (UnsupportedOperationException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            return ItemError.internal("Unusable public key of " + keyName + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            return ItemError.ioFailure("Could not fetch the public key of " + keyName + ": " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the cached VerificationKey, the ItemError of an unknown version that has
+     * not expired, or null
+     */
+    private Object cached(String cacheKey) {
+        synchronized (keys) {
+            Object cached = keys.get(cacheKey);
+            if (cached instanceof UnknownVersion unknown) {
+                if (System.nanoTime() - unknown.expiresAt() >= 0) {
+                    keys.remove(cacheKey);
+                    return null;
+                }
+                return unknown.error();
+            }
+            return cached;
+        }
+    }
+
+    private ItemError rememberUnknown(String cacheKey, ItemError error) {
+        synchronized (keys) {
+            keys.put(cacheKey, new UnknownVersion(error, System.nanoTime() + UNKNOWN_VERSION_TTL_NANOS));
+        }
+        return error;
+    }
+
+    private record UnknownVersion(ItemError error, long expiresAt) {
+    }
+}
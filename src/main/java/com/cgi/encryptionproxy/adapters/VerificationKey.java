@@ -0,0 +1,85 @@
+package com.cgi.encryptionproxy.adapters;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+
+/**
+ * Public key of a signing key version, with the JCA signature algorithm the KMS signs
+ * with, so signatures can be verified locally.
+ *
+ * @param parameters algorithm parameters, e.g. for RSASSA-PSS, or null
+ */
+public record VerificationKey(PublicKey publicKey, String algorithm, AlgorithmParameterSpec parameters) {
+
+    // DER prefix of an X.509 SubjectPublicKeyInfo holding a raw 32 byte Ed25519 key
+    private static final byte[] ED25519_PREFIX = {0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21,
+            0x00};
+
+    public boolean verify(byte[] data, byte[] signature) throws GeneralSecurityException {
+        Signature verifier = Signature.getInstance(algorithm);
+        if (parameters != null) {
+            verifier.setParameter(parameters);
+        }
+        verifier.initVerify(publicKey);
+        verifier.update(data);
+        return verifier.verify(signature);
+    }
+
+    /**
+     * RSASSA-PSS with MGF1 over the same digest.
+     *
+     * @param digest     the JCA digest name, e.g. {@code SHA-256}
+     * @param saltLength the salt length in bytes, or -1 for the maximum the key allows
+     */
+    public static VerificationKey rsaPss(PublicKey publicKey, String digest, int saltLength) {
+        if (saltLength < 0) {
+            int modulusBytes = (((RSAPublicKey) publicKey).getModulus().bitLength() + 7) / 8;
+            saltLength = modulusBytes - 2 - digestLength(digest);
+        }
+        return new VerificationKey(publicKey, "RSASSA-PSS",
+                new PSSParameterSpec(digest, "MGF1", new MGF1ParameterSpec(digest), saltLength, 1));
+    }
+
+    /**
+     * Parses a PEM or Base64 encoded X.509 public key of type RSA, EC or Ed25519. A
+     * Base64 value of 32 bytes is taken as a raw Ed25519 key.
+     */
+    public static PublicKey parsePublicKey(String encoded) {
+        byte[] der = Base64.getMimeDecoder().decode(encoded
+                .replaceAll("-----(BEGIN|END) PUBLIC KEY-----", "")
+                .replaceAll("\\s", ""));
+        if (der.length == 32) {
+            byte[] wrapped = new byte[ED25519_PREFIX.length + der.length];
+            System.arraycopy(ED25519_PREFIX, 0, wrapped, 0, ED25519_PREFIX.length);
+            System.arraycopy(der, 0, wrapped, ED25519_PREFIX.length, der.length);
+            der = wrapped;
+        }
+        for (String type : new String[]{"RSA", "EC", "Ed25519"}) {
+            try {
+                return KeyFactory.getInstance(type).generatePublic(new X509EncodedKeySpec(der));
+            } catch (GeneralSecurityException e) {
+                // try the next key type
+            }
+        }
+        throw new IllegalArgumentException("Unsupported public key");
+    }
+
+    private static int digestLength(String digest) {
+        return switch (digest) {
+            case "SHA-1" -> 20;
+            case "SHA-224", "SHA3-224" -> 28;
+            case "SHA-256", "SHA3-256" -> 32;
+            case "SHA-384", "SHA3-384" -> 48;
+            case "SHA-512", "SHA3-512" -> 64;
+            default -> throw new IllegalArgumentException("Unsupported digest " + digest);
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package com.cgi.encryptionproxy.adapters;
+
+/**
+ * Check of a {@code version:signature} value, as returned by a sign operation,
+ * against a Base64 encoded input.
+ */
+public record VerifyOperation(String provider, String keyName, Integer keyVersion, String input, String signature) {
+
+    public static VerifyOperation fromString(String provider, String keyName, String input, String signature) {
+        if (signature == null) {
+            throw new IllegalArgumentException("Signature must not be null");
+        }
+        int separator = signature.indexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Invalid signature format, expected version:signature");
+        }
+        int keyVersion;
+        try {
+            keyVersion = Integer.parseInt(signature, 0, separator, 10);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid signature format, expected version:signature");
+        }
+        return new VerifyOperation(provider, keyName, keyVersion, input, signature.substring(separator + 1));
+    }
+}
@@ -0,0 +1,343 @@
+package com.cgi.encryptionproxy.adapters.local;
+
+import com.cgi.encryptionproxy.adapters.BaseKmsAdapter;
+import com.cgi.encryptionproxy.adapters.BatchChunker;
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.adapters.EncryptOperation;
+import com.cgi.encryptionproxy.adapters.ErrorCode;
+import com.cgi.encryptionproxy.adapters.HmacOperation;
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.cgi.encryptionproxy.adapters.KmsItemException;
+import com.cgi.encryptionproxy.adapters.PayloadCodec;
+import com.cgi.encryptionproxy.adapters.RewrapOperation;
+import com.cgi.encryptionproxy.adapters.SignOperation;
+import com.cgi.encryptionproxy.adapters.VerificationKey;
+import com.cgi.encryptionproxy.util.Hkdf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process provider with locally held AES-256 keys, for benchmarks and local
+ * development. Encrypts with AES-GCM and returns the usual {@code version:ciphertext}
+ * values, so everything outside the KMS behaves as with a remote provider.
+ * <p>
+ * Parameters:
+ * - "keys": key material as {@code name=base64v1,base64v2;other=base64v1}, the n-th
+ * key of a name is version n and the last one is the latest version
+ * - "autocreate": create a random key on first use of an unknown name (default true).
+ * Such keys only live in memory, their ciphertexts cannot be decrypted after a restart
+ * - "latencymillis": delay added to every sub-batch to simulate a remote KMS (default 0)
+ * <p>
+ * Signatures are ECDSA P-256 with SHA-256 (DER encoded). The signing key of a version
+ * is generated in memory on first use, so signatures are only verifiable until a
+ * restart.
+ * <p>
+ * Not meant for production data: the keys are as safe as the configuration holding them.
+ */
+@Component("LocalAesAdapter")
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+public class LocalAesAdapter extends BaseKmsAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalAesAdapter.class);
+
+    private static final int KEY_LENGTH = 32;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final String SIGNATURE_ALGORITHM = "SHA256withECDSA";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, List<byte[]>> keys = new ConcurrentHashMap<>();
+    private final Map<String, SecretKeySpec> hmacKeys = new ConcurrentHashMap<>();
+    private final Map<String, KeyPair> signingKeys = new ConcurrentHashMap<>();
+
+    private BatchChunker chunker;
+    private PayloadCodec codec;
+    private boolean autoCreate;
+    private long latencyMillis;
+
+    public LocalAesAdapter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void configure(Map<String, String> parameters) {
+        String keyList = parameters.getOrDefault("keys", "");
+        for (String entry : keyList.split(";")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalStateException("LocalAesAdapter 'keys' entries must look like name=base64key[,...]");
+            }
+            List<byte[]> versions = new ArrayList<>();
+            for (String encoded : parts[1].split(",")) {
+                byte[] key = Base64.getDecoder().decode(encoded.trim());
+                if (key.length != KEY_LENGTH) {
+                    throw new IllegalStateException("LocalAesAdapter keys must be 256 bits: " + parts[0].trim());
+                }
+                versions.add(key);
+            }
+            keys.put(parts[0].trim(), List.copyOf(versions));
+        }
+
+        this.autoCreate = Boolean.parseBoolean(parameters.getOrDefault("autocreate", "true"));
+        this.latencyMillis = intParam(parameters, "latencymillis", 0);
+
+        configureRetries(parameters);
+        configureCiphertextScreening(parameters, NONCE_LENGTH + TAG_BITS / 8);
+        this.chunker = BatchChunker.fromParameters(parameters, 250, 8);
+        this.codec = PayloadCodec.fromParameters(parameters);
+
+        log.warn("Provider '{}' keeps its keys in process memory, do not use it for production data",
+                getProviderName());
+    }
+
+    @Override
+    public BatchResult encryptBatch(List<EncryptOperation> data) {
+        String keyName = data.getFirst().keyName();
+        BatchResult result = new BatchResult(data.size());
+
+        String[] payloads = new String[data.size()];
+        for (int i = 0; i < data.size(); i++) {
+            try {
+                payloads[i] = data.get(i).toEncryptionPayload(objectMapper);
+            } catch (KmsItemException e) {
+                result.fail(i, e.getError());
+            }
+        }
+
+        chunker.run(result.pendingIndices(), chunk -> encryptItems(keyName, data, payloads, chunk, result));
+        return result;
+    }
+
+    private void encryptItems(String keyName, List<EncryptOperation> data, String[] payloads, int[] indices,
+            BatchResult result) {
+        simulateLatency();
+        for (int index : indices) {
+            try {
+                List<byte[]> versions = versions(keyName);
+                Integer requested = data.get(index).keyVersion();
+                int version = requested == null ? versions.size() : requested;
+                byte[] key = key(keyName, versions, version);
+
+                byte[] nonce = new byte[NONCE_LENGTH];
+                RANDOM.nextBytes(nonce);
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_BITS, nonce));
+                cipher.updateAAD(aad(keyName, version));
+                byte[] ciphertext = cipher.doFinal(codec.encode(keyName, payloads[index]));
+
+                byte[] framed = ByteBuffer.allocate(NONCE_LENGTH + ciphertext.length).put(nonce).put(ciphertext)
+                        .array();
+                result.succeed(index, version + ":" + Base64.getEncoder().encodeToString(framed));
+            } catch (KmsItemException e) {
+                result.fail(index, e.getError());
+            } catch (GeneralSecurityException e) {
+                result.fail(index, ItemError.internal("Encryption failed: " + e.getMessage()));
+            }
+        }
+    }
+
+    @Override
+    public BatchResult decryptBatch(List<DecryptOperation> data) {
+        String keyName = data.getFirst().keyName();
+        BatchResult result = screenCiphertexts(data);
+        int[] pending = result.pendingIndices();
+
+        chunker.run(pending, chunk -> decryptItems(keyName, data, chunk, result));
+        rememberRejections(data, result, pending);
+        return result;
+    }
+
+    private void decryptItems(String keyName, List<DecryptOperation> data, int[] indices, BatchResult result) {
+        simulateLatency();
+        for (int index : indices) {
+            DecryptOperation task = data.get(index);
+            try {
+                if (task.keyVersion() == null) {
+                    throw new KmsItemException(ItemError.invalidInput("Ciphertext has no key version"));
+                }
+                byte[] key = key(keyName, versions(keyName), task.keyVersion());
+                byte[] framed = Base64.getDecoder().decode(task.ciphertext());
+                if (framed.length < NONCE_LENGTH) {
+                    throw new KmsItemException(ItemError.invalidInput("Ciphertext is too short"));
+                }
+
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"),
+                        new GCMParameterSpec(TAG_BITS, framed, 0, NONCE_LENGTH));
+                cipher.updateAAD(aad(keyName, task.keyVersion()));
+                byte[] payload = cipher.doFinal(framed, NONCE_LENGTH, framed.length - NONCE_LENGTH);
+
+                String[] parts = codec.decode(payload).split(";", 2);
+                result.succeed(index, parts[0]);
+            } catch (KmsItemException e) {
+                result.fail(index, e.getError());
+            } catch (IllegalArgumentException e) {
+                result.fail(index, ItemError.invalidInput("Ciphertext is not valid Base64"));
+            } catch (GeneralSecurityException e) {
+                result.fail(index, new ItemError(ErrorCode.KMS_REJECTED, "Ciphertext could not be authenticated"));
+            }
+        }
+    }
+
+    @Override
+    public BatchResult hmacBatch(List<HmacOperation> data) {
+        String keyName = data.getFirst().keyName();
+        BatchResult result = new BatchResult(data.size());
+
+        chunker.run(result.pendingIndices(), chunk -> hmacItems(keyName, data, chunk, result));
+        return result;
+    }
+
+    private void hmacItems(String keyName, List<HmacOperation> data, int[] indices, BatchResult result) {
+        simulateLatency();
+        for (int index : indices) {
+            HmacOperation task = data.get(index);
+            try {
+                List<byte[]> versions = versions(keyName);
+                int version = task.keyVersion() == null ? versions.size() : task.keyVersion();
+                SecretKeySpec hmacKey = hmacKeys.computeIfAbsent(keyName + ":" + version, info ->
+                        new SecretKeySpec(Hkdf.derive(key(keyName, versions, version), null,
+                                "encryptionproxy-hmac:" + info, KEY_LENGTH), "HmacSHA256"));
+
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(hmacKey);
+                byte[] digest = mac.doFinal(Base64.getDecoder().decode(task.input()));
+                result.succeed(index, version + ":" + Base64.getEncoder().encodeToString(digest));
+            } catch (KmsItemException e) {
+                result.fail(index, e.getError());
+            } catch (IllegalArgumentException e) {
+                result.fail(index, ItemError.invalidInput("Input is not valid Base64"));
+            } catch (GeneralSecurityException e) {
+                result.fail(index, ItemError.internal("HMAC computation failed: " + e.getMessage()));
+            }
+        }
+    }
+
+    @Override
+    public BatchResult signBatch(List<SignOperation> data) {
+        String keyName = data.getFirst().keyName();
+        BatchResult result = new BatchResult(data.size());
+
+        chunker.run(result.pendingIndices(), chunk -> signItems(keyName, data, chunk, result));
+        return result;
+    }
+
+    private void signItems(String keyName, List<SignOperation> data, int[] indices, BatchResult result) {
+        simulateLatency();
+        for (int index : indices) {
+            SignOperation task = data.get(index);
+            try {
+                List<byte[]> versions = versions(keyName);
+                int version = task.keyVersion() == null ? versions.size() : task.keyVersion();
+                KeyPair keyPair = signingKey(keyName, versions, version);
+
+                Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+                signature.initSign(keyPair.getPrivate());
+                signature.update(Base64.getDecoder().decode(task.input()));
+                result.succeed(index, version + ":" + Base64.getEncoder().encodeToString(signature.sign()));
+            } catch (KmsItemException e) {
+                result.fail(index, e.getError());
+            } catch (IllegalArgumentException e) {
+                result.fail(index, ItemError.invalidInput("Input is not valid Base64"));
+            } catch (GeneralSecurityException e) {
+                result.fail(index, ItemError.internal("Signing failed: " + e.getMessage()));
+            }
+        }
+    }
+
+    @Override
+    protected Map<Integer, VerificationKey> fetchVerificationKeys(String keyName, int version) {
+        KeyPair keyPair = signingKey(keyName, versions(keyName), version);
+        return Map.of(version, new VerificationKey(keyPair.getPublic(), SIGNATURE_ALGORITHM, null));
+    }
+
+    /**
+     * The P-256 key pair of a key version, generated on first use. Like keys created
+     * with "autocreate" it only lives in memory, so signatures cannot be verified after
+     * a restart.
+     */
+    private KeyPair signingKey(String keyName, List<byte[]> versions, int version) {
+        // fails with KEY_NOT_FOUND for versions that do not exist
+        key(keyName, versions, version);
+        return signingKeys.computeIfAbsent(keyName + ":" + version, info -> {
+            try {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec("secp256r1"), RANDOM);
+                return generator.generateKeyPair();
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot create signing key", e);
+            }
+        });
+    }
+
+    @Override
+    public String[] rewrapBatch(List<RewrapOperation> data) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    private List<byte[]> versions(String keyName) {
+        List<byte[]> versions = keys.get(keyName);
+        if (versions == null && autoCreate) {
+            versions = keys.computeIfAbsent(keyName, name -> {
+                byte[] key = new byte[KEY_LENGTH];
+                RANDOM.nextBytes(key);
+                log.info("Created in-memory key '{}' for provider '{}'", name, getProviderName());
+                return List.of(key);
+            });
+        }
+        if (versions == null) {
+            throw new KmsItemException(new ItemError(ErrorCode.KEY_NOT_FOUND, "Unknown key: " + keyName));
+        }
+        return versions;
+    }
+
+    private static byte[] key(String keyName, List<byte[]> versions, int version) {
+        if (version < 1 || version > versions.size()) {
+            throw new KmsItemException(new ItemError(ErrorCode.KEY_NOT_FOUND,
+                    "Unknown version " + version + " of key " + keyName));
+        }
+        return versions.get(version - 1);
+    }
+
+    private static byte[] aad(String keyName, int version) {
+        return (keyName + ":" + version).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void simulateLatency() {
+        if (latencyMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
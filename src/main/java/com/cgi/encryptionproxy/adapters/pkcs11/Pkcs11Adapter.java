@@ -0,0 +1,307 @@
+package com.cgi.encryptionproxy.adapters.pkcs11;
+
+import com.cgi.encryptionproxy.adapters.BaseKmsAdapter;
+import com.cgi.encryptionproxy.adapters.BatchChunker;
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.adapters.EncryptOperation;
+import com.cgi.encryptionproxy.adapters.ErrorCode;
+import com.cgi.encryptionproxy.adapters.HmacOperation;
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.cgi.encryptionproxy.adapters.KmsItemException;
+import com.cgi.encryptionproxy.adapters.PayloadCodec;
+import com.cgi.encryptionproxy.adapters.RewrapOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provider for on-premises HSMs through PKCS#11, using the JDK's SunPKCS11 provider.
+ * <p>
+ * Keys are AES keys labelled {@code <keyName>.v<version>}, HMAC keys are generic
+ * secrets labelled {@code <keyName>.hmac.v<version>}. Ciphertexts are
+ * {@code version:base64(nonce || AES-GCM ciphertext)}. Sub-batches are spread over a
+ * pool of logged-in sessions in parallel.
+ * <p>
+ * Parameters:
+ * - "library": path of the PKCS#11 module, e.g. /usr/lib/softhsm/libsofthsm2.so
+ * - "slot": slot id of the token (default 0)
+ * - "pin": user PIN of the token
+ * - "sessions": number of pooled sessions (default 8), also the default sub-batch concurrency
+ * - "sessiontimeoutmillis": maximum wait for a free session (default 10000)
+ */
+@Component("Pkcs11Adapter")
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+public class Pkcs11Adapter extends BaseKmsAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(Pkcs11Adapter.class);
+
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Integer> latestVersions = new ConcurrentHashMap<>();
+
+    private Pkcs11SessionPool pool;
+    private BatchChunker chunker;
+    private PayloadCodec codec;
+
+    public Pkcs11Adapter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void configure(Map<String, String> parameters) {
+        String library = parameters.get("library");
+        String pin = parameters.get("pin");
+
+        if (library == null || pin == null) {
+            throw new IllegalStateException("Pkcs11Adapter requires 'library' and 'pin' parameters.");
+        }
+
+        int sessions = intParam(parameters, "sessions", 8);
+        if (sessions < 1) {
+            throw new IllegalStateException("sessions must be at least 1");
+        }
+
+        configureRetries(parameters);
+        configureCiphertextScreening(parameters, NONCE_LENGTH + TAG_BITS / 8);
+        this.chunker = BatchChunker.fromParameters(parameters, 32, sessions);
+        this.codec = PayloadCodec.fromParameters(parameters);
+        this.pool = new Pkcs11SessionPool("encryptionproxy-" + getProviderName(), library,
+                intParam(parameters, "slot", 0), pin.toCharArray(), sessions,
+                intParam(parameters, "sessiontimeoutmillis", 10_000));
+
+        log.info("Logged in to PKCS#11 token of provider '{}' with {} sessions", getProviderName(), sessions);
+    }
+
+    @Override
+    public BatchResult encryptBatch(List<EncryptOperation> data) {
+        String keyName = data.getFirst().keyName();
+        BatchResult result = new BatchResult(data.size());
+
+        String[] payloads = new String[data.size()];
+        for (int i = 0; i < data.size(); i++) {
+            try {
+                payloads[i] = data.get(i).toEncryptionPayload(objectMapper);
+            } catch (KmsItemException e) {
+                result.fail(i, e.getError());
+            }
+        }
+
+        ItemOperation encrypt = (session, index) -> {
+            Integer requested = data.get(index).keyVersion();
+            int version = requested == null ? latestVersion(keyName) : requested;
+            Key key = requireKey(session, keyName + ".v" + version);
+
+            byte[] nonce = new byte[NONCE_LENGTH];
+            RANDOM.nextBytes(nonce);
+            Cipher cipher = session.cipher();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce));
+            cipher.updateAAD(aad(keyName, version));
+            byte[] ciphertext = cipher.doFinal(codec.encode(keyName, payloads[index]));
+
+            byte[] framed = ByteBuffer.allocate(NONCE_LENGTH + ciphertext.length).put(nonce).put(ciphertext).array();
+            return version + ":" + Base64.getEncoder().encodeToString(framed);
+        };
+
+        chunker.run(result.pendingIndices(), chunk -> withSession(chunk, result, encrypt));
+        retryFailedItems(result, indices -> chunker.run(indices, chunk -> withSession(chunk, result, encrypt)));
+
+        log.info("Encrypted {} items", data.size());
+        return result;
+    }
+
+    @Override
+    public BatchResult decryptBatch(List<DecryptOperation> data) {
+        String keyName = data.getFirst().keyName();
+        BatchResult result = screenCiphertexts(data);
+        int[] pending = result.pendingIndices();
+
+        ItemOperation decrypt = (session, index) -> {
+            DecryptOperation task = data.get(index);
+            if (task.keyVersion() == null) {
+                throw new KmsItemException(ItemError.invalidInput("Ciphertext has no key version"));
+            }
+            Key key = requireKey(session, keyName + ".v" + task.keyVersion());
+            byte[] framed;
+            try {
+                framed = Base64.getDecoder().decode(task.ciphertext());
+            } catch (IllegalArgumentException e) {
+                throw new KmsItemException(ItemError.invalidInput("Ciphertext is not valid Base64"));
+            }
+            if (framed.length < NONCE_LENGTH) {
+                throw new KmsItemException(ItemError.invalidInput("Ciphertext is too short"));
+            }
+
+            Cipher cipher = session.cipher();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, framed, 0, NONCE_LENGTH));
+            cipher.updateAAD(aad(keyName, task.keyVersion()));
+            byte[] payload = cipher.doFinal(framed, NONCE_LENGTH, framed.length - NONCE_LENGTH);
+
+            return codec.decode(payload).split(";", 2)[0];
+        };
+
+        chunker.run(pending, chunk -> withSession(chunk, result, decrypt));
+        retryFailedItems(result, indices -> chunker.run(indices, chunk -> withSession(chunk, result, decrypt)));
+        rememberRejections(data, result, pending);
+
+        return result;
+    }
+
+    @Override
+    public BatchResult hmacBatch(List<HmacOperation> data) {
+        String keyName = data.getFirst().keyName();
+        BatchResult result = new BatchResult(data.size());
+
+        ItemOperation hmac = (session, index) -> {
+            HmacOperation task = data.get(index);
+            int version = task.keyVersion() == null ? latestVersion(keyName + ".hmac") : task.keyVersion();
+            Key key = requireKey(session, keyName + ".hmac.v" + version);
+            byte[] input;
+            try {
+                input = Base64.getDecoder().decode(task.input());
+            } catch (IllegalArgumentException e) {
+                throw new KmsItemException(ItemError.invalidInput("Input is not valid Base64"));
+            }
+
+            Mac mac = session.mac();
+            mac.init(key);
+            return version + ":" + Base64.getEncoder().encodeToString(mac.doFinal(input));
+        };
+
+        chunker.run(result.pendingIndices(), chunk -> withSession(chunk, result, hmac));
+        retryFailedItems(result, indices -> chunker.run(indices, chunk -> withSession(chunk, result, hmac)));
+
+        return result;
+    }
+
+    @Override
+    public String[] rewrapBatch(List<RewrapOperation> data) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    /**
+     * Runs the operation for every index of a chunk on one pooled session. A token
+     * error discards the session and fails the rest of the chunk as unavailable, so
+     * the retry runs those items on a fresh session.
+     */
+    private void withSession(int[] indices, BatchResult result, ItemOperation operation) {
+        if (indices.length == 0) {
+            return;
+        }
+
+        Pkcs11SessionPool.Session session;
+        try {
+            session = pool.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failAll(indices, 0, result, ItemError.internal("Interrupted while waiting for a PKCS#11 session"));
+            return;
+        } catch (IllegalStateException e) {
+            failAll(indices, 0, result, ItemError.unavailable(e.getMessage()));
+            return;
+        }
+
+        boolean discarded = false;
+        try {
+            for (int i = 0; i < indices.length; i++) {
+                int index = indices[i];
+                try {
+                    result.succeed(index, operation.apply(session, index));
+                } catch (KmsItemException e) {
+                    result.fail(index, e.getError());
+                } catch (AEADBadTagException e) {
+                    result.fail(index, new ItemError(ErrorCode.KMS_REJECTED, "Ciphertext could not be authenticated"));
+                } catch (ProviderException e) {
+                    log.warn("PKCS#11 error in provider '{}': {}", getProviderName(), e.getMessage());
+                    pool.discard(session);
+                    discarded = true;
+                    latestVersions.clear();
+                    failAll(indices, i, result, ItemError.unavailable("PKCS#11 session failed: " + e.getMessage()));
+                    return;
+                } catch (GeneralSecurityException e) {
+                    result.fail(index, ItemError.internal(e.getMessage()));
+                }
+            }
+        } finally {
+            // any other exception still hands the session back, or the pool would
+            // shrink by one for every unexpected failure
+            if (!discarded) {
+                pool.release(session);
+            }
+        }
+    }
+
+    private static void failAll(int[] indices, int from, BatchResult result, ItemError error) {
+        for (int i = from; i < indices.length; i++) {
+            result.fail(indices[i], error);
+        }
+    }
+
+    private static Key requireKey(Pkcs11SessionPool.Session session, String label) throws GeneralSecurityException {
+        Key key = session.key(label);
+        if (key == null) {
+            throw new KmsItemException(new ItemError(ErrorCode.KEY_NOT_FOUND, "No key labelled " + label));
+        }
+        return key;
+    }
+
+    /**
+     * Highest version among the labels {@code <prefix>.v<n>}, looked up once per key.
+     */
+    private int latestVersion(String prefix) {
+        Integer cached = latestVersions.get(prefix);
+        if (cached != null) {
+            return cached;
+        }
+
+        int latest = 0;
+        try {
+            for (String label : pool.labels()) {
+                if (label.startsWith(prefix + ".v")) {
+                    try {
+                        latest = Math.max(latest, Integer.parseInt(label.substring(prefix.length() + 2)));
+                    } catch (NumberFormatException e) {
+                        // another key sharing the prefix
+                    }
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new ProviderException("Listing the token's keys failed", e);
+        }
+        if (latest == 0) {
+            throw new KmsItemException(new ItemError(ErrorCode.KEY_NOT_FOUND, "No key labelled " + prefix + ".v<n>"));
+        }
+        latestVersions.put(prefix, latest);
+        return latest;
+    }
+
+    private static byte[] aad(String keyName, int version) {
+        return (keyName + ":" + version).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface ItemOperation {
+        String apply(Pkcs11SessionPool.Session session, int index) throws GeneralSecurityException;
+    }
+}
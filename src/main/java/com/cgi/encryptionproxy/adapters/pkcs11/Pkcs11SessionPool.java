@@ -0,0 +1,176 @@
+package com.cgi.encryptionproxy.adapters.pkcs11;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import java.security.AuthProvider;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logged-in access to one PKCS#11 token with a fixed number of sessions.
+ * <p>
+ * The token is logged in once through the SunPKCS11 provider. Each pooled
+ * {@link Session} keeps its own cipher and MAC objects, which hold a native session
+ * while they are in use, so the pool size bounds the concurrency on the token. Key
+ * handles are looked up once per label and cached.
+ * <p>
+ * A session that failed with a token error is discarded instead of returned. The
+ * next acquire then logs in again, clears the key handles and opens a fresh session.
+ */
+class Pkcs11SessionPool {
+
+    private static final Logger log = LoggerFactory.getLogger(Pkcs11SessionPool.class);
+
+    private final Provider provider;
+    private final char[] pin;
+    private final int size;
+    private final long acquireTimeoutMillis;
+    private final BlockingQueue<Session> idle;
+    private final Map<String, Key> keyHandles = new ConcurrentHashMap<>();
+
+    private volatile KeyStore keyStore;
+    private volatile boolean relogin;
+    private volatile int generation;
+    private int open;
+
+    Pkcs11SessionPool(String name, String library, int slot, char[] pin, int size, long acquireTimeoutMillis) {
+        String config = "--name=" + name + "\nlibrary=" + library + "\nslot=" + slot + "\n";
+        this.provider = Security.getProvider("SunPKCS11").configure(config);
+        this.pin = pin;
+        this.size = size;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idle = new ArrayBlockingQueue<>(size);
+
+        login();
+    }
+
+    /**
+     * Takes an idle session, opening one if fewer than the pool size exist. Blocks
+     * while all sessions are in use.
+     */
+    Session acquire() throws InterruptedException {
+        if (relogin) {
+            login();
+        }
+
+        Session session = idle.poll();
+        if (session != null) {
+            return session;
+        }
+        synchronized (this) {
+            if (open < size) {
+                open++;
+                return new Session();
+            }
+        }
+        session = idle.poll(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (session == null) {
+            throw new IllegalStateException("No PKCS#11 session available within " + acquireTimeoutMillis + " ms");
+        }
+        return session;
+    }
+
+    void release(Session session) {
+        // sessions opened before a new login are not pooled again
+        if (session.generation == generation) {
+            idle.offer(session);
+        }
+    }
+
+    /**
+     * Drops a session after a token error. The token is logged in again before the
+     * next session is handed out, unless the session predates the current login.
+     */
+    void discard(Session session) {
+        synchronized (this) {
+            // a session from before the last login failed on the old login, which
+            // has already been replaced
+            if (session.generation != generation) {
+                return;
+            }
+            open--;
+            relogin = true;
+        }
+        log.warn("Discarded a PKCS#11 session of {}, logging in again", provider.getName());
+    }
+
+    /**
+     * Labels of all keys on the token.
+     */
+    Iterable<String> labels() throws GeneralSecurityException {
+        return Collections.list(keyStore.aliases());
+    }
+
+    private synchronized void login() {
+        if (keyStore != null && !relogin) {
+            return;
+        }
+        try {
+            if (keyStore != null && provider instanceof AuthProvider authProvider) {
+                try {
+                    authProvider.logout();
+                } catch (Exception e) {
+                    // the token is already logged out
+                }
+            }
+            KeyStore store = KeyStore.getInstance("PKCS11", provider);
+            store.load(null, pin);
+            keyHandles.clear();
+            idle.clear();
+            open = 0;
+            keyStore = store;
+            generation++;
+            relogin = false;
+        } catch (Exception e) {
+            throw new IllegalStateException("PKCS#11 login failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * One pooled session, used by a single thread at a time.
+     */
+    class Session {
+
+        private final int generation = Pkcs11SessionPool.this.generation;
+        private Cipher cipher;
+        private Mac mac;
+
+        Key key(String label) throws GeneralSecurityException {
+            Key key = keyHandles.get(label);
+            if (key == null) {
+                key = keyStore.getKey(label, null);
+                if (key == null) {
+                    return null;
+                }
+                keyHandles.put(label, key);
+            }
+            return key;
+        }
+
+        Cipher cipher() throws GeneralSecurityException {
+            if (cipher == null) {
+                cipher = Cipher.getInstance("AES/GCM/NoPadding", provider);
+            }
+            return cipher;
+        }
+
+        Mac mac() throws GeneralSecurityException {
+            if (mac == null) {
+                mac = Mac.getInstance("HmacSHA256", provider);
+            }
+            return mac;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.security.interfaces.RSAPrivateKey;
 
 import com.cgi.encryptionproxy.auth.BearerAccessToken;
 import com.cgi.encryptionproxy.auth.JwtBearerTokenProvider;
+import com.cgi.encryptionproxy.transport.KmsHttpTransport;
 import com.cgi.encryptionproxy.util.PemUtils;
 
 import tools.jackson.databind.JsonNode;
@@ -31,7 +32,7 @@ public class StackitJwtTokenProvider {
     private final String sub;
     private final String audience;
 
-    public StackitJwtTokenProvider(String serviceAccount) {
+    public StackitJwtTokenProvider(String serviceAccount, KmsHttpTransport transport) {
         String serviceAccountJson;
 
         File file = new File(serviceAccount);
@@ -56,7 +57,7 @@ public class StackitJwtTokenProvider {
 
         RSAPrivateKey privateKey = PemUtils.parsePrivateKey(privateKeyPem);
 
-        this.provider = new JwtBearerTokenProvider(DEFAULT_TOKEN_ENDPOINT, privateKey, keyId);
+        this.provider = new JwtBearerTokenProvider(DEFAULT_TOKEN_ENDPOINT, privateKey, keyId, transport);
     }
 
     public BearerAccessToken getAccessToken() {
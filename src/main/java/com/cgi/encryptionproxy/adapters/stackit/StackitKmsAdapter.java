@@ -1,9 +1,22 @@
 package com.cgi.encryptionproxy.adapters.stackit;
 
 import com.cgi.encryptionproxy.adapters.BaseKmsAdapter;
+import com.cgi.encryptionproxy.adapters.BatchChunker;
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.CacheEntry;
 import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.adapters.DerivedHmacKeyring;
 import com.cgi.encryptionproxy.adapters.EncryptOperation;
+import com.cgi.encryptionproxy.adapters.HmacOperation;
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.cgi.encryptionproxy.adapters.KmsItemException;
+import com.cgi.encryptionproxy.adapters.PayloadCodec;
 import com.cgi.encryptionproxy.adapters.RewrapOperation;
+import com.cgi.encryptionproxy.adapters.SignOperation;
+import com.cgi.encryptionproxy.adapters.VerificationKey;
+import com.cgi.encryptionproxy.adapters.VerifyOperation;
+import com.cgi.encryptionproxy.jfr.CacheLookupEvent;
+import com.cgi.encryptionproxy.transport.KmsHttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
@@ -11,8 +24,9 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import tools.jackson.databind.ObjectMapper;
 
+import java.security.PublicKey;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -30,23 +44,44 @@ public class StackitKmsAdapter extends BaseKmsAdapter {
 
     private StackitJwtTokenProvider tokenProvider;
     private StackitKmsApi stackitApi;
+    private BatchChunker chunker;
+    private DerivedHmacKeyring hmacKeyring;
+    private PayloadCodec codec;
+    private boolean localVerification;
 
-    private final Map<String, String> encryptCache = Collections.synchronizedMap(new LinkedHashMap<>(200, 0.75f, true) {
+    private final Map<CacheKey, String> encryptCache = Collections.synchronizedMap(new LinkedHashMap<>(200, 0.75f, true) {
         @Override
-        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, String> eldest) {
             return size() > 200;
         }
     });
 
-    private final Map<String, String> decryptCache = Collections.synchronizedMap(new LinkedHashMap<>(200, 0.75f, true) {
+    private final Map<CacheKey, String> decryptCache = Collections.synchronizedMap(new LinkedHashMap<>(200, 0.75f, true) {
         @Override
-        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, String> eldest) {
             return size() > 200;
         }
     });
 
     private final Map<String, CachedKeyVersion> latestKeyVersionCache = new ConcurrentHashMap<>();
 
+    /**
+     * Cache key of an encrypt (value = payload) or decrypt (value = ciphertext) entry.
+     * Avoids copying the value into a concatenated string for every lookup.
+     */
+    private record CacheKey(String keyId, int version, String value) {
+
+        static CacheKey parse(String key) {
+            String[] parts = key.split(":", 3);
+            return new CacheKey(parts[0], Integer.parseInt(parts[1]), parts[2]);
+        }
+
+        @Override
+        public String toString() {
+            return keyId + ":" + version + ":" + value;
+        }
+    }
+
     private static class CachedKeyVersion {
         final int version;
         final long timestamp;
@@ -79,140 +114,362 @@ public class StackitKmsAdapter extends BaseKmsAdapter {
                             + parameters.keySet());
         }
 
-        this.tokenProvider = new StackitJwtTokenProvider(serviceAccount);
-        this.stackitApi = new StackitKmsApi(endpoint, projectId, regionId, keyRingId, tokenProvider.getAccessToken(),
-                objectMapper);
+        configureRetries(parameters);
+        configureCiphertextScreening(parameters, 1);
+        this.chunker = BatchChunker.fromParameters(parameters, 50, 4);
+        this.codec = PayloadCodec.fromParameters(parameters);
+        this.localVerification = Boolean.parseBoolean(parameters.getOrDefault("localverification", "true"));
+
+        // Stackit has no HMAC operation, blind indexes use a KMS-wrapped root key instead
+        String hmacKeyId = parameters.get("hmackeyid");
+        String hmacWrappedKey = parameters.get("hmacwrappedkey");
+        if (hmacKeyId != null && hmacWrappedKey != null) {
+            this.hmacKeyring = new DerivedHmacKeyring(() -> {
+                BatchResult unwrapped = decryptBatch(
+                        List.of(DecryptOperation.fromString(getProviderName(), hmacKeyId, hmacWrappedKey)));
+                return Base64.getDecoder().decode(unwrapped.valuesOrThrow()[0]);
+            });
+        }
+
+        KmsHttpTransport transport = KmsHttpTransport.fromParameters(getProviderName(), endpoint, parameters);
+        this.tokenProvider = new StackitJwtTokenProvider(serviceAccount, transport);
+        this.stackitApi = new StackitKmsApi(transport, endpoint, projectId, regionId, keyRingId,
+                tokenProvider.getAccessToken(), objectMapper);
     }
 
     @Override
-    public String[] encryptBatch(List<EncryptOperation> data) {
-        try {
-            String keyId = data.getFirst().keyName();
-            Integer keyVersion = data.getFirst().keyVersion();
-
-            // If no version specified, fetch the latest
-            if (keyVersion == null) {
-                CachedKeyVersion cachedVersion = latestKeyVersionCache.get(keyId);
-                if (cachedVersion != null && !cachedVersion.isExpired()) {
-                    keyVersion = cachedVersion.version;
-                    log.debug("Using cached latest key version: {}", keyVersion);
-                } else {
-                    keyVersion = stackitApi.getLatestKeyVersion(keyId);
-                    latestKeyVersionCache.put(keyId, new CachedKeyVersion(keyVersion, System.currentTimeMillis()));
-                    log.info("Fetched and cached latest key version: {}", keyVersion);
-                }
+    public BatchResult encryptBatch(List<EncryptOperation> data) {
+        String keyId = data.getFirst().keyName();
+        final int finalKeyVersion = resolveKeyVersion(keyId, data.getFirst().keyVersion());
+
+        BatchResult result = new BatchResult(data.size());
+        String[] payloads = new String[data.size()];
+        String[] metadata = new String[data.size()];
+        int lookups = 0;
+        int hits = 0;
+
+        for (int i = 0; i < data.size(); i++) {
+            EncryptOperation task = data.get(i);
+            try {
+                metadata[i] = task.metadataJson(objectMapper);
+            } catch (KmsItemException e) {
+                result.fail(i, e.getError());
+                continue;
             }
+            String payload = task.toEncryptionPayload(metadata[i]);
+            payloads[i] = payload;
+
+            lookups++;
+            String cached = encryptCache.get(new CacheKey(keyId, finalKeyVersion, payload));
+            if (cached != null) {
+                result.succeed(i, cached);
+                hits++;
+            }
+        }
+        CacheLookupEvent.record(getProviderName(), "encrypt", lookups, hits);
 
-            final Integer finalKeyVersion = keyVersion;
-
-            String[] results = new String[data.size()];
-            List<StackitKmsApi.EncryptRequest> requestsToMake = new ArrayList<>();
-            List<Integer> indexMap = new ArrayList<>();
+        chunker.run(result.pendingIndices(), chunk -> encryptItems(keyId, finalKeyVersion, payloads, chunk, result));
+        retryFailedItems(result, indices -> chunker.run(indices,
+                chunk -> encryptItems(keyId, finalKeyVersion, payloads, chunk, result)));
 
+        // log metadata per task
+        if (log.isInfoEnabled()) {
             for (int i = 0; i < data.size(); i++) {
-                EncryptOperation task = data.get(i);
-                String payload = task.toEncryptionPayload(objectMapper);
-                String cacheKey = keyId + ":" + finalKeyVersion + ":" + payload;
-                
-                if (encryptCache.containsKey(cacheKey)) {
-                    results[i] = encryptCache.get(cacheKey);
-                } else {
-                    requestsToMake.add(new StackitKmsApi.EncryptRequest(payload));
-                    indexMap.add(i);
+                if (data.get(i).metadata() != null && metadata[i] != null) {
+                    log.info("Encrypted data with metadata: {} {}", metadata[i], data.get(i).plaintext());
                 }
             }
+        }
 
-            if (!requestsToMake.isEmpty()) {
-                tokenProvider.getAccessToken(); // ensure token is valid before API call
-                List<StackitKmsApi.EncryptResult> stackitResults = stackitApi.encryptBatch(keyId, finalKeyVersion, requestsToMake);
-
-                for (int i = 0; i < stackitResults.size(); i++) {
-                    StackitKmsApi.EncryptResult result = stackitResults.get(i);
-                    int originalIndex = indexMap.get(i);
-                    EncryptOperation task = data.get(originalIndex);
-                    String payload = task.toEncryptionPayload(objectMapper);
-                    String encryptedValue = finalKeyVersion + ":" + result.ciphertext();
-                    
-                    results[originalIndex] = encryptedValue;
-                    
-                    String cacheKey = keyId + ":" + finalKeyVersion + ":" + payload;
-                    encryptCache.put(cacheKey, encryptedValue);
-                    
-                    String decryptCacheKey = keyId + ":" + finalKeyVersion + ":" + result.ciphertext();
-                    decryptCache.put(decryptCacheKey, payload);
-                }
+        log.info("Encrypted {} items", data.size());
+
+        return result;
+    }
+
+    private void encryptItems(String keyId, int keyVersion, String[] payloads, int[] indices,
+            BatchResult result) {
+        if (indices.length == 0) {
+            return;
+        }
+
+        List<StackitKmsApi.EncryptRequest> requestsToMake = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            requestsToMake.add(new StackitKmsApi.EncryptRequest(codec.encode(keyId, payloads[index])));
+        }
+
+        tokenProvider.getAccessToken(); // ensure token is valid before API call
+        List<StackitKmsApi.EncryptResult> stackitResults = stackitApi.encryptBatch(keyId, keyVersion, requestsToMake);
+
+        for (int i = 0; i < stackitResults.size(); i++) {
+            StackitKmsApi.EncryptResult stackitResult = stackitResults.get(i);
+            int originalIndex = indices[i];
+            if (stackitResult.failed()) {
+                result.fail(originalIndex, stackitResult.error());
+                continue;
             }
 
-            // log metadata per task
-            for (EncryptOperation task : data) {
-                if (task.metadata() != null) {
-                    log.info(
-                            "Encrypted data with metadata: {} {}",
-                            objectMapper.writeValueAsString(task.metadata()),
-                            task.plaintext());
-                }
+            String payload = payloads[originalIndex];
+            String encryptedValue = keyVersion + ":" + stackitResult.ciphertext();
+
+            result.succeed(originalIndex, encryptedValue);
+
+            encryptCache.put(new CacheKey(keyId, keyVersion, payload), encryptedValue);
+            decryptCache.put(new CacheKey(keyId, keyVersion, stackitResult.ciphertext()), payload);
+        }
+    }
+
+    @Override
+    public BatchResult decryptBatch(List<DecryptOperation> data) {
+        String keyId = data.getFirst().keyName();
+
+        // the cache holds the full "plaintext;metadata" payload, it is split below
+        BatchResult payloads = screenCiphertexts(data);
+        int[] screened = payloads.pendingIndices();
+        int hits = 0;
+
+        for (int i : screened) {
+            DecryptOperation task = data.get(i);
+            String cached = decryptCache.get(new CacheKey(keyId, task.keyVersion(), task.ciphertext()));
+            if (cached != null) {
+                payloads.succeed(i, cached);
+                hits++;
             }
+        }
+        CacheLookupEvent.record(getProviderName(), "decrypt", screened.length, hits);
+
+        int[] pending = payloads.pendingIndices();
+        chunker.run(pending, chunk -> decryptItems(keyId, data, chunk, payloads));
+        retryFailedItems(payloads, indices -> chunker.run(indices,
+                chunk -> decryptItems(keyId, data, chunk, payloads)));
+        rememberRejections(data, payloads, pending);
+
+        BatchResult result = new BatchResult(data.size());
+        for (int i = 0; i < data.size(); i++) {
+            if (payloads.isFailed(i)) {
+                result.fail(i, payloads.error(i));
+                continue;
+            }
+
+            String payload = payloads.value(i);
+            int separator = payload.indexOf(';');
+            if (log.isInfoEnabled()) {
+                log.info("Decrypted data with metadata: {}", separator < 0 ? "{}" : payload.substring(separator + 1));
+            }
+
+            result.succeed(i, separator < 0 ? payload : payload.substring(0, separator));
+        }
+        return result;
+    }
+
+    private void decryptItems(String keyId, List<DecryptOperation> data, int[] indices, BatchResult payloads) {
+        if (indices.length == 0) {
+            return;
+        }
+
+        List<StackitKmsApi.DecryptRequest> requestsToMake = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            DecryptOperation task = data.get(index);
+            requestsToMake.add(new StackitKmsApi.DecryptRequest(task.ciphertext(), task.keyVersion()));
+        }
+
+        tokenProvider.getAccessToken(); // ensure token is valid before API call
+        List<StackitKmsApi.DecryptResult> decodedPayloads = stackitApi.decryptBatch(keyId, requestsToMake);
+
+        for (int i = 0; i < decodedPayloads.size(); i++) {
+            StackitKmsApi.DecryptResult decryptResult = decodedPayloads.get(i);
+            int originalIndex = indices[i];
+            if (decryptResult.failed()) {
+                payloads.fail(originalIndex, decryptResult.error());
+                continue;
+            }
+
+            DecryptOperation task = data.get(originalIndex);
+            String decoded;
+            try {
+                decoded = codec.decode(decryptResult.plaintext());
+            } catch (KmsItemException e) {
+                payloads.fail(originalIndex, e.getError());
+                continue;
+            }
+
+            payloads.succeed(originalIndex, decoded);
 
-            log.info("Encrypted {} items", data.size());
+            decryptCache.put(new CacheKey(keyId, task.keyVersion(), task.ciphertext()), decoded);
+            encryptCache.put(new CacheKey(keyId, task.keyVersion(), decoded),
+                    task.keyVersion() + ":" + task.ciphertext());
+        }
+    }
+
+    @Override
+    public BatchResult hmacBatch(List<HmacOperation> data) {
+        if (hmacKeyring == null) {
+            throw new UnsupportedOperationException(
+                    "HMAC requires the 'hmackeyid' and 'hmacwrappedkey' parameters for provider " + getProviderName());
+        }
+        return hmacKeyring.hmacBatch(data);
+    }
 
-            return results;
-        } catch (Exception e) {
-            throw new RuntimeException("Error during encryption", e);
+    /**
+     * The requested version, or the latest if none is requested.
+     */
+    private int resolveKeyVersion(String keyId, Integer keyVersion) {
+        if (keyVersion != null) {
+            return keyVersion;
         }
+        CachedKeyVersion cachedVersion = latestKeyVersionCache.get(keyId);
+        boolean hit = cachedVersion != null && !cachedVersion.isExpired();
+        CacheLookupEvent.record(getProviderName(), "keyversion", 1, hit ? 1 : 0);
+        if (hit) {
+            log.debug("Using cached latest key version: {}", cachedVersion.version);
+            return cachedVersion.version;
+        }
+        int latest = stackitApi.getLatestKeyVersion(keyId);
+        latestKeyVersionCache.put(keyId, new CachedKeyVersion(latest, System.currentTimeMillis()));
+        log.info("Fetched and cached latest key version: {}", latest);
+        return latest;
     }
 
     @Override
-    public String[] decryptBatch(List<DecryptOperation> data) {
-        try {
-            String keyId = data.getFirst().keyName();
+    public BatchResult signBatch(List<SignOperation> data) {
+        String keyId = data.getFirst().keyName();
+        int keyVersion = resolveKeyVersion(keyId, data.getFirst().keyVersion());
+        BatchResult result = new BatchResult(data.size());
 
-            String[] payloads = new String[data.size()];
-            List<StackitKmsApi.DecryptRequest> requestsToMake = new ArrayList<>();
-            List<Integer> indexMap = new ArrayList<>();
+        chunker.run(result.pendingIndices(), chunk -> signItems(keyId, keyVersion, data, chunk, result));
+        retryFailedItems(result, indices -> chunker.run(indices,
+                chunk -> signItems(keyId, keyVersion, data, chunk, result)));
 
-            for (int i = 0; i < data.size(); i++) {
-                DecryptOperation task = data.get(i);
-                String cacheKey = keyId + ":" + task.keyVersion() + ":" + task.ciphertext();
-                
-                if (decryptCache.containsKey(cacheKey)) {
-                    payloads[i] = decryptCache.get(cacheKey);
-                } else {
-                    requestsToMake.add(new StackitKmsApi.DecryptRequest(task.ciphertext(), task.keyVersion()));
-                    indexMap.add(i);
-                }
+        return result;
+    }
+
+    private void signItems(String keyId, int keyVersion, List<SignOperation> data, int[] indices,
+            BatchResult result) {
+        if (indices.length == 0) {
+            return;
+        }
+
+        List<String> inputs = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            inputs.add(data.get(index).input());
+        }
+
+        tokenProvider.getAccessToken(); // ensure token is valid before API call
+        List<StackitKmsApi.SignResult> signResults = stackitApi.signBatch(keyId, keyVersion, inputs);
+
+        for (int i = 0; i < signResults.size(); i++) {
+            StackitKmsApi.SignResult signResult = signResults.get(i);
+            if (signResult.failed()) {
+                result.fail(indices[i], signResult.error());
+            } else {
+                result.succeed(indices[i], keyVersion + ":" + signResult.signature());
             }
+        }
+    }
 
-            if (!requestsToMake.isEmpty()) {
-                tokenProvider.getAccessToken(); // ensure token is valid before API call
-                List<StackitKmsApi.DecryptResult> decodedPayloads = stackitApi.decryptBatch(keyId, requestsToMake);
-
-                for (int i = 0; i < decodedPayloads.size(); i++) {
-                    StackitKmsApi.DecryptResult result = decodedPayloads.get(i);
-                    int originalIndex = indexMap.get(i);
-                    DecryptOperation task = data.get(originalIndex);
-                    String decoded = result.plaintext();
-                    
-                    payloads[originalIndex] = decoded;
-                    
-                    String cacheKey = keyId + ":" + task.keyVersion() + ":" + task.ciphertext();
-                    decryptCache.put(cacheKey, decoded);
-                    
-                    String encryptCacheKey = keyId + ":" + task.keyVersion() + ":" + decoded;
-                    String encryptedValue = task.keyVersion() + ":" + task.ciphertext();
-                    encryptCache.put(encryptCacheKey, encryptedValue);
-                }
+    /**
+     * Verifies locally, unless the "localverification" parameter is false: then
+     * every signature is sent to the Stackit verify API.
+     */
+    @Override
+    public BatchResult verifyBatch(List<VerifyOperation> data) {
+        if (localVerification) {
+            return super.verifyBatch(data);
+        }
+        String keyId = data.getFirst().keyName();
+        BatchResult result = new BatchResult(data.size());
+
+        chunker.run(result.pendingIndices(), chunk -> verifyItems(keyId, data, chunk, result));
+        retryFailedItems(result, indices -> chunker.run(indices,
+                chunk -> verifyItems(keyId, data, chunk, result)));
+
+        return result;
+    }
+
+    private void verifyItems(String keyId, List<VerifyOperation> data, int[] indices, BatchResult result) {
+        if (indices.length == 0) {
+            return;
+        }
+
+        List<StackitKmsApi.VerifyRequest> requests = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            VerifyOperation task = data.get(index);
+            requests.add(new StackitKmsApi.VerifyRequest(task.input(), task.signature(), task.keyVersion()));
+        }
+
+        tokenProvider.getAccessToken(); // ensure token is valid before API call
+        List<StackitKmsApi.VerifyResult> verifyResults = stackitApi.verifyBatch(keyId, requests);
+
+        for (int i = 0; i < verifyResults.size(); i++) {
+            StackitKmsApi.VerifyResult verifyResult = verifyResults.get(i);
+            if (verifyResult.failed()) {
+                result.fail(indices[i], verifyResult.error());
+            } else {
+                result.succeed(indices[i], Boolean.toString(verifyResult.valid()));
             }
+        }
+    }
 
-            return Arrays.stream(payloads).map(decoded -> {
-                String[] parts = decoded.split(";", 2);
+    @Override
+    protected Map<Integer, VerificationKey> fetchVerificationKeys(String keyName, int version) {
+        tokenProvider.getAccessToken(); // ensure token is valid before API call
+        StackitKmsApi.PublicKeyInfo info = stackitApi.getPublicKey(keyName, version);
+        return Map.of(version, verificationKey(info.algorithm(), VerificationKey.parsePublicKey(info.publicKey())));
+    }
 
-                String metadata = parts.length > 1 ? parts[1] : "{}";
-                log.info("Decrypted data with metadata: {}", metadata);
+    /**
+     * The JCA algorithm of a Stackit key algorithm such as {@code ecdsa_p256_sha256},
+     * {@code rsa_2048_pss_sha256} or {@code rsa_2048_pkcs1_sha256}.
+     */
+    private static VerificationKey verificationKey(String algorithm, PublicKey publicKey) {
+        if (algorithm.startsWith("ed25519")) {
+            return new VerificationKey(publicKey, "Ed25519", null);
+        }
+        int digest = algorithm.lastIndexOf("_sha");
+        String bits = digest < 0 ? "" : algorithm.substring(digest + "_sha".length());
+        if (algorithm.startsWith("ecdsa_") && !bits.isEmpty()) {
+            return new VerificationKey(publicKey, "SHA" + bits + "withECDSA", null);
+        }
+        if (algorithm.startsWith("rsa_") && algorithm.contains("_pss_") && !bits.isEmpty()) {
+            // salt as long as the digest
+            String digestName = "SHA-" + bits;
+            return VerificationKey.rsaPss(publicKey, digestName, Integer.parseInt(bits) / 8);
+        }
+        if (algorithm.startsWith("rsa_") && algorithm.contains("_pkcs1_") && !bits.isEmpty()) {
+            return new VerificationKey(publicKey, "SHA" + bits + "withRSA", null);
+        }
+        throw new KmsItemException(ItemError.invalidInput("Keys of algorithm " + algorithm
+                + " cannot be verified locally"));
+    }
 
-                return parts[0];
-            }).toArray(String[]::new);
-        } catch (Exception e) {
-            throw new RuntimeException("Error during decryption", e);
+    @Override
+    public List<CacheEntry> exportCache() {
+        List<CacheEntry> entries = new ArrayList<>();
+        synchronized (encryptCache) {
+            encryptCache.forEach((key, value) -> entries.add(new CacheEntry("encrypt", key.toString(), value)));
+        }
+        synchronized (decryptCache) {
+            decryptCache.forEach((key, value) -> entries.add(new CacheEntry("decrypt", key.toString(), value)));
+        }
+        latestKeyVersionCache.forEach((keyId, cached) -> entries.add(
+                new CacheEntry("keyversion", keyId, cached.version + ":" + cached.timestamp)));
+        return entries;
+    }
+
+    @Override
+    public void importCache(List<CacheEntry> entries) {
+        for (CacheEntry entry : entries) {
+            switch (entry.region()) {
+                case "encrypt" -> encryptCache.putIfAbsent(CacheKey.parse(entry.key()), entry.value());
+                case "decrypt" -> decryptCache.putIfAbsent(CacheKey.parse(entry.key()), entry.value());
+                case "keyversion" -> {
+                    String[] parts = entry.value().split(":", 2);
+                    CachedKeyVersion cached = new CachedKeyVersion(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+                    if (!cached.isExpired()) {
+                        latestKeyVersionCache.putIfAbsent(entry.key(), cached);
+                    }
+                }
+                default -> log.debug("Ignoring snapshot entry of unknown region {}", entry.region());
+            }
         }
     }
 
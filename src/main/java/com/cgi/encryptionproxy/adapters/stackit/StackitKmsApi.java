@@ -3,35 +3,45 @@ package com.cgi.encryptionproxy.adapters.stackit;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.cgi.encryptionproxy.adapters.KmsItemException;
 import com.cgi.encryptionproxy.auth.BearerAccessToken;
+import com.cgi.encryptionproxy.concurrency.Deadline;
+import com.cgi.encryptionproxy.concurrency.StructuredFanOut;
 import com.cgi.encryptionproxy.exception.RemoteKmsException;
+import com.cgi.encryptionproxy.transport.KmsHttpTransport;
 
 public class StackitKmsApi {
 
-    private final HttpClient httpClient;
+    private static final Pattern UUID_PATTERN =
+            Pattern.compile("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$");
+    private static final int MAX_CACHED_KEYS = 1024;
+
+    private final KmsHttpTransport transport;
     private final ObjectMapper objectMapper;
     private final String baseUrl;
     private final BearerAccessToken token;
     private final String projectId;
     private final String regionId;
     private final String keyRingId;
+    private final Map<String, KeyUrls> keyUrls = new ConcurrentHashMap<>();
 
-    public StackitKmsApi(String endpoint, String projectId, String regionId, String keyRingId, BearerAccessToken token,
-            ObjectMapper objectMapper) {
+    public StackitKmsApi(KmsHttpTransport transport, String endpoint, String projectId, String regionId,
+            String keyRingId, BearerAccessToken token, ObjectMapper objectMapper) {
         if (endpoint == null || projectId == null || regionId == null || keyRingId == null || token == null) {
             throw new IllegalArgumentException("endpoint, projectId, regionId, keyRingId, and token must not be null");
         }
@@ -40,50 +50,59 @@ public class StackitKmsApi {
                 "/v1/projects/" + projectId +
                 "/regions/" + regionId +
                 "/keyrings/" + keyRingId;
+        this.transport = transport;
         this.projectId = projectId;
         this.regionId = regionId;
         this.keyRingId = keyRingId;
         this.token = token;
         this.objectMapper = objectMapper;
-
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(5))
-                .build();
     }
 
     /**
      * Validates that a keyId is a valid UUID format
      */
     private void validateUuid(String keyId) {
-        if (keyId == null
-                || !keyId.matches("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$")) {
+        if (keyId == null || !UUID_PATTERN.matcher(keyId).matches()) {
             throw new IllegalArgumentException("keyId must be a valid UUID: " + keyId);
         }
     }
 
+    /**
+     * URLs of a key, validated and built on first use of the key.
+     */
+    private KeyUrls urls(String keyId) {
+        KeyUrls urls = keyUrls.get(keyId);
+        if (urls == null) {
+            validateUuid(keyId);
+            urls = new KeyUrls(keyId);
+            if (keyUrls.size() < MAX_CACHED_KEYS) {
+                keyUrls.putIfAbsent(keyId, urls);
+            }
+        }
+        return urls;
+    }
+
     /**
      * Gets the latest active version number for a key
      */
     public Integer getLatestKeyVersion(String keyId) {
         validateUuid(keyId);
 
-        try {
-            String url = baseUrl + "/keys/" + keyId + "/versions";
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Authorization", "Bearer " + token.getToken())
-                    .header("Content-Type", "application/json")
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        String url = baseUrl + "/keys/" + keyId + "/versions";
 
-            if (response.statusCode() != 200) {
-                throw new RemoteKmsException(response.body(), response.statusCode());
-            }
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Authorization", "Bearer " + token.getToken())
+                .header("Content-Type", "application/json")
+                .GET();
 
-            return parseLatestVersion(response.body());
+        try {
+            return transport.send("versions", keyId, 0, request, (status, body) -> {
+                if (status != 200) {
+                    throw new RemoteKmsException(new String(body.readAllBytes(), StandardCharsets.UTF_8), status);
+                }
+                return parseLatestVersion(body);
+            });
         } catch (Exception e) {
             throw new RuntimeException("Failed to get latest key version", e);
         }
@@ -91,119 +110,231 @@ public class StackitKmsApi {
 
     /**
      * Encrypts multiple data items individually (Stackit doesn't support batch
-     * operations)
+     * operations). A failing item does not affect the others; its error is
+     * returned in its result. A failure that every call would run into (key,
+     * access, availability) cancels the calls still in flight, and all calls are
+     * abandoned once the request deadline passes.
      */
     public List<EncryptResult> encryptBatch(String keyId, Integer versionNumber, List<EncryptRequest> requests) {
-        validateUuid(keyId);
+        URI uri = urls(keyId).encrypt(versionNumber);
+        String authorization = "Bearer " + token.getToken();
 
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            List<Future<EncryptResult>> futures = requests.stream()
-                    .map(req -> executor.submit(() -> encryptSingle(keyId, versionNumber, req)))
-                    .toList();
-
-            List<EncryptResult> results = new ArrayList<>();
-            for (Future<EncryptResult> future : futures) {
-                try {
-                    results.add(future.get()); // blocks until the single request finishes
-                } catch (ExecutionException e) {
-                    throw new RuntimeException("Error encrypting request", e.getCause());
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Thread interrupted while encrypting", e);
-                }
-            }
-
-            return results;
+        List<Callable<EncryptResult>> calls = new ArrayList<>(requests.size());
+        for (EncryptRequest request : requests) {
+            calls.add(() -> encryptSingle(keyId, uri, authorization, request));
         }
+        return StructuredFanOut.invokeAll(calls,
+                result -> result.failed() && failsBatch(result.error()),
+                e -> EncryptResult.failure(failureOf(e)));
     }
 
     /**
      * Decrypts multiple data items individually (Stackit doesn't support batch
-     * operations)
+     * operations), with the same error handling and cancellation as
+     * {@link #encryptBatch(String, Integer, List)}.
      */
     public List<DecryptResult> decryptBatch(String keyId, List<DecryptRequest> requests) {
-        validateUuid(keyId);
+        KeyUrls urls = urls(keyId);
+        String authorization = "Bearer " + token.getToken();
 
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            List<Future<DecryptResult>> futures = requests.stream()
-                    .map(req -> executor.submit(() -> decryptSingle(keyId, req.versionNumber(), req)))
-                    .toList();
-
-            List<DecryptResult> results = new ArrayList<>();
-            for (Future<DecryptResult> future : futures) {
-                try {
-                    results.add(future.get()); // blocks until the single request finishes
-                } catch (ExecutionException e) {
-                    throw new RuntimeException("Error decrypting request", e.getCause());
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Thread interrupted while decrypting", e);
-                }
-            }
-            return results;
+        List<Callable<DecryptResult>> calls = new ArrayList<>(requests.size());
+        for (DecryptRequest request : requests) {
+            calls.add(() -> decryptSingle(keyId, urls.decrypt(request.versionNumber()), authorization, request));
         }
+        return StructuredFanOut.invokeAll(calls,
+                result -> result.failed() && failsBatch(result.error()),
+                e -> DecryptResult.failure(failureOf(e)));
     }
 
-    private EncryptResult encryptSingle(String keyId, Integer versionNumber, EncryptRequest request) {
-        try {
-            String url = baseUrl + "/keys/" + keyId + "/versions/" + versionNumber + "/encrypt";
+    /**
+     * Signs multiple inputs individually, with the same error handling and
+     * cancellation as {@link #encryptBatch(String, Integer, List)}.
+     */
+    public List<SignResult> signBatch(String keyId, Integer versionNumber, List<String> inputs) {
+        URI uri = urls(keyId).sign(versionNumber);
+        String authorization = "Bearer " + token.getToken();
+
+        List<Callable<SignResult>> calls = new ArrayList<>(inputs.size());
+        for (String input : inputs) {
+            calls.add(() -> signSingle(keyId, uri, authorization, input));
+        }
+        return StructuredFanOut.invokeAll(calls,
+                result -> result.failed() && failsBatch(result.error()),
+                e -> SignResult.failure(failureOf(e)));
+    }
 
-            var payload = objectMapper.createObjectNode();
-            payload.put("data", base64(request.plaintext()));
+    /**
+     * Verifies multiple signatures individually, for keys that are not verified
+     * locally.
+     */
+    public List<VerifyResult> verifyBatch(String keyId, List<VerifyRequest> requests) {
+        KeyUrls urls = urls(keyId);
+        String authorization = "Bearer " + token.getToken();
 
-            HttpRequest httpRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Authorization", "Bearer " + token.getToken())
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(payload)))
-                    .build();
+        List<Callable<VerifyResult>> calls = new ArrayList<>(requests.size());
+        for (VerifyRequest request : requests) {
+            calls.add(() -> verifySingle(keyId, urls.verify(request.versionNumber()), authorization, request));
+        }
+        return StructuredFanOut.invokeAll(calls,
+                result -> result.failed() && failsBatch(result.error()),
+                e -> VerifyResult.failure(failureOf(e)));
+    }
 
-            HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Reads the algorithm of a key and the public key of one of its versions.
+     *
+     * @throws KmsItemException if the key or version cannot be read
+     */
+    public PublicKeyInfo getPublicKey(String keyId, int versionNumber) {
+        validateUuid(keyId);
+        JsonNode key = get("key", keyId, baseUrl + "/keys/" + keyId);
+        JsonNode version = get("key", keyId, baseUrl + "/keys/" + keyId + "/versions/" + versionNumber);
+        String publicKey = version.path("publicKey").asString("");
+        if (publicKey.isEmpty()) {
+            throw new KmsItemException(ItemError.invalidInput("Key " + keyId + " is no signing key"));
+        }
+        return new PublicKeyInfo(key.path("algorithm").asString(""), publicKey);
+    }
 
-            if (response.statusCode() != 200) {
-                throw new RemoteKmsException(response.body(), response.statusCode());
-            }
+    private JsonNode get(String operation, String keyId, String url) {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Authorization", "Bearer " + token.getToken())
+                .GET();
+        try {
+            return transport.send(operation, keyId, 0, request, (status, body) -> {
+                if (status != 200) {
+                    String message = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                    throw new KmsItemException(ItemError.of(status, message));
+                }
+                return objectMapper.readTree(body);
+            });
+        } catch (IOException e) {
+            throw new KmsItemException(ItemError.ioFailure("Stackit request failed: " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KmsItemException(ItemError.internal("Interrupted while calling Stackit"));
+        }
+    }
 
-            JsonNode data = objectMapper.readTree(response.body()).path("data");
-            String ciphertext = data.asString("");
+    /**
+     * Whether the error of one call means the other calls of the batch will fail as
+     * well. Rejections of a single value do not.
+     */
+    private static boolean failsBatch(ItemError error) {
+        return switch (error.code()) {
+            case INVALID_INPUT, KMS_REJECTED, INTERNAL -> false;
+            default -> true;
+        };
+    }
 
-            return new EncryptResult(ciphertext);
-        } catch (Exception e) {
-            throw new RuntimeException("Stackit encrypt failed", e);
+    private static ItemError failureOf(Throwable e) {
+        if (Deadline.isCurrentExpired()) {
+            return ItemError.deadlineExceeded();
         }
+        if (e instanceof CancellationException) {
+            return ItemError.unavailable("Cancelled after another call of the batch failed");
+        }
+        return ItemError.internal(String.valueOf(e));
     }
 
-    private DecryptResult decryptSingle(String keyId, Integer versionNumber, DecryptRequest request) {
+    private EncryptResult encryptSingle(String keyId, URI uri, String authorization, EncryptRequest request) {
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(dataBody(base64(request.plaintext()))));
+
         try {
-            String url = baseUrl + "/keys/" + keyId + "/versions/" + versionNumber + "/decrypt";
+            return transport.send("encrypt", keyId, 1, httpRequest, (status, body) -> {
+                if (status != 200) {
+                    String message = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                    return EncryptResult.failure(ItemError.of(status, message));
+                }
+                JsonNode data = objectMapper.readTree(body).path("data");
+                return new EncryptResult(data.asString(""), null);
+            });
+        } catch (IOException e) {
+            return EncryptResult.failure(ItemError.ioFailure("Stackit encrypt failed: " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EncryptResult.failure(ItemError.internal("Interrupted while calling Stackit"));
+        }
+    }
 
-            var payload = objectMapper.createObjectNode();
-            payload.put("data", request.ciphertext());
+    private DecryptResult decryptSingle(String keyId, URI uri, String authorization, DecryptRequest request) {
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(dataBody(request.ciphertext())));
 
-            HttpRequest httpRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Authorization", "Bearer " + token.getToken())
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(payload)))
-                    .build();
+        try {
+            return transport.send("decrypt", keyId, 1, httpRequest, (status, body) -> {
+                if (status != 200) {
+                    String message = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                    return DecryptResult.failure(ItemError.of(status, message));
+                }
+                JsonNode data = objectMapper.readTree(body).path("data");
+                return new DecryptResult(Base64.getDecoder().decode(data.asString("")), null);
+            });
+        } catch (IOException e) {
+            return DecryptResult.failure(ItemError.ioFailure("Stackit decrypt failed: " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return DecryptResult.failure(ItemError.internal("Interrupted while calling Stackit"));
+        }
+    }
 
-            HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+    private SignResult signSingle(String keyId, URI uri, String authorization, String input) {
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(dataBody(input)));
 
-            if (response.statusCode() != 200) {
-                throw new RemoteKmsException(response.body(), response.statusCode());
-            }
+        try {
+            return transport.send("sign", keyId, 1, httpRequest, (status, body) -> {
+                if (status != 200) {
+                    String message = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                    return SignResult.failure(ItemError.of(status, message));
+                }
+                JsonNode signature = objectMapper.readTree(body).path("signature");
+                return new SignResult(signature.asString(""), null);
+            });
+        } catch (IOException e) {
+            return SignResult.failure(ItemError.ioFailure("Stackit sign failed: " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return SignResult.failure(ItemError.internal("Interrupted while calling Stackit"));
+        }
+    }
 
-            JsonNode data = objectMapper.readTree(response.body()).path("data");
-            String encoded = data.asString("");
-            String decoded = new String(Base64.getDecoder().decode(encoded));
+    private VerifyResult verifySingle(String keyId, URI uri, String authorization, VerifyRequest request) {
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(
+                        Map.of("data", request.input(), "signature", request.signature()))));
 
-            return new DecryptResult(decoded);
-        } catch (Exception e) {
-            throw new RuntimeException("Stackit decrypt failed", e);
+        try {
+            return transport.send("verify", keyId, 1, httpRequest, (status, body) -> {
+                if (status != 200) {
+                    String message = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                    return VerifyResult.failure(ItemError.of(status, message));
+                }
+                return new VerifyResult(objectMapper.readTree(body).path("valid").asBoolean(false), null);
+            });
+        } catch (IOException e) {
+            return VerifyResult.failure(ItemError.ioFailure("Stackit verify failed: " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return VerifyResult.failure(ItemError.internal("Interrupted while calling Stackit"));
         }
     }
 
-    private Integer parseLatestVersion(String body) {
+    private Integer parseLatestVersion(InputStream body) {
         try {
             JsonNode versions = objectMapper.readTree(body).path("versions");
 
@@ -232,20 +363,109 @@ public class StackitKmsApi {
         }
     }
 
-    private static String base64(String value) {
-        return Base64.getEncoder().encodeToString(value.getBytes());
+    private static String base64(byte[] value) {
+        return Base64.getEncoder().encodeToString(value);
+    }
+
+    /**
+     * The {@code {"data": value}} request body. Base64 values need no escaping and are
+     * inserted into the template directly; anything else goes through the ObjectMapper.
+     */
+    private String dataBody(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean base64 = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '+' || c == '/' || c == '=' || c == '-' || c == '_';
+            if (!base64) {
+                return objectMapper.writeValueAsString(Map.of("data", value));
+            }
+        }
+        return "{\"data\":\"" + value + "\"}";
+    }
+
+    private final class KeyUrls {
+
+        private final String prefix;
+        private final Map<Integer, URI> encrypt = new ConcurrentHashMap<>();
+        private final Map<Integer, URI> decrypt = new ConcurrentHashMap<>();
+        private final Map<Integer, URI> sign = new ConcurrentHashMap<>();
+        private final Map<Integer, URI> verify = new ConcurrentHashMap<>();
+
+        KeyUrls(String keyId) {
+            this.prefix = baseUrl + "/keys/" + keyId + "/versions/";
+        }
+
+        URI encrypt(Integer version) {
+            return encrypt.computeIfAbsent(version, v -> URI.create(prefix + v + "/encrypt"));
+        }
+
+        URI decrypt(Integer version) {
+            return decrypt.computeIfAbsent(version, v -> URI.create(prefix + v + "/decrypt"));
+        }
+
+        URI sign(Integer version) {
+            return sign.computeIfAbsent(version, v -> URI.create(prefix + v + "/sign"));
+        }
+
+        URI verify(Integer version) {
+            return verify.computeIfAbsent(version, v -> URI.create(prefix + v + "/verify"));
+        }
     }
 
-    public record EncryptRequest(String plaintext) {
+    public record EncryptRequest(byte[] plaintext) {
     }
 
     public record DecryptRequest(String ciphertext, Integer versionNumber) {
     }
 
-    public record EncryptResult(String ciphertext) {
+    public record EncryptResult(String ciphertext, ItemError error) {
+        public static EncryptResult failure(ItemError error) {
+            return new EncryptResult(null, error);
+        }
+
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    public record DecryptResult(byte[] plaintext, ItemError error) {
+        public static DecryptResult failure(ItemError error) {
+            return new DecryptResult(null, error);
+        }
+
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    public record SignResult(String signature, ItemError error) {
+        public static SignResult failure(ItemError error) {
+            return new SignResult(null, error);
+        }
+
+        public boolean failed() {
+            return error != null;
+        }
     }
 
-    public record DecryptResult(String plaintext) {
+    public record VerifyRequest(String input, String signature, Integer versionNumber) {
+    }
+
+    public record VerifyResult(boolean valid, ItemError error) {
+        public static VerifyResult failure(ItemError error) {
+            return new VerifyResult(false, error);
+        }
+
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    /**
+     * @param algorithm the key algorithm, e.g. {@code ecdsa_p256_sha256}
+     * @param publicKey the PEM encoded public key of the version
+     */
+    public record PublicKeyInfo(String algorithm, String publicKey) {
     }
 
     public record Version(Integer number, String state, boolean disabled) {
@@ -1,9 +1,19 @@
 package com.cgi.encryptionproxy.adapters.vault;
 
 import com.cgi.encryptionproxy.adapters.BaseKmsAdapter;
+import com.cgi.encryptionproxy.adapters.BatchChunker;
+import com.cgi.encryptionproxy.adapters.BatchResult;
 import com.cgi.encryptionproxy.adapters.DecryptOperation;
 import com.cgi.encryptionproxy.adapters.EncryptOperation;
+import com.cgi.encryptionproxy.adapters.HmacOperation;
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.cgi.encryptionproxy.adapters.KmsItemException;
+import com.cgi.encryptionproxy.adapters.PayloadCodec;
 import com.cgi.encryptionproxy.adapters.RewrapOperation;
+import com.cgi.encryptionproxy.adapters.SignOperation;
+import com.cgi.encryptionproxy.adapters.VerificationKey;
+import com.cgi.encryptionproxy.adapters.VerifyOperation;
+import com.cgi.encryptionproxy.transport.KmsHttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
@@ -11,6 +21,9 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import tools.jackson.databind.ObjectMapper;
 
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -23,6 +36,12 @@ public class VaultTransitAdapter extends BaseKmsAdapter {
     private final ObjectMapper objectMapper;
 
     private VaultTransitApi vaultApi;
+    private BatchChunker chunker;
+    private String hmacAlgorithm;
+    private String signHashAlgorithm;
+    private String signatureAlgorithm;
+    private boolean localVerification;
+    private PayloadCodec codec;
 
     public VaultTransitAdapter(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
@@ -38,67 +57,280 @@ public class VaultTransitAdapter extends BaseKmsAdapter {
                     "VaultTransitAdapter requires 'endpoint' and 'token' parameters.");
         }
 
-        this.vaultApi = new VaultTransitApi(endpoint, token, objectMapper);
+        configureRetries(parameters);
+        // AES-GCM and ChaCha20-Poly1305 keys: 12 byte nonce and 16 byte tag
+        configureCiphertextScreening(parameters, 28);
+        this.chunker = BatchChunker.fromParameters(parameters, 250, 8);
+        this.hmacAlgorithm = parameters.getOrDefault("hmacalgorithm", "sha2-256");
+        this.signHashAlgorithm = parameters.getOrDefault("signhashalgorithm", "sha2-256");
+        this.signatureAlgorithm = parameters.getOrDefault("signaturealgorithm", "pss");
+        this.localVerification = Boolean.parseBoolean(parameters.getOrDefault("localverification", "true"));
+        this.codec = PayloadCodec.fromParameters(parameters);
+
+        this.vaultApi = new VaultTransitApi(KmsHttpTransport.fromParameters(getProviderName(), endpoint, parameters), endpoint,
+                token, objectMapper);
     }
 
     @Override
-    public String[] encryptBatch(List<EncryptOperation> data) {
-        try {
-            String keyName = data.getFirst().keyName();
-
-            List<VaultTransitApi.EncryptRequest> requests = data.stream()
-                    .map(task -> new VaultTransitApi.EncryptRequest(
-                            task.toEncryptionPayload(objectMapper),
-                            task.keyVersion()))
-                    .toList();
-
-            List<VaultTransitApi.EncryptResult> vaultResults = vaultApi.encryptBatch(keyName, requests);
-
-            List<String> encryptedValues = vaultResults.stream().map(
-                    vaultResult -> String.join(":", String.valueOf(vaultResult.keyVersion()), vaultResult.ciphertext()))
-                    .toList();
-
-            // log metadata per task
-            for (EncryptOperation task : data) {
-                if (task.metadata() != null) {
-                    log.info(
-                            "Encrypted data with metadata: {} {}",
-                            objectMapper.writeValueAsString(task.metadata()),
-                            task.plaintext());
+    public BatchResult encryptBatch(List<EncryptOperation> data) {
+        String keyName = data.getFirst().keyName();
+        BatchResult result = new BatchResult(data.size());
+
+        String[] payloads = new String[data.size()];
+        String[] metadata = new String[data.size()];
+        for (int i = 0; i < data.size(); i++) {
+            try {
+                metadata[i] = data.get(i).metadataJson(objectMapper);
+                payloads[i] = data.get(i).toEncryptionPayload(metadata[i]);
+            } catch (KmsItemException e) {
+                result.fail(i, e.getError());
+            }
+        }
+
+        chunker.run(result.pendingIndices(), chunk -> encryptItems(keyName, data, payloads, chunk, result));
+        retryFailedItems(result, indices -> chunker.run(indices,
+                chunk -> encryptItems(keyName, data, payloads, chunk, result)));
+
+        // log metadata per task
+        if (log.isInfoEnabled()) {
+            for (int i = 0; i < data.size(); i++) {
+                if (data.get(i).metadata() != null && metadata[i] != null) {
+                    log.info("Encrypted data with metadata: {} {}", metadata[i], data.get(i).plaintext());
                 }
             }
+        }
+
+        log.info("Encrypted {} items", data.size());
+
+        return result;
+    }
+
+    private void encryptItems(String keyName, List<EncryptOperation> data, String[] payloads, int[] indices,
+            BatchResult result) {
+        if (indices.length == 0) {
+            return;
+        }
+
+        List<VaultTransitApi.EncryptRequest> requests = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            requests.add(new VaultTransitApi.EncryptRequest(
+                    codec.encode(keyName, payloads[index]), data.get(index).keyVersion()));
+        }
+
+        List<VaultTransitApi.EncryptResult> vaultResults = vaultApi.encryptBatch(keyName, requests);
+
+        for (int i = 0; i < indices.length; i++) {
+            VaultTransitApi.EncryptResult vaultResult = vaultResults.get(i);
+            if (vaultResult.failed()) {
+                result.fail(indices[i], vaultResult.error());
+            } else {
+                result.succeed(indices[i],
+                        String.join(":", String.valueOf(vaultResult.keyVersion()), vaultResult.ciphertext()));
+            }
+        }
+    }
+
+    @Override
+    public BatchResult decryptBatch(List<DecryptOperation> data) {
+        String keyName = data.getFirst().keyName();
+        BatchResult result = screenCiphertexts(data);
+        int[] pending = result.pendingIndices();
+
+        chunker.run(pending, chunk -> decryptItems(keyName, data, chunk, result));
+        retryFailedItems(result, indices -> chunker.run(indices,
+                chunk -> decryptItems(keyName, data, chunk, result)));
+        rememberRejections(data, result, pending);
+
+        return result;
+    }
+
+    private void decryptItems(String keyName, List<DecryptOperation> data, int[] indices, BatchResult result) {
+        if (indices.length == 0) {
+            return;
+        }
+
+        List<VaultTransitApi.DecryptRequest> requests = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            DecryptOperation task = data.get(index);
+            requests.add(new VaultTransitApi.DecryptRequest(task.ciphertext(), task.keyVersion()));
+        }
+
+        List<VaultTransitApi.DecryptResult> decodedPayloads = vaultApi.decryptBatch(keyName, requests);
+
+        for (int i = 0; i < indices.length; i++) {
+            VaultTransitApi.DecryptResult decryptResult = decodedPayloads.get(i);
+            if (decryptResult.failed()) {
+                result.fail(indices[i], decryptResult.error());
+                continue;
+            }
+
+            String decoded;
+            try {
+                decoded = codec.decode(decryptResult.plaintext());
+            } catch (KmsItemException e) {
+                result.fail(indices[i], e.getError());
+                continue;
+            }
+
+            int separator = decoded.indexOf(';');
+            if (log.isInfoEnabled()) {
+                log.info("Decrypted data with metadata: {}", separator < 0 ? "{}" : decoded.substring(separator + 1));
+            }
+
+            result.succeed(indices[i], separator < 0 ? decoded : decoded.substring(0, separator));
+        }
+    }
+
+    @Override
+    public BatchResult hmacBatch(List<HmacOperation> data) {
+        String keyName = data.getFirst().keyName();
+        Integer keyVersion = data.getFirst().keyVersion();
+        BatchResult result = new BatchResult(data.size());
+
+        chunker.run(result.pendingIndices(), chunk -> hmacItems(keyName, keyVersion, data, chunk, result));
+        retryFailedItems(result, indices -> chunker.run(indices,
+                chunk -> hmacItems(keyName, keyVersion, data, chunk, result)));
+
+        return result;
+    }
+
+    private void hmacItems(String keyName, Integer keyVersion, List<HmacOperation> data, int[] indices,
+            BatchResult result) {
+        List<String> inputs = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            inputs.add(data.get(index).input());
+        }
+
+        List<VaultTransitApi.HmacResult> hmacResults = vaultApi.hmacBatch(keyName, hmacAlgorithm, keyVersion, inputs);
+
+        for (int i = 0; i < indices.length; i++) {
+            VaultTransitApi.HmacResult hmacResult = hmacResults.get(i);
+            if (hmacResult.failed()) {
+                result.fail(indices[i], hmacResult.error());
+            } else {
+                result.succeed(indices[i], hmacResult.keyVersion() + ":" + hmacResult.hmac());
+            }
+        }
+    }
+
+    @Override
+    public BatchResult signBatch(List<SignOperation> data) {
+        String keyName = data.getFirst().keyName();
+        Integer keyVersion = data.getFirst().keyVersion();
+        BatchResult result = new BatchResult(data.size());
+
+        chunker.run(result.pendingIndices(), chunk -> signItems(keyName, keyVersion, data, chunk, result));
+        retryFailedItems(result, indices -> chunker.run(indices,
+                chunk -> signItems(keyName, keyVersion, data, chunk, result)));
+
+        return result;
+    }
+
+    private void signItems(String keyName, Integer keyVersion, List<SignOperation> data, int[] indices,
+            BatchResult result) {
+        List<String> inputs = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            inputs.add(data.get(index).input());
+        }
 
-            log.info("Encrypted data with metadata: {}", String.join(", ", encryptedValues));
+        List<VaultTransitApi.SignResult> signResults = vaultApi.signBatch(keyName, signHashAlgorithm,
+                signatureAlgorithm, keyVersion, inputs);
 
-            return encryptedValues.toArray(String[]::new);
-        } catch (Exception e) {
-            throw new RuntimeException("Error during encryption", e);
+        for (int i = 0; i < indices.length; i++) {
+            VaultTransitApi.SignResult signResult = signResults.get(i);
+            if (signResult.failed()) {
+                result.fail(indices[i], signResult.error());
+            } else {
+                result.succeed(indices[i], signResult.keyVersion() + ":" + signResult.signature());
+            }
         }
     }
 
+    /**
+     * Verifies locally, unless the "localverification" parameter is false: then
+     * every signature is sent to the transit verify endpoint.
+     */
     @Override
-    public String[] decryptBatch(List<DecryptOperation> data) {
-        try {
-            String keyName = data.getFirst().keyName();
+    public BatchResult verifyBatch(List<VerifyOperation> data) {
+        if (localVerification) {
+            return super.verifyBatch(data);
+        }
+        String keyName = data.getFirst().keyName();
+        BatchResult result = new BatchResult(data.size());
 
-            List<VaultTransitApi.DecryptRequest> requests = data.stream()
-                    .map(task -> new VaultTransitApi.DecryptRequest(task.ciphertext(), task.keyVersion()))
-                    .toList();
+        chunker.run(result.pendingIndices(), chunk -> verifyItems(keyName, data, chunk, result));
+        retryFailedItems(result, indices -> chunker.run(indices,
+                chunk -> verifyItems(keyName, data, chunk, result)));
+
+        return result;
+    }
+
+    private void verifyItems(String keyName, List<VerifyOperation> data, int[] indices, BatchResult result) {
+        List<VaultTransitApi.VerifyRequest> requests = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            VerifyOperation task = data.get(index);
+            requests.add(new VaultTransitApi.VerifyRequest(task.input(), task.signature(), task.keyVersion()));
+        }
 
-            List<VaultTransitApi.DecryptResult> decodedPayloads = vaultApi.decryptBatch(keyName, requests);
+        List<VaultTransitApi.VerifyResult> verifyResults = vaultApi.verifyBatch(keyName, signHashAlgorithm,
+                signatureAlgorithm, requests);
 
-            return decodedPayloads.stream().map(result -> {
-                String decoded = result.plaintext();
-                String[] parts = decoded.split(";", 2);
+        for (int i = 0; i < indices.length; i++) {
+            VaultTransitApi.VerifyResult verifyResult = verifyResults.get(i);
+            if (verifyResult.failed()) {
+                result.fail(indices[i], verifyResult.error());
+            } else {
+                result.succeed(indices[i], Boolean.toString(verifyResult.valid()));
+            }
+        }
+    }
 
-                String metadata = parts.length > 1 ? parts[1] : "{}";
-                log.info("Decrypted data with metadata: {}", metadata);
+    /**
+     * Reads the public keys of all versions of the key in one call.
+     */
+    @Override
+    protected Map<Integer, VerificationKey> fetchVerificationKeys(String keyName, int version) {
+        VaultTransitApi.SigningKey signingKey = vaultApi.readSigningKey(keyName);
+        Map<Integer, VerificationKey> keys = new HashMap<>();
+        signingKey.publicKeys().forEach((keyVersion, publicKey) ->
+                keys.put(keyVersion, verificationKey(signingKey.type(), VerificationKey.parsePublicKey(publicKey))));
+        return keys;
+    }
 
-                return parts[0];
-            }).toArray(String[]::new);
-        } catch (Exception e) {
-            throw new RuntimeException("Error during decryption", e);
+    /**
+     * The JCA algorithm matching how Vault signs with keys of the given type.
+     */
+    private VerificationKey verificationKey(String type, PublicKey publicKey) {
+        if ("ed25519".equals(type)) {
+            return new VerificationKey(publicKey, "Ed25519", null);
         }
+        String digest = digest(signHashAlgorithm);
+        // SHA-256 -> SHA256withECDSA, but SHA3-256 -> SHA3-256withECDSA
+        String prefix = digest.startsWith("SHA-") ? "SHA" + digest.substring(4) : digest;
+        if (type.startsWith("ecdsa-")) {
+            return new VerificationKey(publicKey, prefix + "withECDSA", null);
+        }
+        if (type.startsWith("rsa-")) {
+            // Vault signs PSS with the longest salt the key allows
+            return "pkcs1v15".equals(signatureAlgorithm)
+                    ? new VerificationKey(publicKey, prefix + "withRSA", null)
+                    : VerificationKey.rsaPss(publicKey, digest, -1);
+        }
+        throw new KmsItemException(ItemError.invalidInput("Keys of type " + type + " cannot be verified locally"));
+    }
+
+    /**
+     * The JCA digest of a Vault hash_algorithm, e.g. sha2-256 -> SHA-256 and
+     * sha3-256 -> SHA3-256.
+     */
+    private static String digest(String hashAlgorithm) {
+        return switch (hashAlgorithm) {
+            case "sha1" -> "SHA-1";
+            case "sha2-224", "sha2-256", "sha2-384", "sha2-512" -> "SHA-" + hashAlgorithm.substring(5);
+            case "sha3-224", "sha3-256", "sha3-384", "sha3-512" -> "SHA3-" + hashAlgorithm.substring(5);
+            default -> throw new KmsItemException(ItemError.invalidInput(
+                    "Signatures with hash algorithm " + hashAlgorithm + " cannot be verified locally"));
+        };
     }
 
     @Override
@@ -3,87 +3,259 @@ package com.cgi.encryptionproxy.adapters.vault;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import com.cgi.encryptionproxy.exception.RemoteKmsException;
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.cgi.encryptionproxy.adapters.KmsItemException;
+import com.cgi.encryptionproxy.transport.KmsHttpTransport;
 
 public class VaultTransitApi {
 
-    private final HttpClient httpClient;
+    private final KmsHttpTransport transport;
     private final ObjectMapper objectMapper;
     private final String endpoint;
     private final String token;
 
-    public VaultTransitApi(String endpoint, String token, ObjectMapper objectMapper) {
+    public VaultTransitApi(KmsHttpTransport transport, String endpoint, String token, ObjectMapper objectMapper) {
         if (endpoint == null || token == null) {
             throw new IllegalArgumentException("endpoint and token must not be null");
         }
 
+        this.transport = transport;
         this.endpoint = endpoint.replaceAll("/$", "");
         this.token = token;
         this.objectMapper = objectMapper;
-
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(5))
-                .build();
     }
 
-    
+    /**
+     * Encrypts a batch in one call. Failures are reported per item: an item rejected by
+     * Vault carries its own error, a failed call marks every item with the same error.
+     */
     public List<EncryptResult> encryptBatch(String keyName, List<EncryptRequest> requests) {
-        try {
-            String url = endpoint + "/encrypt/" + keyName;
-            String payload = buildEncryptPayload(requests);
+        Reply reply = post("encrypt", keyName, requests.size(), endpoint + "/encrypt/" + keyName,
+                buildEncryptPayload(requests));
+        if (reply.error() != null) {
+            return Collections.nCopies(requests.size(), EncryptResult.failure(reply.error()));
+        }
+        return parseCiphertexts(reply, requests.size());
+    }
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("X-Vault-Token", token)
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(payload))
-                    .build();
+    /**
+     * Decrypts a batch in one call, with the same per-item error reporting as
+     * {@link #encryptBatch(String, List)}.
+     */
+    public List<DecryptResult> decryptBatch(String keyName, List<DecryptRequest> requests) {
+        Reply reply = post("decrypt", keyName, requests.size(), endpoint + "/decrypt/" + keyName,
+                buildDecryptPayload(requests));
+        if (reply.error() != null) {
+            return Collections.nCopies(requests.size(), DecryptResult.failure(reply.error()));
+        }
+        return parsePlaintexts(reply, requests.size());
+    }
 
-            HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Computes the HMAC of a batch of Base64 encoded inputs with the transit hmac
+     * endpoint. Vault applies one key version to the whole batch.
+     */
+    public List<HmacResult> hmacBatch(String keyName, String algorithm, Integer keyVersion, List<String> inputs) {
+        var root = objectMapper.createObjectNode();
+        if (keyVersion != null) {
+            root.put("key_version", keyVersion);
+        }
+        var batch = root.putArray("batch_input");
+        for (String input : inputs) {
+            batch.addObject().put("input", input);
+        }
 
-            if (response.statusCode() != 200) {
-                throw new RemoteKmsException(response.body(), response.statusCode());
-            }
+        Reply reply = post("hmac", keyName, inputs.size(), endpoint + "/hmac/" + keyName + "/" + algorithm,
+                objectMapper.writeValueAsString(root));
+        if (reply.error() != null) {
+            return Collections.nCopies(inputs.size(), HmacResult.failure(reply.error()));
+        }
+        if (reply.batchResults().size() != inputs.size()) {
+            return Collections.nCopies(inputs.size(), HmacResult.failure(ItemError.internal(
+                    "Vault returned " + reply.batchResults().size() + " results for " + inputs.size() + " items")));
+        }
 
-            return parseCiphertexts(response.body());
-        } catch (Exception e) {
-            throw new RuntimeException("Vault encryptBatch failed", e);
+        List<HmacResult> results = new ArrayList<>(inputs.size());
+        for (JsonNode node : reply.batchResults()) {
+            if (node.hasNonNull("error")) {
+                results.add(HmacResult.failure(ItemError.of(reply.status(), node.path("error").asString())));
+                continue;
+            }
+            try {
+                results.add(HmacResult.fromKey(node.path("hmac").asString("")));
+            } catch (IllegalArgumentException e) {
+                results.add(HmacResult.failure(ItemError.internal(e.getMessage())));
+            }
         }
+        return results;
     }
 
-    public List<DecryptResult> decryptBatch(String keyName, List<DecryptRequest> requests) {
-        try {
-            String url = endpoint + "/decrypt/" + keyName;
-            String payload = buildDecryptPayload(requests);
+    /**
+     * Signs a batch of Base64 encoded inputs with the transit sign endpoint. Vault
+     * applies one key version to the whole batch.
+     *
+     * @param signatureAlgorithm {@code pss} or {@code pkcs1v15}, used by RSA keys only
+     */
+    public List<SignResult> signBatch(String keyName, String hashAlgorithm, String signatureAlgorithm,
+            Integer keyVersion, List<String> inputs) {
+        var root = objectMapper.createObjectNode();
+        if (keyVersion != null) {
+            root.put("key_version", keyVersion);
+        }
+        root.put("signature_algorithm", signatureAlgorithm);
+        var batch = root.putArray("batch_input");
+        for (String input : inputs) {
+            batch.addObject().put("input", input);
+        }
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("X-Vault-Token", token)
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(payload))
-                    .build();
+        Reply reply = post("sign", keyName, inputs.size(), endpoint + "/sign/" + keyName + "/" + hashAlgorithm,
+                objectMapper.writeValueAsString(root));
+        if (reply.error() != null) {
+            return Collections.nCopies(inputs.size(), SignResult.failure(reply.error()));
+        }
+        if (reply.batchResults().size() != inputs.size()) {
+            return Collections.nCopies(inputs.size(), SignResult.failure(ItemError.internal(
+                    "Vault returned " + reply.batchResults().size() + " results for " + inputs.size() + " items")));
+        }
+
+        List<SignResult> results = new ArrayList<>(inputs.size());
+        for (JsonNode node : reply.batchResults()) {
+            if (node.hasNonNull("error")) {
+                results.add(SignResult.failure(ItemError.of(reply.status(), node.path("error").asString())));
+                continue;
+            }
+            try {
+                results.add(SignResult.fromKey(node.path("signature").asString("")));
+            } catch (IllegalArgumentException e) {
+                results.add(SignResult.failure(ItemError.internal(e.getMessage())));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Verifies a batch of signatures with the transit verify endpoint, for keys that
+     * are not verified locally.
+     */
+    public List<VerifyResult> verifyBatch(String keyName, String hashAlgorithm, String signatureAlgorithm,
+            List<VerifyRequest> requests) {
+        var root = objectMapper.createObjectNode();
+        root.put("signature_algorithm", signatureAlgorithm);
+        var batch = root.putArray("batch_input");
+        for (VerifyRequest request : requests) {
+            batch.addObject()
+                    .put("input", request.input())
+                    .put("signature", "vault:v" + request.keyVersion() + ":" + request.signature());
+        }
 
-            HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Reply reply = post("verify", keyName, requests.size(), endpoint + "/verify/" + keyName + "/" + hashAlgorithm,
+                objectMapper.writeValueAsString(root));
+        if (reply.error() != null) {
+            return Collections.nCopies(requests.size(), VerifyResult.failure(reply.error()));
+        }
+        if (reply.batchResults().size() != requests.size()) {
+            return Collections.nCopies(requests.size(), VerifyResult.failure(ItemError.internal(
+                    "Vault returned " + reply.batchResults().size() + " results for " + requests.size() + " items")));
+        }
 
-            if (response.statusCode() != 200) {
-                throw new RemoteKmsException(response.body(), response.statusCode());
+        List<VerifyResult> results = new ArrayList<>(requests.size());
+        for (JsonNode node : reply.batchResults()) {
+            if (node.hasNonNull("error")) {
+                results.add(VerifyResult.failure(ItemError.of(reply.status(), node.path("error").asString())));
+            } else {
+                results.add(new VerifyResult(node.path("valid").asBoolean(false), null));
             }
+        }
+        return results;
+    }
+
+    /**
+     * Reads the type and the public keys of all versions of an asymmetric key.
+     *
+     * @throws KmsItemException if the key cannot be read or is no asymmetric key
+     */
+    public SigningKey readSigningKey(String keyName) {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create(endpoint + "/keys/" + keyName))
+                .header("X-Vault-Token", token)
+                .GET();
+
+        try {
+            return transport.send("keys", keyName, 0, request, (status, body) -> {
+                if (status != 200) {
+                    String message = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                    throw new KmsItemException(ItemError.of(status, message));
+                }
+                JsonNode data = objectMapper.readTree(body).path("data");
+                Map<Integer, String> publicKeys = new HashMap<>();
+                for (Map.Entry<String, JsonNode> version : data.path("keys").properties()) {
+                    String publicKey = version.getValue().path("public_key").asString("");
+                    if (!publicKey.isEmpty()) {
+                        publicKeys.put(Integer.valueOf(version.getKey()), publicKey);
+                    }
+                }
+                if (publicKeys.isEmpty()) {
+                    throw new KmsItemException(ItemError.invalidInput("Key " + keyName + " is no signing key"));
+                }
+                return new SigningKey(data.path("type").asString(""), publicKeys);
+            });
+        } catch (IOException e) {
+            throw new KmsItemException(ItemError.ioFailure("Vault request failed: " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KmsItemException(ItemError.internal("Interrupted while calling Vault"));
+        }
+    }
+
+    private Reply post(String operation, String keyName, int items, String url, String payload) {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("X-Vault-Token", token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload));
+
+        try {
+            return transport.send(operation, keyName, items, request, this::readReply);
+        } catch (IOException e) {
+            return Reply.failed(ItemError.ioFailure("Vault request failed: " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Reply.failed(ItemError.internal("Interrupted while calling Vault"));
+        }
+    }
 
-            return parsePlaintexts(response.body());
+    private Reply readReply(int status, InputStream body) {
+        // Vault answers 400/500 for batches in which items failed, but still returns
+        // the per-item results in that case.
+        JsonNode root = null;
+        try {
+            root = objectMapper.readTree(body);
         } catch (Exception e) {
-            throw new RuntimeException("Vault decryptBatch failed", e);
+            // not a JSON response, handled below
+        }
+        JsonNode batchResults = root == null ? null : root.path("data").path("batch_results");
+
+        if (batchResults == null || !batchResults.isArray()) {
+            if (status != 200) {
+                String message = root == null ? "HTTP " + status : root.path("errors").toString();
+                return new Reply(null, status, ItemError.of(status, message));
+            }
+            return Reply.failed(ItemError.internal("Vault response contains no batch_results"));
         }
+
+        return new Reply(batchResults, status, null);
     }
 
     private String buildEncryptPayload(List<EncryptRequest> requests) {
@@ -113,58 +285,142 @@ public class VaultTransitApi {
         return objectMapper.writeValueAsString(root);
     }
 
-    private List<EncryptResult> parseCiphertexts(String body) {
-        JsonNode batchResults = objectMapper
-                .readTree(body)
-                .path("data")
-                .path("batch_results");
+    private List<EncryptResult> parseCiphertexts(Reply reply, int expected) {
+        if (reply.batchResults().size() != expected) {
+            return Collections.nCopies(expected, EncryptResult.failure(ItemError.internal(
+                    "Vault returned " + reply.batchResults().size() + " results for " + expected + " items")));
+        }
 
-        List<EncryptResult> results = new ArrayList<>(batchResults.size());
+        List<EncryptResult> results = new ArrayList<>(expected);
 
-        for (JsonNode node : batchResults) {
-            results.add(EncryptResult.fromKey(node.path("ciphertext").asString("")));
+        for (JsonNode node : reply.batchResults()) {
+            if (node.hasNonNull("error")) {
+                results.add(EncryptResult.failure(ItemError.of(reply.status(), node.path("error").asString())));
+                continue;
+            }
+            try {
+                results.add(EncryptResult.fromKey(node.path("ciphertext").asString("")));
+            } catch (IllegalArgumentException e) {
+                results.add(EncryptResult.failure(ItemError.internal(e.getMessage())));
+            }
         }
 
         return results;
     }
 
-    private List<DecryptResult> parsePlaintexts(String body) {
-        JsonNode batchResults = objectMapper
-                .readTree(body)
-                .path("data")
-                .path("batch_results");
+    private List<DecryptResult> parsePlaintexts(Reply reply, int expected) {
+        if (reply.batchResults().size() != expected) {
+            return Collections.nCopies(expected, DecryptResult.failure(ItemError.internal(
+                    "Vault returned " + reply.batchResults().size() + " results for " + expected + " items")));
+        }
 
-        List<DecryptResult> results = new ArrayList<>(batchResults.size());
+        List<DecryptResult> results = new ArrayList<>(expected);
 
-        for (JsonNode node : batchResults) {
+        for (JsonNode node : reply.batchResults()) {
+            if (node.hasNonNull("error")) {
+                results.add(DecryptResult.failure(ItemError.of(reply.status(), node.path("error").asString())));
+                continue;
+            }
             String encoded = node.path("plaintext").asString("");
-            String decoded = new String(
-                    Base64.getDecoder().decode(encoded)
-            );
-            results.add(new DecryptResult(decoded));
+            results.add(new DecryptResult(Base64.getDecoder().decode(encoded), null));
         }
 
         return results;
     }
 
-    private static String base64(String value) {
-        return Base64.getEncoder().encodeToString(value.getBytes());
+    private static String base64(byte[] value) {
+        return Base64.getEncoder().encodeToString(value);
     }
 
-    public record EncryptRequest(String plaintext, Integer keyVersion) {}
+    public record EncryptRequest(byte[] plaintext, Integer keyVersion) {}
 
     public record DecryptRequest(String ciphertext, Integer keyVersion) {}
 
-    public record EncryptResult(String ciphertext, Integer keyVersion) {
+    public record EncryptResult(String ciphertext, Integer keyVersion, ItemError error) {
         public static EncryptResult fromKey(String ciphertext) {
             String[] parts = ciphertext.split(":", 3);
             if (parts.length != 3) {
                 throw new IllegalArgumentException("Invalid ciphertext format");
             }
-            return new EncryptResult(parts[2], Integer.valueOf(parts[1].substring(1)));
+            return new EncryptResult(parts[2], Integer.valueOf(parts[1].substring(1)), null);
+        }
+
+        public static EncryptResult failure(ItemError error) {
+            return new EncryptResult(null, null, error);
+        }
+
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    public record DecryptResult(byte[] plaintext, ItemError error) {
+        public static DecryptResult failure(ItemError error) {
+            return new DecryptResult(null, error);
+        }
+
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    public record HmacResult(String hmac, Integer keyVersion, ItemError error) {
+        public static HmacResult fromKey(String hmac) {
+            String[] parts = hmac.split(":", 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid hmac format");
+            }
+            return new HmacResult(parts[2], Integer.valueOf(parts[1].substring(1)), null);
+        }
+
+        public static HmacResult failure(ItemError error) {
+            return new HmacResult(null, null, error);
+        }
+
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    public record SignResult(String signature, Integer keyVersion, ItemError error) {
+        public static SignResult fromKey(String signature) {
+            String[] parts = signature.split(":", 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid signature format");
+            }
+            return new SignResult(parts[2], Integer.valueOf(parts[1].substring(1)), null);
+        }
+
+        public static SignResult failure(ItemError error) {
+            return new SignResult(null, null, error);
+        }
+
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    public record VerifyRequest(String input, String signature, Integer keyVersion) {}
+
+    public record VerifyResult(boolean valid, ItemError error) {
+        public static VerifyResult failure(ItemError error) {
+            return new VerifyResult(false, error);
+        }
+
+        public boolean failed() {
+            return error != null;
         }
     }
 
-    public record DecryptResult(String plaintext) {
+    /**
+     * @param type       the Vault key type, e.g. {@code ecdsa-p256} or {@code rsa-2048}
+     * @param publicKeys the public key of every version, PEM or Base64 for ed25519
+     */
+    public record SigningKey(String type, Map<Integer, String> publicKeys) {}
+
+    private record Reply(JsonNode batchResults, int status, ItemError error) {
+        static Reply failed(ItemError error) {
+            return new Reply(null, 0, error);
+        }
     }
 }
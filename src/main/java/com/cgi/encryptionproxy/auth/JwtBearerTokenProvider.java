@@ -1,13 +1,18 @@
 package com.cgi.encryptionproxy.auth;
 
+import com.cgi.encryptionproxy.jfr.TokenExchangeEvent;
+import com.cgi.encryptionproxy.transport.KmsHttpTransport;
 import com.nimbusds.jose.*;
 import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jwt.*;
 import com.nimbusds.oauth2.sdk.*;
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
 import com.nimbusds.oauth2.sdk.http.HTTPResponse;
 import com.nimbusds.oauth2.sdk.token.*;
 
 import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
 import java.security.interfaces.RSAPrivateKey;
 import java.time.Instant;
 import java.util.Date;
@@ -25,13 +30,19 @@ public class JwtBearerTokenProvider {
     private final URI tokenEndpoint;
     private final RSAPrivateKey privateKey;
     private final String keyId;
+    private final KmsHttpTransport transport;
 
     private final Map<String, BearerAccessToken> cache = new ConcurrentHashMap<>();
 
-    public JwtBearerTokenProvider(URI tokenEndpoint, RSAPrivateKey privateKey, String keyId) {
+    /**
+     * @param transport the transport of the provider the tokens are for
+     */
+    public JwtBearerTokenProvider(URI tokenEndpoint, RSAPrivateKey privateKey, String keyId,
+            KmsHttpTransport transport) {
         this.tokenEndpoint = tokenEndpoint;
         this.privateKey = privateKey;
         this.keyId = keyId;
+        this.transport = transport;
     }
 
     /**
@@ -53,8 +64,20 @@ public class JwtBearerTokenProvider {
             JWTBearerGrant grant = new JWTBearerGrant(jwt);
             TokenRequest request = new TokenRequest(tokenEndpoint, grant);
 
-            HTTPResponse httpResponse = request.toHTTPRequest().send();
-            TokenResponse response = TokenResponse.parse(httpResponse);
+            TokenExchangeEvent event = new TokenExchangeEvent();
+            event.begin();
+            TokenResponse response;
+            try {
+                response = TokenResponse.parse(send(request.toHTTPRequest()));
+                event.success = response.indicatesSuccess();
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.endpoint = tokenEndpoint.toString();
+                    event.subject = sub;
+                    event.commit();
+                }
+            }
 
             if (!response.indicatesSuccess()) {
                 throw new RuntimeException("Token request failed: " + response.toErrorResponse().getErrorObject());
@@ -76,6 +99,23 @@ public class JwtBearerTokenProvider {
         }
     }
 
+    /**
+     * Sends the token request through the provider's transport instead of Nimbus' own
+     * HTTP stack.
+     */
+    private HTTPResponse send(HTTPRequest request) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.getURI())
+                .header("Content-Type", request.getHeaderValue("Content-Type"))
+                .POST(HttpRequest.BodyPublishers.ofString(request.getBody()));
+
+        return transport.send("token", null, 0, builder, (status, body) -> {
+            HTTPResponse response = new HTTPResponse(status);
+            response.setHeader("Content-Type", "application/json");
+            response.setBody(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            return response;
+        });
+    }
+
     private SignedJWT createJwt(String iss, String sub, String audience) {
         Instant now = Instant.now();
 
@@ -0,0 +1,318 @@
+package com.cgi.encryptionproxy.batch;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.adapters.EncryptOperation;
+import com.cgi.encryptionproxy.adapters.IKmsAdapter;
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.cgi.encryptionproxy.config.BatchJobProperties;
+import com.cgi.encryptionproxy.crypto.CiphertextEnvelope;
+import com.cgi.encryptionproxy.jfr.BatchDispatchEvent;
+import com.cgi.encryptionproxy.service.CiphertextEnvelopeService;
+import com.cgi.encryptionproxy.service.ProviderRegistryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Encrypts or decrypts selected columns of a CSV file with the adapters directly,
+ * without the REST API in between. Rows are read as a stream and sent in large
+ * batches, several of them in flight at once; results are written in input order, so
+ * at most {@code pipelineDepth * batchSize} rows are held in memory.
+ * <p>
+ * After every written batch a checkpoint with the number of rows and bytes written is
+ * stored next to the output. A restarted job truncates the output to the checkpoint
+ * and continues with the next row.
+ * <p>
+ * With {@value #INPUT_PROPERTY} set the application starts without web server and
+ * exits once the job is done, with exit code 1 if it failed.
+ */
+@Component
+@ConditionalOnProperty(prefix = "encryption.batch-job", name = "input")
+public class ColumnBatchJob implements ApplicationRunner, ExitCodeGenerator {
+
+    public static final String INPUT_PROPERTY = "encryption.batch-job.input";
+
+    private static final Logger log = LoggerFactory.getLogger(ColumnBatchJob.class);
+
+    private final ProviderRegistryService providerRegistryService;
+    private final CiphertextEnvelopeService ciphertextEnvelopeService;
+    private final BatchJobProperties properties;
+    private final boolean envelope;
+    private volatile int exitCode = 1;
+
+    public ColumnBatchJob(ProviderRegistryService providerRegistryService,
+            CiphertextEnvelopeService ciphertextEnvelopeService, BatchJobProperties properties) {
+        this.providerRegistryService = providerRegistryService;
+        this.ciphertextEnvelopeService = ciphertextEnvelopeService;
+        this.properties = properties;
+
+        if (properties.getOutput() == null || properties.getKeyProvider() == null
+                || properties.getKeyName() == null || properties.getColumns().isEmpty()) {
+            throw new IllegalStateException("The batch job requires encryption.batch-job.output, key-provider, "
+                    + "key-name and columns");
+        }
+        if (properties.getBatchSize() < 1 || properties.getPipelineDepth() < 1) {
+            throw new IllegalStateException("batch-size and pipeline-depth must be at least 1");
+        }
+        this.envelope = CiphertextEnvelope.isRequested(properties.getFormat());
+        if (envelope && properties.getMode() == BatchJobProperties.Mode.ENCRYPT) {
+            ciphertextEnvelopeService.checkWrappable(properties.getKeyProvider(), properties.getKeyName());
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            execute();
+            exitCode = 0;
+        } catch (Exception e) {
+            log.error("Batch job {} of {} failed", properties.getMode(), properties.getInput(), e);
+        }
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    private void execute() throws IOException, InterruptedException {
+        IKmsAdapter adapter = providerRegistryService.getProvider(properties.getKeyProvider());
+        Path input = Path.of(properties.getInput());
+        Path output = Path.of(properties.getOutput());
+        Path checkpointPath = output.resolveSibling(output.getFileName() + ".checkpoint");
+        Checkpoint checkpoint = Checkpoint.load(checkpointPath);
+        if (checkpoint != null && !checkpoint.input().equals(input.toAbsolutePath().toString())) {
+            throw new IllegalStateException("Checkpoint " + checkpointPath + " belongs to another input: "
+                    + checkpoint.input());
+        }
+
+        long start = System.nanoTime();
+        long rows;
+        try (Reader source = new InputStreamReader(Files.newInputStream(input), StandardCharsets.UTF_8);
+             FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            CsvReader reader = new CsvReader(source, properties.getDelimiter());
+            List<String> header = reader.readRecord();
+            if (header == null) {
+                throw new IllegalStateException("Input " + input + " is empty");
+            }
+            int[] columns = resolveColumns(header);
+
+            // discard output written after the last checkpoint
+            long resumeAt = checkpoint == null ? 0 : checkpoint.bytes();
+            channel.truncate(resumeAt);
+            channel.position(resumeAt);
+            Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), 64 * 1024);
+            CsvWriter csv = new CsvWriter(writer, properties.getDelimiter());
+
+            rows = 0;
+            if (checkpoint == null) {
+                csv.writeRecord(header);
+            } else {
+                for (; rows < checkpoint.rows() && reader.readRecord() != null; rows++) {
+                    // skipped, already in the output
+                }
+                log.info("Resuming batch job on {} after row {}", input, rows);
+            }
+
+            rows = process(adapter, reader, header, columns, rows, csv, channel, checkpointPath, input);
+        }
+        Files.deleteIfExists(checkpointPath);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("Batch job {} of {} finished: {} rows in {} s ({} rows/s)", properties.getMode(), input, rows,
+                String.format("%.1f", seconds), Math.round(rows / Math.max(seconds, 1e-3)));
+    }
+
+    private long process(IKmsAdapter adapter, CsvReader reader, List<String> header, int[] columns, long rows,
+            CsvWriter csv, FileChannel channel, Path checkpointPath, Path input)
+            throws IOException, InterruptedException {
+        ArrayDeque<Future<List<List<String>>>> inFlight = new ArrayDeque<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                long firstRow = rows;
+                List<List<String>> batch;
+                while (!(batch = readBatch(reader)).isEmpty()) {
+                    if (inFlight.size() == properties.getPipelineDepth()) {
+                        rows = writeNext(inFlight, rows, csv, channel, checkpointPath, input);
+                    }
+                    List<List<String>> rowsOfBatch = batch;
+                    long rowOffset = firstRow;
+                    inFlight.add(executor.submit(() -> transform(adapter, rowsOfBatch, header, columns, rowOffset)));
+                    firstRow += batch.size();
+                }
+                while (!inFlight.isEmpty()) {
+                    rows = writeNext(inFlight, rows, csv, channel, checkpointPath, input);
+                }
+            } finally {
+                // after a failure the batches behind it are not written, don't wait for them
+                inFlight.forEach(future -> future.cancel(true));
+            }
+        }
+        return rows;
+    }
+
+    private List<List<String>> readBatch(CsvReader reader) throws IOException {
+        List<List<String>> batch = new ArrayList<>(properties.getBatchSize());
+        List<String> record;
+        while (batch.size() < properties.getBatchSize() && (record = reader.readRecord()) != null) {
+            batch.add(record);
+        }
+        return batch;
+    }
+
+    private long writeNext(ArrayDeque<Future<List<List<String>>>> inFlight, long rows, CsvWriter csv,
+            FileChannel channel, Path checkpointPath, Path input) throws IOException, InterruptedException {
+        List<List<String>> batch;
+        try {
+            batch = inFlight.removeFirst().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Batch failed", e.getCause());
+        }
+        for (List<String> row : batch) {
+            csv.writeRecord(row);
+        }
+        csv.flush();
+        channel.force(false);
+
+        long written = rows + batch.size();
+        new Checkpoint(input.toAbsolutePath().toString(), written, channel.position()).store(checkpointPath);
+        return written;
+    }
+
+    /**
+     * Replaces the selected cells of a batch of rows in place with one adapter call.
+     * Empty and missing cells are left as they are.
+     */
+    private List<List<String>> transform(IKmsAdapter adapter, List<List<String>> batch, List<String> header,
+            int[] columns, long firstRow) {
+        List<int[]> cells = new ArrayList<>();
+        for (int r = 0; r < batch.size(); r++) {
+            List<String> row = batch.get(r);
+            for (int column : columns) {
+                if (column < row.size() && !row.get(column).isEmpty()) {
+                    cells.add(new int[]{r, column});
+                }
+            }
+        }
+        if (cells.isEmpty()) {
+            return batch;
+        }
+
+        String provider = properties.getKeyProvider();
+        boolean encrypt = properties.getMode() == BatchJobProperties.Mode.ENCRYPT;
+        BatchDispatchEvent event = BatchDispatchEvent.begin(encrypt ? "encrypt" : "decrypt", provider, "batch-job",
+                cells.size());
+        BatchResult result;
+        if (encrypt) {
+            List<EncryptOperation> operations = new ArrayList<>(cells.size());
+            for (int[] cell : cells) {
+                byte[] value = batch.get(cell[0]).get(cell[1]).getBytes(StandardCharsets.UTF_8);
+                operations.add(new EncryptOperation(provider, properties.getKeyName(), properties.getKeyVersion(),
+                        Base64.getEncoder().encodeToString(value), null));
+            }
+            result = adapter.encryptBatch(operations);
+            if (envelope) {
+                ciphertextEnvelopeService.wrap(provider, properties.getKeyName(), result);
+            }
+        } else {
+            // v1 and v2 values, malformed ones fail as items and stop the job below
+            List<String> ciphertexts = new ArrayList<>(cells.size());
+            for (int[] cell : cells) {
+                ciphertexts.add(batch.get(cell[0]).get(cell[1]));
+            }
+            result = ciphertextEnvelopeService.decryptBatch(
+                    ciphertextEnvelopeService.toCryptoTasks(provider, properties.getKeyName(), ciphertexts));
+        }
+        event.complete(result.failureCount());
+
+        for (int i = 0; i < cells.size(); i++) {
+            int[] cell = cells.get(i);
+            if (result.isFailed(i)) {
+                ItemError error = result.error(i);
+                throw new IllegalStateException(cellName(header, firstRow, cell) + ": " + error.code() + " "
+                        + error.message());
+            }
+            String value = encrypt
+                    ? result.value(i)
+                    : new String(Base64.getDecoder().decode(result.value(i)), StandardCharsets.UTF_8);
+            batch.get(cell[0]).set(cell[1], value);
+        }
+        return batch;
+    }
+
+    private int[] resolveColumns(List<String> header) {
+        List<String> names = properties.getColumns();
+        int[] columns = new int[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            columns[i] = header.indexOf(names.get(i));
+            if (columns[i] < 0) {
+                throw new IllegalStateException("Column not found in the input header: " + names.get(i));
+            }
+        }
+        return columns;
+    }
+
+    private static String cellName(List<String> header, long firstRow, int[] cell) {
+        // 1-based data row, the header not counted
+        return "Row " + (firstRow + cell[0] + 1) + " column " + header.get(cell[1]);
+    }
+
+    private record Checkpoint(String input, long rows, long bytes) {
+
+        static Checkpoint load(Path path) throws IOException {
+            if (!Files.exists(path)) {
+                return null;
+            }
+            Properties values = new Properties();
+            try (Reader reader = Files.newBufferedReader(path)) {
+                values.load(reader);
+            }
+            return new Checkpoint(values.getProperty("input"), Long.parseLong(values.getProperty("rows")),
+                    Long.parseLong(values.getProperty("bytes")));
+        }
+
+        void store(Path path) throws IOException {
+            Properties values = new Properties();
+            values.setProperty("input", input);
+            values.setProperty("rows", Long.toString(rows));
+            values.setProperty("bytes", Long.toString(bytes));
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp)) {
+                values.store(writer, null);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.cgi.encryptionproxy.capture;
+
+import java.time.Instant;
+
+/**
+ * State of the workload capture.
+ *
+ * @param state     {@code NONE} if no capture was started, {@code RUNNING} or {@code STOPPED}
+ * @param startedAt start time of the capture
+ * @param file      the capture file
+ * @param requests  number of requests captured
+ * @param size      size of the capture file in bytes
+ */
+public record CaptureStatus(String state, Instant startedAt, String file, long requests, long size) {
+}
@@ -0,0 +1,301 @@
+package com.cgi.encryptionproxy.capture;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.config.CaptureProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Records the shape of the batch requests the proxy serves, to replay production
+ * traffic against a test instance (see {@code WorkloadReplay} of the client module).
+ * A capture holds when requests arrived, how long they took, their operation,
+ * provider, key and item count, and per item the size of the plaintext and a
+ * fingerprint of the value. No plaintexts or ciphertexts are written.
+ * <p>
+ * Fingerprints are a truncated HMAC with a key drawn per capture and never stored:
+ * equal values within a capture have equal fingerprints, so the replay repeats them
+ * the way the captured clients did, but fingerprints cannot be matched against
+ * guessed values or across captures.
+ * <p>
+ * File format, integers big-endian, varints unsigned LEB128:
+ * <pre>
+ * header:  int32 magic "EPWC" | uint8 version 1 | int64 start epoch millis
+ * name:    uint8 1 | uint16 id | UTF-8 name (modified UTF-8 as by DataOutput)
+ * request: uint8 2 | varint start offset micros | varint duration micros | uint8 operation
+ *          | uint16 provider id | uint16 key id | varint failed items | varint items
+ *          | items x (varint plaintext size | int64 fingerprint)
+ * </pre>
+ * Names (providers and keys) are defined before the first request using them.
+ * Operations are 1 encrypt, 2 decrypt, 3 hmac. The plaintext size of a failed
+ * decryption is 0.
+ */
+@Service
+public class WorkloadCapture {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkloadCapture.class);
+
+    static final int MAGIC = 0x45505743; // "EPWC"
+    static final int VERSION = 1;
+    static final int RECORD_NAME = 1;
+    static final int RECORD_REQUEST = 2;
+    static final int OP_ENCRYPT = 1;
+    static final int OP_DECRYPT = 2;
+    static final int OP_HMAC = 3;
+
+    private final CaptureProperties properties;
+    private final SecureRandom random = new SecureRandom();
+    // read without the lock by every request, to skip the work while nothing is captured
+    private volatile Capture capture;
+    private Capture last;
+
+    public WorkloadCapture(CaptureProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @param duration how long to capture, capped at the configured maximum
+     */
+    public synchronized CaptureStatus start(Duration duration) {
+        if (capture != null) {
+            throw new IllegalStateException("A capture is already running");
+        }
+        Duration max = properties.getMaxDuration();
+        if (duration == null || duration.isNegative() || duration.isZero() || duration.compareTo(max) > 0) {
+            duration = max;
+        }
+
+        Instant startedAt = Instant.now();
+        Path file = Path.of(properties.getDirectory(), "encryptionproxy-" + startedAt.toEpochMilli() + ".epwc");
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(startedAt.toEpochMilli());
+            last = new Capture(file, startedAt, System.nanoTime() + duration.toNanos(), out,
+                    new SecretKeySpec(key, "HmacSHA256"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create capture file " + file, e);
+        }
+        capture = last;
+
+        log.info("Started workload capture to {} for {}", file, duration);
+        return status();
+    }
+
+    public synchronized CaptureStatus stop() {
+        if (last == null) {
+            throw new IllegalStateException("No capture was started");
+        }
+        Capture running = capture;
+        if (running != null) {
+            running.close();
+            capture = null;
+            log.info("Wrote workload capture of {} requests to {}", running.requests, running.file);
+        }
+        return status();
+    }
+
+    public synchronized CaptureStatus status() {
+        if (last == null) {
+            return new CaptureStatus("NONE", null, null, 0, 0);
+        }
+        synchronized (last) {
+            return new CaptureStatus(last.closed ? "STOPPED" : "RUNNING", last.startedAt, last.file.toString(),
+                    last.requests, last.out.size());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (capture != null) {
+            stop();
+        }
+    }
+
+    /**
+     * Records a served batch if a capture is running.
+     *
+     * @param operation    {@code encrypt}, {@code decrypt} or {@code hmac}
+     * @param input        the Base64 plaintext, ciphertext or HMAC input of a task, which is fingerprinted
+     * @param startedNanos {@link System#nanoTime()} when the request started
+     */
+    public <T> void record(String operation, String provider, String keyName, List<T> tasks,
+            Function<T, String> input, BatchResult results, long startedNanos) {
+        Capture running = capture;
+        if (running == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        int op = switch (operation) {
+            case "encrypt" -> OP_ENCRYPT;
+            case "decrypt" -> OP_DECRYPT;
+            case "hmac" -> OP_HMAC;
+            default -> throw new IllegalArgumentException("Unknown operation " + operation);
+        };
+
+        int[] sizes = new int[tasks.size()];
+        long[] fingerprints = new long[tasks.size()];
+        Mac mac = running.mac();
+        for (int i = 0; i < sizes.length; i++) {
+            String value = input.apply(tasks.get(i));
+            fingerprints[i] = fingerprint(mac, value);
+            if (op == OP_DECRYPT) {
+                sizes[i] = results.isFailed(i) ? 0 : decodedLength(results.value(i));
+            } else {
+                sizes[i] = decodedLength(value);
+            }
+        }
+
+        boolean full;
+        synchronized (running) {
+            if (running.closed) {
+                return;
+            }
+            try {
+                DataOutputStream out = running.out;
+                int providerId = running.name(provider);
+                int keyId = running.name(keyName);
+                out.writeByte(RECORD_REQUEST);
+                writeVarLong(out, Math.max(0, (startedNanos - running.startNanos) / 1000));
+                writeVarLong(out, Math.max(0, (now - startedNanos) / 1000));
+                out.writeByte(op);
+                out.writeShort(providerId);
+                out.writeShort(keyId);
+                writeVarLong(out, results.failureCount());
+                writeVarLong(out, sizes.length);
+                for (int i = 0; i < sizes.length; i++) {
+                    writeVarLong(out, sizes[i]);
+                    out.writeLong(fingerprints[i]);
+                }
+                running.requests++;
+            } catch (IOException e) {
+                log.warn("Stopping workload capture after a write failure: {}", e.getMessage());
+                running.close();
+            }
+            full = running.closed || running.out.size() >= properties.getMaxBytes() || now - running.endNanos > 0;
+        }
+        if (full) {
+            synchronized (this) {
+                if (capture == running) {
+                    stop();
+                }
+            }
+        }
+    }
+
+    private static long fingerprint(Mac mac, String value) {
+        byte[] digest = mac.doFinal(value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8));
+        long fingerprint = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            fingerprint = fingerprint << 8 | (digest[i] & 0xff);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Length of the data a Base64 string encodes, without decoding it.
+     */
+    static int decodedLength(String base64) {
+        if (base64 == null) {
+            return 0;
+        }
+        int length = base64.length();
+        int padding = 0;
+        while (padding < 2 && length - padding > 0 && base64.charAt(length - padding - 1) == '=') {
+            padding++;
+        }
+        return (int) ((long) length * 3 / 4) - padding;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static final class Capture {
+        final Path file;
+        final Instant startedAt;
+        final long startNanos = System.nanoTime();
+        final long endNanos;
+        final DataOutputStream out;
+        final SecretKeySpec fingerprintKey;
+        // guarded by this
+        final Map<String, Integer> names = new HashMap<>();
+        long requests;
+        boolean closed;
+
+        Capture(Path file, Instant startedAt, long endNanos, DataOutputStream out, SecretKeySpec fingerprintKey) {
+            this.file = file;
+            this.startedAt = startedAt;
+            this.endNanos = endNanos;
+            this.out = out;
+            this.fingerprintKey = fingerprintKey;
+        }
+
+        Mac mac() {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(fingerprintKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * The id of a provider or key name, defining it on first use.
+         */
+        int name(String name) throws IOException {
+            String value = name == null ? "" : name;
+            Integer id = names.get(value);
+            if (id == null) {
+                if (names.size() > 0xFFFF) {
+                    throw new IOException("Too many distinct key names");
+                }
+                id = names.size();
+                names.put(value, id);
+                out.writeByte(RECORD_NAME);
+                out.writeShort(id);
+                out.writeUTF(value);
+            }
+            return id;
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warn("Failed to close workload capture {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.cgi.encryptionproxy.cluster;
+
+import java.util.List;
+
+/**
+ * Decrypt items forwarded to the replica owning their cache entries. Ciphertexts are
+ * in the usual {@code version:ciphertext} form.
+ */
+public record ClusterDecryptRequest(String provider, String keyName, List<String> ciphertexts) {
+}
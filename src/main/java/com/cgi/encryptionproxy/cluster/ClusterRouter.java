@@ -0,0 +1,186 @@
+package com.cgi.encryptionproxy.cluster;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.adapters.ErrorCode;
+import com.cgi.encryptionproxy.adapters.IKmsAdapter;
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.cgi.encryptionproxy.concurrency.Deadline;
+import com.cgi.encryptionproxy.config.ClusterProperties;
+import com.cgi.encryptionproxy.config.DeadlineProperties;
+import com.cgi.encryptionproxy.dto.ItemStatus;
+import com.cgi.encryptionproxy.dto.PlaintextResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads decrypt cache entries over the replicas. Every item has an owner on the
+ * hash ring; items owned by another replica are sent to it, so each ciphertext is
+ * decrypted and cached once in the cluster instead of once per pod. If the owner
+ * cannot be reached the items are decrypted locally.
+ */
+@Service
+public class ClusterRouter {
+
+    public static final String DECRYPT_PATH = "/internal/v1/cluster/decrypt";
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterRouter.class);
+
+    private final ClusterProperties properties;
+    private final DeadlineProperties deadlineProperties;
+    private final PeerDirectory peerDirectory;
+    private final ObjectMapper objectMapper;
+    private final ClusterSigner signer;
+    private final HttpClient httpClient;
+
+    public ClusterRouter(ClusterProperties properties, DeadlineProperties deadlineProperties,
+            PeerDirectory peerDirectory, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.deadlineProperties = deadlineProperties;
+        this.peerDirectory = peerDirectory;
+        this.objectMapper = objectMapper;
+        this.signer = properties.isEnabled() ? new ClusterSigner(properties.getSecret()) : null;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(properties.getTimeout())
+                .build();
+    }
+
+    public ClusterSigner signer() {
+        return signer;
+    }
+
+    public BatchResult decryptBatch(String provider, IKmsAdapter adapter, List<DecryptOperation> tasks) {
+        HashRing ring = peerDirectory.ring();
+        String self = peerDirectory.self();
+        if (!properties.isEnabled() || ring.peers().size() < 2 || self == null) {
+            return adapter.decryptBatch(tasks);
+        }
+
+        Map<String, List<Integer>> byOwner = new LinkedHashMap<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            DecryptOperation task = tasks.get(i);
+            // malformed items fail locally, there is nothing for a peer to cache
+            String owner = task.keyVersion() == null || task.ciphertext() == null ? self
+                    : ring.owner(provider + ":" + task.keyName() + ":" + task.keyVersion() + ":" + task.ciphertext());
+            byOwner.computeIfAbsent(owner, key -> new ArrayList<>()).add(i);
+        }
+
+        BatchResult result = new BatchResult(tasks.size());
+        List<Future<?>> futures = new ArrayList<>(byOwner.size());
+        Deadline deadline = Deadline.current();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            byOwner.forEach((owner, indices) -> futures.add(executor.submit(Deadline.propagate(deadline, () -> {
+                List<DecryptOperation> subset = indices.stream().map(tasks::get).toList();
+                BatchResult partial = owner.equals(self) ? null : forward(owner, provider, subset);
+                if (partial == null) {
+                    partial = adapter.decryptBatch(subset);
+                }
+                for (int i = 0; i < indices.size(); i++) {
+                    if (partial.isFailed(i)) {
+                        result.fail(indices.get(i), partial.error(i));
+                    } else {
+                        result.succeed(indices.get(i), partial.value(i));
+                    }
+                }
+            }))));
+        }
+
+        // a sub-batch that threw left its items pending; fail the batch as without cluster mode
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new RuntimeException("Cluster decrypt failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for cluster decrypts", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sends items to their owner, with the time left until the request deadline.
+     * Returns null if the owner could not answer, in which case the caller decrypts
+     * locally.
+     */
+    private BatchResult forward(String peer, String provider, List<DecryptOperation> tasks) {
+        Duration timeout = Deadline.cap(properties.getTimeout());
+        if (timeout.isZero()) {
+            // no time left for a round trip; the local adapter applies the deadline itself
+            return null;
+        }
+        try {
+            List<String> ciphertexts = tasks.stream().map(task -> task.keyVersion() + ":" + task.ciphertext()).toList();
+            byte[] body = objectMapper.writeValueAsBytes(
+                    new ClusterDecryptRequest(provider, tasks.getFirst().keyName(), ciphertexts));
+            long timestamp = System.currentTimeMillis();
+
+            HttpRequest.Builder builder = HttpRequest.newBuilder()
+                    .uri(URI.create(peer + DECRYPT_PATH))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .header(ClusterSigner.TIMESTAMP_HEADER, Long.toString(timestamp))
+                    .header(ClusterSigner.SIGNATURE_HEADER, signer.sign(DECRYPT_PATH, timestamp, body))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+            Deadline deadline = Deadline.current();
+            if (deadline != null) {
+                // the peer bounds its own KMS calls by what is left of ours
+                builder.header(deadlineProperties.getHeader(),
+                        Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline.remainingNanos()))));
+            }
+            HttpRequest request = builder.build();
+
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200 && response.statusCode() != 207) {
+                log.warn("Peer {} answered {}, decrypting locally", peer, response.statusCode());
+                return null;
+            }
+
+            List<PlaintextResponse> items = objectMapper.readValue(response.body(), new TypeReference<>() {
+            });
+            if (items.size() != tasks.size()) {
+                log.warn("Peer {} returned {} items for {}, decrypting locally", peer, items.size(), tasks.size());
+                return null;
+            }
+
+            BatchResult result = new BatchResult(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                PlaintextResponse item = items.get(i);
+                if (item.getStatus() == ItemStatus.FAILED) {
+                    result.fail(i, new ItemError(ErrorCode.valueOf(item.getError()), item.getMessage()));
+                } else {
+                    result.succeed(i, item.getPlaintext());
+                }
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.warn("Forwarding to peer {} failed, decrypting locally: {}", peer, e.getMessage());
+            return null;
+        }
+    }
+}
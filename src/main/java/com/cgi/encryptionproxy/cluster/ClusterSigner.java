@@ -0,0 +1,60 @@
+package com.cgi.encryptionproxy.cluster;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Authenticates requests between replicas with an HMAC over path, timestamp and body.
+ * Requests older than the allowed clock skew are rejected to limit replays.
+ */
+public class ClusterSigner {
+
+    public static final String SIGNATURE_HEADER = "X-Cluster-Signature";
+    public static final String TIMESTAMP_HEADER = "X-Cluster-Timestamp";
+
+    private static final long MAX_SKEW_MILLIS = 30_000;
+
+    private final SecretKeySpec key;
+
+    public ClusterSigner(String secret) {
+        if (secret == null || secret.length() < 16) {
+            throw new IllegalStateException("encryption.cluster.secret must be set to at least 16 characters");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    }
+
+    public String sign(String path, long timestamp, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            mac.update(path.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) '\n');
+            mac.update(Long.toString(timestamp).getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) '\n');
+            return HexFormat.of().formatHex(mac.doFinal(body));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign cluster request", e);
+        }
+    }
+
+    public boolean verify(String path, String timestamp, byte[] body, String signature) {
+        if (timestamp == null || signature == null) {
+            return false;
+        }
+        long time;
+        try {
+            time = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (Math.abs(System.currentTimeMillis() - time) > MAX_SKEW_MILLIS) {
+            return false;
+        }
+        byte[] expected = sign(path, time, body).getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,56 @@
+package com.cgi.encryptionproxy.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent-hash ring. Every peer is placed on the ring at several virtual
+ * nodes, so adding or removing a replica only moves the keys next to its nodes.
+ */
+public class HashRing {
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final List<String> peers;
+
+    public HashRing(Collection<String> peers, int virtualNodes) {
+        this.peers = List.copyOf(peers);
+        for (String peer : this.peers) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(peer + "#" + i), peer);
+            }
+        }
+    }
+
+    public List<String> peers() {
+        return peers;
+    }
+
+    /**
+     * Returns the peer owning the key, or null for an empty ring.
+     */
+    public String owner(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
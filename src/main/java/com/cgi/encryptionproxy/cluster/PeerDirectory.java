@@ -0,0 +1,141 @@
+package com.cgi.encryptionproxy.cluster;
+
+import com.cgi.encryptionproxy.config.ClusterProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Knows the replicas of the cluster and the hash ring built from them. Peers come
+ * from a static list or from a DNS name that is resolved periodically.
+ */
+@Component
+public class PeerDirectory {
+
+    private static final Logger log = LoggerFactory.getLogger(PeerDirectory.class);
+
+    private final ClusterProperties properties;
+    private ScheduledExecutorService refresher;
+
+    private volatile HashRing ring = new HashRing(List.of(), 1);
+    private volatile String self;
+
+    public PeerDirectory(ClusterProperties properties) {
+        this.properties = properties;
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        if (properties.getDnsName() != null) {
+            requireHttps(properties.getDnsScheme() + "://" + properties.getDnsName());
+            if (properties.getSelf() != null) {
+                requireHttps(properties.getSelf());
+            }
+            refresh();
+            refresher = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().daemon().name("cluster-dns-refresh").factory());
+            long interval = properties.getRefreshInterval().toMillis();
+            refresher.scheduleAtFixedRate(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            if (properties.getSelf() == null || properties.getPeers().isEmpty()) {
+                throw new IllegalStateException(
+                        "Cluster mode requires encryption.cluster.self and encryption.cluster.peers, or a dns-name");
+            }
+            requireHttps(properties.getSelf());
+            properties.getPeers().forEach(this::requireHttps);
+            self = normalize(properties.getSelf());
+            Set<String> peers = new TreeSet<>();
+            properties.getPeers().forEach(peer -> peers.add(normalize(peer)));
+            peers.add(self);
+            ring = new HashRing(peers, properties.getVirtualNodes());
+            log.info("Cluster mode with static peers {}", peers);
+        }
+    }
+
+    public HashRing ring() {
+        return ring;
+    }
+
+    public String self() {
+        return self;
+    }
+
+    private void refresh() {
+        try {
+            Set<String> peers = new TreeSet<>();
+            for (InetAddress address : InetAddress.getAllByName(properties.getDnsName())) {
+                peers.add(url(address));
+            }
+            String own = properties.getSelf() != null ? normalize(properties.getSelf()) : detectSelf(peers);
+            if (own != null) {
+                peers.add(own);
+            }
+            self = own;
+            if (!peers.equals(new TreeSet<>(ring.peers()))) {
+                ring = new HashRing(peers, properties.getVirtualNodes());
+                log.info("Cluster peers changed to {}", peers);
+            }
+        } catch (UnknownHostException e) {
+            log.warn("Could not resolve cluster peers from {}: {}", properties.getDnsName(), e.getMessage());
+        }
+    }
+
+    private String detectSelf(Set<String> peers) {
+        try {
+            List<String> local = new ArrayList<>();
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                for (InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                    local.add(url(address));
+                }
+            }
+            return peers.stream().filter(local::contains).findFirst().orElse(null);
+        } catch (SocketException e) {
+            log.warn("Could not list local addresses: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String url(InetAddress address) {
+        String host = address.getHostAddress();
+        if (host.contains(":")) {
+            host = "[" + host.replaceAll("%.*$", "") + "]";
+        }
+        return properties.getDnsScheme() + "://" + host + ":" + properties.getDnsPort();
+    }
+
+    /**
+     * Forwarded decrypt responses hold plaintexts, so peers must be reached over https
+     * unless plain http is explicitly allowed.
+     */
+    private void requireHttps(String url) {
+        if (!properties.isAllowPlaintextHttp() && !url.regionMatches(true, 0, "https://", 0, 8)) {
+            throw new IllegalStateException("Cluster peer " + url + " is not https; cluster traffic carries"
+                    + " plaintexts. Set encryption.cluster.allow-plaintext-http=true only if the network encrypts it");
+        }
+    }
+
+    private static String normalize(String url) {
+        return url.replaceAll("/$", "");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.cgi.encryptionproxy.concurrency;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Point in time after which the work of a request is abandoned.
+ * <p>
+ * The deadline of the current request is bound to the request thread by
+ * {@link DeadlineFilter} and passed on explicitly to the threads a batch fans out to
+ * (see {@link #propagate(Deadline, Callable)}), the way structured concurrency
+ * inherits scoped values. It is not inherited by other threads, so pool threads
+ * never carry the deadline of the request that happened to create them.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline in(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * The deadline of the current thread, or null if it has none.
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    public static boolean isCurrentExpired() {
+        Deadline deadline = CURRENT.get();
+        return deadline != null && deadline.isExpired();
+    }
+
+    /**
+     * Caps {@code timeout} at the time left until the current deadline.
+     */
+    public static Duration cap(Duration timeout) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return timeout;
+        }
+        long remaining = Math.max(0, deadline.remainingNanos());
+        return remaining < timeout.toNanos() ? Duration.ofNanos(remaining) : timeout;
+    }
+
+    /**
+     * Binds {@code deadline} to the current thread until the returned scope is closed.
+     */
+    public static Scope enter(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Wraps a task so that it runs with {@code deadline}, for handing work to another thread.
+     */
+    @SuppressWarnings("try") // the scope is only closed
+    public static <T> Callable<T> propagate(Deadline deadline, Callable<T> task) {
+        if (deadline == null) {
+            return task;
+        }
+        return () -> {
+            try (Scope ignored = enter(deadline)) {
+                return task.call();
+            }
+        };
+    }
+
+    @SuppressWarnings("try")
+    public static Runnable propagate(Deadline deadline, Runnable task) {
+        if (deadline == null) {
+            return task;
+        }
+        return () -> {
+            try (Scope ignored = enter(deadline)) {
+                task.run();
+            }
+        };
+    }
+
+    public long remainingNanos() {
+        return expiresAtNanos - System.nanoTime();
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,58 @@
+package com.cgi.encryptionproxy.concurrency;
+
+import com.cgi.encryptionproxy.config.DeadlineProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Binds the deadline of a request to the request thread: the timeout from the
+ * deadline header, capped at the configured maximum, or the default timeout.
+ */
+@Component
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    private final DeadlineProperties properties;
+
+    public DeadlineFilter(DeadlineProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    @SuppressWarnings("try") // the deadline scope is only closed
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Duration timeout = properties.getDefaultTimeout();
+        String header = request.getHeader(properties.getHeader());
+        if (header != null) {
+            try {
+                long millis = Long.parseLong(header.trim());
+                if (millis <= 0) {
+                    throw new NumberFormatException();
+                }
+                timeout = Duration.ofMillis(millis);
+            } catch (NumberFormatException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        properties.getHeader() + " must be a positive number of milliseconds");
+                return;
+            }
+        }
+        if (timeout == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (properties.getMaxTimeout() != null && timeout.compareTo(properties.getMaxTimeout()) > 0) {
+            timeout = properties.getMaxTimeout();
+        }
+
+        try (Deadline.Scope ignored = Deadline.enter(Deadline.in(timeout))) {
+            chain.doFilter(request, response);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.cgi.encryptionproxy.concurrency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Runs the calls of a batch in parallel with structured concurrency semantics: no
+ * call outlives {@link #invokeAll}, a failure that dooms the whole batch cancels the
+ * sibling calls still in flight, and everything is cancelled once the current
+ * {@link Deadline} passes.
+ * <p>
+ * Equivalent to a {@code StructuredTaskScope} with a custom shutdown policy, which is
+ * still a preview API in Java 21.
+ */
+public final class StructuredFanOut {
+
+    private StructuredFanOut() {
+    }
+
+    /**
+     * @param tasks            the calls, one per item
+     * @param cancelsSiblings  whether a result means the other calls will fail as well
+     * @param onFailure        the result of a call that threw or was cancelled; a
+     *                         cancelled or unstarted call is passed a {@link CancellationException}
+     * @return the results in the order of the tasks
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, Predicate<? super T> cancelsSiblings,
+            Function<Throwable, T> onFailure) {
+        Deadline deadline = Deadline.current();
+        int count = tasks.size();
+        AtomicReferenceArray<T> results = new AtomicReferenceArray<>(count);
+        AtomicReferenceArray<Throwable> failures = new AtomicReferenceArray<>(count);
+        List<Future<?>> futures = new ArrayList<>(count);
+        Shutdown shutdown = new Shutdown(futures);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                Callable<T> task = tasks.get(i);
+                synchronized (futures) {
+                    if (shutdown.done) {
+                        break;
+                    }
+                    futures.add(executor.submit(Deadline.propagate(deadline, () -> {
+                        try {
+                            T result = task.call();
+                            if (!cancelled(shutdown)) {
+                                results.set(index, result);
+                                if (cancelsSiblings.test(result)) {
+                                    shutdown.run();
+                                }
+                            }
+                        } catch (Exception e) {
+                            if (!cancelled(shutdown) && !(e instanceof InterruptedException && shutdown.done)) {
+                                failures.set(index, e);
+                                shutdown.run();
+                            }
+                        }
+                    })));
+                }
+            }
+
+            List<Future<?>> started;
+            synchronized (futures) {
+                started = List.copyOf(futures);
+            }
+            for (Future<?> future : started) {
+                try {
+                    if (deadline == null) {
+                        future.get();
+                    } else {
+                        future.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+                    }
+                } catch (TimeoutException e) {
+                    shutdown.run();
+                    break;
+                } catch (InterruptedException e) {
+                    shutdown.run();
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException | CancellationException e) {
+                    // outcome recorded by the task, or cancelled
+                }
+            }
+        } // closing the executor waits for the cancelled calls to return
+
+        List<T> outcome = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            T result = results.get(i);
+            if (result != null) {
+                outcome.add(result);
+            } else if (failures.get(i) != null) {
+                outcome.add(onFailure.apply(failures.get(i)));
+            } else {
+                outcome.add(onFailure.apply(new CancellationException("Cancelled")));
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Whether the calling task was interrupted by the shutdown; its outcome then
+     * counts as cancelled.
+     */
+    private static boolean cancelled(Shutdown shutdown) {
+        return shutdown.done && Thread.currentThread().isInterrupted();
+    }
+
+    private static final class Shutdown implements Runnable {
+
+        private final List<? extends Future<?>> futures;
+        private volatile boolean done;
+
+        Shutdown(List<? extends Future<?>> futures) {
+            this.futures = futures;
+        }
+
+        @Override
+        public void run() {
+            if (done) {
+                return;
+            }
+            synchronized (futures) {
+                done = true;
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+}
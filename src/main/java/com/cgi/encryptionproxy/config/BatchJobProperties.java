@@ -0,0 +1,145 @@
+package com.cgi.encryptionproxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "encryption.batch-job")
+public class BatchJobProperties {
+
+    public enum Mode { ENCRYPT, DECRYPT }
+
+    /**
+     * CSV file to process. The job runs at startup when set.
+     */
+    private String input;
+
+    /**
+     * CSV file to write. Its checkpoint is kept next to it as {@code <output>.checkpoint}.
+     */
+    private String output;
+
+    private Mode mode = Mode.ENCRYPT;
+
+    private String keyProvider;
+
+    private String keyName;
+
+    /**
+     * Key version for encryption; the latest version if unset.
+     */
+    private Integer keyVersion;
+
+    /**
+     * Header names of the columns to encrypt or decrypt.
+     */
+    private List<String> columns = new ArrayList<>();
+
+    /**
+     * Ciphertext format written when encrypting: v1 (version:ciphertext) or v2. Decryption reads both.
+     */
+    private String format = "v1";
+
+    private char delimiter = ',';
+
+    /**
+     * Rows per adapter call.
+     */
+    private int batchSize = 2000;
+
+    /**
+     * Batches in flight at a time. Together with the batch size this bounds the rows held in memory.
+     */
+    private int pipelineDepth = 4;
+
+    public String getInput() {
+        return input;
+    }
+
+    public void setInput(String input) {
+        this.input = input;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public String getKeyProvider() {
+        return keyProvider;
+    }
+
+    public void setKeyProvider(String keyProvider) {
+        this.keyProvider = keyProvider;
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+
+    public void setKeyName(String keyName) {
+        this.keyName = keyName;
+    }
+
+    public Integer getKeyVersion() {
+        return keyVersion;
+    }
+
+    public void setKeyVersion(Integer keyVersion) {
+        this.keyVersion = keyVersion;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    public void setPipelineDepth(int pipelineDepth) {
+        this.pipelineDepth = pipelineDepth;
+    }
+}
@@ -0,0 +1,63 @@
+package com.cgi.encryptionproxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "encryption.capture")
+public class CaptureProperties {
+
+    /**
+     * Registers the admin endpoints that start and stop captures.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory the workload captures are written to.
+     */
+    private String directory = System.getProperty("java.io.tmpdir");
+
+    /**
+     * Upper bound of a capture's duration, so a forgotten capture stops by itself.
+     */
+    private Duration maxDuration = Duration.ofHours(1);
+
+    /**
+     * Upper bound of a capture file's size in bytes.
+     */
+    private long maxBytes = 512L * 1024 * 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public Duration getMaxDuration() {
+        return maxDuration;
+    }
+
+    public void setMaxDuration(Duration maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+}
@@ -0,0 +1,142 @@
+package com.cgi.encryptionproxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "encryption.cluster")
+public class ClusterProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Base URL under which the other replicas reach this one, e.g. http://localhost:8081.
+     * Required for static peer lists; with DNS discovery the own address is detected
+     * from the local network interfaces if this is not set.
+     */
+    private String self;
+
+    /**
+     * Static list of peer base URLs, including this replica.
+     */
+    private List<String> peers = new ArrayList<>();
+
+    /**
+     * DNS name resolving to all replicas, e.g. a headless Kubernetes service.
+     */
+    private String dnsName;
+
+    private int dnsPort = 8080;
+
+    private String dnsScheme = "http";
+
+    private Duration refreshInterval = Duration.ofSeconds(30);
+
+    /**
+     * Shared secret authenticating requests between replicas.
+     */
+    private String secret;
+
+    /**
+     * Whether peers may be reached over plain http. Forwarded requests carry
+     * plaintexts, which the signature authenticates but does not encrypt, so only
+     * enable this where the network encrypts the traffic, e.g. in a TLS service mesh.
+     */
+    private boolean allowPlaintextHttp = false;
+
+    private int virtualNodes = 128;
+
+    private Duration timeout = Duration.ofSeconds(2);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public void setSelf(String self) {
+        this.self = self;
+    }
+
+    public List<String> getPeers() {
+        return peers;
+    }
+
+    public void setPeers(List<String> peers) {
+        this.peers = peers;
+    }
+
+    public String getDnsName() {
+        return dnsName;
+    }
+
+    public void setDnsName(String dnsName) {
+        this.dnsName = dnsName;
+    }
+
+    public int getDnsPort() {
+        return dnsPort;
+    }
+
+    public void setDnsPort(int dnsPort) {
+        this.dnsPort = dnsPort;
+    }
+
+    public String getDnsScheme() {
+        return dnsScheme;
+    }
+
+    public void setDnsScheme(String dnsScheme) {
+        this.dnsScheme = dnsScheme;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public void setSecret(String secret) {
+        this.secret = secret;
+    }
+
+    public boolean isAllowPlaintextHttp() {
+        return allowPlaintextHttp;
+    }
+
+    public void setAllowPlaintextHttp(boolean allowPlaintextHttp) {
+        this.allowPlaintextHttp = allowPlaintextHttp;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+}
@@ -0,0 +1,111 @@
+package com.cgi.encryptionproxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "encryption.datakey")
+public class DataKeyPoolProperties {
+
+    /**
+     * Number of pre-generated keys kept per provider, key and key length.
+     */
+    private int poolSize = 32;
+
+    /**
+     * A refill is started once a pool holds fewer keys than this.
+     */
+    private int refillThreshold = 16;
+
+    /**
+     * Pooled keys older than this are discarded instead of handed out.
+     */
+    private Duration maxAge = Duration.ofMinutes(10);
+
+    private int defaultBits = 256;
+
+    /**
+     * Key lengths clients may ask for.
+     */
+    private List<Integer> allowedBits = List.of(128, 192, 256);
+
+    private int maxCount = 1000;
+
+    /**
+     * Upper bound of the number of pools. Keys for further provider, key and length
+     * combinations are generated on demand without a pool.
+     */
+    private int maxPools = 256;
+
+    /**
+     * Pools no key was taken from for this long are dropped and no longer refilled.
+     */
+    private Duration idleTimeout = Duration.ofMinutes(30);
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getRefillThreshold() {
+        return refillThreshold;
+    }
+
+    public void setRefillThreshold(int refillThreshold) {
+        this.refillThreshold = refillThreshold;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public int getDefaultBits() {
+        return defaultBits;
+    }
+
+    public void setDefaultBits(int defaultBits) {
+        this.defaultBits = defaultBits;
+    }
+
+    public List<Integer> getAllowedBits() {
+        return allowedBits;
+    }
+
+    public void setAllowedBits(List<Integer> allowedBits) {
+        this.allowedBits = allowedBits;
+    }
+
+    public int getMaxCount() {
+        return maxCount;
+    }
+
+    public void setMaxCount(int maxCount) {
+        this.maxCount = maxCount;
+    }
+
+    public int getMaxPools() {
+        return maxPools;
+    }
+
+    public void setMaxPools(int maxPools) {
+        this.maxPools = maxPools;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+}
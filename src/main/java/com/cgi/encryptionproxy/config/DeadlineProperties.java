@@ -0,0 +1,50 @@
+package com.cgi.encryptionproxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "encryption.deadline")
+public class DeadlineProperties {
+
+    /**
+     * Header in which clients pass the time they are willing to wait, in milliseconds.
+     */
+    private String header = "X-Request-Timeout";
+
+    /**
+     * Deadline of requests without the header; none if unset.
+     */
+    private Duration defaultTimeout;
+
+    /**
+     * Upper bound of the deadline a client can ask for.
+     */
+    private Duration maxTimeout = Duration.ofMinutes(5);
+
+    public String getHeader() {
+        return header;
+    }
+
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+    public Duration getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    public void setDefaultTimeout(Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    public Duration getMaxTimeout() {
+        return maxTimeout;
+    }
+
+    public void setMaxTimeout(Duration maxTimeout) {
+        this.maxTimeout = maxTimeout;
+    }
+}
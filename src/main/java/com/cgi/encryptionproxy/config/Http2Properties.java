@@ -0,0 +1,70 @@
+package com.cgi.encryptionproxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Limits of HTTP/2 connections to the proxy ({@code server.http2.enabled=true}),
+ * which Spring Boot does not expose. Tomcat's defaults (100 streams, of which 20
+ * execute at once) assume a bounded thread pool; with virtual threads a single
+ * multiplexed client connection can use far more.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "encryption.http2")
+public class Http2Properties {
+
+    /**
+     * Streams a client may open at once on one connection.
+     */
+    private long maxConcurrentStreams = 1000;
+
+    /**
+     * Streams of one connection that are processed at once; the others wait.
+     */
+    private int maxConcurrentStreamExecution = 1000;
+
+    /**
+     * Initial flow control window per stream, so request bodies of batches need no
+     * window updates.
+     */
+    private int initialWindowSize = 1024 * 1024;
+
+    /**
+     * Idle time after which a connection without open streams is closed.
+     */
+    private Duration keepAliveTimeout = Duration.ofMinutes(2);
+
+    public long getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    public void setMaxConcurrentStreams(long maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    public int getMaxConcurrentStreamExecution() {
+        return maxConcurrentStreamExecution;
+    }
+
+    public void setMaxConcurrentStreamExecution(int maxConcurrentStreamExecution) {
+        this.maxConcurrentStreamExecution = maxConcurrentStreamExecution;
+    }
+
+    public int getInitialWindowSize() {
+        return initialWindowSize;
+    }
+
+    public void setInitialWindowSize(int initialWindowSize) {
+        this.initialWindowSize = initialWindowSize;
+    }
+
+    public Duration getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    public void setKeepAliveTimeout(Duration keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+}
@@ -22,6 +22,8 @@ public class ProviderProperties {
 
     public static class ProviderSettings {
         private String type;
+        // stable numeric id written into v2 ciphertexts, see CiphertextEnvelope
+        private Integer id;
         private Map<String, String> params = new HashMap<>();
 
         public String getType() {
@@ -32,6 +34,14 @@ public class ProviderProperties {
             this.type = type;
         }
 
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
         public Map<String, String> getParams() {
             return params;
         }
@@ -0,0 +1,50 @@
+package com.cgi.encryptionproxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "encryption.recording")
+public class RecordingProperties {
+
+    /**
+     * Registers the admin endpoints that start and stop recordings.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory the recordings are dumped to when stopped.
+     */
+    private String directory = System.getProperty("java.io.tmpdir");
+
+    /**
+     * Upper bound of a recording's duration, so a forgotten recording stops by itself.
+     */
+    private Duration maxDuration = Duration.ofMinutes(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public Duration getMaxDuration() {
+        return maxDuration;
+    }
+
+    public void setMaxDuration(Duration maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+}
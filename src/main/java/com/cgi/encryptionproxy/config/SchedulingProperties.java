@@ -0,0 +1,145 @@
+package com.cgi.encryptionproxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "encryption.scheduling")
+public class SchedulingProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Number of batches that may be processed by the adapters at the same time.
+     */
+    private int capacity = 64;
+
+    /**
+     * Header in which callers name their priority class.
+     */
+    private String priorityHeader = "X-Priority-Class";
+
+    /**
+     * Header identifying the calling client, used with {@link #clients}.
+     */
+    private String clientHeader = "X-Client-Id";
+
+    private String defaultLane = "interactive";
+
+    private Map<String, LaneSettings> lanes = new LinkedHashMap<>();
+
+    /**
+     * Maps client identities to lanes.
+     */
+    private Map<String, String> clients = new HashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public String getPriorityHeader() {
+        return priorityHeader;
+    }
+
+    public void setPriorityHeader(String priorityHeader) {
+        this.priorityHeader = priorityHeader;
+    }
+
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    public void setClientHeader(String clientHeader) {
+        this.clientHeader = clientHeader;
+    }
+
+    public String getDefaultLane() {
+        return defaultLane;
+    }
+
+    public void setDefaultLane(String defaultLane) {
+        this.defaultLane = defaultLane;
+    }
+
+    public Map<String, LaneSettings> getLanes() {
+        return lanes;
+    }
+
+    public void setLanes(Map<String, LaneSettings> lanes) {
+        this.lanes = lanes;
+    }
+
+    public Map<String, String> getClients() {
+        return clients;
+    }
+
+    public void setClients(Map<String, String> clients) {
+        this.clients = clients;
+    }
+
+    public static class LaneSettings {
+        /**
+         * Share of the capacity relative to the other lanes when they compete.
+         */
+        private int weight = 1;
+
+        /**
+         * Slots only this lane may use.
+         */
+        private int reserved = 0;
+
+        /**
+         * Upper bound of slots this lane may use, 0 for no bound.
+         */
+        private int maxConcurrency = 0;
+
+        public LaneSettings() {
+        }
+
+        public LaneSettings(int weight, int reserved, int maxConcurrency) {
+            this.weight = weight;
+            this.reserved = reserved;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+
+        public int getReserved() {
+            return reserved;
+        }
+
+        public void setReserved(int reserved) {
+            this.reserved = reserved;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+    }
+}
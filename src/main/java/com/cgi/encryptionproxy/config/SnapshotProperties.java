@@ -0,0 +1,80 @@
+package com.cgi.encryptionproxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "encryption.snapshot")
+public class SnapshotProperties {
+
+    private boolean enabled = false;
+
+    private String path = "encryptionproxy-cache.snapshot";
+
+    /**
+     * Provider and key wrapping the snapshot key.
+     */
+    private String keyProvider;
+
+    private String keyName;
+
+    /**
+     * Snapshots older than this are not loaded.
+     */
+    private Duration ttl = Duration.ofHours(1);
+
+    /**
+     * Interval of periodic snapshots, zero to write only on shutdown.
+     */
+    private Duration interval = Duration.ofMinutes(5);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getKeyProvider() {
+        return keyProvider;
+    }
+
+    public void setKeyProvider(String keyProvider) {
+        this.keyProvider = keyProvider;
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+
+    public void setKeyName(String keyName) {
+        this.keyName = keyName;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+}
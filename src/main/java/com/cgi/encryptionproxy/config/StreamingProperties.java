@@ -0,0 +1,35 @@
+package com.cgi.encryptionproxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "encryption.streaming")
+public class StreamingProperties {
+
+    /**
+     * Plaintext bytes per authenticated segment.
+     */
+    private int segmentSize = 64 * 1024;
+
+    /**
+     * Documents of a document stream whose fields are sent to the adapter as one batch.
+     */
+    private int documentWindow = 500;
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public int getDocumentWindow() {
+        return documentWindow;
+    }
+
+    public void setDocumentWindow(int documentWindow) {
+        this.documentWindow = documentWindow;
+    }
+}
@@ -0,0 +1,68 @@
+package com.cgi.encryptionproxy.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "encryption.unix-socket")
+public class UnixSocketProperties {
+
+    private boolean enabled = false;
+
+    private String path = "/var/run/encryptionproxy/proxy.sock";
+
+    /**
+     * POSIX permissions of the socket file; only users allowed to write it can connect.
+     */
+    private String permissions = "rw-rw----";
+
+    /**
+     * Scheduling lane of socket requests; the default lane if unset.
+     */
+    private String lane;
+
+    /**
+     * Largest accepted request frame.
+     */
+    private int maxFrameBytes = 16 * 1024 * 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getPermissions() {
+        return permissions;
+    }
+
+    public void setPermissions(String permissions) {
+        this.permissions = permissions;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    public void setLane(String lane) {
+        this.lane = lane;
+    }
+
+    public int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    public void setMaxFrameBytes(int maxFrameBytes) {
+        this.maxFrameBytes = maxFrameBytes;
+    }
+}
@@ -0,0 +1,61 @@
+package com.cgi.encryptionproxy.controller;
+
+import com.cgi.encryptionproxy.capture.CaptureStatus;
+import com.cgi.encryptionproxy.capture.WorkloadCapture;
+import com.cgi.encryptionproxy.exception.ErrorResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+@RestController
+@ConditionalOnProperty(prefix = "encryption.capture", name = "enabled", havingValue = "true")
+@RequestMapping("/api/v1/admin/capture")
+public class CaptureAdminController {
+
+    private final WorkloadCapture workloadCapture;
+
+    public CaptureAdminController(WorkloadCapture workloadCapture) {
+        this.workloadCapture = workloadCapture;
+    }
+
+    @GetMapping
+    public ResponseEntity<CaptureStatus> status() {
+        return ResponseEntity.ok(workloadCapture.status());
+    }
+
+    /**
+     * Starts capturing the workload, e.g. {@code ?duration=PT15M}.
+     */
+    @PostMapping("/start")
+    public ResponseEntity<CaptureStatus> start(@RequestParam(required = false) Duration duration) {
+        return ResponseEntity.ok(workloadCapture.start(duration));
+    }
+
+    /**
+     * Stops the capture and returns the path of the capture file.
+     */
+    @PostMapping("/stop")
+    public ResponseEntity<CaptureStatus> stop() {
+        return ResponseEntity.ok(workloadCapture.stop());
+    }
+
+    /**
+     * Starting while a capture runs, or stopping before one was started.
+     */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<ErrorResponse> handleIllegalStateException(IllegalStateException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Capture Conflict",
+                ex.getMessage(),
+                HttpStatus.CONFLICT.value());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+}
@@ -0,0 +1,65 @@
+package com.cgi.encryptionproxy.controller;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.cluster.ClusterDecryptRequest;
+import com.cgi.encryptionproxy.cluster.ClusterRouter;
+import com.cgi.encryptionproxy.cluster.ClusterSigner;
+import com.cgi.encryptionproxy.dto.PlaintextResponse;
+import com.cgi.encryptionproxy.service.ProviderRegistryService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Internal endpoint receiving decrypt items from other replicas. Items arriving here
+ * are owned by this replica and are decrypted locally, never forwarded again.
+ */
+@RestController
+public class ClusterController {
+
+    private final ProviderRegistryService providerRegistryService;
+    private final ClusterRouter clusterRouter;
+    private final ObjectMapper objectMapper;
+
+    public ClusterController(ProviderRegistryService providerRegistryService, ClusterRouter clusterRouter,
+            ObjectMapper objectMapper) {
+        this.providerRegistryService = providerRegistryService;
+        this.clusterRouter = clusterRouter;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostMapping(ClusterRouter.DECRYPT_PATH)
+    public ResponseEntity<List<PlaintextResponse>> decrypt(@RequestBody byte[] body,
+            @RequestHeader(value = ClusterSigner.TIMESTAMP_HEADER, required = false) String timestamp,
+            @RequestHeader(value = ClusterSigner.SIGNATURE_HEADER, required = false) String signature) {
+        ClusterSigner signer = clusterRouter.signer();
+        if (signer == null || !signer.verify(ClusterRouter.DECRYPT_PATH, timestamp, body, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        ClusterDecryptRequest request = objectMapper.readValue(body, ClusterDecryptRequest.class);
+        List<DecryptOperation> tasks = request.ciphertexts().stream()
+                .map(ciphertext -> DecryptOperation.parse(request.provider(), request.keyName(), ciphertext))
+                .toList();
+
+        BatchResult results = providerRegistryService.getProvider(request.provider()).decryptBatch(tasks);
+
+        List<PlaintextResponse> responses = IntStream.range(0, results.size())
+                .mapToObj(i -> results.isFailed(i)
+                        ? PlaintextResponse.failed(results.error(i))
+                        : new PlaintextResponse(results.value(i)))
+                .collect(Collectors.toList());
+
+        return ResponseEntity.status(results.hasFailures() ? HttpStatus.MULTI_STATUS : HttpStatus.OK)
+                .body(responses);
+    }
+}
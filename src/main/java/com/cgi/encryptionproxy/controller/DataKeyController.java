@@ -0,0 +1,37 @@
+package com.cgi.encryptionproxy.controller;
+
+import com.cgi.encryptionproxy.dto.DataKeyRequest;
+import com.cgi.encryptionproxy.dto.DataKeyResponse;
+import com.cgi.encryptionproxy.service.DataKeyPoolService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/v1/datakey")
+public class DataKeyController {
+
+    private final DataKeyPoolService dataKeyPoolService;
+
+    public DataKeyController(DataKeyPoolService dataKeyPoolService) {
+        this.dataKeyPoolService = dataKeyPoolService;
+    }
+
+    @PostMapping
+    public ResponseEntity<List<DataKeyResponse>> dataKey(@RequestBody DataKeyRequest request) {
+        int count = request.getCount() == null ? 1 : request.getCount();
+
+        List<DataKeyResponse> responses = dataKeyPoolService
+                .take(request.getKeyProvider(), request.getKeyName(), request.getBits(), count)
+                .stream()
+                .map(key -> new DataKeyResponse(key.plaintext(), key.ciphertext()))
+                .collect(Collectors.toList());
+
+        return ResponseEntity.ok(responses);
+    }
+}
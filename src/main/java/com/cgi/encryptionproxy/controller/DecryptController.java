@@ -1,12 +1,17 @@
 package com.cgi.encryptionproxy.controller;
 
+import com.cgi.encryptionproxy.adapters.BatchResult;
 import com.cgi.encryptionproxy.adapters.DecryptOperation;
-import com.cgi.encryptionproxy.adapters.IKmsAdapter;
 import com.cgi.encryptionproxy.dto.CiphertextRequest;
 import com.cgi.encryptionproxy.dto.PlaintextResponse;
-import com.cgi.encryptionproxy.service.ProviderRegistryService;
+import com.cgi.encryptionproxy.scheduling.FairScheduler;
+import com.cgi.encryptionproxy.service.BatchDispatchService;
+import com.cgi.encryptionproxy.service.CiphertextEnvelopeService;
+import com.cgi.encryptionproxy.service.IdempotencyService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -15,7 +20,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 @RestController
 @RequestMapping("/api/v1/decrypt")
@@ -23,23 +28,46 @@ public class DecryptController {
 
     private static final Logger log = LoggerFactory.getLogger(DecryptController.class);
 
-    private final ProviderRegistryService providerRegistryService;
+    private final FairScheduler scheduler;
+    private final BatchDispatchService batchDispatchService;
+    private final IdempotencyService idempotencyService;
+    private final CiphertextEnvelopeService ciphertextEnvelopeService;
 
-    public DecryptController(ProviderRegistryService providerRegistryService) {
-        this.providerRegistryService = providerRegistryService;
+    public DecryptController(FairScheduler scheduler, BatchDispatchService batchDispatchService,
+            IdempotencyService idempotencyService, CiphertextEnvelopeService ciphertextEnvelopeService) {
+        this.scheduler = scheduler;
+        this.batchDispatchService = batchDispatchService;
+        this.idempotencyService = idempotencyService;
+        this.ciphertextEnvelopeService = ciphertextEnvelopeService;
     }
 
     @PostMapping
-    public ResponseEntity<List<PlaintextResponse>> decrypt(@RequestBody CiphertextRequest request) {
-        List<DecryptOperation> tasks = request.toCryptoTasks(request.getKeyProvider());
+    public ResponseEntity<List<PlaintextResponse>> decrypt(@RequestBody CiphertextRequest request,
+            HttpServletRequest httpRequest) {
+        return idempotencyService.execute(httpRequest, request, () -> process(request, httpRequest));
+    }
+
+    private ResponseEntity<List<PlaintextResponse>> process(CiphertextRequest request,
+            HttpServletRequest httpRequest) {
+        List<DecryptOperation> tasks = ciphertextEnvelopeService.toCryptoTasks(request);
         log.info("Received decrypt with {} items", tasks.size());
-        IKmsAdapter adapter = providerRegistryService.getProvider(request.getKeyProvider());
-        String[] results = adapter.decryptBatch(tasks);
+        // v2 ciphertexts name their provider and key, the request need not
+        String provider = request.getKeyProvider() != null || tasks.isEmpty()
+                ? request.getKeyProvider() : tasks.getFirst().provider();
+        String keyName = request.getKeyName() != null || tasks.isEmpty()
+                ? request.getKeyName() : tasks.getFirst().keyName();
+        String lane = scheduler.resolveLane(httpRequest);
+        BatchResult results = batchDispatchService.dispatch("decrypt", provider, keyName, lane, tasks,
+                DecryptOperation::ciphertext, () -> ciphertextEnvelopeService.decryptBatch(tasks));
 
-        List<PlaintextResponse> responses = Stream.of(results)
-                .map(PlaintextResponse::new)
+        List<PlaintextResponse> responses = IntStream.range(0, results.size())
+                .mapToObj(i -> results.isFailed(i)
+                        ? PlaintextResponse.failed(results.error(i))
+                        : new PlaintextResponse(results.value(i)))
                 .collect(Collectors.toList());
 
-        return ResponseEntity.ok(responses);
+        // 207 tells the client to check the per-item status instead of resending the batch
+        return ResponseEntity.status(results.hasFailures() ? HttpStatus.MULTI_STATUS : HttpStatus.OK)
+                .body(responses);
     }
 }
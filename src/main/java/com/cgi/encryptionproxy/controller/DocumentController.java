@@ -0,0 +1,68 @@
+package com.cgi.encryptionproxy.controller;
+
+import com.cgi.encryptionproxy.dto.DocumentRequest;
+import com.cgi.encryptionproxy.dto.DocumentResponse;
+import com.cgi.encryptionproxy.scheduling.FairScheduler;
+import com.cgi.encryptionproxy.service.DocumentEncryptionService;
+import com.cgi.encryptionproxy.service.DocumentEncryptionService.Selection;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Field-level encryption of JSON documents: the selected fields of all documents are
+ * encrypted or decrypted in place with as few adapter calls as possible. Documents
+ * are sent either as a JSON request or as an NDJSON stream.
+ */
+@RestController
+@RequestMapping("/api/v1/documents")
+public class DocumentController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final DocumentEncryptionService documentEncryptionService;
+    private final FairScheduler scheduler;
+
+    public DocumentController(DocumentEncryptionService documentEncryptionService, FairScheduler scheduler) {
+        this.documentEncryptionService = documentEncryptionService;
+        this.scheduler = scheduler;
+    }
+
+    @PostMapping(path = "/{operation:encrypt|decrypt}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DocumentResponse> process(@PathVariable String operation,
+            @RequestBody DocumentRequest request, HttpServletRequest httpRequest) {
+        if (request.getDocuments() == null) {
+            throw new IllegalArgumentException("documents must not be null");
+        }
+        Selection selection = Selection.of(request.getKeyProvider(), request.getKeyName(), request.getKeyVersion(),
+                request.getFields(), request.getFormat());
+        List<DocumentResponse.FieldError> errors = documentEncryptionService.process("encrypt".equals(operation),
+                selection, request.getDocuments(), 0, scheduler.resolveLane(httpRequest));
+
+        // 207 tells the client to check the errors instead of resending the documents
+        return ResponseEntity.status(errors.isEmpty() ? HttpStatus.OK : HttpStatus.MULTI_STATUS)
+                .body(new DocumentResponse(request.getDocuments(), errors));
+    }
+
+    @PostMapping(path = "/{operation:encrypt|decrypt}", consumes = NDJSON)
+    public void processStream(@PathVariable String operation, @RequestParam(required = false) String keyProvider,
+            @RequestParam(required = false) String keyName, @RequestParam(required = false) Integer keyVersion,
+            @RequestParam List<String> fields, @RequestParam(required = false) String format,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Selection selection = Selection.of(keyProvider, keyName, keyVersion, fields, format);
+        response.setContentType(NDJSON);
+        documentEncryptionService.processStream("encrypt".equals(operation), selection, request.getInputStream(),
+                response.getOutputStream(), scheduler.resolveLane(request));
+    }
+}
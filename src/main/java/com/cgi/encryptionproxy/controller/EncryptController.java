@@ -1,10 +1,17 @@
 package com.cgi.encryptionproxy.controller;
 
+import com.cgi.encryptionproxy.adapters.BatchResult;
 import com.cgi.encryptionproxy.adapters.EncryptOperation;
 import com.cgi.encryptionproxy.adapters.IKmsAdapter;
 import com.cgi.encryptionproxy.dto.CiphertextResponse;
 import com.cgi.encryptionproxy.dto.PlaintextRequest;
+import com.cgi.encryptionproxy.scheduling.FairScheduler;
+import com.cgi.encryptionproxy.service.BatchDispatchService;
+import com.cgi.encryptionproxy.service.CiphertextEnvelopeService;
+import com.cgi.encryptionproxy.service.IdempotencyService;
 import com.cgi.encryptionproxy.service.ProviderRegistryService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -13,28 +20,57 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 @RestController
 @RequestMapping("/api/v1/encrypt")
 public class EncryptController {
 
     private final ProviderRegistryService providerRegistryService;
+    private final FairScheduler scheduler;
+    private final BatchDispatchService batchDispatchService;
+    private final IdempotencyService idempotencyService;
+    private final CiphertextEnvelopeService ciphertextEnvelopeService;
 
-    public EncryptController(ProviderRegistryService providerRegistryService) {
+    public EncryptController(ProviderRegistryService providerRegistryService, FairScheduler scheduler,
+            BatchDispatchService batchDispatchService, IdempotencyService idempotencyService,
+            CiphertextEnvelopeService ciphertextEnvelopeService) {
         this.providerRegistryService = providerRegistryService;
+        this.scheduler = scheduler;
+        this.batchDispatchService = batchDispatchService;
+        this.idempotencyService = idempotencyService;
+        this.ciphertextEnvelopeService = ciphertextEnvelopeService;
     }
 
     @PostMapping
-    public ResponseEntity<List<CiphertextResponse>> encrypt(@RequestBody PlaintextRequest request) {
+    public ResponseEntity<List<CiphertextResponse>> encrypt(@RequestBody PlaintextRequest request,
+            HttpServletRequest httpRequest) {
+        return idempotencyService.execute(httpRequest, request, () -> process(request, httpRequest));
+    }
+
+    private ResponseEntity<List<CiphertextResponse>> process(PlaintextRequest request,
+            HttpServletRequest httpRequest) {
         IKmsAdapter adapter = providerRegistryService.getProvider(request.getKeyProvider());
         List<EncryptOperation> tasks = request.toCryptoTasks(request.getKeyProvider());
-        String[] results = adapter.encryptBatch(tasks);
+        boolean envelope = request.isEnvelopeFormat();
+        if (envelope) {
+            ciphertextEnvelopeService.checkWrappable(request.getKeyProvider(), request.getKeyName());
+        }
+        String lane = scheduler.resolveLane(httpRequest);
+        BatchResult results = batchDispatchService.dispatch("encrypt", request.getKeyProvider(),
+                request.getKeyName(), lane, tasks, EncryptOperation::plaintext, () -> adapter.encryptBatch(tasks));
+        if (envelope) {
+            ciphertextEnvelopeService.wrap(request.getKeyProvider(), request.getKeyName(), results);
+        }
 
-        List<CiphertextResponse> responses = Stream.of(results)
-                .map(CiphertextResponse::new)
+        List<CiphertextResponse> responses = IntStream.range(0, results.size())
+                .mapToObj(i -> results.isFailed(i)
+                        ? CiphertextResponse.failed(results.error(i))
+                        : new CiphertextResponse(results.value(i)))
                 .collect(Collectors.toList());
 
-        return ResponseEntity.ok(responses);
+        // 207 tells the client to check the per-item status instead of resending the batch
+        return ResponseEntity.status(results.hasFailures() ? HttpStatus.MULTI_STATUS : HttpStatus.OK)
+                .body(responses);
     }
 }
@@ -0,0 +1,60 @@
+package com.cgi.encryptionproxy.controller;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.HmacOperation;
+import com.cgi.encryptionproxy.adapters.IKmsAdapter;
+import com.cgi.encryptionproxy.dto.HmacRequest;
+import com.cgi.encryptionproxy.dto.HmacResponse;
+import com.cgi.encryptionproxy.scheduling.FairScheduler;
+import com.cgi.encryptionproxy.service.BatchDispatchService;
+import com.cgi.encryptionproxy.service.ProviderRegistryService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Deterministic keyed hashes for blind indexes: store the HMAC next to the encrypted
+ * column and search by equality on it instead of decrypting every row.
+ */
+@RestController
+@RequestMapping("/api/v1/hmac")
+public class HmacController {
+
+    private final ProviderRegistryService providerRegistryService;
+    private final FairScheduler scheduler;
+    private final BatchDispatchService batchDispatchService;
+
+    public HmacController(ProviderRegistryService providerRegistryService, FairScheduler scheduler,
+            BatchDispatchService batchDispatchService) {
+        this.providerRegistryService = providerRegistryService;
+        this.scheduler = scheduler;
+        this.batchDispatchService = batchDispatchService;
+    }
+
+    @PostMapping
+    public ResponseEntity<List<HmacResponse>> hmac(@RequestBody HmacRequest request,
+            HttpServletRequest httpRequest) {
+        IKmsAdapter adapter = providerRegistryService.getProvider(request.getKeyProvider());
+        List<HmacOperation> tasks = request.toCryptoTasks(request.getKeyProvider());
+        String lane = scheduler.resolveLane(httpRequest);
+        BatchResult results = batchDispatchService.dispatch("hmac", request.getKeyProvider(), request.getKeyName(),
+                lane, tasks, HmacOperation::input, () -> adapter.hmacBatch(tasks));
+
+        List<HmacResponse> responses = IntStream.range(0, results.size())
+                .mapToObj(i -> results.isFailed(i)
+                        ? HmacResponse.failed(results.error(i))
+                        : new HmacResponse(results.value(i)))
+                .collect(Collectors.toList());
+
+        return ResponseEntity.status(results.hasFailures() ? HttpStatus.MULTI_STATUS : HttpStatus.OK)
+                .body(responses);
+    }
+}
@@ -0,0 +1,62 @@
+package com.cgi.encryptionproxy.controller;
+
+import com.cgi.encryptionproxy.exception.ErrorResponse;
+import com.cgi.encryptionproxy.jfr.RecordingStatus;
+import com.cgi.encryptionproxy.service.RecordingService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+@RestController
+@ConditionalOnProperty(prefix = "encryption.recording", name = "enabled", havingValue = "true")
+@RequestMapping("/api/v1/admin/recording")
+public class RecordingAdminController {
+
+    private final RecordingService recordingService;
+
+    public RecordingAdminController(RecordingService recordingService) {
+        this.recordingService = recordingService;
+    }
+
+    @GetMapping
+    public ResponseEntity<RecordingStatus> status() {
+        return ResponseEntity.ok(recordingService.status());
+    }
+
+    /**
+     * Starts a Flight Recorder recording, e.g. {@code ?settings=profile&duration=PT5M}.
+     */
+    @PostMapping("/start")
+    public ResponseEntity<RecordingStatus> start(@RequestParam(defaultValue = "default") String settings,
+            @RequestParam(required = false) Duration duration) {
+        return ResponseEntity.ok(recordingService.start(settings, duration));
+    }
+
+    /**
+     * Stops the recording and returns the path of the dump.
+     */
+    @PostMapping("/stop")
+    public ResponseEntity<RecordingStatus> stop() {
+        return ResponseEntity.ok(recordingService.stop());
+    }
+
+    /**
+     * Starting while a recording runs, or stopping before one was started.
+     */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<ErrorResponse> handleIllegalStateException(IllegalStateException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Recording Conflict",
+                ex.getMessage(),
+                HttpStatus.CONFLICT.value());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+}
@@ -0,0 +1,29 @@
+package com.cgi.encryptionproxy.controller;
+
+import com.cgi.encryptionproxy.scheduling.FairScheduler;
+import com.cgi.encryptionproxy.scheduling.LaneStats;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/admin/scheduler")
+public class SchedulerAdminController {
+
+    private final FairScheduler scheduler;
+
+    public SchedulerAdminController(FairScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Queue wait times and occupancy per priority lane.
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, LaneStats>> stats() {
+        return ResponseEntity.ok(scheduler.stats());
+    }
+}
@@ -0,0 +1,60 @@
+package com.cgi.encryptionproxy.controller;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.IKmsAdapter;
+import com.cgi.encryptionproxy.adapters.SignOperation;
+import com.cgi.encryptionproxy.dto.SignRequest;
+import com.cgi.encryptionproxy.dto.SignResponse;
+import com.cgi.encryptionproxy.scheduling.FairScheduler;
+import com.cgi.encryptionproxy.service.BatchDispatchService;
+import com.cgi.encryptionproxy.service.ProviderRegistryService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Signatures with the asymmetric keys of the KMS. Signing always calls the KMS,
+ * verification (see {@link VerifyController}) does not.
+ */
+@RestController
+@RequestMapping("/api/v1/sign")
+public class SignController {
+
+    private final ProviderRegistryService providerRegistryService;
+    private final FairScheduler scheduler;
+    private final BatchDispatchService batchDispatchService;
+
+    public SignController(ProviderRegistryService providerRegistryService, FairScheduler scheduler,
+            BatchDispatchService batchDispatchService) {
+        this.providerRegistryService = providerRegistryService;
+        this.scheduler = scheduler;
+        this.batchDispatchService = batchDispatchService;
+    }
+
+    @PostMapping
+    public ResponseEntity<List<SignResponse>> sign(@RequestBody SignRequest request,
+            HttpServletRequest httpRequest) {
+        IKmsAdapter adapter = providerRegistryService.getProvider(request.getKeyProvider());
+        List<SignOperation> tasks = request.toCryptoTasks(request.getKeyProvider());
+        String lane = scheduler.resolveLane(httpRequest);
+        BatchResult results = batchDispatchService.dispatch("sign", request.getKeyProvider(), lane, tasks.size(),
+                () -> adapter.signBatch(tasks));
+
+        List<SignResponse> responses = IntStream.range(0, results.size())
+                .mapToObj(i -> results.isFailed(i)
+                        ? SignResponse.failed(results.error(i))
+                        : new SignResponse(results.value(i)))
+                .collect(Collectors.toList());
+
+        return ResponseEntity.status(results.hasFailures() ? HttpStatus.MULTI_STATUS : HttpStatus.OK)
+                .body(responses);
+    }
+}
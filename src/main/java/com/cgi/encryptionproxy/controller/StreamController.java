@@ -0,0 +1,45 @@
+package com.cgi.encryptionproxy.controller;
+
+import com.cgi.encryptionproxy.service.StreamingEncryptionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+/**
+ * Streaming encryption of large objects. Request and response bodies are raw bytes
+ * and are processed segment by segment, never held in memory as a whole.
+ */
+@RestController
+@RequestMapping("/api/v1/stream")
+public class StreamController {
+
+    private final StreamingEncryptionService streamingEncryptionService;
+
+    public StreamController(StreamingEncryptionService streamingEncryptionService) {
+        this.streamingEncryptionService = streamingEncryptionService;
+    }
+
+    @PostMapping(path = "/encrypt", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void encrypt(@RequestParam String keyProvider, @RequestParam String keyName,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        streamingEncryptionService.encrypt(keyProvider, keyName,
+                Channels.newChannel(request.getInputStream()),
+                Channels.newChannel(response.getOutputStream()));
+    }
+
+    @PostMapping(path = "/decrypt", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void decrypt(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        streamingEncryptionService.decrypt(
+                Channels.newChannel(request.getInputStream()),
+                Channels.newChannel(response.getOutputStream()));
+    }
+}
@@ -0,0 +1,60 @@
+package com.cgi.encryptionproxy.controller;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.IKmsAdapter;
+import com.cgi.encryptionproxy.adapters.VerifyOperation;
+import com.cgi.encryptionproxy.dto.VerifyRequest;
+import com.cgi.encryptionproxy.dto.VerifyResponse;
+import com.cgi.encryptionproxy.scheduling.FairScheduler;
+import com.cgi.encryptionproxy.service.BatchDispatchService;
+import com.cgi.encryptionproxy.service.ProviderRegistryService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Verifies signatures of {@link SignController} locally with the cached public keys
+ * of the signing key versions.
+ */
+@RestController
+@RequestMapping("/api/v1/verify")
+public class VerifyController {
+
+    private final ProviderRegistryService providerRegistryService;
+    private final FairScheduler scheduler;
+    private final BatchDispatchService batchDispatchService;
+
+    public VerifyController(ProviderRegistryService providerRegistryService, FairScheduler scheduler,
+            BatchDispatchService batchDispatchService) {
+        this.providerRegistryService = providerRegistryService;
+        this.scheduler = scheduler;
+        this.batchDispatchService = batchDispatchService;
+    }
+
+    @PostMapping
+    public ResponseEntity<List<VerifyResponse>> verify(@RequestBody VerifyRequest request,
+            HttpServletRequest httpRequest) {
+        IKmsAdapter adapter = providerRegistryService.getProvider(request.getKeyProvider());
+        List<VerifyOperation> tasks = request.toCryptoTasks(request.getKeyProvider());
+        String lane = scheduler.resolveLane(httpRequest);
+        BatchResult results = batchDispatchService.dispatch("verify", request.getKeyProvider(), lane, tasks.size(),
+                () -> adapter.verifyBatch(tasks));
+
+        List<VerifyResponse> responses = IntStream.range(0, results.size())
+                .mapToObj(i -> results.isFailed(i)
+                        ? VerifyResponse.failed(results.error(i))
+                        : new VerifyResponse(Boolean.parseBoolean(results.value(i))))
+                .collect(Collectors.toList());
+
+        return ResponseEntity.status(results.hasFailures() ? HttpStatus.MULTI_STATUS : HttpStatus.OK)
+                .body(responses);
+    }
+}
@@ -0,0 +1,313 @@
+package com.cgi.encryptionproxy.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Self-describing ciphertext format v2. Unlike {@code version:ciphertext} it names
+ * the provider and key, so it can be decrypted without {@code keyProvider} and
+ * {@code keyName}, and values of different providers and keys can share one request.
+ * <pre>
+ * Base64( format(1) = 2 | flags(1) | varint provider id | varint key version
+ *       | key: 16 byte UUID if flags has 0x01, else varint length | UTF-8 key name
+ *       | zero bytes up to a multiple of 3 )
+ * followed by the provider's Base64 ciphertext
+ * </pre>
+ * Padding the header to whole Base64 groups leaves the provider's ciphertext
+ * unchanged as the tail of the string, so nothing is decoded or re-encoded to pass it
+ * on. Legacy values start with a digit, v2 values always with {@code A} (the first
+ * six bits of the format byte). A key name of 9 characters makes a header of 20
+ * characters.
+ */
+public final class CiphertextEnvelope {
+
+    public static final int FORMAT = 2;
+    public static final int FLAG_UUID_KEY = 0x01;
+    public static final int MAX_KEY_NAME_BYTES = 255;
+
+    // format, flags, two 5 byte varints, a 2 byte length and the key, padded to whole groups
+    private static final int MAX_HEADER_BYTES = (1 + 1 + 5 + 5 + 2 + MAX_KEY_NAME_BYTES + 2) / 3 * 3;
+    private static final int UUID_BYTES = 16;
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private CiphertextEnvelope() {
+    }
+
+    /**
+     * Whether a request's {@code format} asks for v2 ciphertexts: {@code v1}
+     * (version:ciphertext, the default) or {@code v2}.
+     *
+     * @throws IllegalArgumentException for other formats
+     */
+    public static boolean isRequested(String format) {
+        if (format == null || format.equals("v1")) {
+            return false;
+        }
+        if (format.equals("v2")) {
+            return true;
+        }
+        throw new IllegalArgumentException("Unknown ciphertext format " + format + ", expected v1 or v2");
+    }
+
+    /**
+     * Whether the value is in the v2 format, judged by its first character only.
+     */
+    public static boolean isEnvelope(String value) {
+        return value != null && !value.isEmpty() && value.charAt(0) == 'A';
+    }
+
+    /**
+     * @param ciphertext the provider's Base64 ciphertext, without the version prefix
+     */
+    public static String encode(int providerId, String keyName, int keyVersion, String ciphertext) {
+        byte[] header = new byte[MAX_HEADER_BYTES];
+        int position = 0;
+        header[position++] = FORMAT;
+        UUID uuid = parseUuid(keyName);
+        header[position++] = (byte) (uuid != null ? FLAG_UUID_KEY : 0);
+        position = writeVarInt(header, position, providerId);
+        position = writeVarInt(header, position, keyVersion);
+        if (uuid != null) {
+            position = writeLong(header, position, uuid.getMostSignificantBits());
+            position = writeLong(header, position, uuid.getLeastSignificantBits());
+        } else {
+            byte[] name = checkKeyName(keyName);
+            position = writeVarInt(header, position, name.length);
+            System.arraycopy(name, 0, header, position, name.length);
+            position += name.length;
+        }
+        int padded = (position + 2) / 3 * 3;
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(header, padded)) + ciphertext;
+    }
+
+    /**
+     * Checks that the key name fits into a v2 header.
+     *
+     * @return the UTF-8 encoded name
+     * @throws IllegalArgumentException if the name is missing or longer than {@link #MAX_KEY_NAME_BYTES}
+     */
+    public static byte[] checkKeyName(String keyName) {
+        if (keyName == null) {
+            throw new IllegalArgumentException("The v2 ciphertext format requires a key name");
+        }
+        byte[] name = keyName.getBytes(StandardCharsets.UTF_8);
+        if (name.length == 0 || name.length > MAX_KEY_NAME_BYTES) {
+            throw new IllegalArgumentException("Key name must have 1 to " + MAX_KEY_NAME_BYTES + " bytes: " + keyName);
+        }
+        return name;
+    }
+
+    /**
+     * The key as it is named in canonical UUID form, which is stored in 16 bytes, or null.
+     */
+    private static UUID parseUuid(String keyName) {
+        if (keyName.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(keyName);
+            return uuid.toString().equals(keyName) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int writeVarInt(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int writeLong(byte[] buffer, int position, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+        return position;
+    }
+
+    /**
+     * Reads v2 headers. A reader is reused for all values of a batch: reading decodes
+     * only the header into a fixed buffer and allocates nothing, and the key name
+     * string is only created when it differs from the previous value's.
+     * Not thread safe.
+     */
+    public static final class Reader {
+
+        private final byte[] header = new byte[MAX_HEADER_BYTES];
+        private final byte[] lastKey = new byte[MAX_KEY_NAME_BYTES];
+        private String value;
+        private int decoded;
+        private int flags;
+        private int providerId;
+        private int keyVersion;
+        private int keyOffset;
+        private int keyLength;
+        private int payloadOffset;
+        private int lastKeyLength = -1;
+        private int lastKeyFlags;
+        private String lastKeyName;
+
+        /**
+         * @return false if the value is no well-formed v2 header followed by a payload
+         */
+        public boolean read(String value) {
+            this.value = value;
+            this.decoded = 0;
+            if (!isEnvelope(value) || byteAt(0) != FORMAT) {
+                return false;
+            }
+            flags = byteAt(1);
+            if (flags < 0 || (flags & ~FLAG_UUID_KEY) != 0) {
+                return false;
+            }
+            int position = 2;
+            long id = readVarInt(position);
+            position += varIntLength(id);
+            long version = id < 0 ? -1 : readVarInt(position);
+            position += varIntLength(version);
+            if (id < 0 || version < 0) {
+                return false;
+            }
+            providerId = (int) id;
+            keyVersion = (int) version;
+
+            if ((flags & FLAG_UUID_KEY) != 0) {
+                keyLength = UUID_BYTES;
+            } else {
+                long length = readVarInt(position);
+                if (length < 1 || length > MAX_KEY_NAME_BYTES) {
+                    return false;
+                }
+                position += varIntLength(length);
+                keyLength = (int) length;
+            }
+            keyOffset = position;
+            position += keyLength;
+            int headerLength = (position + 2) / 3 * 3;
+            for (int i = position; i < headerLength; i++) {
+                if (byteAt(i) != 0) {
+                    return false;
+                }
+            }
+            if (byteAt(headerLength - 1) < 0) {
+                return false;
+            }
+            payloadOffset = headerLength / 3 * 4;
+            return payloadOffset < value.length();
+        }
+
+        public int providerId() {
+            return providerId;
+        }
+
+        public int keyVersion() {
+            return keyVersion;
+        }
+
+        /**
+         * @return the key name of the last value read, the same instance as before if
+         * it did not change
+         */
+        public String keyName() {
+            if (lastKeyName != null && lastKeyFlags == flags && lastKeyLength == keyLength
+                    && Arrays.equals(header, keyOffset, keyOffset + keyLength, lastKey, 0, keyLength)) {
+                return lastKeyName;
+            }
+            if ((flags & FLAG_UUID_KEY) != 0) {
+                lastKeyName = new UUID(readLong(keyOffset), readLong(keyOffset + 8)).toString();
+            } else {
+                lastKeyName = new String(header, keyOffset, keyLength, StandardCharsets.UTF_8);
+            }
+            System.arraycopy(header, keyOffset, lastKey, 0, keyLength);
+            lastKeyLength = keyLength;
+            lastKeyFlags = flags;
+            return lastKeyName;
+        }
+
+        /**
+         * @return the provider's Base64 ciphertext of the last value read
+         */
+        public String payload() {
+            return value.substring(payloadOffset);
+        }
+
+        /**
+         * @return the header byte at the index, or -1 past the end of the header or
+         * the value
+         */
+        private int byteAt(int index) {
+            if (index >= MAX_HEADER_BYTES) {
+                return -1;
+            }
+            // decode whole groups of 4 characters into 3 bytes until the index is reached
+            while (decoded <= index) {
+                int chars = decoded / 3 * 4;
+                if (chars + 4 > value.length()) {
+                    return -1;
+                }
+                int group = 0;
+                for (int i = 0; i < 4; i++) {
+                    char c = value.charAt(chars + i);
+                    int sextet = c < 128 ? DECODE[c] : -1;
+                    if (sextet < 0) {
+                        return -1;
+                    }
+                    group = group << 6 | sextet;
+                }
+                header[decoded++] = (byte) (group >>> 16);
+                header[decoded++] = (byte) (group >>> 8);
+                header[decoded++] = (byte) group;
+            }
+            return header[index] & 0xFF;
+        }
+
+        /**
+         * @return the non-negative 31 bit value, or -1 if it is malformed, too large or
+         * not in its shortest form, whose length {@link #varIntLength} assumes
+         */
+        private long readVarInt(int position) {
+            long result = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = byteAt(position++);
+                if (b < 0) {
+                    return -1;
+                }
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result <= Integer.MAX_VALUE && (b != 0 || shift == 0) ? result : -1;
+                }
+            }
+            return -1;
+        }
+
+        private static int varIntLength(long value) {
+            int length = 1;
+            while (value >= 0x80) {
+                value >>>= 7;
+                length++;
+            }
+            return length;
+        }
+
+        private long readLong(int position) {
+            long result = 0;
+            for (int i = 0; i < 8; i++) {
+                result = result << 8 | (header[position + i] & 0xFF);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.cgi.encryptionproxy.crypto;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Segmented AES-256-GCM for objects of any size, in the spirit of the STREAM
+ * construction.
+ * <p>
+ * Layout: header, then segments of {@code segmentSize} plaintext bytes plus a 16 byte
+ * tag each; only the last segment may be shorter (or empty). The nonce of a segment
+ * is {@code prefix(7) || index(4, big endian) || lastFlag(1)}, and the header is the
+ * associated data of every segment. Reordered, dropped or truncated segments and a
+ * modified header therefore all fail authentication.
+ * <p>
+ * Memory use is two plaintext segments and one ciphertext segment, independent of
+ * the object size.
+ */
+public final class StreamingAead {
+
+    public static final int TAG_LENGTH = 16;
+    public static final int MIN_SEGMENT_SIZE = 1024;
+    public static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final byte[] MAGIC = {'E', 'P', 'S', 1};
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final int FIXED_HEADER_LENGTH = MAGIC.length + 4 + NONCE_PREFIX_LENGTH;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private StreamingAead() {
+    }
+
+    /**
+     * Header of an encrypted object. It names the provider and key that wrapped the
+     * data key, so an object can be decrypted without further information.
+     */
+    public record Header(int segmentSize, byte[] noncePrefix, String provider, String keyName, String wrappedKey) {
+
+        public static Header create(int segmentSize, String provider, String keyName, String wrappedKey) {
+            if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+                throw new IllegalArgumentException("Segment size out of range: " + segmentSize);
+            }
+            byte[] prefix = new byte[NONCE_PREFIX_LENGTH];
+            RANDOM.nextBytes(prefix);
+            return new Header(segmentSize, prefix, provider, keyName, wrappedKey);
+        }
+
+        public byte[] encode() {
+            byte[] providerBytes = provider.getBytes(StandardCharsets.UTF_8);
+            byte[] keyNameBytes = keyName.getBytes(StandardCharsets.UTF_8);
+            byte[] wrappedBytes = wrappedKey.getBytes(StandardCharsets.UTF_8);
+
+            ByteBuffer buffer = ByteBuffer.allocate(FIXED_HEADER_LENGTH
+                    + 2 + providerBytes.length + 2 + keyNameBytes.length + 2 + wrappedBytes.length);
+            buffer.put(MAGIC).putInt(segmentSize).put(noncePrefix);
+            putShortString(buffer, providerBytes);
+            putShortString(buffer, keyNameBytes);
+            putShortString(buffer, wrappedBytes);
+            return buffer.array();
+        }
+
+        public static Header read(ReadableByteChannel in) throws IOException {
+            ByteBuffer fixed = ByteBuffer.allocate(FIXED_HEADER_LENGTH);
+            if (readFully(in, fixed) != FIXED_HEADER_LENGTH) {
+                throw new IllegalArgumentException("Stream too short for header");
+            }
+            fixed.flip();
+            for (byte b : MAGIC) {
+                if (fixed.get() != b) {
+                    throw new IllegalArgumentException("Not an encrypted stream or unsupported format version");
+                }
+            }
+            int segmentSize = fixed.getInt();
+            if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+                throw new IllegalArgumentException("Segment size out of range: " + segmentSize);
+            }
+            byte[] prefix = new byte[NONCE_PREFIX_LENGTH];
+            fixed.get(prefix);
+
+            return new Header(segmentSize, prefix, readShortString(in), readShortString(in), readShortString(in));
+        }
+
+        private static void putShortString(ByteBuffer buffer, byte[] value) {
+            if (value.length > 0xFFFF) {
+                throw new IllegalArgumentException("Header field too long");
+            }
+            buffer.putShort((short) value.length).put(value);
+        }
+
+        private static String readShortString(ReadableByteChannel in) throws IOException {
+            ByteBuffer length = ByteBuffer.allocate(2);
+            if (readFully(in, length) != 2) {
+                throw new IllegalArgumentException("Truncated header");
+            }
+            ByteBuffer value = ByteBuffer.allocate(length.flip().getShort() & 0xFFFF);
+            if (readFully(in, value) != value.capacity()) {
+                throw new IllegalArgumentException("Truncated header");
+            }
+            return new String(value.array(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes the header followed by the encrypted segments of {@code in}.
+     *
+     * @return number of plaintext bytes encrypted
+     */
+    public static long encrypt(ReadableByteChannel in, WritableByteChannel out, byte[] key, Header header)
+            throws IOException {
+        byte[] aad = header.encode();
+        writeFully(out, ByteBuffer.wrap(aad));
+
+        int segmentSize = header.segmentSize();
+        ByteBuffer current = ByteBuffer.allocate(segmentSize);
+        ByteBuffer next = ByteBuffer.allocate(segmentSize);
+        ByteBuffer sealed = ByteBuffer.allocate(segmentSize + TAG_LENGTH);
+
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
+
+            long total = readFully(in, current);
+            for (int index = 0; ; index++) {
+                // one segment of look-ahead tells whether the current one is the last
+                next.clear();
+                long read = current.hasRemaining() ? 0 : readFully(in, next);
+                boolean last = read == 0;
+
+                current.flip();
+                sealed.clear();
+                cipher.init(Cipher.ENCRYPT_MODE, keySpec, nonce(header.noncePrefix(), index, last));
+                cipher.updateAAD(aad);
+                cipher.doFinal(current, sealed);
+                writeFully(out, sealed.flip());
+
+                if (last) {
+                    return total;
+                }
+                if (index == Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Stream exceeds the maximum number of segments");
+                }
+                total += read;
+                ByteBuffer swap = current;
+                current = next;
+                next = swap;
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Segment encryption failed", e);
+        }
+    }
+
+    /**
+     * Decrypts the segments following an already read header.
+     *
+     * @return number of plaintext bytes written
+     * @throws IllegalArgumentException if a segment fails authentication or the stream is truncated
+     */
+    public static long decrypt(ReadableByteChannel in, WritableByteChannel out, byte[] key, Header header)
+            throws IOException {
+        byte[] aad = header.encode();
+
+        int sealedSize = header.segmentSize() + TAG_LENGTH;
+        ByteBuffer current = ByteBuffer.allocate(sealedSize);
+        ByteBuffer next = ByteBuffer.allocate(sealedSize);
+        ByteBuffer plain = ByteBuffer.allocate(header.segmentSize());
+
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
+
+            readFully(in, current);
+            long total = 0;
+            for (int index = 0; ; index++) {
+                next.clear();
+                boolean last = current.hasRemaining() || readFully(in, next) == 0;
+
+                if (current.position() < TAG_LENGTH) {
+                    throw new IllegalArgumentException("Truncated segment " + index);
+                }
+                current.flip();
+                plain.clear();
+                cipher.init(Cipher.DECRYPT_MODE, keySpec, nonce(header.noncePrefix(), index, last));
+                cipher.updateAAD(aad);
+                try {
+                    cipher.doFinal(current, plain);
+                } catch (AEADBadTagException e) {
+                    throw new IllegalArgumentException("Segment " + index + " failed authentication");
+                }
+                total += plain.position();
+                writeFully(out, plain.flip());
+
+                if (last) {
+                    return total;
+                }
+                ByteBuffer swap = current;
+                current = next;
+                next = swap;
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Segment decryption failed", e);
+        }
+    }
+
+    private static GCMParameterSpec nonce(byte[] prefix, int index, boolean last) {
+        byte[] nonce = new byte[NONCE_PREFIX_LENGTH + 5];
+        System.arraycopy(prefix, 0, nonce, 0, NONCE_PREFIX_LENGTH);
+        nonce[7] = (byte) (index >>> 24);
+        nonce[8] = (byte) (index >>> 16);
+        nonce[9] = (byte) (index >>> 8);
+        nonce[10] = (byte) index;
+        nonce[11] = (byte) (last ? 1 : 0);
+        return new GCMParameterSpec(TAG_LENGTH * 8, nonce);
+    }
+
+    /**
+     * Reads until the buffer is full or the channel is exhausted.
+     *
+     * @return number of bytes read
+     */
+    static int readFully(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = in.read(buffer);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package com.cgi.encryptionproxy.dto;
 
 import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.crypto.CiphertextEnvelope;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 /**
  * Used for decryption requests
  * Each item in "data" contains "ciphertext" and optional "metadata"
+ * keyProvider and keyName may be omitted if all ciphertexts are in the v2 format
  */
 public class CiphertextRequest {
 
@@ -59,15 +62,23 @@ public class CiphertextRequest {
     }
 
     public List<DecryptOperation> toCryptoTasks(String provider) {
+        return toCryptoTasks(provider, id -> null);
+    }
+
+    /**
+     * @param providerNames resolves the provider ids of v2 ciphertexts
+     */
+    public List<DecryptOperation> toCryptoTasks(String provider, IntFunction<String> providerNames) {
+        CiphertextEnvelope.Reader envelope = new CiphertextEnvelope.Reader();
         if (data instanceof String s) {
-            return List.of(DecryptOperation.fromString(provider, keyName, s));
+            return List.of(DecryptOperation.parse(provider, keyName, s, envelope, providerNames));
         }
 
         if (data instanceof List<?> list) {
             return list.stream().map(item -> {
                 if (item instanceof Map<?, ?> map) {
                     String ciphertext = (String) map.get("ciphertext");
-                    return DecryptOperation.fromString(provider, keyName, ciphertext);
+                    return DecryptOperation.parse(provider, keyName, ciphertext, envelope, providerNames);
                 }
                 throw new IllegalArgumentException("List items must be objects with 'ciphertext'");
             }).collect(Collectors.toList());
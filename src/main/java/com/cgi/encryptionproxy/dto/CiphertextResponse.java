@@ -1,11 +1,18 @@
 package com.cgi.encryptionproxy.dto;
 
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * Response for encryption requests
  */
-public class CiphertextResponse {
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CiphertextResponse implements ItemResponse {
 
     private String ciphertext;
+    private ItemStatus status = ItemStatus.OK;
+    private String error;
+    private String message;
 
     public CiphertextResponse() { }
 
@@ -13,6 +20,25 @@ public class CiphertextResponse {
         this.ciphertext = ciphertext;
     }
 
+    public static CiphertextResponse failed(ItemError itemError) {
+        CiphertextResponse response = new CiphertextResponse();
+        response.status = ItemStatus.FAILED;
+        response.error = itemError.code().name();
+        response.message = itemError.message();
+        return response;
+    }
+
     public String getCiphertext() { return ciphertext; }
     public void setCiphertext(String ciphertext) { this.ciphertext = ciphertext; }
+
+    @Override
+    public ItemStatus getStatus() { return status; }
+    public void setStatus(ItemStatus status) { this.status = status; }
+
+    @Override
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
 }
@@ -0,0 +1,44 @@
+package com.cgi.encryptionproxy.dto;
+
+/**
+ * Used for data key requests
+ */
+public class DataKeyRequest {
+
+    private String keyProvider;
+    private String keyName;
+    private Integer bits;
+    private Integer count;
+
+    public String getKeyProvider() {
+        return keyProvider;
+    }
+
+    public void setKeyProvider(String keyProvider) {
+        this.keyProvider = keyProvider;
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+
+    public void setKeyName(String keyName) {
+        this.keyName = keyName;
+    }
+
+    public Integer getBits() {
+        return bits;
+    }
+
+    public void setBits(Integer bits) {
+        this.bits = bits;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public void setCount(Integer count) {
+        this.count = count;
+    }
+}
@@ -0,0 +1,23 @@
+package com.cgi.encryptionproxy.dto;
+
+/**
+ * Response for data key requests: the Base64 encoded key and the key wrapped by the KMS
+ */
+public class DataKeyResponse {
+
+    private String plaintext;
+    private String ciphertext;
+
+    public DataKeyResponse() { }
+
+    public DataKeyResponse(String plaintext, String ciphertext) {
+        this.plaintext = plaintext;
+        this.ciphertext = ciphertext;
+    }
+
+    public String getPlaintext() { return plaintext; }
+    public void setPlaintext(String plaintext) { this.plaintext = plaintext; }
+
+    public String getCiphertext() { return ciphertext; }
+    public void setCiphertext(String ciphertext) { this.ciphertext = ciphertext; }
+}
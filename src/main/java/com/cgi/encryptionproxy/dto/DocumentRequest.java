@@ -0,0 +1,67 @@
+package com.cgi.encryptionproxy.dto;
+
+import tools.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * Used for field-level document requests: the fields selected by the paths are
+ * encrypted or decrypted in every document.
+ */
+public class DocumentRequest {
+
+    private String keyProvider;
+    private String keyName;
+    private Integer keyVersion;
+    private List<String> fields;
+    private List<JsonNode> documents;
+    private String format; // "v1" (version:ciphertext, default) or "v2" (CiphertextEnvelope), for encryption
+
+    public String getKeyProvider() {
+        return keyProvider;
+    }
+
+    public void setKeyProvider(String keyProvider) {
+        this.keyProvider = keyProvider;
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+
+    public void setKeyName(String keyName) {
+        this.keyName = keyName;
+    }
+
+    public Integer getKeyVersion() {
+        return keyVersion;
+    }
+
+    public void setKeyVersion(Integer keyVersion) {
+        this.keyVersion = keyVersion;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public void setFields(List<String> fields) {
+        this.fields = fields;
+    }
+
+    public List<JsonNode> getDocuments() {
+        return documents;
+    }
+
+    public void setDocuments(List<JsonNode> documents) {
+        this.documents = documents;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+}
@@ -0,0 +1,39 @@
+package com.cgi.encryptionproxy.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import tools.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * Response for field-level document requests. Fields that could not be processed
+ * are set to null and listed in the errors.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class DocumentResponse {
+
+    private List<JsonNode> documents;
+    private List<FieldError> errors;
+
+    public DocumentResponse() { }
+
+    public DocumentResponse(List<JsonNode> documents, List<FieldError> errors) {
+        this.documents = documents;
+        this.errors = errors;
+    }
+
+    public List<JsonNode> getDocuments() {
+        return documents;
+    }
+
+    public List<FieldError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Failure of one field, identified by the index of its document and the path
+     * that selected it.
+     */
+    public record FieldError(long document, String path, String error, String message) {
+    }
+}
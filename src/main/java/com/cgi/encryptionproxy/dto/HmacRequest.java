@@ -0,0 +1,72 @@
+package com.cgi.encryptionproxy.dto;
+
+import com.cgi.encryptionproxy.adapters.HmacOperation;
+import com.cgi.encryptionproxy.util.ValidationUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Used for HMAC (blind index) requests
+ * Each item in "data" contains a Base64 encoded "input"
+ */
+public class HmacRequest {
+
+    private String keyProvider;
+    private String keyName;
+    private Integer keyVersion;
+    private Object data; // String or List<Map<String,Object>>
+
+    public String getKeyProvider() {
+        return keyProvider;
+    }
+
+    public void setKeyProvider(String keyProvider) {
+        this.keyProvider = keyProvider;
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+
+    public void setKeyName(String keyName) {
+        this.keyName = keyName;
+    }
+
+    public Integer getKeyVersion() {
+        return keyVersion;
+    }
+
+    public void setKeyVersion(Integer keyVersion) {
+        this.keyVersion = keyVersion;
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    public void setData(Object data) {
+        this.data = data;
+    }
+
+    public List<HmacOperation> toCryptoTasks(String provider) {
+        if (data instanceof String b64) {
+            ValidationUtils.requireBase64Encoded(b64);
+            return List.of(new HmacOperation(provider, keyName, keyVersion, b64));
+        }
+
+        if (data instanceof List<?> list) {
+            return list.stream().map(item -> {
+                if (item instanceof Map<?, ?> map) {
+                    String input = (String) map.get("input");
+                    ValidationUtils.requireBase64Encoded(input);
+                    return new HmacOperation(provider, keyName, keyVersion, input);
+                }
+                throw new IllegalArgumentException("List items must be objects with 'input'");
+            }).collect(Collectors.toList());
+        }
+
+        throw new IllegalArgumentException("Invalid data format: Expected String or List");
+    }
+}
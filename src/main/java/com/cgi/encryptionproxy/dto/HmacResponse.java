@@ -0,0 +1,42 @@
+package com.cgi.encryptionproxy.dto;
+
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Response for HMAC requests, the value has the form "version:hmac"
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HmacResponse {
+
+    private String hmac;
+    private ItemStatus status = ItemStatus.OK;
+    private String error;
+    private String message;
+
+    public HmacResponse() { }
+
+    public HmacResponse(String hmac) {
+        this.hmac = hmac;
+    }
+
+    public static HmacResponse failed(ItemError itemError) {
+        HmacResponse response = new HmacResponse();
+        response.status = ItemStatus.FAILED;
+        response.error = itemError.code().name();
+        response.message = itemError.message();
+        return response;
+    }
+
+    public String getHmac() { return hmac; }
+    public void setHmac(String hmac) { this.hmac = hmac; }
+
+    public ItemStatus getStatus() { return status; }
+    public void setStatus(ItemStatus status) { this.status = status; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
@@ -0,0 +1,11 @@
+package com.cgi.encryptionproxy.dto;
+
+/**
+ * Item of a batch response, with its status and the error code if it failed
+ */
+public interface ItemResponse {
+
+    ItemStatus getStatus();
+
+    String getError();
+}
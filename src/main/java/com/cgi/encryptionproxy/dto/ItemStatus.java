@@ -0,0 +1,9 @@
+package com.cgi.encryptionproxy.dto;
+
+/**
+ * Outcome of a single item in a batch response
+ */
+public enum ItemStatus {
+    OK,
+    FAILED
+}
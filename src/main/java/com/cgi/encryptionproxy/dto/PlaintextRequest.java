@@ -1,6 +1,7 @@
 package com.cgi.encryptionproxy.dto;
 
 import com.cgi.encryptionproxy.adapters.EncryptOperation;
+import com.cgi.encryptionproxy.crypto.CiphertextEnvelope;
 import com.cgi.encryptionproxy.util.ValidationUtils;
 
 import java.util.List;
@@ -18,6 +19,7 @@ public class PlaintextRequest {
     private Integer keyVersion;
     private Object data; // String or List<Map<String,Object>>
     private Object metadata;
+    private String format; // "v1" (version:ciphertext, default) or "v2" (CiphertextEnvelope)
 
     // Getters / setters
     public String getKeyProvider() {
@@ -60,6 +62,21 @@ public class PlaintextRequest {
         this.metadata = metadata;
     }
 
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    /**
+     * @return whether the ciphertexts are to be returned in the v2 format
+     */
+    public boolean isEnvelopeFormat() {
+        return CiphertextEnvelope.isRequested(format);
+    }
+
     public List<EncryptOperation> toCryptoTasks(String provider) {
         if (data instanceof String b64) {
             ValidationUtils.requireBase64Encoded(b64);
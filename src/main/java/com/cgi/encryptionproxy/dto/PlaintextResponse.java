@@ -1,11 +1,18 @@
 package com.cgi.encryptionproxy.dto;
 
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * Response for decryption requests
  */
-public class PlaintextResponse {
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PlaintextResponse implements ItemResponse {
 
     private String plaintext;
+    private ItemStatus status = ItemStatus.OK;
+    private String error;
+    private String message;
 
     public PlaintextResponse() { }
 
@@ -13,6 +20,25 @@ public class PlaintextResponse {
         this.plaintext = plaintext;
     }
 
+    public static PlaintextResponse failed(ItemError itemError) {
+        PlaintextResponse response = new PlaintextResponse();
+        response.status = ItemStatus.FAILED;
+        response.error = itemError.code().name();
+        response.message = itemError.message();
+        return response;
+    }
+
     public String getPlaintext() { return plaintext; }
     public void setPlaintext(String plaintext) { this.plaintext = plaintext; }
+
+    @Override
+    public ItemStatus getStatus() { return status; }
+    public void setStatus(ItemStatus status) { this.status = status; }
+
+    @Override
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
 }
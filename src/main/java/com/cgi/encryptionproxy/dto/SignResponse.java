@@ -0,0 +1,42 @@
+package com.cgi.encryptionproxy.dto;
+
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Response for signing requests, the value has the form "version:signature"
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SignResponse {
+
+    private String signature;
+    private ItemStatus status = ItemStatus.OK;
+    private String error;
+    private String message;
+
+    public SignResponse() { }
+
+    public SignResponse(String signature) {
+        this.signature = signature;
+    }
+
+    public static SignResponse failed(ItemError itemError) {
+        SignResponse response = new SignResponse();
+        response.status = ItemStatus.FAILED;
+        response.error = itemError.code().name();
+        response.message = itemError.message();
+        return response;
+    }
+
+    public String getSignature() { return signature; }
+    public void setSignature(String signature) { this.signature = signature; }
+
+    public ItemStatus getStatus() { return status; }
+    public void setStatus(ItemStatus status) { this.status = status; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
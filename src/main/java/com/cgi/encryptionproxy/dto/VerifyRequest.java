@@ -0,0 +1,54 @@
+package com.cgi.encryptionproxy.dto;
+
+import com.cgi.encryptionproxy.adapters.VerifyOperation;
+import com.cgi.encryptionproxy.util.ValidationUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Used for signature verification requests
+ * Each item in "data" contains a Base64 encoded "input" and its "signature" (version:signature)
+ */
+public class VerifyRequest {
+
+    private String keyProvider;
+    private String keyName;
+    private List<Map<String, Object>> data;
+
+    public String getKeyProvider() {
+        return keyProvider;
+    }
+
+    public void setKeyProvider(String keyProvider) {
+        this.keyProvider = keyProvider;
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+
+    public void setKeyName(String keyName) {
+        this.keyName = keyName;
+    }
+
+    public List<Map<String, Object>> getData() {
+        return data;
+    }
+
+    public void setData(List<Map<String, Object>> data) {
+        this.data = data;
+    }
+
+    public List<VerifyOperation> toCryptoTasks(String provider) {
+        if (data == null) {
+            throw new IllegalArgumentException("Invalid data format: Expected List");
+        }
+        return data.stream().map(item -> {
+            String input = (String) item.get("input");
+            ValidationUtils.requireBase64Encoded(input);
+            return VerifyOperation.fromString(provider, keyName, input, (String) item.get("signature"));
+        }).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,43 @@
+package com.cgi.encryptionproxy.dto;
+
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Response for signature verification requests. An invalid signature is a successful
+ * item with "valid" false; failed items could not be checked at all.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class VerifyResponse {
+
+    private Boolean valid;
+    private ItemStatus status = ItemStatus.OK;
+    private String error;
+    private String message;
+
+    public VerifyResponse() { }
+
+    public VerifyResponse(boolean valid) {
+        this.valid = valid;
+    }
+
+    public static VerifyResponse failed(ItemError itemError) {
+        VerifyResponse response = new VerifyResponse();
+        response.status = ItemStatus.FAILED;
+        response.error = itemError.code().name();
+        response.message = itemError.message();
+        return response;
+    }
+
+    public Boolean getValid() { return valid; }
+    public void setValid(Boolean valid) { this.valid = valid; }
+
+    public ItemStatus getStatus() { return status; }
+    public void setStatus(ItemStatus status) { this.status = status; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
@@ -0,0 +1,11 @@
+package com.cgi.encryptionproxy.exception;
+
+/**
+ * Thrown when the deadline of a request passes before its work could start.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
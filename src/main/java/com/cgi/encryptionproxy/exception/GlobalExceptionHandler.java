@@ -17,6 +17,15 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorResponse> handleIllegalArgumentException(IllegalArgumentException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Invalid Request",
+                ex.getMessage(),
+                HttpStatus.BAD_REQUEST.value());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
     @ExceptionHandler(RemoteKmsException.class)
     public ResponseEntity<ErrorResponse> handleRemoteKmsException(RemoteKmsException ex) {
         ErrorResponse errorResponse = new ErrorResponse(
@@ -25,4 +34,31 @@ public class GlobalExceptionHandler {
                 ex.getStatusCode());
         return ResponseEntity.status(ex.getStatusCode()).body(errorResponse);
     }
+
+    @ExceptionHandler(UnsupportedOperationException.class)
+    public ResponseEntity<ErrorResponse> handleUnsupportedOperationException(UnsupportedOperationException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Operation Not Supported",
+                ex.getMessage(),
+                HttpStatus.NOT_IMPLEMENTED.value());
+        return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(errorResponse);
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<ErrorResponse> handleDeadlineExceededException(DeadlineExceededException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Deadline Exceeded",
+                ex.getMessage(),
+                HttpStatus.GATEWAY_TIMEOUT.value());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(errorResponse);
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                "Idempotency Key Reused",
+                ex.getMessage(),
+                HttpStatus.UNPROCESSABLE_CONTENT.value());
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT).body(errorResponse);
+    }
 }
@@ -0,0 +1,11 @@
+package com.cgi.encryptionproxy.exception;
+
+/**
+ * Thrown when a request reuses the idempotency key of a different request.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,55 @@
+package com.cgi.encryptionproxy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A batch dispatched by a controller, from scheduling to the adapter's result.
+ * Covers queueing in the scheduler, cache lookups and all KMS calls of the batch.
+ */
+@Name("com.cgi.encryptionproxy.BatchDispatch")
+@Label("Batch Dispatch")
+@Category({"Encryption Proxy", "API"})
+@Description("Batch dispatched to a provider")
+@StackTrace(false)
+public class BatchDispatchEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Provider")
+    public String provider;
+
+    @Label("Lane")
+    public String lane;
+
+    @Label("Items")
+    public int items;
+
+    @Label("Failed Items")
+    public int failures;
+
+    public static BatchDispatchEvent begin(String operation, String provider, String lane, int items) {
+        BatchDispatchEvent event = new BatchDispatchEvent();
+        if (event.isEnabled()) {
+            event.operation = operation;
+            event.provider = provider;
+            event.lane = lane;
+            event.items = items;
+            event.begin();
+        }
+        return event;
+    }
+
+    public void complete(int failures) {
+        end();
+        if (shouldCommit()) {
+            this.failures = failures;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.cgi.encryptionproxy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Cache lookups of one batch. Lookups are aggregated per batch rather than recorded
+ * per item to keep the overhead of an always-on recording negligible.
+ */
+@Name("com.cgi.encryptionproxy.CacheLookup")
+@Label("Cache Lookup")
+@Category({"Encryption Proxy", "Cache"})
+@Description("Adapter cache lookups of one batch")
+@StackTrace(false)
+public class CacheLookupEvent extends Event {
+
+    @Label("Provider")
+    public String provider;
+
+    @Label("Cache")
+    public String cache;
+
+    @Label("Lookups")
+    public int lookups;
+
+    @Label("Hits")
+    public int hits;
+
+    @Label("Misses")
+    public int misses;
+
+    public static void record(String provider, String cache, int lookups, int hits) {
+        CacheLookupEvent event = new CacheLookupEvent();
+        if (event.shouldCommit()) {
+            event.provider = provider;
+            event.cache = cache;
+            event.lookups = lookups;
+            event.hits = hits;
+            event.misses = lookups - hits;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.cgi.encryptionproxy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A single remote call to a KMS backend. The event duration is the time spent waiting
+ * for the backend, which separates KMS latency from the proxy's own CPU time.
+ */
+@Name("com.cgi.encryptionproxy.KmsCall")
+@Label("KMS Call")
+@Category({"Encryption Proxy", "KMS"})
+@Description("Remote call to a KMS backend")
+@StackTrace(false)
+public class KmsCallEvent extends Event {
+
+    @Label("Provider")
+    public String provider;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Key")
+    public String keyName;
+
+    @Label("Items")
+    public int items;
+
+    @Label("HTTP Status")
+    @Description("Status code of the response, 0 if the call did not complete")
+    public int status;
+
+    @Label("Error")
+    public String error;
+
+    public static KmsCallEvent begin(String provider, String operation, String keyName, int items) {
+        KmsCallEvent event = new KmsCallEvent();
+        if (event.isEnabled()) {
+            event.provider = provider;
+            event.operation = operation;
+            event.keyName = keyName;
+            event.items = items;
+            event.begin();
+        }
+        return event;
+    }
+
+    public void complete(int status, String error) {
+        end();
+        if (shouldCommit()) {
+            this.status = status;
+            this.error = error;
+            commit();
+        }
+    }
+}
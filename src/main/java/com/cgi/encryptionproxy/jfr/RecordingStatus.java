@@ -0,0 +1,15 @@
+package com.cgi.encryptionproxy.jfr;
+
+import java.time.Instant;
+
+/**
+ * State of the on-demand recording.
+ *
+ * @param state     the JFR recording state, {@code NONE} if no recording was started
+ * @param settings  the settings the recording was started with
+ * @param startedAt start time of the recording
+ * @param file      the dump file, once the recording has been stopped
+ * @param size      size of the dump in bytes
+ */
+public record RecordingStatus(String state, String settings, Instant startedAt, String file, long size) {
+}
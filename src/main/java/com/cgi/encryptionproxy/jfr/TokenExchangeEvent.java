@@ -0,0 +1,28 @@
+package com.cgi.encryptionproxy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An OAuth token exchange with the token endpoint of a provider.
+ */
+@Name("com.cgi.encryptionproxy.TokenExchange")
+@Label("Token Exchange")
+@Category({"Encryption Proxy", "Auth"})
+@Description("JWT bearer token exchange")
+@StackTrace(false)
+public class TokenExchangeEvent extends Event {
+
+    @Label("Token Endpoint")
+    public String endpoint;
+
+    @Label("Subject")
+    public String subject;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,259 @@
+package com.cgi.encryptionproxy.scheduling;
+
+import com.cgi.encryptionproxy.concurrency.Deadline;
+import com.cgi.encryptionproxy.config.SchedulingProperties;
+import com.cgi.encryptionproxy.exception.DeadlineExceededException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of the adapters. Callers are sorted into lanes
+ * (priority classes) by header or client identity. A fixed number of slots is shared
+ * by weighted fair queuing: every batch gets a virtual finish tag of
+ * {@code max(now, lane tag) + items / weight} and the waiting batch with the
+ * smallest tag is admitted next. Reserved slots can only be used by their lane, so
+ * interactive traffic finds capacity even while bulk jobs fill the rest.
+ */
+@Component
+public class FairScheduler {
+
+    private final SchedulingProperties properties;
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+    private final int sharedCapacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private double virtualTime;
+    private int sharedInUse;
+
+    public FairScheduler(SchedulingProperties properties) {
+        this.properties = properties;
+
+        Map<String, SchedulingProperties.LaneSettings> settings = properties.getLanes();
+        if (settings.isEmpty()) {
+            settings = new LinkedHashMap<>();
+            settings.put("interactive", new SchedulingProperties.LaneSettings(8, properties.getCapacity() / 4, 0));
+            settings.put("bulk", new SchedulingProperties.LaneSettings(1, 0, 0));
+        }
+
+        int reserved = 0;
+        for (Map.Entry<String, SchedulingProperties.LaneSettings> entry : settings.entrySet()) {
+            SchedulingProperties.LaneSettings lane = entry.getValue();
+            if (lane.getWeight() < 1) {
+                throw new IllegalStateException("Lane weight must be at least 1: " + entry.getKey());
+            }
+            reserved += lane.getReserved();
+            lanes.put(entry.getKey(), new Lane(lane.getWeight(), lane.getReserved(),
+                    lane.getMaxConcurrency() > 0 ? lane.getMaxConcurrency() : Integer.MAX_VALUE));
+        }
+        if (reserved > properties.getCapacity()) {
+            throw new IllegalStateException("Reserved slots exceed the scheduling capacity");
+        }
+        if (!lanes.containsKey(properties.getDefaultLane())) {
+            throw new IllegalStateException("Default lane is not configured: " + properties.getDefaultLane());
+        }
+        this.sharedCapacity = properties.getCapacity() - reserved;
+    }
+
+    /**
+     * Resolves the lane of a request: an explicitly requested known lane first, then
+     * the lane mapped to the client identity, then the default lane.
+     */
+    public String resolveLane(HttpServletRequest request) {
+        String requested = request.getHeader(properties.getPriorityHeader());
+        if (requested != null && lanes.containsKey(requested)) {
+            return requested;
+        }
+        String client = request.getHeader(properties.getClientHeader());
+        if (client != null) {
+            String mapped = properties.getClients().get(client);
+            if (mapped != null && lanes.containsKey(mapped)) {
+                return mapped;
+            }
+        }
+        return properties.getDefaultLane();
+    }
+
+    /**
+     * Runs {@code work} once the lane is admitted. Runs immediately when scheduling
+     * is disabled.
+     *
+     * @throws DeadlineExceededException if the request deadline passes before the lane is admitted
+     *
+     * @param laneName the lane, see {@link #resolveLane(HttpServletRequest)}
+     * @param cost     the number of items in the batch
+     */
+    public <T> T run(String laneName, int cost, Supplier<T> work) {
+        if (!properties.isEnabled()) {
+            return work.get();
+        }
+        Lane lane = lanes.getOrDefault(laneName, lanes.get(properties.getDefaultLane()));
+        Ticket ticket = acquire(lane, Math.max(1, cost));
+        try {
+            return work.get();
+        } finally {
+            release(lane, ticket);
+        }
+    }
+
+    public Map<String, LaneStats> stats() {
+        Map<String, LaneStats> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            lanes.forEach((name, lane) -> stats.put(name, lane.stats()));
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    private Ticket acquire(Lane lane, int cost) {
+        long enqueuedAt = System.nanoTime();
+        lock.lock();
+        try {
+            double tag = Math.max(virtualTime, lane.lastTag) + (double) cost / lane.weight;
+            lane.lastTag = tag;
+            Ticket ticket = new Ticket(tag, lock.newCondition());
+            lane.queue.addLast(ticket);
+            dispatch();
+
+            Deadline deadline = Deadline.current();
+            while (!ticket.granted) {
+                try {
+                    if (deadline == null) {
+                        ticket.condition.await();
+                    } else if (deadline.isExpired()) {
+                        // the client has given up, the slot goes to someone still waiting
+                        lane.queue.remove(ticket);
+                        lane.expired.incrementAndGet();
+                        throw new DeadlineExceededException("Request deadline exceeded while waiting for a "
+                                + "scheduling slot");
+                    } else {
+                        ticket.condition.awaitNanos(deadline.remainingNanos());
+                    }
+                } catch (InterruptedException e) {
+                    if (!ticket.granted) {
+                        lane.queue.remove(ticket);
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for a scheduling slot", e);
+                    }
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            long waited = System.nanoTime() - enqueuedAt;
+            lane.recordWait(waited);
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Lane lane, Ticket ticket) {
+        lock.lock();
+        try {
+            lane.inFlight--;
+            if (ticket.usesShared) {
+                sharedInUse--;
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Admits waiting tickets in tag order while slots are available. Called with the
+     * lock held.
+     */
+    private void dispatch() {
+        while (true) {
+            Lane next = null;
+            for (Lane lane : lanes.values()) {
+                Ticket head = lane.queue.peekFirst();
+                if (head != null && canAdmit(lane) && (next == null || head.tag < next.queue.peekFirst().tag)) {
+                    next = lane;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+
+            Ticket ticket = next.queue.pollFirst();
+            ticket.usesShared = next.inFlight >= next.reserved;
+            if (ticket.usesShared) {
+                sharedInUse++;
+            }
+            next.inFlight++;
+            virtualTime = Math.max(virtualTime, ticket.tag);
+            ticket.granted = true;
+            ticket.condition.signal();
+        }
+    }
+
+    private boolean canAdmit(Lane lane) {
+        return lane.inFlight < lane.maxConcurrency
+                && (lane.inFlight < lane.reserved || sharedInUse < sharedCapacity);
+    }
+
+    private static class Ticket {
+        final double tag;
+        final Condition condition;
+        boolean granted;
+        boolean usesShared;
+
+        Ticket(double tag, Condition condition) {
+            this.tag = tag;
+            this.condition = condition;
+        }
+    }
+
+    private static class Lane {
+        final int weight;
+        final int reserved;
+        final int maxConcurrency;
+        final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+        final WaitTimeHistogram waits = new WaitTimeHistogram();
+        final AtomicLong admitted = new AtomicLong();
+        final AtomicLong expired = new AtomicLong();
+        final AtomicLong totalWaitNanos = new AtomicLong();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        double lastTag;
+        int inFlight;
+
+        Lane(int weight, int reserved, int maxConcurrency) {
+            this.weight = weight;
+            this.reserved = reserved;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        void recordWait(long nanos) {
+            admitted.incrementAndGet();
+            totalWaitNanos.addAndGet(nanos);
+            maxWaitNanos.accumulateAndGet(nanos, Math::max);
+            waits.record(nanos);
+        }
+
+        LaneStats stats() {
+            long count = admitted.get();
+            return new LaneStats(
+                    weight,
+                    reserved,
+                    inFlight,
+                    queue.size(),
+                    count,
+                    expired.get(),
+                    count == 0 ? 0 : totalWaitNanos.get() / count / 1000,
+                    maxWaitNanos.get() / 1000,
+                    waits.quantileMicros(0.5),
+                    waits.quantileMicros(0.99));
+        }
+    }
+}
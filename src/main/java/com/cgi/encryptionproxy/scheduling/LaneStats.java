@@ -0,0 +1,19 @@
+package com.cgi.encryptionproxy.scheduling;
+
+/**
+ * Queue statistics of one priority lane. Wait times are in microseconds; the
+ * quantiles are bucket upper bounds. Expired batches gave up waiting at their
+ * request deadline.
+ */
+public record LaneStats(
+        int weight,
+        int reserved,
+        int inFlight,
+        int queued,
+        long admitted,
+        long expired,
+        long meanWaitMicros,
+        long maxWaitMicros,
+        long p50WaitMicros,
+        long p99WaitMicros) {
+}
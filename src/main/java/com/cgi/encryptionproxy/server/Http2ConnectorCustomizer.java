@@ -0,0 +1,35 @@
+package com.cgi.encryptionproxy.server;
+
+import com.cgi.encryptionproxy.config.Http2Properties;
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.UpgradeProtocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.boot.tomcat.TomcatConnectorCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies {@link Http2Properties} to the HTTP/2 protocol Spring Boot adds to the
+ * connector when {@code server.http2.enabled} is set. Without TLS the connector
+ * speaks h2c, both with prior knowledge and by upgrade from HTTP/1.1.
+ */
+@Component
+public class Http2ConnectorCustomizer implements TomcatConnectorCustomizer {
+
+    private final Http2Properties properties;
+
+    public Http2ConnectorCustomizer(Http2Properties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void customize(Connector connector) {
+        for (UpgradeProtocol protocol : connector.findUpgradeProtocols()) {
+            if (protocol instanceof Http2Protocol http2) {
+                http2.setMaxConcurrentStreams(properties.getMaxConcurrentStreams());
+                http2.setMaxConcurrentStreamExecution(properties.getMaxConcurrentStreamExecution());
+                http2.setInitialWindowSize(properties.getInitialWindowSize());
+                http2.setKeepAliveTimeout(properties.getKeepAliveTimeout().toMillis());
+            }
+        }
+    }
+}
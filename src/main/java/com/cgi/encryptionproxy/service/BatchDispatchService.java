@@ -0,0 +1,52 @@
+package com.cgi.encryptionproxy.service;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.capture.WorkloadCapture;
+import com.cgi.encryptionproxy.jfr.BatchDispatchEvent;
+import com.cgi.encryptionproxy.scheduling.FairScheduler;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Sends a batch to its adapter through the fair scheduler, wrapped in a
+ * {@link BatchDispatchEvent}. Batches of the operations a workload capture replays
+ * are also recorded. Used by the HTTP endpoints and the unix socket alike.
+ */
+@Service
+public class BatchDispatchService {
+
+    private final FairScheduler scheduler;
+    private final WorkloadCapture workloadCapture;
+
+    public BatchDispatchService(FairScheduler scheduler, WorkloadCapture workloadCapture) {
+        this.scheduler = scheduler;
+        this.workloadCapture = workloadCapture;
+    }
+
+    /**
+     * Runs and records a batch.
+     *
+     * @param input the captured input of a task
+     */
+    public <T> BatchResult dispatch(String operation, String provider, String keyName, String lane, List<T> tasks,
+            Function<T, String> input, Supplier<BatchResult> work) {
+        long started = System.nanoTime();
+        BatchResult results = dispatch(operation, provider, lane, tasks.size(), work);
+        workloadCapture.record(operation, provider, keyName, tasks, input, results, started);
+        return results;
+    }
+
+    /**
+     * Runs a batch without recording it.
+     */
+    public BatchResult dispatch(String operation, String provider, String lane, int items,
+            Supplier<BatchResult> work) {
+        BatchDispatchEvent event = BatchDispatchEvent.begin(operation, provider, lane, items);
+        BatchResult results = scheduler.run(lane, items, work);
+        event.complete(results.failureCount());
+        return results;
+    }
+}
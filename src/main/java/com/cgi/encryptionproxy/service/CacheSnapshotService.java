@@ -0,0 +1,248 @@
+package com.cgi.encryptionproxy.service;
+
+import com.cgi.encryptionproxy.adapters.BaseKmsAdapter;
+import com.cgi.encryptionproxy.adapters.CacheEntry;
+import com.cgi.encryptionproxy.adapters.DataKey;
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.config.SnapshotProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the adapter caches to an encrypted, memory-mapped snapshot file on shutdown
+ * and periodically, and restores them in the background after startup, so a restarted
+ * replica does not start with cold caches.
+ * <p>
+ * File layout: magic, creation time, wrapped snapshot key, GCM nonce, then the
+ * AES-256-GCM encrypted entries. The snapshot key is generated per snapshot and
+ * wrapped by the configured KMS key, so loading costs a single KMS call.
+ */
+@Service
+public class CacheSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheSnapshotService.class);
+
+    private static final int MAGIC = 0x45505331; // "EPS1"
+    private static final int NONCE_LENGTH = 12;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ProviderRegistryService providerRegistryService;
+    private final SnapshotProperties properties;
+    private ScheduledExecutorService scheduler;
+
+    public CacheSnapshotService(ProviderRegistryService providerRegistryService, SnapshotProperties properties) {
+        this.providerRegistryService = providerRegistryService;
+        this.properties = properties;
+
+        if (properties.isEnabled() && (properties.getKeyProvider() == null || properties.getKeyName() == null)) {
+            throw new IllegalStateException(
+                    "Cache snapshots require encryption.snapshot.key-provider and encryption.snapshot.key-name");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("cache-snapshot").factory());
+        scheduler.execute(this::load);
+
+        long interval = properties.getInterval().toMillis();
+        if (interval > 0) {
+            scheduler.scheduleAtFixedRate(this::write, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        write();
+    }
+
+    synchronized void write() {
+        try {
+            Map<String, List<CacheEntry>> caches = new LinkedHashMap<>();
+            providerRegistryService.getProviders().forEach((name, adapter) -> {
+                List<CacheEntry> entries = adapter.exportCache();
+                if (!entries.isEmpty()) {
+                    caches.put(name, entries);
+                }
+            });
+            if (caches.isEmpty()) {
+                return;
+            }
+
+            DataKey dataKey = providerRegistryService.getProvider(properties.getKeyProvider())
+                    .generateDataKeys(properties.getKeyName(), null, 1, 256).getFirst();
+            byte[] key = Base64.getDecoder().decode(dataKey.plaintext());
+            byte[] nonce = new byte[NONCE_LENGTH];
+            RANDOM.nextBytes(nonce);
+
+            byte[] wrapped = dataKey.ciphertext().getBytes(StandardCharsets.UTF_8);
+            long createdAt = System.currentTimeMillis();
+            byte[] header = ByteBuffer.allocate(4 + 8 + 4 + wrapped.length + NONCE_LENGTH)
+                    .putInt(MAGIC).putLong(createdAt).putInt(wrapped.length).put(wrapped).put(nonce)
+                    .array();
+            byte[] ciphertext;
+            try {
+                ciphertext = crypt(Cipher.ENCRYPT_MODE, key, nonce, header, serialize(caches));
+            } finally {
+                Arrays.fill(key, (byte) 0);
+            }
+
+            Path target = Path.of(properties.getPath());
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        header.length + ciphertext.length);
+                mapped.put(header).put(ciphertext);
+                mapped.force();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            log.info("Wrote cache snapshot with {} provider caches to {}", caches.size(), target);
+        } catch (Exception e) {
+            log.warn("Failed to write cache snapshot: {}", e.getMessage());
+        }
+    }
+
+    void load() {
+        Path path = Path.of(properties.getPath());
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (mapped.getInt() != MAGIC) {
+                log.warn("Ignoring cache snapshot {} with unknown format", path);
+                return;
+            }
+            long createdAt = mapped.getLong();
+            if (System.currentTimeMillis() - createdAt > properties.getTtl().toMillis()) {
+                log.info("Ignoring expired cache snapshot {}", path);
+                return;
+            }
+            byte[] wrapped = new byte[mapped.getInt()];
+            mapped.get(wrapped);
+            byte[] nonce = new byte[NONCE_LENGTH];
+            mapped.get(nonce);
+            byte[] header = new byte[mapped.position()];
+            mapped.get(0, header);
+            byte[] ciphertext = new byte[mapped.remaining()];
+            mapped.get(ciphertext);
+
+            String unwrapped = providerRegistryService.getProvider(properties.getKeyProvider())
+                    .decryptBatch(List.of(DecryptOperation.fromString(properties.getKeyProvider(),
+                            properties.getKeyName(), new String(wrapped, StandardCharsets.UTF_8))))
+                    .valuesOrThrow()[0];
+            byte[] key = Base64.getDecoder().decode(unwrapped);
+            byte[] plaintext;
+            try {
+                plaintext = crypt(Cipher.DECRYPT_MODE, key, nonce, header, ciphertext);
+            } finally {
+                Arrays.fill(key, (byte) 0);
+            }
+
+            Map<String, List<CacheEntry>> caches = deserialize(ByteBuffer.wrap(plaintext));
+            Map<String, BaseKmsAdapter> providers = providerRegistryService.getProviders();
+            caches.forEach((name, entries) -> {
+                BaseKmsAdapter adapter = providers.get(name);
+                if (adapter != null) {
+                    adapter.importCache(entries);
+                }
+            });
+            log.info("Restored cache snapshot {} for {} providers", path, caches.size());
+        } catch (Exception e) {
+            log.warn("Failed to load cache snapshot {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static byte[] crypt(int mode, byte[] key, byte[] nonce, byte[] aad, byte[] input)
+            throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, nonce));
+        cipher.updateAAD(aad);
+        return cipher.doFinal(input);
+    }
+
+    private static byte[] serialize(Map<String, List<CacheEntry>> caches) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(caches.size());
+            for (Map.Entry<String, List<CacheEntry>> cache : caches.entrySet()) {
+                writeString(out, cache.getKey());
+                out.writeInt(cache.getValue().size());
+                for (CacheEntry entry : cache.getValue()) {
+                    writeString(out, entry.region());
+                    writeString(out, entry.key());
+                    writeString(out, entry.value());
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, List<CacheEntry>> deserialize(ByteBuffer in) {
+        Map<String, List<CacheEntry>> caches = new LinkedHashMap<>();
+        int providers = in.getInt();
+        for (int p = 0; p < providers; p++) {
+            String name = readString(in);
+            int count = in.getInt();
+            List<CacheEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new CacheEntry(readString(in), readString(in), readString(in)));
+            }
+            caches.put(name, entries);
+        }
+        return caches;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,135 @@
+package com.cgi.encryptionproxy.service;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.cgi.encryptionproxy.cluster.ClusterRouter;
+import com.cgi.encryptionproxy.crypto.CiphertextEnvelope;
+import com.cgi.encryptionproxy.dto.CiphertextRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes v2 ciphertexts ({@link CiphertextEnvelope}) and decrypts batches whose items
+ * name different providers and keys, by sending every provider and key its own
+ * sub-batch.
+ */
+@Service
+public class CiphertextEnvelopeService {
+
+    private final ProviderRegistryService providerRegistryService;
+    private final ClusterRouter clusterRouter;
+
+    public CiphertextEnvelopeService(ProviderRegistryService providerRegistryService, ClusterRouter clusterRouter) {
+        this.providerRegistryService = providerRegistryService;
+        this.clusterRouter = clusterRouter;
+    }
+
+    public List<DecryptOperation> toCryptoTasks(CiphertextRequest request) {
+        return request.toCryptoTasks(request.getKeyProvider(), providerRegistryService::getProviderName);
+    }
+
+    /**
+     * Parses ciphertexts of either format; v2 values with the provider and key they
+     * name, {@code version:ciphertext} values with the given ones.
+     */
+    public List<DecryptOperation> toCryptoTasks(String provider, String keyName, List<String> ciphertexts) {
+        CiphertextEnvelope.Reader envelope = new CiphertextEnvelope.Reader();
+        List<DecryptOperation> tasks = new ArrayList<>(ciphertexts.size());
+        for (String ciphertext : ciphertexts) {
+            tasks.add(DecryptOperation.parse(provider, keyName, ciphertext, envelope,
+                    providerRegistryService::getProviderName));
+        }
+        return tasks;
+    }
+
+    /**
+     * Checks that v2 ciphertexts can be written for the provider and key, so that a
+     * batch that cannot be wrapped fails before any KMS call is spent on it.
+     *
+     * @throws IllegalArgumentException if the provider has no id or the key name does
+     *                                  not fit into the header
+     */
+    public void checkWrappable(String provider, String keyName) {
+        providerRegistryService.getProviderId(provider);
+        CiphertextEnvelope.checkKeyName(keyName);
+    }
+
+    /**
+     * Replaces the {@code version:ciphertext} values of an encrypt batch by v2 ciphertexts.
+     *
+     * @return the same result
+     */
+    public BatchResult wrap(String provider, String keyName, BatchResult results) {
+        int providerId = providerRegistryService.getProviderId(provider);
+        for (int i = 0; i < results.size(); i++) {
+            if (results.isFailed(i)) {
+                continue;
+            }
+            String value = results.value(i);
+            int separator = value.indexOf(':');
+            results.succeed(i, CiphertextEnvelope.encode(providerId, keyName,
+                    Integer.parseInt(value, 0, separator, 10), value.substring(separator + 1)));
+        }
+        return results;
+    }
+
+    /**
+     * Decrypts every item with the provider and key it names. Batches of a single
+     * provider and key, the common case, are passed on as they are.
+     */
+    public BatchResult decryptBatch(List<DecryptOperation> tasks) {
+        Map<Route, List<Integer>> routes = new LinkedHashMap<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            DecryptOperation task = tasks.get(i);
+            routes.computeIfAbsent(new Route(task.provider(), task.keyName()), route -> new ArrayList<>()).add(i);
+        }
+        if (routes.size() == 1) {
+            Route route = routes.keySet().iterator().next();
+            if (route.isComplete()) {
+                return clusterRouter.decryptBatch(route.provider(),
+                        providerRegistryService.getProvider(route.provider()), tasks);
+            }
+        }
+
+        BatchResult result = new BatchResult(tasks.size());
+        routes.forEach((route, indices) -> {
+            if (!route.isComplete()) {
+                indices.forEach(index -> result.fail(index, routingError(tasks.get(index))));
+                return;
+            }
+            List<DecryptOperation> subset = indices.stream().map(tasks::get).toList();
+            BatchResult partial = clusterRouter.decryptBatch(route.provider(),
+                    providerRegistryService.getProvider(route.provider()), subset);
+            for (int i = 0; i < indices.size(); i++) {
+                if (partial.isFailed(i)) {
+                    result.fail(indices.get(i), partial.error(i));
+                } else {
+                    result.succeed(indices.get(i), partial.value(i));
+                }
+            }
+        });
+        return result;
+    }
+
+    private static ItemError routingError(DecryptOperation task) {
+        if (task.keyVersion() == null && CiphertextEnvelope.isEnvelope(task.ciphertext())) {
+            return ItemError.invalidInput("Invalid v2 ciphertext");
+        }
+        if (task.provider() == null && task.keyName() != null) {
+            return ItemError.invalidInput("Ciphertext names an unknown provider");
+        }
+        return ItemError.invalidInput("keyProvider and keyName are required for version:ciphertext values");
+    }
+
+    private record Route(String provider, String keyName) {
+
+        boolean isComplete() {
+            return provider != null && keyName != null;
+        }
+    }
+}
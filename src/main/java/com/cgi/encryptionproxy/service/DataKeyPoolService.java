@@ -0,0 +1,166 @@
+package com.cgi.encryptionproxy.service;
+
+import com.cgi.encryptionproxy.adapters.DataKey;
+import com.cgi.encryptionproxy.config.DataKeyPoolProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out pre-generated data keys. One pool is kept per provider, key name and key
+ * length; it is created on first use and refilled in the background, so issuing a key
+ * does not wait for the KMS. Every key is handed out once. The number of pools is
+ * bounded and idle pools are dropped, so arbitrary key names cannot make the proxy
+ * refill pools against the KMS forever.
+ */
+@Service
+public class DataKeyPoolService {
+
+    private static final Logger log = LoggerFactory.getLogger(DataKeyPoolService.class);
+
+    private final ProviderRegistryService providerRegistryService;
+    private final DataKeyPoolProperties properties;
+
+    private final Map<PoolKey, Pool> pools = new ConcurrentHashMap<>();
+    private final ExecutorService refillExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("datakey-sweeper").factory());
+
+    public DataKeyPoolService(ProviderRegistryService providerRegistryService, DataKeyPoolProperties properties) {
+        this.providerRegistryService = providerRegistryService;
+        this.properties = properties;
+
+        long sweepMillis = Math.max(1000, properties.getMaxAge().toMillis() / 4);
+        sweeper.scheduleAtFixedRate(this::sweep, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes {@code count} keys from the pool. Keys missing from the pool are generated
+     * synchronously in one batch.
+     */
+    public List<DataKey> take(String provider, String keyName, Integer bits, int count) {
+        int keyBits = bits == null ? properties.getDefaultBits() : bits;
+        if (!properties.getAllowedBits().contains(keyBits)) {
+            throw new IllegalArgumentException("bits must be one of " + properties.getAllowedBits());
+        }
+        if (count < 1 || count > properties.getMaxCount()) {
+            throw new IllegalArgumentException("count must be between 1 and " + properties.getMaxCount());
+        }
+        if (keyName == null) {
+            throw new IllegalArgumentException("keyName must not be null");
+        }
+
+        // fails early for unknown providers, before a pool is created
+        providerRegistryService.getProvider(provider);
+
+        PoolKey poolKey = new PoolKey(provider, keyName, keyBits);
+        Pool pool = pools.get(poolKey);
+        if (pool == null) {
+            if (pools.size() >= properties.getMaxPools()) {
+                return generate(provider, keyName, keyBits, count);
+            }
+            pool = pools.computeIfAbsent(poolKey, key -> new Pool());
+        }
+        pool.lastTaken = System.currentTimeMillis();
+        long oldestAllowed = System.currentTimeMillis() - properties.getMaxAge().toMillis();
+
+        List<DataKey> keys = new ArrayList<>(count);
+        while (keys.size() < count) {
+            PooledKey pooled = pool.keys.poll();
+            if (pooled == null) {
+                break;
+            }
+            pool.size.decrementAndGet();
+            if (pooled.createdAt() >= oldestAllowed) {
+                keys.add(pooled.key());
+            }
+        }
+
+        if (keys.size() < count) {
+            keys.addAll(generate(provider, keyName, keyBits, count - keys.size()));
+        }
+
+        scheduleRefill(poolKey, pool);
+        return keys;
+    }
+
+    private void scheduleRefill(PoolKey poolKey, Pool pool) {
+        if (pool.size.get() >= properties.getRefillThreshold() || !pool.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        refillExecutor.submit(() -> {
+            try {
+                int missing = properties.getPoolSize() - pool.size.get();
+                if (missing > 0) {
+                    long now = System.currentTimeMillis();
+                    for (DataKey key : generate(poolKey.provider(), poolKey.keyName(), poolKey.bits(), missing)) {
+                        pool.keys.add(new PooledKey(key, now));
+                        pool.size.incrementAndGet();
+                    }
+                    log.debug("Refilled data key pool {} with {} keys", poolKey, missing);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to refill data key pool {}: {}", poolKey, e.getMessage());
+            } finally {
+                pool.refilling.set(false);
+            }
+        });
+    }
+
+    private List<DataKey> generate(String provider, String keyName, int bits, int count) {
+        return providerRegistryService.getProvider(provider).generateDataKeys(keyName, null, count, bits);
+    }
+
+    /**
+     * Drops idle pools and expired keys, and tops the other pools up again.
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        long oldestAllowed = now - properties.getMaxAge().toMillis();
+        long idleSince = now - properties.getIdleTimeout().toMillis();
+        pools.forEach((poolKey, pool) -> {
+            if (pool.lastTaken < idleSince) {
+                pools.remove(poolKey, pool);
+                log.debug("Dropped idle data key pool {}", poolKey);
+                return;
+            }
+            if (pool.keys.removeIf(pooled -> pooled.createdAt() < oldestAllowed)) {
+                pool.size.set(pool.keys.size());
+            }
+            scheduleRefill(poolKey, pool);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        refillExecutor.shutdownNow();
+        pools.clear();
+    }
+
+    private record PoolKey(String provider, String keyName, int bits) {
+    }
+
+    private record PooledKey(DataKey key, long createdAt) {
+    }
+
+    private static class Pool {
+        final ConcurrentLinkedQueue<PooledKey> keys = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicBoolean refilling = new AtomicBoolean();
+        volatile long lastTaken;
+    }
+}
@@ -0,0 +1,220 @@
+package com.cgi.encryptionproxy.service;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.adapters.EncryptOperation;
+import com.cgi.encryptionproxy.adapters.IKmsAdapter;
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.cgi.encryptionproxy.config.StreamingProperties;
+import com.cgi.encryptionproxy.crypto.CiphertextEnvelope;
+import com.cgi.encryptionproxy.dto.DocumentResponse.FieldError;
+import com.cgi.encryptionproxy.util.JsonFieldPath;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.NullNode;
+import tools.jackson.databind.node.StringNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encrypts and decrypts selected fields of JSON documents in place. The fields of
+ * all documents of a request (or of a window of a document stream) are sent to the
+ * adapter as one batch.
+ * <p>
+ * A field is encrypted as its JSON text, so numbers, objects and arrays come back
+ * with their type on decryption. The encrypted field holds the usual
+ * {@code version:ciphertext} string, or a v2 ciphertext if the selection asks for
+ * it; decryption takes both.
+ */
+@Service
+public class DocumentEncryptionService {
+
+    private final ProviderRegistryService providerRegistryService;
+    private final BatchDispatchService batchDispatchService;
+    private final CiphertextEnvelopeService ciphertextEnvelopeService;
+    private final ObjectMapper objectMapper;
+    private final StreamingProperties properties;
+
+    public DocumentEncryptionService(ProviderRegistryService providerRegistryService,
+            BatchDispatchService batchDispatchService, CiphertextEnvelopeService ciphertextEnvelopeService,
+            ObjectMapper objectMapper, StreamingProperties properties) {
+        this.providerRegistryService = providerRegistryService;
+        this.batchDispatchService = batchDispatchService;
+        this.ciphertextEnvelopeService = ciphertextEnvelopeService;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * Key and fields of a document request.
+     *
+     * @param envelope whether encrypted fields are written in the v2 format
+     */
+    public record Selection(String keyProvider, String keyName, Integer keyVersion, List<JsonFieldPath> fields,
+            boolean envelope) {
+
+        /**
+         * @param format {@code v1} (default) or {@code v2}, see {@link CiphertextEnvelope#isRequested}
+         */
+        public static Selection of(String keyProvider, String keyName, Integer keyVersion, List<String> fields,
+                String format) {
+            if (fields == null || fields.isEmpty()) {
+                throw new IllegalArgumentException("At least one field path is required");
+            }
+            return new Selection(keyProvider, keyName, keyVersion,
+                    fields.stream().map(JsonFieldPath::parse).toList(), CiphertextEnvelope.isRequested(format));
+        }
+    }
+
+    /**
+     * Rewrites the selected fields of the documents in place.
+     *
+     * @param firstDocument index of the first document, for the errors
+     * @return the fields that failed; they are set to null
+     */
+    public List<FieldError> process(boolean encrypt, Selection selection, List<JsonNode> documents,
+            long firstDocument, String lane) {
+        List<SelectedField> selected = new ArrayList<>();
+        // a field selected by several paths, e.g. a[*] and a[0], is processed once
+        Set<JsonFieldPath.Field> seen = new HashSet<>();
+        for (int d = 0; d < documents.size(); d++) {
+            long document = firstDocument + d;
+            for (JsonFieldPath path : selection.fields()) {
+                path.forEach(documents.get(d), field -> {
+                    if (seen.add(field)) {
+                        selected.add(new SelectedField(document, path, field));
+                    }
+                });
+            }
+        }
+        List<FieldError> errors = new ArrayList<>();
+        if (selected.isEmpty()) {
+            return errors;
+        }
+
+        if (encrypt) {
+            encrypt(selection, selected, lane, errors);
+        } else {
+            decrypt(selection, selected, lane, errors);
+        }
+        return errors;
+    }
+
+    /**
+     * Rewrites a stream of whitespace separated documents (e.g. NDJSON) window by
+     * window, writing one document per line. If fields failed, a final line
+     * {@code {"errors": [...]}} lists them.
+     */
+    public void processStream(boolean encrypt, Selection selection, InputStream in, OutputStream out, String lane)
+            throws IOException {
+        List<FieldError> errors = new ArrayList<>();
+        long firstDocument = 0;
+        try (MappingIterator<JsonNode> documents = objectMapper.readerFor(JsonNode.class).readValues(in)) {
+            List<JsonNode> window = new ArrayList<>(properties.getDocumentWindow());
+            while (documents.hasNextValue()) {
+                window.add(documents.nextValue());
+                if (window.size() == properties.getDocumentWindow() || !documents.hasNextValue()) {
+                    errors.addAll(process(encrypt, selection, window, firstDocument, lane));
+                    for (JsonNode document : window) {
+                        out.write(objectMapper.writeValueAsBytes(document));
+                        out.write('\n');
+                    }
+                    out.flush();
+                    firstDocument += window.size();
+                    window.clear();
+                }
+            }
+        }
+        if (!errors.isEmpty()) {
+            out.write(objectMapper.writeValueAsBytes(Map.of("errors", errors)));
+            out.write('\n');
+        }
+    }
+
+    private void encrypt(Selection selection, List<SelectedField> selected, String lane, List<FieldError> errors) {
+        IKmsAdapter adapter = providerRegistryService.getProvider(selection.keyProvider());
+        if (selection.envelope()) {
+            ciphertextEnvelopeService.checkWrappable(selection.keyProvider(), selection.keyName());
+        }
+        List<EncryptOperation> tasks = new ArrayList<>(selected.size());
+        for (SelectedField field : selected) {
+            byte[] json = objectMapper.writeValueAsBytes(field.field().get());
+            tasks.add(new EncryptOperation(selection.keyProvider(), selection.keyName(), selection.keyVersion(),
+                    Base64.getEncoder().encodeToString(json), null));
+        }
+
+        BatchResult results = batchDispatchService.dispatch("encrypt", selection.keyProvider(), selection.keyName(),
+                lane, tasks, EncryptOperation::plaintext, () -> adapter.encryptBatch(tasks));
+        if (selection.envelope()) {
+            ciphertextEnvelopeService.wrap(selection.keyProvider(), selection.keyName(), results);
+        }
+
+        for (int i = 0; i < selected.size(); i++) {
+            SelectedField field = selected.get(i);
+            if (results.isFailed(i)) {
+                fail(field, results.error(i), errors);
+            } else {
+                field.field().set(StringNode.valueOf(results.value(i)));
+            }
+        }
+    }
+
+    private void decrypt(Selection selection, List<SelectedField> selected, String lane, List<FieldError> errors) {
+        // fields that are no strings fail without a KMS call, malformed ciphertexts in the adapter's screening
+        List<SelectedField> valid = new ArrayList<>(selected.size());
+        List<String> ciphertexts = new ArrayList<>(selected.size());
+        for (SelectedField field : selected) {
+            JsonNode value = field.field().get();
+            if (value.isString()) {
+                ciphertexts.add(value.stringValue());
+                valid.add(field);
+            } else {
+                fail(field, ItemError.invalidInput("Encrypted field must be a string"), errors);
+            }
+        }
+        if (ciphertexts.isEmpty()) {
+            return;
+        }
+        List<DecryptOperation> tasks = ciphertextEnvelopeService.toCryptoTasks(selection.keyProvider(),
+                selection.keyName(), ciphertexts);
+        // v2 ciphertexts name their provider and key, the selection need not
+        String provider = selection.keyProvider() != null ? selection.keyProvider() : tasks.getFirst().provider();
+        String keyName = selection.keyName() != null ? selection.keyName() : tasks.getFirst().keyName();
+
+        BatchResult results = batchDispatchService.dispatch("decrypt", provider, keyName, lane, tasks,
+                DecryptOperation::ciphertext, () -> ciphertextEnvelopeService.decryptBatch(tasks));
+
+        for (int i = 0; i < valid.size(); i++) {
+            SelectedField field = valid.get(i);
+            if (results.isFailed(i)) {
+                fail(field, results.error(i), errors);
+                continue;
+            }
+            try {
+                byte[] json = Base64.getDecoder().decode(results.value(i));
+                field.field().set(objectMapper.readTree(new String(json, StandardCharsets.UTF_8)));
+            } catch (RuntimeException e) {
+                fail(field, ItemError.invalidInput("Decrypted value is not JSON"), errors);
+            }
+        }
+    }
+
+    private static void fail(SelectedField field, ItemError error, List<FieldError> errors) {
+        field.field().set(NullNode.getInstance());
+        errors.add(new FieldError(field.document(), field.path().toString(), error.code().name(), error.message()));
+    }
+
+    private record SelectedField(long document, JsonFieldPath path, JsonFieldPath.Field field) {
+    }
+}
@@ -0,0 +1,225 @@
+package com.cgi.encryptionproxy.service;
+
+import com.cgi.encryptionproxy.adapters.ErrorCode;
+import com.cgi.encryptionproxy.concurrency.Deadline;
+import com.cgi.encryptionproxy.config.IdempotencyProperties;
+import com.cgi.encryptionproxy.dto.ItemResponse;
+import com.cgi.encryptionproxy.dto.ItemStatus;
+import com.cgi.encryptionproxy.exception.DeadlineExceededException;
+import com.cgi.encryptionproxy.exception.IdempotencyKeyReusedException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs requests carrying an idempotency key at most once. The response of a
+ * completed request is replayed to retries with the same key for a while, and a retry
+ * arriving while the original is still running waits for its response instead of
+ * sending the KMS calls again. Kept responses are bounded by age and total size;
+ * failed requests, and batches with items that may succeed when sent again, are not
+ * kept, so they can be retried.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final IdempotencyProperties properties;
+    private final ObjectMapper objectMapper;
+
+    // in insertion order, which is close enough to completion order for expiry and eviction
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private long totalBytes;
+
+    public IdempotencyService(IdempotencyProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Runs {@code work}, unless a request with the same idempotency key ran or is
+     * running, in which case its response is returned.
+     *
+     * @param request     the HTTP request carrying the key
+     * @param requestBody the parsed request body; a retry must send the same body
+     * @throws IdempotencyKeyReusedException if the key was used for a different request body
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> execute(HttpServletRequest request, Object requestBody,
+            Supplier<ResponseEntity<T>> work) {
+        String key = properties.isEnabled() ? request.getHeader(properties.getHeader()) : null;
+        if (key == null || key.isBlank()) {
+            return work.get();
+        }
+        String scope = request.getRequestURI() + " " + key;
+        String fingerprint = fingerprint(requestBody);
+
+        Entry entry;
+        boolean owner = false;
+        synchronized (entries) {
+            expire();
+            entry = entries.get(scope);
+            if (entry == null) {
+                entry = new Entry(fingerprint);
+                entries.put(scope, entry);
+                owner = true;
+            }
+        }
+        if (!entry.fingerprint.equals(fingerprint)) {
+            throw new IdempotencyKeyReusedException("Idempotency key " + key + " was used for a different request");
+        }
+        if (!owner) {
+            ResponseEntity<T> response = (ResponseEntity<T>) await(entry);
+            return ResponseEntity.status(response.getStatusCode())
+                    .headers(response.getHeaders())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(response.getBody());
+        }
+
+        ResponseEntity<T> response;
+        try {
+            response = work.get();
+        } catch (RuntimeException | Error e) {
+            synchronized (entries) {
+                entries.remove(scope, entry);
+            }
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+
+        if (!isFinal(response)) {
+            synchronized (entries) {
+                entries.remove(scope, entry);
+            }
+            entry.response.complete(response);
+            return response;
+        }
+        long weight = scope.length() * 2L + objectMapper.writeValueAsBytes(response.getBody()).length;
+        synchronized (entries) {
+            entry.weight = weight;
+            entry.expiresAt = System.nanoTime() + properties.getTtl().toNanos();
+            if (entries.get(scope) == entry) {
+                totalBytes += weight;
+                evict();
+            }
+        }
+        entry.response.complete(response);
+        return response;
+    }
+
+    /**
+     * Whether a retry would get the same response: a success without items that
+     * failed for transient reasons, such as an unavailable KMS or a deadline.
+     */
+    static boolean isFinal(ResponseEntity<?> response) {
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            return false;
+        }
+        if (response.getBody() instanceof List<?> items) {
+            for (Object item : items) {
+                if (item instanceof ItemResponse itemResponse && itemResponse.getStatus() == ItemStatus.FAILED
+                        && isTransient(itemResponse.getError())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTransient(String error) {
+        try {
+            ErrorCode code = ErrorCode.valueOf(error);
+            return code.isRetryable() || code == ErrorCode.DEADLINE_EXCEEDED;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return true;
+        }
+    }
+
+    private ResponseEntity<?> await(Entry entry) {
+        Deadline deadline = Deadline.current();
+        try {
+            return deadline == null
+                    ? entry.response.get()
+                    : entry.response.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Request deadline exceeded while waiting for the original request");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the original request", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Original request failed", e.getCause());
+        }
+    }
+
+    /**
+     * Removes expired responses from the head of the map. Called with the lock held.
+     */
+    private void expire() {
+        long now = System.nanoTime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!entry.response.isDone()) {
+                continue;
+            }
+            if (entry.expiresAt - now > 0) {
+                return;
+            }
+            iterator.remove();
+            totalBytes -= entry.weight;
+        }
+    }
+
+    /**
+     * Removes the oldest completed responses until the size budget is met. Called
+     * with the lock held.
+     */
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalBytes > properties.getMaxBytes() && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.weight > 0) {
+                iterator.remove();
+                totalBytes -= entry.weight;
+            }
+        }
+    }
+
+    private String fingerprint(Object requestBody) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(objectMapper.writeValueAsBytes(requestBody)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry {
+        final String fingerprint;
+        final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+        // set once the response is kept, guarded by the map lock
+        long weight;
+        long expiresAt;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -19,6 +20,8 @@ public class ProviderRegistryService {
     private static final Logger log = LoggerFactory.getLogger(ProviderRegistryService.class);
 
     private final Map<String, BaseKmsAdapter> activeProviders = new ConcurrentHashMap<>();
+    private final Map<String, Integer> providerIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> providerNamesById = new ConcurrentHashMap<>();
     private final ProviderProperties properties;
     private final BeanFactory beanFactory;
 
@@ -43,6 +46,7 @@ public class ProviderRegistryService {
                 adapter.setName(name);
                 adapter.configure(config.getParams());
                 activeProviders.put(name, adapter);
+                registerId(name, config.getId());
 
                 log.info("Successfully registered provider '{}' [Type: {}]", name, config.getType());
             } catch (NoSuchBeanDefinitionException e) {
@@ -55,8 +59,44 @@ public class ProviderRegistryService {
         });
     }
 
+    private void registerId(String name, Integer id) {
+        if (id == null) {
+            return;
+        }
+        if (id < 1) {
+            throw new IllegalStateException("Provider id of '" + name + "' must be positive: " + id);
+        }
+        String previous = providerNamesById.putIfAbsent(id, name);
+        if (previous != null) {
+            throw new IllegalStateException("Providers '" + previous + "' and '" + name + "' have the same id " + id);
+        }
+        providerIds.put(name, id);
+    }
+
+    public Map<String, BaseKmsAdapter> getProviders() {
+        return Collections.unmodifiableMap(activeProviders);
+    }
+
     public IKmsAdapter getProvider(String name) {
         return Optional.ofNullable(activeProviders.get(name))
                 .orElseThrow(() -> new IllegalArgumentException("Provider not found: " + name));
     }
+
+    /**
+     * @throws IllegalArgumentException if the provider has no id for v2 ciphertexts
+     */
+    public int getProviderId(String name) {
+        Integer id = providerIds.get(name);
+        if (id == null) {
+            throw new IllegalArgumentException("Provider " + name + " has no id, which the v2 ciphertext format requires");
+        }
+        return id;
+    }
+
+    /**
+     * @return the name of the provider with this id, or null
+     */
+    public String getProviderName(int id) {
+        return providerNamesById.get(id);
+    }
 }
\ No newline at end of file
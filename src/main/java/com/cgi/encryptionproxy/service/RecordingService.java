@@ -0,0 +1,115 @@
+package com.cgi.encryptionproxy.service;
+
+import com.cgi.encryptionproxy.config.RecordingProperties;
+import com.cgi.encryptionproxy.jfr.RecordingStatus;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Starts and stops JDK Flight Recorder recordings on demand. At most one recording
+ * runs at a time; it includes the proxy's own events (KMS calls, cache lookups,
+ * token exchanges and batch dispatch) next to the JVM's.
+ */
+@Service
+public class RecordingService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordingService.class);
+
+    private final RecordingProperties properties;
+    private Recording recording;
+    private String settings;
+    private Path lastDump;
+
+    public RecordingService(RecordingProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @param settings the predefined JFR configuration, {@code default} or {@code profile}
+     * @param duration how long to record, capped at the configured maximum
+     */
+    public synchronized RecordingStatus start(String settings, Duration duration) {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A recording is already running");
+        }
+
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings);
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown recording settings: " + settings);
+        }
+
+        Duration max = properties.getMaxDuration();
+        if (duration == null || duration.isNegative() || duration.isZero() || duration.compareTo(max) > 0) {
+            duration = max;
+        }
+
+        if (recording != null) {
+            recording.close();
+        }
+        recording = new Recording(configuration);
+        recording.setName("encryptionproxy");
+        recording.setDuration(duration);
+        recording.setToDisk(true);
+        recording.start();
+        this.settings = settings;
+        this.lastDump = null;
+
+        log.info("Started {} recording for {}", settings, duration);
+        return status();
+    }
+
+    /**
+     * Stops the running recording and dumps it to the configured directory.
+     */
+    public synchronized RecordingStatus stop() {
+        if (recording == null) {
+            throw new IllegalStateException("No recording was started");
+        }
+
+        Path file = Path.of(properties.getDirectory(),
+                "encryptionproxy-" + recording.getStartTime().toEpochMilli() + ".jfr");
+        try {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recording.stop();
+            }
+            recording.dump(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write recording to " + file, e);
+        }
+        lastDump = file;
+
+        log.info("Wrote recording to {}", file);
+        return status();
+    }
+
+    public synchronized RecordingStatus status() {
+        if (recording == null) {
+            return new RecordingStatus("NONE", null, null, null, 0);
+        }
+        long size = 0;
+        if (lastDump != null) {
+            try {
+                size = Files.size(lastDump);
+            } catch (IOException e) {
+                // the dump was removed in the meantime
+            }
+        }
+        Instant startedAt = recording.getStartTime();
+        return new RecordingStatus(recording.getState().name(), settings, startedAt,
+                lastDump == null ? null : lastDump.toString(), size);
+    }
+}
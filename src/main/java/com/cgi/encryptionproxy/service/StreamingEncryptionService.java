@@ -0,0 +1,72 @@
+package com.cgi.encryptionproxy.service;
+
+import com.cgi.encryptionproxy.adapters.DataKey;
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.config.StreamingProperties;
+import com.cgi.encryptionproxy.crypto.StreamingAead;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Encrypts objects of any size with a fresh data key per object. The data key comes
+ * from the data key pool and is stored wrapped in the object header, so an object
+ * costs at most one KMS call on either side.
+ */
+@Service
+public class StreamingEncryptionService {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingEncryptionService.class);
+    private static final int DATA_KEY_BITS = 256;
+
+    private final ProviderRegistryService providerRegistryService;
+    private final DataKeyPoolService dataKeyPoolService;
+    private final StreamingProperties properties;
+
+    public StreamingEncryptionService(ProviderRegistryService providerRegistryService,
+            DataKeyPoolService dataKeyPoolService, StreamingProperties properties) {
+        this.providerRegistryService = providerRegistryService;
+        this.dataKeyPoolService = dataKeyPoolService;
+        this.properties = properties;
+    }
+
+    public long encrypt(String provider, String keyName, ReadableByteChannel in, WritableByteChannel out)
+            throws IOException {
+        DataKey dataKey = dataKeyPoolService.take(provider, keyName, DATA_KEY_BITS, 1).getFirst();
+        StreamingAead.Header header = StreamingAead.Header.create(
+                properties.getSegmentSize(), provider, keyName, dataKey.ciphertext());
+
+        byte[] key = Base64.getDecoder().decode(dataKey.plaintext());
+        try {
+            long bytes = StreamingAead.encrypt(in, out, key, header);
+            log.info("Encrypted stream of {} bytes", bytes);
+            return bytes;
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    public long decrypt(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        StreamingAead.Header header = StreamingAead.Header.read(in);
+
+        String unwrapped = providerRegistryService.getProvider(header.provider())
+                .decryptBatch(List.of(DecryptOperation.fromString(header.provider(), header.keyName(), header.wrappedKey())))
+                .valuesOrThrow()[0];
+
+        byte[] key = Base64.getDecoder().decode(unwrapped);
+        try {
+            long bytes = StreamingAead.decrypt(in, out, key, header);
+            log.info("Decrypted stream of {} bytes", bytes);
+            return bytes;
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+}
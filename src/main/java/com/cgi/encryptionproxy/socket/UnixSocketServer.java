@@ -0,0 +1,279 @@
+package com.cgi.encryptionproxy.socket;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.adapters.EncryptOperation;
+import com.cgi.encryptionproxy.adapters.HmacOperation;
+import com.cgi.encryptionproxy.adapters.IKmsAdapter;
+import com.cgi.encryptionproxy.concurrency.Deadline;
+import com.cgi.encryptionproxy.config.SchedulingProperties;
+import com.cgi.encryptionproxy.config.UnixSocketProperties;
+import com.cgi.encryptionproxy.dto.CiphertextRequest;
+import com.cgi.encryptionproxy.dto.CiphertextResponse;
+import com.cgi.encryptionproxy.dto.HmacRequest;
+import com.cgi.encryptionproxy.dto.HmacResponse;
+import com.cgi.encryptionproxy.dto.PlaintextRequest;
+import com.cgi.encryptionproxy.dto.PlaintextResponse;
+import com.cgi.encryptionproxy.exception.DeadlineExceededException;
+import com.cgi.encryptionproxy.exception.ErrorResponse;
+import com.cgi.encryptionproxy.exception.InvalidBase64DataException;
+import com.cgi.encryptionproxy.exception.RemoteKmsException;
+import com.cgi.encryptionproxy.service.BatchDispatchService;
+import com.cgi.encryptionproxy.service.CiphertextEnvelopeService;
+import com.cgi.encryptionproxy.service.ProviderRegistryService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Optional Unix domain socket listener for sidecar deployments. Clients in the same
+ * pod talk to the encrypt, decrypt and hmac operations without TCP and HTTP; access
+ * is controlled by the permissions of the socket file.
+ * <p>
+ * Every request is one frame, answered by one frame, in order on a connection:
+ * <pre>
+ * request:  int32 length | uint8 operation | int32 timeout millis (0: none) | JSON request body
+ * response: int32 length | uint16 status  | JSON response body
+ * </pre>
+ * Lengths count the bytes after the length field, integers are big-endian. Bodies
+ * and statuses are those of the corresponding {@code /api/v1} endpoint.
+ */
+@Component
+public class UnixSocketServer {
+
+    private static final Logger log = LoggerFactory.getLogger(UnixSocketServer.class);
+
+    static final int OP_ENCRYPT = 1;
+    static final int OP_DECRYPT = 2;
+    static final int OP_HMAC = 3;
+
+    private final UnixSocketProperties properties;
+    private final ProviderRegistryService providerRegistryService;
+    private final BatchDispatchService batchDispatchService;
+    private final CiphertextEnvelopeService ciphertextEnvelopeService;
+    private final ObjectMapper objectMapper;
+    private final String lane;
+    private ServerSocketChannel server;
+
+    public UnixSocketServer(UnixSocketProperties properties, SchedulingProperties schedulingProperties,
+            ProviderRegistryService providerRegistryService, BatchDispatchService batchDispatchService,
+            CiphertextEnvelopeService ciphertextEnvelopeService, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.providerRegistryService = providerRegistryService;
+        this.batchDispatchService = batchDispatchService;
+        this.ciphertextEnvelopeService = ciphertextEnvelopeService;
+        this.objectMapper = objectMapper;
+        this.lane = properties.getLane() != null ? properties.getLane() : schedulingProperties.getDefaultLane();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Path path = Path.of(properties.getPath()).toAbsolutePath();
+        // a socket file left behind by a previous process would make the bind fail
+        Files.deleteIfExists(path);
+        // bound in a directory only this process can enter and moved into place once it has
+        // its permissions, so it is never reachable with the permissions of the umask
+        Path directory = Files.createTempDirectory(path.getParent(), ".sock",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        Path bound = directory.resolve("s");
+        try {
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(bound));
+            Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString(properties.getPermissions()));
+            Files.move(bound, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(bound);
+            Files.delete(directory);
+        }
+
+        Thread.ofPlatform().daemon().name("unix-socket-accept").start(this::accept);
+        log.info("Listening on unix socket {}", path);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (server == null) {
+            return;
+        }
+        server.close();
+        Files.deleteIfExists(Path.of(properties.getPath()));
+    }
+
+    private void accept() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel connection = server.accept();
+                Thread.ofVirtual().name("unix-socket-connection").start(() -> serve(connection));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Failed to accept unix socket connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    @SuppressWarnings("try") // the deadline scope is only closed
+    private void serve(SocketChannel connection) {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        try (connection) {
+            while (true) {
+                header.clear();
+                if (!readFully(connection, header, true)) {
+                    return;
+                }
+                int length = header.getInt(0);
+                if (length < 5 || length > properties.getMaxFrameBytes()) {
+                    log.warn("Closing unix socket connection after a frame of {} bytes", length);
+                    return;
+                }
+                ByteBuffer frame = ByteBuffer.allocate(length);
+                readFully(connection, frame, false);
+                frame.flip();
+
+                int operation = frame.get() & 0xff;
+                int timeoutMillis = frame.getInt();
+                byte[] body = new byte[frame.remaining()];
+                frame.get(body);
+
+                Response response;
+                if (timeoutMillis > 0) {
+                    try (Deadline.Scope ignored = Deadline.enter(Deadline.in(Duration.ofMillis(timeoutMillis)))) {
+                        response = handle(operation, body);
+                    }
+                } else {
+                    response = handle(operation, body);
+                }
+
+                byte[] payload = objectMapper.writeValueAsBytes(response.body());
+                ByteBuffer out = ByteBuffer.allocate(4 + 2 + payload.length);
+                out.putInt(2 + payload.length).putShort((short) response.status()).put(payload).flip();
+                while (out.hasRemaining()) {
+                    connection.write(out);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Unix socket connection closed: {}", e.getMessage());
+        }
+    }
+
+    private Response handle(int operation, byte[] body) {
+        try {
+            return switch (operation) {
+                case OP_ENCRYPT -> encrypt(objectMapper.readValue(body, PlaintextRequest.class));
+                case OP_DECRYPT -> decrypt(objectMapper.readValue(body, CiphertextRequest.class));
+                case OP_HMAC -> hmac(objectMapper.readValue(body, HmacRequest.class));
+                default -> error(400, "Invalid Request", "Unknown operation " + operation);
+            };
+        } catch (InvalidBase64DataException e) {
+            return error(400, "Invalid Base64 Data", e.getMessage());
+        } catch (IllegalArgumentException | JacksonException e) {
+            return error(400, "Invalid Request", e.getMessage());
+        } catch (RemoteKmsException e) {
+            return error(e.getStatusCode(), "Remote KMS Error", e.getBody());
+        } catch (DeadlineExceededException e) {
+            return error(504, "Deadline Exceeded", e.getMessage());
+        } catch (UnsupportedOperationException e) {
+            return error(501, "Operation Not Supported", e.getMessage());
+        } catch (RuntimeException e) {
+            log.warn("Unix socket request failed", e);
+            return error(500, "Internal Error", e.getMessage());
+        }
+    }
+
+    private Response encrypt(PlaintextRequest request) {
+        IKmsAdapter adapter = providerRegistryService.getProvider(request.getKeyProvider());
+        List<EncryptOperation> tasks = request.toCryptoTasks(request.getKeyProvider());
+        boolean envelope = request.isEnvelopeFormat();
+        if (envelope) {
+            ciphertextEnvelopeService.checkWrappable(request.getKeyProvider(), request.getKeyName());
+        }
+        BatchResult results = batchDispatchService.dispatch("encrypt", request.getKeyProvider(),
+                request.getKeyName(), lane, tasks, EncryptOperation::plaintext, () -> adapter.encryptBatch(tasks));
+        if (envelope) {
+            ciphertextEnvelopeService.wrap(request.getKeyProvider(), request.getKeyName(), results);
+        }
+        return respond(results, i -> results.isFailed(i)
+                ? CiphertextResponse.failed(results.error(i))
+                : new CiphertextResponse(results.value(i)));
+    }
+
+    private Response decrypt(CiphertextRequest request) {
+        List<DecryptOperation> tasks = ciphertextEnvelopeService.toCryptoTasks(request);
+        String provider = request.getKeyProvider() != null || tasks.isEmpty()
+                ? request.getKeyProvider() : tasks.getFirst().provider();
+        String keyName = request.getKeyName() != null || tasks.isEmpty()
+                ? request.getKeyName() : tasks.getFirst().keyName();
+        BatchResult results = batchDispatchService.dispatch("decrypt", provider, keyName, lane, tasks,
+                DecryptOperation::ciphertext, () -> ciphertextEnvelopeService.decryptBatch(tasks));
+        return respond(results, i -> results.isFailed(i)
+                ? PlaintextResponse.failed(results.error(i))
+                : new PlaintextResponse(results.value(i)));
+    }
+
+    private Response hmac(HmacRequest request) {
+        IKmsAdapter adapter = providerRegistryService.getProvider(request.getKeyProvider());
+        List<HmacOperation> tasks = request.toCryptoTasks(request.getKeyProvider());
+        BatchResult results = batchDispatchService.dispatch("hmac", request.getKeyProvider(),
+                request.getKeyName(), lane, tasks, HmacOperation::input, () -> adapter.hmacBatch(tasks));
+        return respond(results, i -> results.isFailed(i)
+                ? HmacResponse.failed(results.error(i))
+                : new HmacResponse(results.value(i)));
+    }
+
+    private static Response respond(BatchResult results, IntFunction<Object> item) {
+        Object[] responses = new Object[results.size()];
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = item.apply(i);
+        }
+        return new Response(results.hasFailures() ? 207 : 200, responses);
+    }
+
+    private static Response error(int status, String title, String message) {
+        return new Response(status, new ErrorResponse(title, message, status));
+    }
+
+    /**
+     * Reads until the buffer is full.
+     *
+     * @return false if the connection was closed before the first byte
+     */
+    private static boolean readFully(SocketChannel connection, ByteBuffer buffer, boolean eofAllowed)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (connection.read(buffer) < 0) {
+                if (eofAllowed && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Connection closed within a frame");
+            }
+        }
+        return true;
+    }
+
+    private record Response(int status, Object body) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.cgi.encryptionproxy.transport;
+
+import com.cgi.encryptionproxy.adapters.BaseKmsAdapter;
+import com.cgi.encryptionproxy.adapters.ErrorCode;
+import com.cgi.encryptionproxy.concurrency.Deadline;
+import com.cgi.encryptionproxy.jfr.KmsCallEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * HTTP transport shared by all KMS backends. Each provider gets its own instance,
+ * configured from its parameters:
+ * - "connecttimeoutmillis": connect timeout (default 5000)
+ * - "requesttimeoutmillis": deadline of a single call, including the wait for a free stream (default 30000)
+ * - "maxconcurrentrequests": calls in flight at once, the HTTP/2 streams used on the connection (default 64)
+ * - "http2": prefer HTTP/2 (default true); falls back to HTTP/1.1 if the server does not offer it
+ * - "prewarm": open the connection when the provider is configured (default true)
+ * - "gzip": ask for gzip compressed responses (default true)
+ * <p>
+ * Responses are read as streams and every call is timed with a {@link KmsCallEvent}.
+ * The JDK client pools connections per client; its global pool size is set with the
+ * system property {@code jdk.httpclient.connectionPoolSize}.
+ */
+public class KmsHttpTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(KmsHttpTransport.class);
+
+    private final String provider;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final Semaphore streams;
+    private final boolean gzip;
+
+    public KmsHttpTransport(String provider, Duration connectTimeout, Duration requestTimeout,
+            int maxConcurrentRequests, boolean http2, boolean gzip) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalStateException("maxconcurrentrequests must be at least 1");
+        }
+        this.provider = provider;
+        this.requestTimeout = requestTimeout;
+        this.streams = new Semaphore(maxConcurrentRequests);
+        this.gzip = gzip;
+
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    /**
+     * Creates the transport of a provider and, unless disabled, pre-warms the
+     * connection to {@code endpoint} in the background.
+     */
+    public static KmsHttpTransport fromParameters(String provider, String endpoint, Map<String, String> parameters) {
+        KmsHttpTransport transport = new KmsHttpTransport(provider,
+                Duration.ofMillis(BaseKmsAdapter.intParam(parameters, "connecttimeoutmillis", 5_000)),
+                Duration.ofMillis(BaseKmsAdapter.intParam(parameters, "requesttimeoutmillis", 30_000)),
+                BaseKmsAdapter.intParam(parameters, "maxconcurrentrequests", 64),
+                Boolean.parseBoolean(parameters.getOrDefault("http2", "true")),
+                Boolean.parseBoolean(parameters.getOrDefault("gzip", "true")));
+
+        if (Boolean.parseBoolean(parameters.getOrDefault("prewarm", "true"))) {
+            transport.prewarm(URI.create(endpoint));
+        }
+        return transport;
+    }
+
+    /**
+     * Sends a request and hands the (decompressed) response body to {@code reader}.
+     *
+     * @param operation name of the KMS operation, for the call event
+     * @param keyName   key of the call, for the call event
+     * @param items     number of items in the call, for the call event
+     * @throws HttpTimeoutException if no stream is free or the call exceeds the request timeout or the
+     *                              deadline of the current request
+     */
+    public <T> T send(String operation, String keyName, int items, HttpRequest.Builder request,
+            ResponseReader<T> reader) throws IOException, InterruptedException {
+        KmsCallEvent event = KmsCallEvent.begin(provider, operation, keyName, items);
+
+        // the call must not outlive the deadline of the request it serves
+        Duration timeout = Deadline.cap(requestTimeout);
+        if (timeout.isZero()) {
+            event.complete(0, ErrorCode.DEADLINE_EXCEEDED.name());
+            throw new HttpTimeoutException("Request deadline exceeded before calling provider " + provider);
+        }
+        if (!streams.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            boolean expired = Deadline.isCurrentExpired();
+            event.complete(0, expired ? ErrorCode.DEADLINE_EXCEEDED.name() : ErrorCode.THROTTLED.name());
+            throw new HttpTimeoutException("No free connection stream for provider " + provider + " within "
+                    + timeout.toMillis() + " ms");
+        }
+        int status = 0;
+        String error = ErrorCode.KMS_UNAVAILABLE.name();
+        try {
+            timeout = Deadline.cap(requestTimeout);
+            if (timeout.isZero()) {
+                error = ErrorCode.DEADLINE_EXCEEDED.name();
+                throw new HttpTimeoutException("Request deadline exceeded before calling provider " + provider);
+            }
+            request.timeout(timeout);
+            if (gzip) {
+                request.header("Accept-Encoding", "gzip");
+            }
+
+            HttpResponse<InputStream> response = httpClient.send(request.build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            status = response.statusCode();
+            error = status / 100 == 2 ? null : ErrorCode.fromHttpStatus(status).name();
+
+            boolean compressed = response.headers().firstValue("Content-Encoding")
+                    .map("gzip"::equalsIgnoreCase)
+                    .orElse(false);
+            try (InputStream body = compressed ? new GZIPInputStream(response.body()) : response.body()) {
+                return reader.read(status, body);
+            }
+        } finally {
+            streams.release();
+            event.complete(status, error);
+        }
+    }
+
+    private void prewarm(URI endpoint) {
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(requestTimeout)
+                .build();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        log.warn("Could not pre-warm connection of provider '{}': {}", provider, error.getMessage());
+                    } else {
+                        log.debug("Pre-warmed connection of provider '{}' over {}", provider, response.version());
+                    }
+                });
+    }
+
+    /**
+     * Reads a response body. The stream is closed by the transport afterwards.
+     */
+    @FunctionalInterface
+    public interface ResponseReader<T> {
+        T read(int status, InputStream body) throws IOException;
+    }
+}
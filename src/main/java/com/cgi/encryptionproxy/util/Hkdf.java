@@ -0,0 +1,61 @@
+package com.cgi.encryptionproxy.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * HKDF with HMAC-SHA256 (RFC 5869)
+ */
+public class Hkdf {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int HASH_LENGTH = 32;
+
+    private Hkdf() {
+    }
+
+    /**
+     * Derives {@code length} bytes of key material from the input key material.
+     *
+     * @param ikm    input key material
+     * @param salt   optional salt, may be null
+     * @param info   context string binding the derived key to its use
+     * @param length number of bytes to derive, at most 255 * 32
+     */
+    public static byte[] derive(byte[] ikm, byte[] salt, String info, int length) {
+        return derive(ikm, salt, info.getBytes(StandardCharsets.UTF_8), length);
+    }
+
+    /**
+     * Derives {@code length} bytes of key material with binary context information.
+     */
+    public static byte[] derive(byte[] ikm, byte[] salt, byte[] info, int length) {
+        if (length > 255 * HASH_LENGTH) {
+            throw new IllegalArgumentException("HKDF output too long: " + length);
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(salt == null || salt.length == 0 ? new byte[HASH_LENGTH] : salt, ALGORITHM));
+            byte[] prk = mac.doFinal(ikm);
+
+            mac.init(new SecretKeySpec(prk, ALGORITHM));
+            byte[] okm = new byte[length];
+            byte[] block = new byte[0];
+            int offset = 0;
+            for (int counter = 1; offset < length; counter++) {
+                mac.update(block);
+                mac.update(info);
+                mac.update((byte) counter);
+                block = mac.doFinal();
+                int n = Math.min(block.length, length - offset);
+                System.arraycopy(block, 0, okm, offset, n);
+                offset += n;
+            }
+            return okm;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HKDF derivation failed", e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.cgi.encryptionproxy.util;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Path to fields of a JSON document: property names separated by dots, array
+ * elements selected by index or by {@code [*]} for all elements, e.g.
+ * {@code customer.iban} or {@code orders[*].card.number}. Fields missing from a
+ * document are skipped.
+ */
+public final class JsonFieldPath {
+
+    private static final int ALL = -1;
+
+    private final String expression;
+    // property names (String) and array indices (Integer, ALL for [*])
+    private final List<Object> segments;
+
+    private JsonFieldPath(String expression, List<Object> segments) {
+        this.expression = expression;
+        this.segments = segments;
+    }
+
+    public static JsonFieldPath parse(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("Field path must not be empty");
+        }
+        List<Object> segments = new ArrayList<>();
+        for (String part : expression.split("\\.", -1)) {
+            int bracket = part.indexOf('[');
+            String name = bracket < 0 ? part : part.substring(0, bracket);
+            if (name.isEmpty() && bracket != 0) {
+                throw new IllegalArgumentException("Invalid field path: " + expression);
+            }
+            if (!name.isEmpty()) {
+                segments.add(name);
+            }
+            while (bracket >= 0) {
+                int end = part.indexOf(']', bracket);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Invalid field path: " + expression);
+                }
+                String index = part.substring(bracket + 1, end);
+                try {
+                    if ("*".equals(index)) {
+                        segments.add(ALL);
+                    } else if (Integer.parseInt(index) >= 0) {
+                        segments.add(Integer.parseInt(index));
+                    } else {
+                        throw new NumberFormatException();
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid array index in field path: " + expression);
+                }
+                bracket = end + 1 < part.length() ? end + 1 : -1;
+                if (bracket >= 0 && part.charAt(bracket) != '[') {
+                    throw new IllegalArgumentException("Invalid field path: " + expression);
+                }
+            }
+        }
+        return new JsonFieldPath(expression, List.copyOf(segments));
+    }
+
+    /**
+     * Calls {@code action} for every field of {@code document} the path selects, in
+     * document order.
+     */
+    public void forEach(JsonNode document, Consumer<Field> action) {
+        visit(document, 0, action);
+    }
+
+    private void visit(JsonNode node, int depth, Consumer<Field> action) {
+        Object segment = segments.get(depth);
+        boolean last = depth == segments.size() - 1;
+        if (segment instanceof String name) {
+            if (node instanceof ObjectNode object && object.has(name)) {
+                if (last) {
+                    action.accept(new Field(object, name, 0));
+                } else {
+                    visit(object.get(name), depth + 1, action);
+                }
+            }
+        } else if (node instanceof ArrayNode array) {
+            int index = (Integer) segment;
+            int from = index == ALL ? 0 : index;
+            int to = index == ALL ? array.size() : Math.min(index + 1, array.size());
+            for (int i = from; i < to; i++) {
+                if (last) {
+                    action.accept(new Field(array, null, i));
+                } else {
+                    visit(array.get(i), depth + 1, action);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * A selected field: a property of an object or an element of an array. Fields are
+     * equal if they are the same place in the same document, whatever the paths that
+     * selected them.
+     */
+    public record Field(JsonNode parent, String name, int index) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Field field && parent == field.parent && index == field.index
+                    && Objects.equals(name, field.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(parent) * 31 + Objects.hashCode(name)) * 31 + index;
+        }
+
+        public JsonNode get() {
+            return name != null ? parent.get(name) : parent.get(index);
+        }
+
+        public void set(JsonNode value) {
+            if (name != null) {
+                ((ObjectNode) parent).set(name, value);
+            } else {
+                ((ArrayNode) parent).set(index, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.cgi.encryptionproxy.adapters;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadCodecTest {
+
+    private static final String REPETITIVE = payload("{\"name\":\"Jane\",\"city\":\"Berlin\"}".repeat(40),
+            "{\"source\":\"crm;export\"}");
+
+    @Test
+    void compressesListedKeysAboveTheThreshold() {
+        PayloadCodec codec = codec(Set.of("documents"), 512, null);
+
+        byte[] encoded = codec.encode("documents", REPETITIVE);
+        assertEquals(0x1F, encoded[0]);
+        assertTrue(encoded.length < REPETITIVE.length() / 4);
+        assertEquals(REPETITIVE, codec.decode(encoded));
+
+        String withoutMetadata = Base64.getEncoder().encodeToString(new byte[2048]);
+        assertEquals(withoutMetadata + ";", codec.decode(codec.encode("documents", withoutMetadata)));
+    }
+
+    @Test
+    void sendsOtherPayloadsUnchanged() {
+        byte[] plain = REPETITIVE.getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(plain, codec(Set.of("documents"), 512, null).encode("other", REPETITIVE));
+        assertArrayEquals(plain, codec(Set.of("documents"), plain.length, null).encode("documents", REPETITIVE));
+        assertArrayEquals(plain, new PayloadCodec(false, null, 0, 6, null).encode("documents", REPETITIVE));
+
+        // a frame larger than the Base64 payload is not sent
+        String tiny = payload("x", "");
+        assertArrayEquals(tiny.getBytes(StandardCharsets.UTF_8), codec(null, 0, null).encode("documents", tiny));
+
+        // random bytes do not shrink, but the binary frame still beats their Base64 form
+        byte[] random = new byte[4096];
+        new Random(1).nextBytes(random);
+        String incompressible = payload(random, "");
+        byte[] encoded = codec(null, 0, null).encode("documents", incompressible);
+        assertTrue(encoded.length < random.length + 64);
+        assertEquals(incompressible, codec(null, 0, null).decode(encoded));
+    }
+
+    @Test
+    void decodesPlainPayloadsWithAnyConfiguration() {
+        byte[] compressed = codec(null, 0, null).encode("documents", REPETITIVE);
+        PayloadCodec disabled = new PayloadCodec(false, null, 0, 6, null);
+
+        assertEquals(REPETITIVE, disabled.decode(compressed));
+        assertEquals(REPETITIVE, disabled.decode(REPETITIVE.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("", disabled.decode(new byte[0]));
+    }
+
+    @Test
+    void usesThePresetDictionary() {
+        byte[] dictionary = "{\"name\":\"\",\"city\":\"\"}".repeat(20).getBytes(StandardCharsets.UTF_8);
+        String small = payload("{\"name\":\"Jane\",\"city\":\"Berlin\"}", "");
+        PayloadCodec withDictionary = codec(null, 0, dictionary);
+
+        byte[] encoded = withDictionary.encode("documents", small);
+        assertEquals(2, encoded[1]);
+        assertTrue(encoded.length < codec(null, 0, null).encode("documents", small).length);
+        assertEquals(small, withDictionary.decode(encoded));
+
+        KmsItemException missing = assertThrows(KmsItemException.class,
+                () -> codec(null, 0, null).decode(encoded));
+        assertTrue(missing.getError().message().contains("dictionary"));
+
+        byte[] other = "something else entirely".getBytes(StandardCharsets.UTF_8);
+        assertThrows(KmsItemException.class, () -> codec(null, 0, other).decode(encoded));
+    }
+
+    @Test
+    void readsTheDictionaryFileFromTheParameters() throws IOException {
+        Path file = Files.createTempFile("dictionary", ".bin");
+        try {
+            Files.write(file, "{\"name\":\"\",\"city\":\"\"}".getBytes(StandardCharsets.UTF_8));
+            PayloadCodec codec = PayloadCodec.fromParameters(Map.of("compression", "deflate",
+                    "compressionkeys", "*", "compressionthreshold", "16", "compressiondictionary", file.toString()));
+            byte[] encoded = codec.encode("documents", REPETITIVE);
+            assertEquals(2, encoded[1]);
+            assertEquals(REPETITIVE, codec.decode(encoded));
+        } finally {
+            Files.delete(file);
+        }
+        assertThrows(IllegalStateException.class, () -> PayloadCodec.fromParameters(Map.of("compression", "zstd")));
+        assertThrows(IllegalStateException.class, () -> PayloadCodec.fromParameters(Map.of(
+                "compression", "deflate", "compressiondictionary", file.toString())));
+    }
+
+    @Test
+    void rejectsUnknownCompressionLevels() {
+        for (String level : new String[] {"-1", "0", "9"}) {
+            PayloadCodec codec = PayloadCodec.fromParameters(Map.of("compression", "deflate",
+                    "compressionkeys", "*", "compressionthreshold", "16", "compressionlevel", level));
+            assertEquals(REPETITIVE, codec.decode(codec.encode("documents", REPETITIVE)));
+        }
+        for (String level : new String[] {"-2", "10"}) {
+            assertThrows(IllegalStateException.class, () -> PayloadCodec.fromParameters(Map.of(
+                    "compression", "deflate", "compressionlevel", level)));
+        }
+    }
+
+    @Test
+    void rejectsCorruptedFrames() {
+        PayloadCodec codec = codec(null, 0, null);
+        byte[] encoded = codec.encode("documents", REPETITIVE);
+
+        byte[] unknownAlgorithm = encoded.clone();
+        unknownAlgorithm[1] = 9;
+        byte[] badMetadataLength = encoded.clone();
+        badMetadataLength[2] = 0x7F;
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 4);
+        byte[] garbage = encoded.clone();
+        Arrays.fill(garbage, 6 + 24, garbage.length, (byte) 0xFF);
+
+        for (byte[] corrupted : new byte[][] {unknownAlgorithm, badMetadataLength, truncated, garbage,
+                {0x1F}, {0x1F, 1, 0, 0}}) {
+            KmsItemException e = assertThrows(KmsItemException.class, () -> codec.decode(corrupted));
+            assertEquals(ErrorCode.INTERNAL, e.getError().code());
+        }
+    }
+
+    @Test
+    void limitsTheDecompressedSize() {
+        PayloadCodec codec = codec(null, 0, null);
+        // 64 MiB and one byte of zeros deflate to a few kilobytes
+        assertThrows(KmsItemException.class, () -> codec.decode(frame(new byte[64 * 1024 * 1024 + 1])));
+
+        byte[] large = new byte[1024 * 1024];
+        assertEquals(Base64.getEncoder().encodeToString(large) + ";", codec.decode(frame(large)));
+    }
+
+    private static PayloadCodec codec(Set<String> keys, int threshold, byte[] dictionary) {
+        return new PayloadCodec(true, keys, threshold, Deflater.DEFAULT_COMPRESSION, dictionary);
+    }
+
+    private static String payload(String plaintext, String metadata) {
+        return payload(plaintext.getBytes(StandardCharsets.UTF_8), metadata);
+    }
+
+    private static String payload(byte[] plaintext, String metadata) {
+        return Base64.getEncoder().encodeToString(plaintext) + ";" + metadata;
+    }
+
+    /**
+     * A deflate frame without metadata, built directly so its size is not limited by
+     * what encode would send.
+     */
+    private static byte[] frame(byte[] raw) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] buffer = new byte[raw.length / 100 + 1024];
+        int length = deflater.deflate(buffer);
+        deflater.end();
+        return ByteBuffer.allocate(6 + length).put((byte) 0x1F).put((byte) 1).putInt(0)
+                .put(buffer, 0, length).array();
+    }
+}
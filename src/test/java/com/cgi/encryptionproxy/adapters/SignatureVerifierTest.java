@@ -0,0 +1,93 @@
+package com.cgi.encryptionproxy.adapters;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SignatureVerifierTest {
+
+    private static final String INPUT = Base64.getEncoder().encodeToString("document".getBytes());
+
+    private final KeyPair keyPair;
+    private final String signature;
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    SignatureVerifierTest() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        keyPair = generator.generateKeyPair();
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update("document".getBytes());
+        signature = Base64.getEncoder().encodeToString(signer.sign());
+    }
+
+    @Test
+    void fetchesEachVersionOnce() {
+        SignatureVerifier verifier = new SignatureVerifier(this::versionsUpTo100);
+
+        assertEquals("true", verify(verifier, 7));
+        assertEquals("true", verify(verifier, 7));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void remembersUnknownVersions() {
+        SignatureVerifier verifier = new SignatureVerifier(this::versionsUpTo100);
+
+        for (int i = 0; i < 3; i++) {
+            BatchResult result = verifier.verifyBatch(List.of(operation(101)));
+            assertEquals(ErrorCode.KEY_NOT_FOUND, result.error(0).code());
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedKeyWhenFull() {
+        SignatureVerifier verifier = new SignatureVerifier((keyName, version) -> {
+            fetches.incrementAndGet();
+            return Map.of(version, key());
+        });
+
+        assertEquals("true", verify(verifier, 0));
+        for (int version = 1; version <= 5000; version++) {
+            // keeps version 0 recently used
+            if (version % 1000 == 0) {
+                assertEquals("true", verify(verifier, 0));
+            }
+            assertEquals("true", verify(verifier, version));
+        }
+        assertEquals(5001, fetches.get());
+
+        // still cached after a full cache of newer keys, the oldest of those is gone
+        verify(verifier, 0);
+        assertEquals(5001, fetches.get());
+        verify(verifier, 1);
+        assertEquals(5002, fetches.get());
+    }
+
+    private Map<Integer, VerificationKey> versionsUpTo100(String keyName, int version) {
+        fetches.incrementAndGet();
+        return version <= 100 ? Map.of(version, key()) : Map.of();
+    }
+
+    private VerificationKey key() {
+        return new VerificationKey(keyPair.getPublic(), "SHA256withECDSA", null);
+    }
+
+    private String verify(SignatureVerifier verifier, int version) {
+        return verifier.verifyBatch(List.of(operation(version))).valuesOrThrow()[0];
+    }
+
+    private VerifyOperation operation(int version) {
+        return new VerifyOperation("test", "sign", version, INPUT, signature);
+    }
+}
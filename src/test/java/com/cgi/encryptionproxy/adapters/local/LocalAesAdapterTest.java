@@ -0,0 +1,64 @@
+package com.cgi.encryptionproxy.adapters.local;
+
+import com.cgi.encryptionproxy.adapters.SignOperation;
+import com.cgi.encryptionproxy.adapters.VerifyOperation;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.security.Signature;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalAesAdapterTest {
+
+    private static final String KEYS = "sign=" + Base64.getEncoder().encodeToString(new byte[32]) + ","
+            + Base64.getEncoder().encodeToString(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                    17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32});
+    private static final String INPUT = Base64.getEncoder().encodeToString("document".getBytes());
+
+    @Test
+    void verifiesItsOwnSignatures() {
+        LocalAesAdapter adapter = adapter();
+        String signature = adapter.signBatch(List.of(new SignOperation("local", "sign", null, INPUT)))
+                .valuesOrThrow()[0];
+        assertTrue(signature.startsWith("2:"));
+
+        String[] verified = adapter.verifyBatch(List.of(
+                VerifyOperation.fromString("local", "sign", INPUT, signature),
+                VerifyOperation.fromString("local", "sign", Base64.getEncoder().encodeToString(new byte[1]), signature)))
+                .valuesOrThrow();
+        assertEquals(List.of("true", "false"), List.of(verified));
+    }
+
+    @Test
+    void generatesAKeyPairPerVersion() throws Exception {
+        LocalAesAdapter adapter = adapter();
+        for (int version = 1; version <= 2; version++) {
+            var key = adapter.fetchVerificationKeys("sign", version).get(version);
+
+            // checked with the JDK directly against the published public key
+            String signature = adapter.signBatch(List.of(new SignOperation("local", "sign", version, INPUT)))
+                    .valuesOrThrow()[0];
+            Signature verifier = Signature.getInstance("SHA256withECDSA");
+            verifier.initVerify(key.publicKey());
+            verifier.update("document".getBytes());
+            assertTrue(verifier.verify(Base64.getDecoder().decode(signature.substring(signature.indexOf(':') + 1))));
+        }
+        assertNotEquals(adapter.fetchVerificationKeys("sign", 1).get(1).publicKey(),
+                adapter.fetchVerificationKeys("sign", 2).get(2).publicKey());
+        assertEquals(adapter.fetchVerificationKeys("sign", 1).get(1).publicKey(),
+                adapter.fetchVerificationKeys("sign", 1).get(1).publicKey());
+    }
+
+    private static LocalAesAdapter adapter() {
+        LocalAesAdapter adapter = new LocalAesAdapter(JsonMapper.builder().build());
+        adapter.setName("local");
+        adapter.configure(Map.of("keys", KEYS, "autocreate", "false"));
+        return adapter;
+    }
+}
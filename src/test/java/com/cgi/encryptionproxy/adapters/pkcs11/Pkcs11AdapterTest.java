@@ -0,0 +1,133 @@
+package com.cgi.encryptionproxy.adapters.pkcs11;
+
+import com.cgi.encryptionproxy.adapters.BatchResult;
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.adapters.EncryptOperation;
+import com.cgi.encryptionproxy.adapters.ErrorCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.crypto.KeyGenerator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.Provider;
+import java.security.Security;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs against a SoftHSM (or any other) token given by PKCS11_TEST_LIBRARY,
+ * PKCS11_TEST_SLOT and PKCS11_TEST_PIN, and is skipped without one, e.g.
+ * <pre>
+ * softhsm2-util --init-token --free --label test --so-pin 0000 --pin 1234
+ * PKCS11_TEST_SLOT=&lt;slot id printed above&gt; PKCS11_TEST_PIN=1234 mvn test
+ * </pre>
+ */
+class Pkcs11AdapterTest {
+
+    private static final List<String> SOFTHSM_LIBRARIES = List.of(
+            "/usr/lib/softhsm/libsofthsm2.so",
+            "/usr/lib/x86_64-linux-gnu/softhsm/libsofthsm2.so",
+            "/usr/local/lib/softhsm/libsofthsm2.so",
+            "/opt/homebrew/lib/softhsm/libsofthsm2.so");
+
+    private String library;
+    private String slot;
+    private String pin;
+    private KeyStore token;
+    private String keyName;
+
+    @BeforeEach
+    void createKey() throws Exception {
+        library = System.getenv("PKCS11_TEST_LIBRARY");
+        if (library == null) {
+            library = SOFTHSM_LIBRARIES.stream().filter(path -> Files.exists(Path.of(path))).findFirst().orElse(null);
+        }
+        slot = System.getenv().getOrDefault("PKCS11_TEST_SLOT", "0");
+        pin = System.getenv("PKCS11_TEST_PIN");
+        assumeTrue(library != null && pin != null, "No PKCS#11 test token configured");
+
+        Provider provider = Security.getProvider("SunPKCS11")
+                .configure("--name=test-setup\nlibrary=" + library + "\nslot=" + slot + "\n");
+        token = KeyStore.getInstance("PKCS11", provider);
+        token.load(null, pin.toCharArray());
+
+        keyName = "test-" + UUID.randomUUID();
+        KeyGenerator generator = KeyGenerator.getInstance("AES", provider);
+        generator.init(256);
+        token.setEntry(keyName + ".v1", new KeyStore.SecretKeyEntry(generator.generateKey()), null);
+    }
+
+    @AfterEach
+    void deleteKey() throws Exception {
+        if (token != null) {
+            token.deleteEntry(keyName + ".v1");
+        }
+    }
+
+    @Test
+    void encryptsAndDecrypts() {
+        Pkcs11Adapter adapter = adapter(4);
+
+        BatchResult encrypted = adapter.encryptBatch(List.of(
+                new EncryptOperation("hsm", keyName, null, "first", null),
+                new EncryptOperation("hsm", keyName, null, "second", null)));
+        String[] ciphertexts = encrypted.valuesOrThrow();
+        assertEquals("1", ciphertexts[0].split(":")[0]);
+
+        BatchResult decrypted = adapter.decryptBatch(List.of(
+                DecryptOperation.parse("hsm", keyName, ciphertexts[0]),
+                DecryptOperation.parse("hsm", keyName, ciphertexts[1])));
+        assertEquals(List.of("first", "second"), List.of(decrypted.valuesOrThrow()));
+    }
+
+    @Test
+    void returnsTheSessionWhenItemsFail() {
+        // with a single session, a session that is not returned makes the next batch
+        // wait out the timeout and fail as unavailable
+        Pkcs11Adapter adapter = adapter(1);
+
+        for (int i = 0; i < 3; i++) {
+            BatchResult result = adapter.encryptBatch(List.of(
+                    new EncryptOperation("hsm", keyName + "-missing", 1, "value", null)));
+            assertEquals(ErrorCode.KEY_NOT_FOUND, result.error(0).code());
+        }
+        assertFalse(adapter.encryptBatch(List.of(new EncryptOperation("hsm", keyName, null, "value", null)))
+                .hasFailures());
+    }
+
+    @Test
+    void discardingAStaleSessionKeepsTheCurrentLogin() throws Exception {
+        Pkcs11SessionPool pool = new Pkcs11SessionPool("test-pool", library, Integer.parseInt(slot),
+                pin.toCharArray(), 2, 1_000);
+        Pkcs11SessionPool.Session first = pool.acquire();
+        Pkcs11SessionPool.Session second = pool.acquire();
+
+        pool.discard(first);
+        Pkcs11SessionPool.Session fresh = pool.acquire();
+        assertNotSame(first, fresh);
+
+        // the second session failing belongs to the login that was already replaced
+        pool.discard(second);
+        pool.release(fresh);
+        assertSame(fresh, pool.acquire());
+    }
+
+    private Pkcs11Adapter adapter(int sessions) {
+        Pkcs11Adapter adapter = new Pkcs11Adapter(JsonMapper.builder().build());
+        adapter.setName("hsm");
+        adapter.configure(Map.of("library", library, "slot", slot, "pin", pin,
+                "sessions", String.valueOf(sessions), "sessiontimeoutmillis", "500", "retries", "0"));
+        return adapter;
+    }
+}
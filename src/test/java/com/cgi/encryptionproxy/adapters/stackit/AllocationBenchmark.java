@@ -0,0 +1,100 @@
+package com.cgi.encryptionproxy.adapters.stackit;
+
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import com.cgi.encryptionproxy.adapters.EncryptOperation;
+import com.cgi.encryptionproxy.auth.BearerAccessToken;
+import com.cgi.encryptionproxy.transport.KmsHttpTransport;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bytes allocated per item on the encrypt and decrypt paths, with the Stackit API
+ * answering from a stub transport instead of the network. Counts the allocations of
+ * all threads, so the virtual threads of the per-item calls are included.
+ * <p>
+ * Not a test, run it by hand after building the test classes:
+ * <pre>
+ * java -cp target/test-classes:target/classes:&lt;dependencies&gt; \
+ *     com.cgi.encryptionproxy.adapters.stackit.AllocationBenchmark
+ * </pre>
+ */
+public class AllocationBenchmark {
+
+    private static final String KEY_ID = "7f1c2a4e-5b6d-4c8e-9a0b-1c2d3e4f5a6b";
+    private static final int BATCH = 50;
+    private static final int ITEMS = 100_000;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        ObjectMapper objectMapper = JsonMapper.builder().build();
+        StackitKmsApi api = new StackitKmsApi(new StubTransport(), "https://kms.invalid", "project", "region",
+                "keyring", new BearerAccessToken("token", 3600), objectMapper);
+
+        List<EncryptOperation> encrypts = new ArrayList<>();
+        List<StackitKmsApi.DecryptRequest> decrypts = new ArrayList<>();
+        for (int i = 0; i < BATCH; i++) {
+            encrypts.add(new EncryptOperation("stackit", KEY_ID, 1, "value-" + i, Map.of("row", i)));
+            decrypts.add(new StackitKmsApi.DecryptRequest("Y2lwaGVydGV4dA==", 1));
+        }
+
+        Runnable encrypt = () -> {
+            List<StackitKmsApi.EncryptRequest> requests = new ArrayList<>(BATCH);
+            for (EncryptOperation operation : encrypts) {
+                String payload = operation.toEncryptionPayload(operation.metadataJson(objectMapper));
+                requests.add(new StackitKmsApi.EncryptRequest(payload.getBytes(StandardCharsets.UTF_8)));
+            }
+            api.encryptBatch(KEY_ID, 1, requests);
+        };
+        Runnable decrypt = () -> api.decryptBatch(KEY_ID, decrypts);
+
+        report("encrypt", ITEMS / BATCH, BATCH, encrypt);
+        report("decrypt", ITEMS / BATCH, BATCH, decrypt);
+        // versions up to 127 come from the Integer cache, larger ones are boxed per call
+        report("fromString v1", ITEMS, 1, () -> DecryptOperation.fromString("stackit", KEY_ID, "1:Y2lwaGVydGV4dA=="));
+        report("fromString v1000", ITEMS, 1,
+                () -> DecryptOperation.fromString("stackit", KEY_ID, "1000:Y2lwaGVydGV4dA=="));
+    }
+
+    private static void report(String name, int runs, int itemsPerRun, Runnable run) {
+        // warm up, so class loading and JIT compilation are not counted
+        for (int i = 0; i < runs; i++) {
+            run.run();
+        }
+        long before = THREADS.getTotalThreadAllocatedBytes();
+        for (int i = 0; i < runs; i++) {
+            run.run();
+        }
+        long allocated = THREADS.getTotalThreadAllocatedBytes() - before;
+        System.out.printf("%-18s %8d B/item%n", name, allocated / ((long) runs * itemsPerRun));
+    }
+
+    /**
+     * Answers every call with a fixed body, without sending the request.
+     */
+    private static class StubTransport extends KmsHttpTransport {
+
+        private static final byte[] BODY = "{\"data\":\"Y2lwaGVydGV4dA==\"}".getBytes(StandardCharsets.UTF_8);
+
+        StubTransport() {
+            super("stub", Duration.ofSeconds(1), Duration.ofSeconds(1), 1, false, false);
+        }
+
+        @Override
+        public <T> T send(String operation, String keyName, int items, HttpRequest.Builder request,
+                ResponseReader<T> reader) throws IOException {
+            request.build();
+            return reader.read(200, new ByteArrayInputStream(BODY));
+        }
+    }
+}
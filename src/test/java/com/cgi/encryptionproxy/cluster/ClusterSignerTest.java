@@ -0,0 +1,80 @@
+package com.cgi.encryptionproxy.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterSignerTest {
+
+    private static final String PATH = ClusterRouter.DECRYPT_PATH;
+    private static final byte[] BODY = "{\"keyName\":\"documents\",\"items\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    private final ClusterSigner signer = new ClusterSigner("0123456789abcdef-cluster");
+
+    @Test
+    void acceptsItsOwnSignature() {
+        long now = System.currentTimeMillis();
+        assertTrue(signer.verify(PATH, Long.toString(now), BODY, signer.sign(PATH, now, BODY)));
+        // a replica with the same secret accepts it as well
+        assertTrue(new ClusterSigner("0123456789abcdef-cluster")
+                .verify(PATH, Long.toString(now), BODY, signer.sign(PATH, now, BODY)));
+    }
+
+    @Test
+    void rejectsATamperedBody() {
+        long now = System.currentTimeMillis();
+        String signature = signer.sign(PATH, now, BODY);
+        byte[] tampered = BODY.clone();
+        tampered[3] ^= 1;
+
+        assertFalse(signer.verify(PATH, Long.toString(now), tampered, signature));
+        assertFalse(signer.verify(PATH, Long.toString(now), new byte[0], signature));
+    }
+
+    @Test
+    void rejectsAnotherPath() {
+        long now = System.currentTimeMillis();
+        String signature = signer.sign(PATH, now, BODY);
+
+        assertFalse(signer.verify("/internal/v1/cluster/encrypt", Long.toString(now), BODY, signature));
+        // the separator keeps path and timestamp from running into each other
+        assertNotEquals(signer.sign(PATH + "1", now, BODY), signer.sign(PATH, Long.parseLong("1" + now), BODY));
+    }
+
+    @Test
+    void rejectsTimestampsOutsideTheSkewWindow() {
+        long now = System.currentTimeMillis();
+        for (long time : new long[] {now - 31_000, now + 31_000}) {
+            assertFalse(signer.verify(PATH, Long.toString(time), BODY, signer.sign(PATH, time, BODY)), "" + time);
+        }
+        for (long time : new long[] {now - 25_000, now + 25_000}) {
+            assertTrue(signer.verify(PATH, Long.toString(time), BODY, signer.sign(PATH, time, BODY)), "" + time);
+        }
+        // the signed timestamp cannot be replaced by a fresh one
+        long old = now - 60_000;
+        assertFalse(signer.verify(PATH, Long.toString(now), BODY, signer.sign(PATH, old, BODY)));
+    }
+
+    @Test
+    void rejectsMissingOrMalformedHeaders() {
+        long now = System.currentTimeMillis();
+        String signature = signer.sign(PATH, now, BODY);
+
+        assertFalse(signer.verify(PATH, null, BODY, signature));
+        assertFalse(signer.verify(PATH, Long.toString(now), BODY, null));
+        assertFalse(signer.verify(PATH, "yesterday", BODY, signature));
+        assertFalse(signer.verify(PATH, Long.toString(now), BODY, signature.toUpperCase()));
+        assertFalse(new ClusterSigner("another-secret-of-16").verify(PATH, Long.toString(now), BODY, signature));
+    }
+
+    @Test
+    void requiresALongEnoughSecret() {
+        assertThrows(IllegalStateException.class, () -> new ClusterSigner(null));
+        assertThrows(IllegalStateException.class, () -> new ClusterSigner("too-short"));
+    }
+}
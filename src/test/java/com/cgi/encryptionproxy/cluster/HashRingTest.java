@@ -0,0 +1,89 @@
+package com.cgi.encryptionproxy.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+
+    private static final int VIRTUAL_NODES = 128;
+    private static final List<String> PEERS = List.of("10.0.0.1:8080", "10.0.0.2:8080", "10.0.0.3:8080");
+    private static final List<String> KEYS = keys(10_000);
+
+    @Test
+    void spreadsKeysOverAllPeers() {
+        Map<String, String> owners = owners(new HashRing(PEERS, VIRTUAL_NODES));
+        for (String peer : PEERS) {
+            long owned = owners.values().stream().filter(peer::equals).count();
+            // a third each, within the variance of 128 virtual nodes
+            assertTrue(owned > KEYS.size() / 5 && owned < KEYS.size() / 2, peer + " owns " + owned);
+        }
+    }
+
+    @Test
+    void placesPeersIndependentlyOfTheirOrder() {
+        assertEquals(owners(new HashRing(PEERS, VIRTUAL_NODES)),
+                owners(new HashRing(PEERS.reversed(), VIRTUAL_NODES)));
+    }
+
+    @Test
+    void movesOnlyTheKeysOfAnAddedPeer() {
+        Map<String, String> before = owners(new HashRing(PEERS, VIRTUAL_NODES));
+        List<String> grown = new ArrayList<>(PEERS);
+        grown.add("10.0.0.4:8080");
+        Map<String, String> after = owners(new HashRing(grown, VIRTUAL_NODES));
+
+        int moved = 0;
+        for (String key : KEYS) {
+            if (!before.get(key).equals(after.get(key))) {
+                assertEquals("10.0.0.4:8080", after.get(key), key);
+                moved++;
+            }
+        }
+        // about a quarter of the keys go to the new peer
+        assertTrue(moved > KEYS.size() / 8 && moved < KEYS.size() / 2, moved + " keys moved");
+    }
+
+    @Test
+    void movesOnlyTheKeysOfARemovedPeer() {
+        Map<String, String> before = owners(new HashRing(PEERS, VIRTUAL_NODES));
+        Map<String, String> after = owners(new HashRing(PEERS.subList(0, 2), VIRTUAL_NODES));
+
+        for (String key : KEYS) {
+            if (before.get(key).equals("10.0.0.3:8080")) {
+                assertTrue(PEERS.subList(0, 2).contains(after.get(key)), key);
+            } else {
+                assertEquals(before.get(key), after.get(key), key);
+            }
+        }
+    }
+
+    @Test
+    void hasNoOwnerWithoutPeers() {
+        assertNull(new HashRing(List.of(), VIRTUAL_NODES).owner("documents"));
+        assertEquals("10.0.0.1:8080", new HashRing(List.of("10.0.0.1:8080"), 1).owner("documents"));
+    }
+
+    private static Map<String, String> owners(HashRing ring) {
+        Map<String, String> owners = new HashMap<>();
+        for (String key : KEYS) {
+            owners.put(key, ring.owner(key));
+        }
+        return owners;
+    }
+
+    private static List<String> keys(int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add("stackit/documents/1:" + i);
+        }
+        return keys;
+    }
+}
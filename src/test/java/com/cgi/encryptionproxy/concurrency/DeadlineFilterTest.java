@@ -0,0 +1,96 @@
+package com.cgi.encryptionproxy.concurrency;
+
+import com.cgi.encryptionproxy.config.DeadlineProperties;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineFilterTest {
+
+    private final DeadlineProperties properties = new DeadlineProperties();
+    private final DeadlineFilter filter = new DeadlineFilter(properties);
+
+    private Deadline seen;
+    private boolean called;
+    private final FilterChain chain = (request, response) -> {
+        called = true;
+        seen = Deadline.current();
+    };
+
+    @Test
+    void bindsTheTimeoutFromTheHeader() throws Exception {
+        assertEquals(200, filter("1500").getStatus());
+        assertRemaining(Duration.ofMillis(1500));
+        assertNull(Deadline.current());
+
+        // surrounding whitespace is tolerated
+        filter(" 250 ");
+        assertRemaining(Duration.ofMillis(250));
+    }
+
+    @Test
+    void capsTheTimeoutAtTheMaximum() throws Exception {
+        properties.setMaxTimeout(Duration.ofSeconds(2));
+        filter("600000");
+        assertRemaining(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void fallsBackToTheDefaultTimeout() throws Exception {
+        filter(null);
+        assertTrue(called);
+        assertNull(seen);
+
+        properties.setDefaultTimeout(Duration.ofSeconds(3));
+        filter(null);
+        assertRemaining(Duration.ofSeconds(3));
+    }
+
+    @Test
+    void rejectsMalformedHeaders() throws Exception {
+        for (String header : new String[] {"", "0", "-5", "1.5", "PT1S", "99999999999999999999"}) {
+            called = false;
+            MockHttpServletResponse response = filter(header);
+            assertEquals(400, response.getStatus(), header);
+            assertTrue(response.getErrorMessage().contains("X-Request-Timeout"), header);
+            assertFalse(called, header);
+        }
+    }
+
+    @Test
+    void readsTheConfiguredHeader() throws Exception {
+        properties.setHeader("Grpc-Timeout-Millis");
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/encrypt");
+        request.addHeader("Grpc-Timeout-Millis", "700");
+        request.addHeader("X-Request-Timeout", "nonsense");
+        filter.doFilterInternal(request, new MockHttpServletResponse(), chain);
+        assertRemaining(Duration.ofMillis(700));
+    }
+
+    private MockHttpServletResponse filter(String header) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/encrypt");
+        if (header != null) {
+            request.addHeader("X-Request-Timeout", header);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilterInternal(request, response, chain);
+        return response;
+    }
+
+    /**
+     * The chain saw a deadline of about {@code timeout}, allowing for the time the test took.
+     */
+    private void assertRemaining(Duration timeout) {
+        long remaining = seen.remainingNanos();
+        assertTrue(remaining <= timeout.toNanos(), remaining + " ns left");
+        assertTrue(remaining > timeout.toNanos() - Duration.ofSeconds(1).toNanos(), remaining + " ns left");
+    }
+}
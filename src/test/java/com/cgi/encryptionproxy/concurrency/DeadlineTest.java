@@ -0,0 +1,80 @@
+package com.cgi.encryptionproxy.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineTest {
+
+    @Test
+    void expires() throws InterruptedException {
+        Deadline deadline = Deadline.in(Duration.ofMillis(50));
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remainingNanos() > 0);
+
+        Thread.sleep(100);
+        assertTrue(deadline.isExpired());
+        assertTrue(deadline.remainingNanos() <= 0);
+        assertTrue(Deadline.in(Duration.ZERO).isExpired());
+    }
+
+    @Test
+    void capsTimeoutsAtTheCurrentDeadline() {
+        Duration timeout = Duration.ofSeconds(30);
+        assertFalse(Deadline.isCurrentExpired());
+        assertSame(timeout, Deadline.cap(timeout));
+
+        Deadline.Scope scope = Deadline.enter(Deadline.in(Duration.ofSeconds(1)));
+        try {
+            assertTrue(Deadline.cap(timeout).compareTo(Duration.ofSeconds(1)) <= 0);
+            assertEquals(Duration.ofMillis(10), Deadline.cap(Duration.ofMillis(10)));
+        } finally {
+            scope.close();
+        }
+
+        scope = Deadline.enter(Deadline.in(Duration.ofSeconds(-1)));
+        try {
+            assertTrue(Deadline.isCurrentExpired());
+            assertEquals(Duration.ZERO, Deadline.cap(timeout));
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    void restoresThePreviousDeadline() {
+        Deadline outer = Deadline.in(Duration.ofMinutes(1));
+        Deadline inner = Deadline.in(Duration.ofSeconds(1));
+
+        Deadline.Scope outerScope = Deadline.enter(outer);
+        Deadline.Scope innerScope = Deadline.enter(inner);
+        assertSame(inner, Deadline.current());
+        innerScope.close();
+        assertSame(outer, Deadline.current());
+        outerScope.close();
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    void propagatesOnlyToWrappedTasks() throws Exception {
+        Deadline deadline = Deadline.in(Duration.ofMinutes(1));
+        Callable<Deadline> current = Deadline::current;
+
+        assertSame(deadline, Deadline.propagate(deadline, current).call());
+        assertNull(Deadline.current());
+        assertSame(current, Deadline.propagate(null, current));
+
+        Deadline[] seen = new Deadline[1];
+        Runnable task = () -> seen[0] = Deadline.current();
+        Thread thread = Thread.ofVirtual().start(Deadline.propagate(deadline, task));
+        thread.join();
+        assertSame(deadline, seen[0]);
+    }
+}
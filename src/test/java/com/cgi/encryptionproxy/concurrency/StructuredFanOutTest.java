@@ -0,0 +1,101 @@
+package com.cgi.encryptionproxy.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StructuredFanOutTest {
+
+    private static final Callable<String> SLOW = () -> {
+        Thread.sleep(10_000);
+        return "late";
+    };
+
+    @Test
+    void returnsResultsInTaskOrder() {
+        List<Callable<String>> tasks = List.of(
+                () -> {
+                    Thread.sleep(50);
+                    return "a";
+                },
+                () -> "b",
+                () -> "invalid item");
+
+        // a failed item that does not doom the batch leaves the siblings running
+        List<String> results = StructuredFanOut.invokeAll(tasks, "unauthorized"::equals, this::describe);
+        assertEquals(List.of("a", "b", "invalid item"), results);
+    }
+
+    @Test
+    void cancelsSiblingsOnTheFirstFailure() {
+        List<Callable<String>> tasks = List.of(SLOW, () -> {
+            Thread.sleep(50);
+            throw new IllegalStateException("KMS down");
+        }, SLOW);
+
+        long started = System.nanoTime();
+        List<String> results = StructuredFanOut.invokeAll(tasks, result -> false, this::describe);
+
+        assertEquals(List.of("cancelled", "IllegalStateException", "cancelled"), results);
+        assertTrue(elapsed(started).compareTo(Duration.ofSeconds(5)) < 0);
+    }
+
+    @Test
+    void cancelsSiblingsOnAResultThatDoomsTheBatch() {
+        List<Callable<String>> tasks = List.of(SLOW, () -> "unauthorized", SLOW);
+
+        long started = System.nanoTime();
+        List<String> results = StructuredFanOut.invokeAll(tasks, "unauthorized"::equals, this::describe);
+
+        assertEquals(List.of("cancelled", "unauthorized", "cancelled"), results);
+        assertTrue(elapsed(started).compareTo(Duration.ofSeconds(5)) < 0);
+    }
+
+    @Test
+    void cancelsEverythingAtTheDeadline() {
+        Deadline deadline = Deadline.in(Duration.ofMillis(200));
+        List<Callable<String>> tasks = List.of(
+                () -> Deadline.current() == deadline ? "propagated" : "missing",
+                SLOW, SLOW);
+
+        long started = System.nanoTime();
+        List<String> results;
+        Deadline.Scope scope = Deadline.enter(deadline);
+        try {
+            results = StructuredFanOut.invokeAll(tasks, result -> false, this::describe);
+        } finally {
+            scope.close();
+        }
+
+        assertEquals(List.of("propagated", "cancelled", "cancelled"), results);
+        assertTrue(elapsed(started).compareTo(Duration.ofSeconds(5)) < 0);
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    void cancelsEverythingAtAnExpiredDeadline() {
+        List<String> results;
+        Deadline.Scope scope = Deadline.enter(Deadline.in(Duration.ZERO));
+        try {
+            results = StructuredFanOut.invokeAll(List.of(SLOW, SLOW), result -> false, this::describe);
+        } finally {
+            scope.close();
+        }
+        assertEquals(List.of("cancelled", "cancelled"), results);
+    }
+
+    private String describe(Throwable failure) {
+        return failure instanceof CancellationException ? "cancelled" : failure.getClass().getSimpleName();
+    }
+
+    private static Duration elapsed(long started) {
+        return Duration.ofNanos(System.nanoTime() - started);
+    }
+}
@@ -0,0 +1,183 @@
+package com.cgi.encryptionproxy.crypto;
+
+import com.cgi.encryptionproxy.adapters.DecryptOperation;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CiphertextEnvelopeTest {
+
+    private static final String UUID_KEY = "7f1c2a4e-5b6d-4c8e-9a0b-1c2d3e4f5a6b";
+    private static final String PAYLOAD = "vault:v1:c2VjcmV0";
+
+    private final CiphertextEnvelope.Reader reader = new CiphertextEnvelope.Reader();
+
+    @Test
+    void roundTripsNamedKeysForEveryPadding() {
+        Set<Integer> remainders = new HashSet<>();
+        for (int length = 1; length <= 6; length++) {
+            String keyName = "k".repeat(length);
+            for (int version : new int[] {1, 127, 128, Integer.MAX_VALUE}) {
+                remainders.add(headerRemainder(3, keyName, version));
+                assertRoundTrip(3, keyName, version);
+            }
+        }
+        assertEquals(Set.of(0, 1, 2), remainders);
+
+        assertRoundTrip(0, "ä".repeat(CiphertextEnvelope.MAX_KEY_NAME_BYTES / 2), 1);
+        assertRoundTrip(1, "k".repeat(CiphertextEnvelope.MAX_KEY_NAME_BYTES), 1);
+    }
+
+    @Test
+    void roundTripsUuidKeysForEveryPadding() {
+        Set<Integer> remainders = new HashSet<>();
+        for (int providerId : new int[] {1, 200, 40_000}) {
+            for (int version : new int[] {1, 300}) {
+                remainders.add(headerRemainder(providerId, UUID_KEY, version));
+                assertRoundTrip(providerId, UUID_KEY, version);
+            }
+        }
+        assertEquals(Set.of(0, 1, 2), remainders);
+
+        // only the canonical lower-case form is stored as 16 bytes, others keep their spelling
+        assertRoundTrip(1, UUID_KEY.toUpperCase(), 1);
+        assertTrue(CiphertextEnvelope.encode(1, UUID_KEY, 1, PAYLOAD).length()
+                < CiphertextEnvelope.encode(1, UUID_KEY.toUpperCase(), 1, PAYLOAD).length());
+    }
+
+    @Test
+    void keepsTheKeyNameInstanceWhileItRepeats() {
+        reader.read(CiphertextEnvelope.encode(1, "orders", 1, PAYLOAD));
+        String first = reader.keyName();
+        reader.read(CiphertextEnvelope.encode(2, "orders", 5, "other"));
+        assertSame(first, reader.keyName());
+
+        reader.read(CiphertextEnvelope.encode(1, "orderz", 1, PAYLOAD));
+        assertEquals("orderz", reader.keyName());
+        reader.read(CiphertextEnvelope.encode(1, UUID_KEY, 1, PAYLOAD));
+        assertEquals(UUID_KEY, reader.keyName());
+    }
+
+    @Test
+    void rejectsMalformedHeaders() {
+        String valid = CiphertextEnvelope.encode(3, "orders", 2, PAYLOAD);
+        int headerChars = valid.length() - PAYLOAD.length();
+
+        // header only, no payload
+        assertFalse(reader.read(valid.substring(0, headerChars)));
+        // cut inside the header
+        assertFalse(reader.read(valid.substring(0, headerChars - 4)));
+        // not Base64
+        assertFalse(reader.read("A*" + valid.substring(2)));
+
+        assertFalse(reader.read(header(2, 0x02, 3, 2, 6, "orders")), "unknown flag");
+        assertFalse(reader.read(header(3, 0, 3, 2, 6, "orders")), "unknown format");
+        assertFalse(reader.read(header(2, 0, 3, 2, 0, "")), "empty key name");
+        assertFalse(reader.read(header(2, 0, 3, 2, 200, "orders")), "key name longer than the value");
+        assertFalse(reader.read(header(2, 0, 3, 2, 6, "orders\u0001")), "non-zero padding");
+        assertFalse(reader.read(header(2, CiphertextEnvelope.FLAG_UUID_KEY, 3, 2, -1, "short")), "short UUID");
+
+        // a varint above 31 bits
+        byte[] overflow = {2, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 1, 1, 'k', 0, 0};
+        assertFalse(reader.read(Base64.getEncoder().encodeToString(overflow) + PAYLOAD));
+        // provider id 3 in two bytes instead of one, which would shift every later field
+        byte[] padded = {2, 0, (byte) 0x83, 0x00, 2, 1, 'k', 0, 0};
+        assertFalse(reader.read(Base64.getEncoder().encodeToString(padded) + PAYLOAD));
+    }
+
+    @Test
+    void rejectsKeyNamesThatDoNotFit() {
+        assertThrows(IllegalArgumentException.class, () -> CiphertextEnvelope.checkKeyName(null));
+        assertThrows(IllegalArgumentException.class, () -> CiphertextEnvelope.checkKeyName(""));
+        assertThrows(IllegalArgumentException.class,
+                () -> CiphertextEnvelope.checkKeyName("k".repeat(CiphertextEnvelope.MAX_KEY_NAME_BYTES + 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> CiphertextEnvelope.encode(1, "ä".repeat(128), 1, PAYLOAD));
+    }
+
+    @Test
+    void tellsLegacyValuesFromEnvelopes() {
+        String envelope = CiphertextEnvelope.encode(3, "orders", 12, PAYLOAD);
+        assertTrue(envelope.startsWith("A"));
+        assertTrue(CiphertextEnvelope.isEnvelope(envelope));
+        assertFalse(CiphertextEnvelope.isEnvelope("12:" + PAYLOAD));
+        assertFalse(CiphertextEnvelope.isEnvelope(""));
+        assertFalse(CiphertextEnvelope.isEnvelope(null));
+
+        DecryptOperation legacy = DecryptOperation.parse("vault", "orders", "12:" + PAYLOAD, reader, id -> "other");
+        assertEquals(new DecryptOperation("vault", "orders", 12, PAYLOAD), legacy);
+
+        DecryptOperation named = DecryptOperation.parse("vault", "ignored", envelope, reader,
+                id -> id == 3 ? "stackit" : null);
+        assertEquals(new DecryptOperation("stackit", "orders", 12, PAYLOAD), named);
+
+        // an unknown provider id leaves the provider open, a broken header the version
+        assertNull(DecryptOperation.parse("vault", "orders", envelope, reader, id -> null).provider());
+        assertNull(DecryptOperation.parse("vault", "orders", "A" + envelope.substring(5), reader, id -> "x")
+                .keyVersion());
+    }
+
+    @Test
+    void parsesRequestedFormats() {
+        assertFalse(CiphertextEnvelope.isRequested(null));
+        assertFalse(CiphertextEnvelope.isRequested("v1"));
+        assertTrue(CiphertextEnvelope.isRequested("v2"));
+        assertThrows(IllegalArgumentException.class, () -> CiphertextEnvelope.isRequested("V2"));
+    }
+
+    private void assertRoundTrip(int providerId, String keyName, int version) {
+        String encoded = CiphertextEnvelope.encode(providerId, keyName, version, PAYLOAD);
+        String context = providerId + "/" + keyName + "/" + version;
+
+        assertTrue(encoded.endsWith(PAYLOAD), context);
+        assertTrue(reader.read(encoded), context);
+        assertEquals(providerId, reader.providerId(), context);
+        assertEquals(version, reader.keyVersion(), context);
+        assertEquals(keyName, reader.keyName(), context);
+        assertEquals(PAYLOAD, reader.payload(), context);
+    }
+
+    /**
+     * Header bytes before padding, modulo 3.
+     */
+    private static int headerRemainder(int providerId, String keyName, int version) {
+        int length = 2 + varIntLength(providerId) + varIntLength(version);
+        length += keyName.equals(UUID_KEY) ? 16 : varIntLength(keyName.length()) + keyName.length();
+        return length % 3;
+    }
+
+    private static int varIntLength(int value) {
+        return value < 0x80 ? 1 : value < 0x4000 ? 2 : value < 0x200000 ? 3 : value < 0x10000000 ? 4 : 5;
+    }
+
+    /**
+     * A hand-built header with single byte varints, padded with zeros and followed by the payload.
+     *
+     * @param keyLength the length byte, or -1 to leave it out
+     */
+    private static String header(int format, int flags, int providerId, int version, int keyLength, String key) {
+        StringBuilder bytes = new StringBuilder();
+        bytes.append((char) format).append((char) flags).append((char) providerId).append((char) version);
+        if (keyLength >= 0) {
+            bytes.append((char) keyLength);
+        }
+        bytes.append(key);
+        while (bytes.length() % 3 != 0) {
+            bytes.append('\0');
+        }
+        byte[] raw = new byte[bytes.length()];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (byte) bytes.charAt(i);
+        }
+        return Base64.getEncoder().encodeToString(raw) + PAYLOAD;
+    }
+}
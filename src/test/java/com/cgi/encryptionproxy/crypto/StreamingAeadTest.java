@@ -0,0 +1,153 @@
+package com.cgi.encryptionproxy.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingAeadTest {
+
+    private static final int SEGMENT = StreamingAead.MIN_SEGMENT_SIZE;
+    private static final int SEALED = SEGMENT + StreamingAead.TAG_LENGTH;
+
+    private final byte[] key = new byte[32];
+    private final StreamingAead.Header header =
+            StreamingAead.Header.create(SEGMENT, "vault", "documents", "1:wrapped");
+
+    @Test
+    void roundTripsAroundSegmentBoundaries() throws IOException {
+        for (int size : new int[] {0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 3 * SEGMENT, 3 * SEGMENT + 17}) {
+            byte[] plaintext = plaintext(size);
+            byte[] encrypted = encrypt(plaintext);
+            assertArrayEquals(plaintext, decrypt(encrypted), "size " + size);
+        }
+    }
+
+    @Test
+    void sealsOnlyEmptyInputAsAnEmptySegment() throws IOException {
+        // look-ahead marks a full segment as last, so a multiple of the segment size gets no empty tail
+        int headerLength = header.encode().length;
+        assertEquals(headerLength + StreamingAead.TAG_LENGTH, encrypt(new byte[0]).length);
+        assertEquals(headerLength + 2 * SEALED, encrypt(plaintext(2 * SEGMENT)).length);
+        assertEquals(headerLength + 2 * SEALED + 1 + StreamingAead.TAG_LENGTH,
+                encrypt(plaintext(2 * SEGMENT + 1)).length);
+    }
+
+    @Test
+    void rejectsADroppedFullLastSegment() throws IOException {
+        byte[] encrypted = encrypt(plaintext(2 * SEGMENT));
+        int headerLength = header.encode().length;
+
+        assertThrows(IllegalArgumentException.class, () -> decrypt(Arrays.copyOf(encrypted, headerLength + SEALED)));
+        assertThrows(IllegalArgumentException.class, () -> decrypt(Arrays.copyOf(encrypted, headerLength)));
+    }
+
+    @Test
+    void rejectsTruncation() throws IOException {
+        byte[] encrypted = encrypt(plaintext(2 * SEGMENT + 100));
+        int body = header.encode().length;
+
+        // whole trailing segment dropped: the new last segment was not sealed as last
+        assertThrows(IllegalArgumentException.class, () -> decrypt(Arrays.copyOf(encrypted, body + 2 * SEALED)));
+        // cut inside the last segment
+        assertThrows(IllegalArgumentException.class, () -> decrypt(Arrays.copyOf(encrypted, encrypted.length - 1)));
+        // shorter than a tag
+        assertThrows(IllegalArgumentException.class, () -> decrypt(Arrays.copyOf(encrypted, body + 2 * SEALED + 3)));
+    }
+
+    @Test
+    void rejectsReorderedSegments() throws IOException {
+        byte[] encrypted = encrypt(plaintext(3 * SEGMENT + 5));
+        int first = header.encode().length;
+
+        byte[] swapped = encrypted.clone();
+        System.arraycopy(encrypted, first + SEALED, swapped, first, SEALED);
+        System.arraycopy(encrypted, first, swapped, first + SEALED, SEALED);
+        assertThrows(IllegalArgumentException.class, () -> decrypt(swapped));
+    }
+
+    @Test
+    void rejectsModifiedSegmentsAndHeaders() throws IOException {
+        byte[] encrypted = encrypt(plaintext(SEGMENT + 5));
+
+        byte[] flipped = encrypted.clone();
+        flipped[flipped.length - 1] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> decrypt(flipped));
+
+        // the key name is part of the associated data of every segment
+        byte[] renamed = encrypted.clone();
+        int keyNameAt = indexOf(renamed, "documents".getBytes());
+        renamed[keyNameAt] = 'D';
+        assertThrows(IllegalArgumentException.class, () -> decrypt(renamed));
+
+        byte[] otherKey = new byte[32];
+        otherKey[0] = 1;
+        assertThrows(IllegalArgumentException.class, () -> {
+            ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(encrypted));
+            StreamingAead.decrypt(in, Channels.newChannel(new ByteArrayOutputStream()), otherKey,
+                    StreamingAead.Header.read(in));
+        });
+    }
+
+    @Test
+    void readsBackTheHeader() throws IOException {
+        StreamingAead.Header header = StreamingAead.Header.create(4096, "vault", "documents", "1:wrapped");
+        StreamingAead.Header read = StreamingAead.Header.read(
+                Channels.newChannel(new ByteArrayInputStream(header.encode())));
+
+        assertEquals(4096, read.segmentSize());
+        assertArrayEquals(header.noncePrefix(), read.noncePrefix());
+        assertEquals("vault", read.provider());
+        assertEquals("documents", read.keyName());
+        assertEquals("1:wrapped", read.wrappedKey());
+
+        byte[] encoded = header.encode();
+        assertThrows(IllegalArgumentException.class, () -> StreamingAead.Header.read(
+                Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(encoded, encoded.length - 1)))));
+        encoded[0] = 'X';
+        assertThrows(IllegalArgumentException.class, () -> StreamingAead.Header.read(
+                Channels.newChannel(new ByteArrayInputStream(encoded))));
+        assertThrows(IllegalArgumentException.class,
+                () -> StreamingAead.Header.create(StreamingAead.MIN_SEGMENT_SIZE - 1, "vault", "documents", "1:w"));
+    }
+
+    private byte[] encrypt(byte[] plaintext) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = StreamingAead.encrypt(Channels.newChannel(new ByteArrayInputStream(plaintext)),
+                Channels.newChannel(out), key, header);
+        assertEquals(plaintext.length, written);
+        return out.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] encrypted) throws IOException {
+        ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(encrypted));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = StreamingAead.decrypt(in, Channels.newChannel(out), key, StreamingAead.Header.read(in));
+        assertEquals(out.size(), written);
+        return out.toByteArray();
+    }
+
+    private static byte[] plaintext(int size) {
+        byte[] plaintext = new byte[size];
+        new Random(size).nextBytes(plaintext);
+        return plaintext;
+    }
+
+    private static int indexOf(byte[] data, byte[] part) {
+        for (int i = 0; i <= data.length - part.length; i++) {
+            if (Arrays.equals(data, i, i + part.length, part, 0, part.length)) {
+                return i;
+            }
+        }
+        throw new AssertionError("not found");
+    }
+}
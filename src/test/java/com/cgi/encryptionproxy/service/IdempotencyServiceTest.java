@@ -0,0 +1,183 @@
+package com.cgi.encryptionproxy.service;
+
+import com.cgi.encryptionproxy.adapters.ItemError;
+import com.cgi.encryptionproxy.config.IdempotencyProperties;
+import com.cgi.encryptionproxy.dto.CiphertextResponse;
+import com.cgi.encryptionproxy.exception.IdempotencyKeyReusedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyServiceTest {
+
+    private static final Map<String, String> BODY = Map.of("keyName", "customers");
+
+    private IdempotencyProperties properties;
+    private IdempotencyService service;
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        properties = new IdempotencyProperties();
+        service = new IdempotencyService(properties, JsonMapper.builder().build());
+    }
+
+    @Test
+    void replaysTheResponseOfACompletedRequest() {
+        ResponseEntity<List<CiphertextResponse>> first = service.execute(request("a"), BODY, () -> ok("1:x"));
+        ResponseEntity<List<CiphertextResponse>> retry = service.execute(request("a"), BODY, () -> ok("1:y"));
+
+        assertEquals(1, runs.get());
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertSame(first.getBody(), retry.getBody());
+    }
+
+    @Test
+    void runsRequestsWithoutKeyEveryTime() {
+        service.execute(request(null), BODY, () -> ok("1:x"));
+        service.execute(request(null), BODY, () -> ok("1:x"));
+
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void rejectsAKeyReusedForAnotherBody() {
+        service.execute(request("a"), BODY, () -> ok("1:x"));
+
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> service.execute(request("a"), Map.of("keyName", "orders"), () -> ok("1:y")));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void retryWhileTheOriginalRunsWaitsForItsResponse() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<List<CiphertextResponse>>> original = CompletableFuture.supplyAsync(
+                () -> service.execute(request("a"), BODY, () -> {
+                    started.countDown();
+                    await(release);
+                    return ok("1:x");
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<ResponseEntity<List<CiphertextResponse>>> retry = CompletableFuture.supplyAsync(
+                () -> service.execute(request("a"), BODY, () -> ok("1:y")));
+        Thread.sleep(50);
+        assertFalse(retry.isDone(), "retry must wait for the original");
+        release.countDown();
+
+        assertEquals("1:x", retry.get(5, TimeUnit.SECONDS).getBody().getFirst().getCiphertext());
+        assertEquals("true", retry.get().getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertSame(original.get().getBody(), retry.get().getBody());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void doesNotKeepFailedRequests() {
+        service.execute(request("a"), BODY, () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        });
+        service.execute(request("a"), BODY, () -> ok("1:x"));
+
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void doesNotKeepBatchesWithTransientItemFailures() {
+        service.execute(request("a"), BODY, () -> partial(ItemError.unavailable("KMS down")));
+        ResponseEntity<List<CiphertextResponse>> retry = service.execute(request("a"), BODY, () -> ok("1:x"));
+
+        assertEquals(2, runs.get());
+        assertNull(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals("1:x", retry.getBody().getFirst().getCiphertext());
+    }
+
+    @Test
+    void doesNotKeepBatchesWithItemsPastTheirDeadline() {
+        service.execute(request("a"), BODY, () -> partial(ItemError.deadlineExceeded()));
+        service.execute(request("a"), BODY, () -> ok("1:x"));
+
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void keepsBatchesWithPermanentItemFailures() {
+        service.execute(request("a"), BODY, () -> partial(ItemError.invalidInput("not Base64")));
+        ResponseEntity<List<CiphertextResponse>> retry = service.execute(request("a"), BODY, () -> ok("1:x"));
+
+        assertEquals(1, runs.get());
+        assertEquals(HttpStatus.MULTI_STATUS, retry.getStatusCode());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void evictsTheOldestResponsesOverTheSizeBudget() {
+        properties.setMaxBytes(200);
+        service.execute(request("a"), BODY, () -> ok("1:" + "x".repeat(60)));
+        service.execute(request("b"), BODY, () -> ok("1:" + "y".repeat(60)));
+        assertEquals(2, runs.get());
+
+        service.execute(request("b"), BODY, () -> ok("1:z"));
+        assertEquals(2, runs.get());
+        service.execute(request("a"), BODY, () -> ok("1:z"));
+        assertEquals(3, runs.get());
+    }
+
+    @Test
+    void forgetsResponsesAfterTheTtl() throws InterruptedException {
+        properties.setTtl(Duration.ofMillis(20));
+        service.execute(request("a"), BODY, () -> ok("1:x"));
+        Thread.sleep(50);
+        service.execute(request("a"), BODY, () -> ok("1:x"));
+
+        assertEquals(2, runs.get());
+    }
+
+    private static MockHttpServletRequest request(String key) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/encrypt");
+        if (key != null) {
+            request.addHeader("Idempotency-Key", key);
+        }
+        return request;
+    }
+
+    private ResponseEntity<List<CiphertextResponse>> ok(String ciphertext) {
+        runs.incrementAndGet();
+        return ResponseEntity.ok(List.of(new CiphertextResponse(ciphertext)));
+    }
+
+    private ResponseEntity<List<CiphertextResponse>> partial(ItemError error) {
+        runs.incrementAndGet();
+        return ResponseEntity.status(HttpStatus.MULTI_STATUS)
+                .body(List.of(new CiphertextResponse("1:x"), CiphertextResponse.failed(error)));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.cgi.encryptionproxy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The SHA-256 test cases of RFC 5869, appendix A.
+ */
+class HkdfTest {
+
+    @Test
+    void derivesTheBasicTestCase() {
+        byte[] okm = Hkdf.derive(hex("0b".repeat(22)), hex("000102030405060708090a0b0c"),
+                hex("f0f1f2f3f4f5f6f7f8f9"), 42);
+        assertArrayEquals(hex("3cb25f25faacd57a90434f64d0362f2a2d2d0a90cf1a5a4c5db02d56ecc4c5bf"
+                + "34007208d5b887185865"), okm);
+    }
+
+    @Test
+    void derivesTheTestCaseWithLongerInputs() {
+        byte[] okm = Hkdf.derive(range(0x00, 80), range(0x60, 80), range(0xb0, 80), 82);
+        assertArrayEquals(hex("b11e398dc80327a1c8e7f78c596a49344f012eda2d4efad8a050cc4c19afa97c"
+                + "59045a99cac7827271cb41c65e590e09da3275600c2f09b8367793a9aca3db71"
+                + "cc30c58179ec3e87c14c01d5c1f3434f1d87"), okm);
+    }
+
+    @Test
+    void derivesTheTestCaseWithoutSaltAndInfo() {
+        byte[] expected = hex("8da4e775a563c18f715f802a063c5a31b8a11f5c5ee1879ec3454e5f3c738d2d"
+                + "9d201395faa4b61a96c8");
+        assertArrayEquals(expected, Hkdf.derive(hex("0b".repeat(22)), new byte[0], new byte[0], 42));
+        // a missing salt is the same as an empty one, an empty string the same as no info
+        assertArrayEquals(expected, Hkdf.derive(hex("0b".repeat(22)), null, "", 42));
+    }
+
+    @Test
+    void encodesStringInfoAsUtf8() {
+        byte[] ikm = hex("0b".repeat(22));
+        assertArrayEquals(Hkdf.derive(ikm, null, "schlüssel".getBytes(StandardCharsets.UTF_8), 32),
+                Hkdf.derive(ikm, null, "schlüssel", 32));
+    }
+
+    @Test
+    void limitsTheOutputLength() {
+        assertEquals(255 * 32, Hkdf.derive(new byte[32], null, "", 255 * 32).length);
+        assertThrows(IllegalArgumentException.class, () -> Hkdf.derive(new byte[32], null, "", 255 * 32 + 1));
+    }
+
+    private static byte[] hex(String hex) {
+        return HexFormat.of().parseHex(hex);
+    }
+
+    private static byte[] range(int first, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (first + i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,82 @@
+package com.cgi.encryptionproxy.util;
+
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonFieldPathTest {
+
+    private final JsonMapper mapper = JsonMapper.builder().build();
+
+    @Test
+    void selectsPropertiesAndArrayElements() {
+        JsonNode document = mapper.readTree("{\"iban\":\"DE\",\"orders\":[{\"card\":{\"number\":1}},{\"card\":{}},"
+                + "{\"card\":{\"number\":3}}]}");
+
+        assertEquals(List.of("\"DE\""), values("iban", document));
+        assertEquals(List.of("1", "3"), values("orders[*].card.number", document));
+        assertEquals(List.of("3"), values("orders[2].card.number", document));
+        assertEquals(List.of(), values("orders[5].card.number", document));
+        assertEquals(List.of(), values("missing.field", document));
+    }
+
+    @Test
+    void selectsElementsOfNestedArrays() {
+        JsonNode document = mapper.readTree("{\"m\":[[1,2],[3]]}");
+
+        assertEquals(List.of("1", "2", "3"), values("m[*][*]", document));
+        assertEquals(List.of("2"), values("m[0][1]", document));
+    }
+
+    @Test
+    void rejectsMalformedPaths() {
+        for (String path : new String[]{"", "a..b", "a[", "a[x]", "a[0]b", ".a"}) {
+            assertThrows(IllegalArgumentException.class, () -> JsonFieldPath.parse(path), path);
+        }
+    }
+
+    @Test
+    void rejectsNegativeIndices() {
+        assertThrows(IllegalArgumentException.class, () -> JsonFieldPath.parse("a[-1]"));
+        assertThrows(IllegalArgumentException.class, () -> JsonFieldPath.parse("a[-2].b"));
+    }
+
+    @Test
+    void fieldsSelectedByDifferentPathsAreEqual() {
+        JsonNode document = mapper.readTree("{\"a\":[{\"x\":1},{\"x\":1}]}");
+        Set<JsonFieldPath.Field> fields = new HashSet<>();
+        JsonFieldPath.parse("a[*].x").forEach(document, fields::add);
+        JsonFieldPath.parse("a[0].x").forEach(document, fields::add);
+        JsonFieldPath.parse("a[*]").forEach(document, fields::add);
+
+        // two x properties with equal values are still different fields
+        assertEquals(4, fields.size());
+    }
+
+    @Test
+    void fieldsOfEqualDocumentsAreNotEqual() {
+        JsonNode first = mapper.readTree("{\"a\":1}");
+        JsonNode second = mapper.readTree("{\"a\":1}");
+        List<JsonFieldPath.Field> fields = new ArrayList<>();
+        JsonFieldPath path = JsonFieldPath.parse("a");
+        path.forEach(first, fields::add);
+        path.forEach(second, fields::add);
+
+        assertNotEquals(fields.get(0), fields.get(1));
+    }
+
+    private static List<String> values(String path, JsonNode document) {
+        List<String> values = new ArrayList<>();
+        JsonFieldPath.parse(path).forEach(document, field -> values.add(field.get().toString()));
+        return values;
+    }
+}